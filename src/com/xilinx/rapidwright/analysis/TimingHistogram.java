@@ -2,7 +2,6 @@ package com.xilinx.rapidwright.analysis;
 
 import java.lang.*;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Collections;
 import java.util.ArrayList;
@@ -48,25 +47,25 @@ public class TimingHistogram {
     // Open timing manager
     TimingManager timing = new TimingManager(design);
 
-    // Get paths of timing graph
+    // Get timing endpoints of timing graph, the slack of each is the slack of its worst path
     TimingGraph tg = timing.getTimingGraph();
     tg.setTimingRequirement(period);
-    HashSet<GraphPath<TimingVertex, TimingEdge>> paths = tg.getGraphPaths();
-    System.out.println("Number of paths in the timing graph: " + Integer.toString(paths.size()));
-    //System.out.println("Timing paths of the design:");
-    //System.out.println(paths);
+    tg.computeSlacks();
+    List<TimingVertex> endpoints = tg.getTimingEndpoints();
+    System.out.println("Number of timing endpoints in the timing graph: " + Integer.toString(endpoints.size()));
     System.out.println("Worst slack in the timing graph: " + Float.toString(tg.getWorstSlack() / 1000) + " ns");
+    GraphPath<TimingVertex, TimingEdge> critical = tg.getCriticalPath();
+    if (critical != null) {
+      System.out.println("\nCritical path:");
+      System.out.println(critical);
+    }
 
-    // Get slacks of paths in ns
+    // Get slacks of endpoints in ns
     ArrayList<Float> slacks = new ArrayList<Float>();
-    for (GraphPath<TimingVertex, TimingEdge> path : paths) {
-      System.out.println("\nTiming path:");
-      System.out.println(path);
-      System.out.println("tg.getSlack(path) method on this path returns: " + Float.toString(tg.getSlack(path) / 1000) + " ns");
-      TimingVertex dest = path.getEndVertex();
-      Float slack = dest.getSlack() / 1000;
-      System.out.println("Slack on the dest vertex of this path: " + Float.toString(dest.getSlack() / 1000) + " ns\n");
-      slacks.add(slack);
+    for (TimingVertex dest : endpoints) {
+      Float slack = dest.getSlack();
+      if (slack == null) continue;
+      slacks.add(slack / 1000);
     }
     //System.out.println("All slack values (ns):");
     //System.out.println(slacks);
@@ -99,7 +98,8 @@ public class TimingHistogram {
         System.out.println(bar);
       }
     }
-    else {System.out.println("Design has one timing path with slack " + Float.toString(slacks.get(0)) + " ns.");}
+    else if (slacks.size() == 1) {System.out.println("Design has one timing endpoint with slack " + Float.toString(slacks.get(0)) + " ns.");}
+    else {System.out.println("Design has no timing endpoints.");}
 
   }
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.design;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.PIP;
+import com.xilinx.rapidwright.device.Site;
+import com.xilinx.rapidwright.device.SiteTypeEnum;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.util.Utils;
+
+/**
+ * The resources a {@link Module} needs relative to its anchor: the distinct template sites 
+ * (with the site type placed on them) and the distinct tiles of its routing.  A candidate 
+ * anchor site is checked by relocating each of them once, which gives the same answer as 
+ * {@link ModuleInst#place(Site)} without placing anything.  The valid anchor sites are cached 
+ * per module, so all instances of a module share them.
+ * 
+ * Created on: Oct 18, 2020
+ */
+public class ModuleFootprint {
+
+	/** Valid anchor sites of each module that was checked so far */
+	private static final Map<Module, List<Site>> validPlacementCache = new IdentityHashMap<>();
+	
+	/** Footprint of each module, shared by its instances */
+	private static final Map<Module, ModuleFootprint> footprintCache = new IdentityHashMap<>();
+	
+	private Module module;
+	
+	/** Template site of the anchor */
+	private Site anchorSite;
+	
+	private SiteTypeEnum anchorType;
+	
+	/** Template sites that move with the anchor, and the type placed on each */
+	private Site[] sites;
+	
+	private SiteTypeEnum[] siteTypes;
+	
+	/** Distinct template tiles of the routing */
+	private Tile[] pipTiles;
+	
+	public ModuleFootprint(Module module){
+		this.module = module;
+		SiteInst anchor = module.getAnchor();
+		anchorSite = anchor == null ? null : anchor.getSite();
+		anchorType = anchor == null ? null : anchor.getSiteTypeEnum();
+		List<Site> siteList = new ArrayList<>();
+		List<SiteTypeEnum> typeList = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for(SiteInst si : module.getSiteInsts()){
+			// Certain site types cannot move and will remain in place
+			if(Utils.isLockedSiteType(si.getSiteTypeEnum())) continue;
+			if(!seen.add(si.getSite().getName() + "/" + si.getSiteTypeEnum())) continue;
+			siteList.add(si.getSite());
+			typeList.add(si.getSiteTypeEnum());
+		}
+		sites = siteList.toArray(new Site[siteList.size()]);
+		siteTypes = typeList.toArray(new SiteTypeEnum[typeList.size()]);
+		
+		Set<Tile> tiles = new HashSet<>();
+		for(Net net : module.getNets()){
+			for(PIP p : net.getPIPs()){
+				tiles.add(p.getTile());
+			}
+		}
+		pipTiles = tiles.toArray(new Tile[tiles.size()]);
+	}
+	
+	/**
+	 * @return the module of this footprint
+	 */
+	public Module getModule(){
+		return module;
+	}
+	
+	/**
+	 * Checks if the module can be placed with its anchor on the given site.
+	 * @param newAnchorSite The candidate anchor site.
+	 * @return True if all sites and routing of the module have a corresponding location in the 
+	 * device for this anchor.
+	 */
+	public boolean isValidPlacement(Site newAnchorSite){
+		if(anchorSite == null || newAnchorSite == null) return false;
+		Device dev = newAnchorSite.getDevice();
+		Tile anchorTile = newAnchorSite.getTile();
+		if(!newAnchorSite.equals(anchorSite.getCorrespondingSite(anchorType, anchorTile))) return false;
+		for(int i=0; i < sites.length; i++){
+			Tile newTile = module.getCorrespondingTile(sites[i].getTile(), anchorTile, dev);
+			if(newTile == null) return false;
+			if(sites[i].getCorrespondingSite(siteTypes[i], newTile) == null) return false;
+		}
+		return canRelocateRouting(anchorTile);
+	}
+	
+	/**
+	 * Checks that all routing of the module has a corresponding tile for the anchor tile.
+	 * @param newAnchorTile The tile of the candidate anchor site.
+	 * @return True if all PIPs of the module can be relocated.
+	 */
+	public boolean canRelocateRouting(Tile newAnchorTile){
+		Device dev = newAnchorTile.getDevice();
+		for(Tile t : pipTiles){
+			if(module.getCorrespondingTile(t, newAnchorTile, dev) == null) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks all sites of the device compatible with the anchor in parallel.
+	 * @param dev The device to place the module on.
+	 * @return The valid anchor sites in the order of {@link Device#getAllCompatibleSites(SiteTypeEnum)}.
+	 */
+	public List<Site> calculateValidPlacements(Device dev){
+		if(anchorSite == null) return new ArrayList<>();
+		Site[] candidates = dev.getAllCompatibleSites(anchorType);
+		return Arrays.stream(candidates).parallel()
+				.filter(this::isValidPlacement)
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	/**
+	 * Gets the footprint of a module, creating it on first use.
+	 * @param module The module.
+	 * @return The shared footprint of the module.
+	 */
+	public static ModuleFootprint getFootprint(Module module){
+		synchronized (footprintCache) {
+			return footprintCache.computeIfAbsent(module, ModuleFootprint::new);
+		}
+	}
+	
+	/**
+	 * Gets the valid anchor sites of a module, computing them on first use.
+	 * @param module The module to place.
+	 * @param dev The device to place the module on.
+	 * @return The cached list of valid anchor sites, which should not be modified.
+	 */
+	public static List<Site> getValidPlacements(Module module, Device dev){
+		synchronized (validPlacementCache) {
+			List<Site> sites = validPlacementCache.get(module);
+			if(sites != null) return sites;
+		}
+		List<Site> sites = getFootprint(module).calculateValidPlacements(dev);
+		synchronized (validPlacementCache) {
+			List<Site> existing = validPlacementCache.putIfAbsent(module, sites);
+			return existing != null ? existing : sites;
+		}
+	}
+	
+	/**
+	 * Computes the valid anchor sites of several modules in parallel and caches them.
+	 * @param modules The modules to place.
+	 * @param dev The device to place the modules on.
+	 */
+	public static void calculateValidPlacements(Iterable<Module> modules, Device dev){
+		List<Module> missing = new ArrayList<>();
+		synchronized (validPlacementCache) {
+			for(Module m : modules){
+				if(!validPlacementCache.containsKey(m)) missing.add(m);
+			}
+		}
+		missing.parallelStream().forEach(m -> getValidPlacements(m, dev));
+	}
+	
+	/**
+	 * Forgets the footprint and valid anchor sites of a module, needed after its contents changed.
+	 * @param module The module to forget.
+	 */
+	public static void invalidate(Module module){
+		synchronized (validPlacementCache) {
+			validPlacementCache.remove(module);
+		}
+		synchronized (footprintCache) {
+			footprintCache.remove(module);
+		}
+	}
+	
+	/**
+	 * Forgets the footprints and valid anchor sites of all modules.
+	 */
+	public static void clearCache(){
+		synchronized (validPlacementCache) {
+			validPlacementCache.clear();
+		}
+		synchronized (footprintCache) {
+			footprintCache.clear();
+		}
+	}
+}
@@ -25,6 +25,7 @@ package com.xilinx.rapidwright.design;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.xilinx.rapidwright.design.blocks.PBlock;
 import com.xilinx.rapidwright.design.blocks.PBlockRange;
@@ -64,6 +65,10 @@ public class ModuleInst{
 	private ArrayList<Net> nets;
 	/** Reference to the logical cell instance in the netlist */
 	private EDIFCellInst cellInst;
+	/** Find valid placements from the module's footprint rather than by placing the instance */
+	public static boolean USE_MODULE_FOOTPRINT = true;
+	/** Anchor tile the PIPs of the nets still have to be created for, null if they are current */
+	private Tile pendingRoutingAnchor;
 	
 	/**
 	 * Constructor initializing instance module name
@@ -94,6 +99,7 @@ public class ModuleInst{
 		this.setAnchor(moduleInst.anchor);
 		instances =  moduleInst.instances;
 		nets = moduleInst.nets;	
+		pendingRoutingAnchor = moduleInst.pendingRoutingAnchor;
 	}
 	
 	/**
@@ -191,10 +197,12 @@ public class ModuleInst{
 	}
 
 	/**
-	 * Gets the list of physical nets in the module instance.
+	 * Gets the list of physical nets in the module instance.  Routing deferred by 
+	 * {@link #place(Site, boolean)} is created first.
 	 * @return Full list of physical nets in this module instance.
 	 */
 	public ArrayList<Net> getNets(){
+		placeRouting();
 		return nets;
 	}
 
@@ -219,19 +227,24 @@ public class ModuleInst{
 	}
 	
 	/**
-	 * Does a brute force search to find all valid locations of where this module
-	 * instance can be placed.  It returns the module instance to its original
-	 * location.
+	 * Finds all valid locations of where this module instance can be placed.  The sites are 
+	 * computed once per module from its footprint (see {@link ModuleFootprint}) without 
+	 * changing the placement of the module instance.
 	 * @return A list of valid anchor sites for the module instance to be placed.
 	 */
 	public ArrayList<Site> getAllValidPlacements(){
 		ArrayList<Site> validSites = new ArrayList<Site>();
 		if(getAnchor() == null) return validSites;
+		if(USE_MODULE_FOOTPRINT){
+			validSites.addAll(ModuleFootprint.getValidPlacements(module, getDesign().getDevice()));
+			return validSites;
+		}
+		// Brute force search, returns the module instance to its original location
 		Site originalSite = getAnchor().getSite();
 		Design design = getDesign();
 		Site[] sites = design.getDevice().getAllCompatibleSites(getAnchor().getSiteTypeEnum());
 		for(Site newAnchorSite : sites){
-			if(place(newAnchorSite)){
+			if(place(newAnchorSite, true)){
 				validSites.add(newAnchorSite);
 				unplace();
 			}
@@ -248,10 +261,30 @@ public class ModuleInst{
 	 * Places the module instance anchor at the newAnchorSite as well as all other 
 	 * instances and nets within the module instance at their relative offsets of the new site.
 	 * @param newAnchorSite The new site for the anchor of the module instance.
-	 * @param dev The device on which the module instance is being placed.
 	 * @return True if placement was successful, false otherwise.
 	 */
-	public boolean place(Site newAnchorSite){	
+	public boolean place(Site newAnchorSite){
+		return place(newAnchorSite, false);
+	}
+	
+	/**
+	 * Places the module instance anchor at the newAnchorSite as well as all other 
+	 * instances at their relative offsets of the new site.  The PIPs of the nets can be 
+	 * created later, which makes trial placements that are undone again much cheaper: they 
+	 * then cost time in the number of site instances rather than PIPs.  Deferred routing is 
+	 * created by {@link #placeRouting()}, which {@link #getNets()} calls.
+	 * <p>
+	 * <b>Note:</b> Until {@link #placeRouting()} is called, the nets of the module instance have 
+	 * no PIPs.  Anything that reads the routing through the design instead of this module 
+	 * instance ({@link Design#getNets()}, {@link Design#writeCheckpoint(String)}, routers, 
+	 * timing) sees them as unrouted without any warning, so callers that defer routing must 
+	 * call {@link #placeRouting()} before handing the design to them.
+	 * @param newAnchorSite The new site for the anchor of the module instance.
+	 * @param deferRouting If true, only checks that the routing can be relocated and leaves the
+	 * nets without PIPs until {@link #placeRouting()} is called.
+	 * @return True if placement was successful, false otherwise.
+	 */
+	public boolean place(Site newAnchorSite, boolean deferRouting){	
 		// Check if parameters are null
 		if(newAnchorSite == null){
 			return false;
@@ -326,16 +359,49 @@ public class ModuleInst{
 		//=======================================================//
 		/* Place net at new location                             */
 		//=======================================================//
+		if(deferRouting){
+			if(!ModuleFootprint.getFootprint(module).canRelocateRouting(newAnchorSite.getTile())){
+				unplace();
+				MessageGenerator.briefError("Warning: Routing of module instance "+ name +" has no "
+						+ "corresponding tiles for anchor " + newAnchorSite.getName() + ", unplacing it.");
+				return false;
+			}
+			if(pendingRoutingAnchor == null){
+				// Drop the PIPs of the previous location once
+				for(Net net : nets){
+					net.getPIPs().clear();
+				}
+			}
+			pendingRoutingAnchor = newAnchorSite.getTile();
+			return true;
+		}
+		pendingRoutingAnchor = null;
+		return relocateRouting(newAnchorSite.getTile());
+	}
+	
+	/**
+	 * Creates the PIPs of the nets of the module instance for a new anchor tile from the PIPs 
+	 * of the module's nets.
+	 * @param newAnchorTile The tile of the anchor of the module instance.
+	 * @return True if all PIPs could be relocated, otherwise the module instance is unplaced.
+	 */
+	private boolean relocateRouting(Tile newAnchorTile){
+		Device dev = newAnchorTile.getDevice();
+		Map<Tile,Tile> newPipTiles = new HashMap<>();
 		for(Net net : nets){
 			net.getPIPs().clear();
 			Net templateNet = net.getModuleTemplateNet();
 			for(PIP pip : templateNet.getPIPs()){
 				Tile templatePipTile = pip.getTile();
-				Tile newPipTile = module.getCorrespondingTile(templatePipTile, newAnchorSite.getTile(), dev);
+				Tile newPipTile = newPipTiles.get(templatePipTile);
 				if(newPipTile == null){
-					unplace();
-					MessageGenerator.briefError("Warning: Unable to return module instance "+ name +" back to original placement.");
-					return false;
+					newPipTile = module.getCorrespondingTile(templatePipTile, newAnchorTile, dev);
+					if(newPipTile == null){
+						unplace();
+						MessageGenerator.briefError("Warning: Unable to return module instance "+ name +" back to original placement.");
+						return false;
+					}
+					newPipTiles.put(templatePipTile, newPipTile);
 				}
 				PIP newPip = new PIP(pip);///new PIP(newPipTile, pip.getStartWire(), pip.getEndWire(), pip.getPIPType());
 				newPip.setTile(newPipTile);
@@ -348,6 +414,27 @@ public class ModuleInst{
 		return true;
 	}
 	
+	/**
+	 * Creates the PIPs of the nets if their creation was deferred when placing the module 
+	 * instance (see {@link #place(Site, boolean)}).
+	 * @return False if the routing could not be relocated, in which case the module instance
+	 * is unplaced.
+	 */
+	public boolean placeRouting(){
+		if(pendingRoutingAnchor == null) return true;
+		Tile newAnchorTile = pendingRoutingAnchor;
+		pendingRoutingAnchor = null;
+		return relocateRouting(newAnchorTile);
+	}
+	
+	/**
+	 * @return True if the module instance is placed but the PIPs of its nets were not 
+	 * created yet.
+	 */
+	public boolean isRoutingDeferred(){
+		return pendingRoutingAnchor != null;
+	}
+	
 	/**
 	 * Removes all placement information and unroutes all nets of the module instance.
 	 */
@@ -356,10 +443,13 @@ public class ModuleInst{
 		for(SiteInst inst : instances){
 			inst.unPlace();
 		}
-		//unplace nets (remove pips)
-		for(Net net : nets){
-			net.getPIPs().clear();
+		//unplace nets (remove pips), deferred routing has none
+		if(pendingRoutingAnchor == null){
+			for(Net net : nets){
+				net.getPIPs().clear();
+			}
 		}
+		pendingRoutingAnchor = null;
 	}
 
 	/**
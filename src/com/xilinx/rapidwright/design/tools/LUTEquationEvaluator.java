@@ -24,7 +24,9 @@
 package com.xilinx.rapidwright.design.tools;
 
 /**
- * Helper class to parse LUT equations.
+ * Helper class to parse LUT equations.  Values are evaluated bit-parallel, bit i of
+ * a value being its result for LUT row i, so that a single parse can evaluate all 
+ * 64 rows of a LUT (see {@link #evalAll()}).
  * @author clavin
  */
 class LUTEquationEvaluator {
@@ -39,6 +41,16 @@ class LUTEquationEvaluator {
 	public static final char NOT = '~';
 	public static final char NOT2 = '!';
 	
+	/** Value of each LUT input for rows 0 to 63, bit i being the input of row i */
+	private static final long[] INPUT_ROWS = {
+		0xAAAAAAAAAAAAAAAAL, 
+		0xCCCCCCCCCCCCCCCCL, 
+		0xF0F0F0F0F0F0F0F0L, 
+		0xFF00FF00FF00FF00L, 
+		0xFFFF0000FFFF0000L, 
+		0xFFFFFFFF00000000L,
+	};
+	
 	private int pos = -1;
 	
 	private char ch;
@@ -46,6 +58,9 @@ class LUTEquationEvaluator {
 	private String equation;
 	
 	private int row;
+	
+	/** True to evaluate all rows at once, false to evaluate {@link #row} only */
+	private boolean allRows;
 
 	public LUTEquationEvaluator(String equation){
 		this.equation = equation;
@@ -69,27 +84,49 @@ class LUTEquationEvaluator {
     }
     
     public boolean eval(int row) {
-    	pos = 0;
     	setRow(row);
+    	allRows = false;
+        return (parse() & 1L) != 0;
+    }
+    
+    /**
+     * Evaluates the equation for all 64 rows of a LUT6 in a single parse.  The truth table of a 
+     * smaller LUT is in the low bits of the result, as its rows are the first rows of a LUT6.
+     * @return The result of each row, bit i being the result of row i.
+     */
+    public long evalAll() {
+    	allRows = true;
+    	return parse();
+    }
+    
+    private long parse() {
+    	pos = 0;
         nextChar();
-        boolean x = evalOR();
+        long x = evalOR();
         nextChar();
         if (pos < equation.length()) 
         	throw new RuntimeException("Unexpected: '" + (char)ch + 
         			"' in LUT equation '" + equation + "'");
         return x;
     }
+    
+    private long input(int index) {
+    	if (!allRows) return LUTTools.getBit(row, index) == 0 ? 0L : -1L;
+    	// Same shift semantics as LUTTools.getBit(int, int) for rows below 64
+    	index &= 31;
+    	return index < INPUT_ROWS.length ? INPUT_ROWS[index] : 0L;
+    }
 
-    boolean evalOR() {
-        boolean x = evalXORAND();
+    long evalOR() {
+        long x = evalXORAND();
         for (;;) {
             if (checkNextChar(OR) || checkNextChar(OR2)) x |= evalXORAND(); // OR
             else return x;
         }
     }
 
-    boolean evalXORAND() {
-        boolean x = evalLiteral();
+    long evalXORAND() {
+        long x = evalLiteral();
         for (;;) {
             if (checkNextChar(XOR) || checkNextChar(XOR2)) 
             	x ^= evalLiteral(); // XOR
@@ -100,27 +137,27 @@ class LUTEquationEvaluator {
         }
     }
 
-    boolean evalLiteral() {
+    long evalLiteral() {
     	boolean invert = false;
     	if (checkNextChar(NOT) || checkNextChar(NOT2)) invert = true;
-        boolean x = false;
+        long x = 0L;
         
         if (checkNextChar('(')) { 
             x = evalOR();
             checkNextChar(')');
         } else if (ch == '0') {
-        	x = false;
+        	x = 0L;
         } else if (ch == '1') {
-        	x = true;
+        	x = -1L;
         } else if (ch == 'I') { 
         	nextChar();
-        	x = LUTTools.getBit(row, ch - 48) == 0 ? false : true;
+        	x = input(ch - 48);
         	nextChar();
         } else {
             throw new RuntimeException("Unexpected: '" + (char)ch +
             		"' in LUT equation '" + equation + "'");
         }
 
-        return invert ? !x : x;
+        return invert ? ~x : x;
     }        
 }
@@ -24,6 +24,7 @@
 package com.xilinx.rapidwright.design.tools;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,7 +51,41 @@ public class LUTTools {
 
 	public static final int MAX_LUT_SIZE = 6;
 	
-
+	/** Evaluates LUT equations for all rows at once and caches the resulting INIT strings */
+	public static boolean USE_COMPILED_EQUATIONS = true;
+	
+	/** Maximum number of equations cached per LUT size */
+	public static int LUT_EQUATION_CACHE_SIZE = 4096;
+	
+	/** INIT strings of recently evaluated equations, per LUT size */
+	private static List<Map<String,String>> initCache;
+	
+	/** Product term of each row used by {@link #getLUTEquation(String)}, per LUT size */
+	private static String[][] minterms;
+	
+	static{
+		initCache = new ArrayList<>();
+		minterms = new String[MAX_LUT_SIZE+1][];
+		for(int lutSize=0; lutSize <= MAX_LUT_SIZE; lutSize++){
+			initCache.add(new LinkedHashMap<String,String>(16, 0.75f, true){
+				private static final long serialVersionUID = -2393419469215315431L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String,String> eldest){
+					return size() > LUT_EQUATION_CACHE_SIZE;
+				}
+			});
+			minterms[lutSize] = new String[1 << lutSize];
+			for(int i=0; i < minterms[lutSize].length; i++){
+				StringBuilder sb = new StringBuilder();
+				for(int j=lutSize-1; j >= 0; j--){
+					sb.append(getBit(i,j) == 1 ? "" : "!");
+					sb.append("I" + j);
+					if(j > 0) sb.append(" & ");
+				}
+				minterms[lutSize][i] = sb.toString();
+			}
+		}
+	}
 	
 	/**
 	 * Checks if this cell is a LUT (LUT1, LUT2, LUT3,...). A CFGLUT5 will return false.
@@ -94,7 +129,7 @@ public class LUTTools {
 	 */
 	public static int getLUTSize(EDIFCellInst c){
 		if(!isCellALUT(c)) return 0;
-		return c.getCellType().getName().charAt(3);
+		return c.getCellType().getName().charAt(3) - '0';
 	}
 	
 	/**
@@ -237,6 +272,30 @@ public class LUTTools {
 	 * @return The INIT string to program the LUT of the provided size
 	 */
 	public static String getLUTInitFromEquation(String equation, int lutSize){
+		if(!USE_COMPILED_EQUATIONS || lutSize < 0 || lutSize > MAX_LUT_SIZE){
+			return getLUTInitFromEquationByRow(equation, lutSize);
+		}
+		Map<String,String> cache = initCache.get(lutSize);
+		String init;
+		synchronized (cache) {
+			init = cache.get(equation);
+		}
+		if(init != null) return init;
+		int length = 1 << lutSize;
+		long value = new LUTEquationEvaluator(equation).evalAll();
+		if(length < 64) value &= (1L << length) - 1;
+		init = length + "'h" + Long.toUnsignedString(value, 16).toUpperCase();
+		synchronized (cache) {
+			cache.put(equation, init);
+		}
+		return init;
+	}
+	
+	/**
+	 * Evaluates the provided equation one row at a time to create the INIT string.
+	 * @see #getLUTInitFromEquation(String, int)
+	 */
+	private static String getLUTInitFromEquationByRow(String equation, int lutSize){
 		int length = 1 << lutSize;
 		long init = 0;
 		LUTEquationEvaluator b = new LUTEquationEvaluator(equation);
@@ -273,6 +332,45 @@ public class LUTTools {
 		return c.addProperty(LUT_INIT, init);
 	}
 	
+	/**
+	 * Programs the init strings of many LUT cells.  Each distinct equation is evaluated
+	 * once per LUT size and cells with the same configuration share the INIT string.
+	 * @param equations The desired programming of each LUT cell using Vivado LUT equation syntax.
+	 */
+	public static void configureLUTs(Map<Cell,String> equations){
+		Map<String,String[]> inits = new HashMap<>();
+		for(Entry<Cell,String> e : equations.entrySet()){
+			Cell c = e.getKey();
+			int size = getLUTSize(c);
+			if(size == 0) throw new RuntimeException("ERROR: Cell " + c.getName() + " is not a LUT");
+			c.addProperty(LUT_INIT, getLUTInit(inits, e.getValue(), size));
+		}
+	}
+	
+	/**
+	 * Programs the init strings of many LUT cell instances.  Each distinct equation is evaluated
+	 * once per LUT size and instances with the same configuration share the INIT string.
+	 * @param equations The desired programming of each LUT cell instance using Vivado LUT 
+	 * equation syntax.
+	 */
+	public static void configureLUTInsts(Map<EDIFCellInst,String> equations){
+		Map<String,String[]> inits = new HashMap<>();
+		for(Entry<EDIFCellInst,String> e : equations.entrySet()){
+			EDIFCellInst c = e.getKey();
+			int size = getLUTSize(c);
+			if(size == 0) throw new RuntimeException("ERROR: Cell " + c.getName() + " is not a LUT");
+			c.addProperty(LUT_INIT, getLUTInit(inits, e.getValue(), size));
+		}
+	}
+	
+	private static String getLUTInit(Map<String,String[]> inits, String equation, int lutSize){
+		String[] bySize = inits.computeIfAbsent(equation, k -> new String[MAX_LUT_SIZE+1]);
+		if(bySize[lutSize] == null){
+			bySize[lutSize] = getLUTInitFromEquation(equation, lutSize);
+		}
+		return bySize[lutSize];
+	}
+	
 	/**
 	 * Reads the init string in this LUT and creates an equivalent (non-optimal) equation. 
 	 * @param c The LUT instance 
@@ -305,21 +403,17 @@ public class LUTTools {
 		long value = getInitValue(init);
 		int length = initLength(init);
 		int lutSize = getLUTSize(init);
-		StringBuilder sb = new StringBuilder("O=");
-		int termCount = 0;
-		for(int i=0; i < length; i++){
-			if(getBit(value,i) == 1){
-				if(termCount > 0) sb.append(" + ");
-				for(int j=lutSize-1; j >= 0; j--){
-					sb.append(getBit(i,j) == 1 ? "" : "!");
-					sb.append("I" + j);
-					if(j > 0) sb.append(" & ");
-				}
-				termCount++;
-			}
-		}
+		if(length < 64) value &= (1L << length) - 1;
+		int termCount = Long.bitCount(value);
 		if(termCount==0) return "O=0";
 		if(termCount==length) return "O=1";
+		String[] terms = minterms[lutSize];
+		StringBuilder sb = new StringBuilder(2 + termCount * (terms[0].length() + 3));
+		sb.append("O=");
+		for(long rows=value; rows != 0; rows &= rows - 1){
+			if(sb.length() > 2) sb.append(" + ");
+			sb.append(terms[Long.numberOfTrailingZeros(rows)]);
+		}
 		return sb.toString();
 	}
 
@@ -0,0 +1,434 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.edif;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import com.esotericsoftware.kryo.unsafe.UnsafeInput;
+import com.esotericsoftware.kryo.unsafe.UnsafeOutput;
+import com.xilinx.rapidwright.util.FileTools;
+
+/**
+ * Reads and writes a compact binary form of an {@link EDIFNetlist} to avoid re-parsing
+ * the text EDIF each time it is loaded.  All strings are stored once in a string table
+ * that is built as the file is written (or read), cells are referenced by a global
+ * integer id, ports and instances by their index within a cell and all counts and
+ * references are varint-encoded.  The header records the length and timestamp of the source
+ * EDIF file so a stale cache is not used, and its CRC32 if {@link #USE_CHECKSUM} is set.
+ * Created on: Oct 18, 2020
+ */
+public class EDIFBinaryNetlist {
+
+	/** Suffix appended to the EDIF file name for its binary cache file */
+	public static final String BINARY_NETLIST_FILE_SUFFIX = ".bnl";
+
+	private static final int MAGIC = 0x4544424e;
+
+	/** Version of the file format, bumped when the format changes */
+	private static final int VERSION = 2;
+
+	/** Flag to also record and check the CRC32 of the EDIF file, which reads the whole EDIF
+	 *  file on every load.  Off by default, the length and timestamp are checked regardless */
+	public static boolean USE_CHECKSUM = false;
+
+	/** String reference code for null */
+	private static final int NULL_STRING = 0;
+
+	/** String reference code for a string not seen before, the string itself follows */
+	private static final int NEW_STRING = 1;
+
+	/** Strings already written/read, keyed by string on write */
+	private HashMap<String,Integer> stringIds;
+
+	/** Strings already read, in the order they were first encountered */
+	private List<String> strings;
+
+	private EDIFBinaryNetlist(){
+		stringIds = new HashMap<>();
+		strings = new ArrayList<>();
+	}
+
+	/**
+	 * Gets the name of the binary cache file of an EDIF file.
+	 * @param edifFileName Name of the EDIF file.
+	 * @return The name of the binary cache file.
+	 */
+	public static String getBinaryNetlistFileName(String edifFileName){
+		return edifFileName + BINARY_NETLIST_FILE_SUFFIX;
+	}
+
+	/**
+	 * Computes the CRC32 checksum of the file contents.
+	 * @param fileName The file to check.
+	 * @return The checksum of the file.
+	 */
+	public static long getChecksum(String fileName){
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 20];
+		try (InputStream in = new FileInputStream(fileName)){
+			int count;
+			while((count = in.read(buffer)) != -1){
+				crc.update(buffer, 0, count);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("ERROR: Couldn't read file : " + fileName, e);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes the binary cache of a netlist loaded from the EDIF file next to the
+	 * EDIF file (see {@link #getBinaryNetlistFileName(String)}).  The cache is written
+	 * under a temporary name and then renamed, so that a concurrent reader never sees a
+	 * partially written file.
+	 * @param edifFileName The EDIF file the netlist was loaded from.
+	 * @param netlist The netlist loaded from the EDIF file.
+	 */
+	public static void writeBinaryNetlistCache(String edifFileName, EDIFNetlist netlist){
+		File source = new File(edifFileName);
+		File cacheFile = new File(getBinaryNetlistFileName(edifFileName));
+		File tmpFile = null;
+		try{
+			tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+			UnsafeOutput out = FileTools.getUnsafeOutputStream(new FileOutputStream(tmpFile));
+			try{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(source.length());
+				out.writeLong(source.lastModified());
+				out.writeBoolean(USE_CHECKSUM);
+				if(USE_CHECKSUM) out.writeLong(getChecksum(edifFileName));
+				new EDIFBinaryNetlist().writeNetlist(out, netlist);
+			}finally{
+				out.close();
+			}
+			if(!tmpFile.renameTo(cacheFile)){
+				cacheFile.delete();
+				if(!tmpFile.renameTo(cacheFile)){
+					throw new RuntimeException("ERROR: Couldn't rename " + tmpFile + " to " + cacheFile);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("ERROR: Couldn't write file : " + cacheFile, e);
+		}finally{
+			if(tmpFile != null && tmpFile.exists()){
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads the binary cache of the EDIF file if it exists and matches the current
+	 * length and timestamp of the EDIF file.  If {@link #USE_CHECKSUM} is set, the cache must
+	 * also have recorded the checksum of the EDIF file and it must match.
+	 * @param edifFileName The EDIF file.
+	 * @return The cached netlist, or null if there is no valid cache of the EDIF file.
+	 */
+	public static EDIFNetlist readBinaryNetlistCache(String edifFileName){
+		String fileName = getBinaryNetlistFileName(edifFileName);
+		File source = new File(edifFileName);
+		if(!new File(fileName).exists() || !source.exists()) return null;
+		UnsafeInput in = FileTools.getUnsafeInputStream(fileName);
+		try{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+			if(in.readLong() != source.length() || in.readLong() != source.lastModified()){
+				return null;
+			}
+			boolean hasChecksum = in.readBoolean();
+			if(USE_CHECKSUM && (!hasChecksum || in.readLong() != getChecksum(edifFileName))){
+				return null;
+			}
+			if(!USE_CHECKSUM && hasChecksum) in.readLong();
+			return new EDIFBinaryNetlist().readNetlist(in);
+		}finally{
+			in.close();
+		}
+	}
+
+	//===================================================================================//
+	/* Writing                                                                           */
+	//===================================================================================//
+
+	private void writeString(UnsafeOutput out, String s){
+		if(s == null){
+			out.writeVarInt(NULL_STRING, true);
+			return;
+		}
+		Integer id = stringIds.get(s);
+		if(id == null){
+			stringIds.put(s, stringIds.size());
+			out.writeVarInt(NEW_STRING, true);
+			out.writeString(s);
+			return;
+		}
+		out.writeVarInt(id + 2, true);
+	}
+
+	private void writeName(UnsafeOutput out, EDIFName name){
+		writeString(out, name.getName());
+		writeString(out, name.getEDIFName());
+	}
+
+	private void writePropertyValue(UnsafeOutput out, EDIFPropertyValue value){
+		out.writeVarInt(value.getType().ordinal(), true);
+		writeString(out, value.getValue());
+	}
+
+	private void writeProperties(UnsafeOutput out, EDIFPropertyObject o){
+		Map<EDIFName,EDIFPropertyValue> properties = o.getProperties();
+		out.writeVarInt(properties == null ? 0 : properties.size(), true);
+		if(properties != null){
+			for(Entry<EDIFName,EDIFPropertyValue> e : properties.entrySet()){
+				writeName(out, e.getKey());
+				writePropertyValue(out, e.getValue());
+			}
+		}
+		writeString(out, o.getOwner());
+	}
+
+	private void writeNetlist(UnsafeOutput out, EDIFNetlist netlist){
+		writeName(out, netlist);
+		out.writeVarInt(netlist.getComments().size(), true);
+		for(String comment : netlist.getComments()){
+			writeString(out, comment);
+		}
+		out.writeVarInt(netlist.getMetax().size(), true);
+		for(Entry<String,EDIFPropertyValue> e : netlist.getMetax().entrySet()){
+			writeString(out, e.getKey());
+			writePropertyValue(out, e.getValue());
+		}
+
+		// Declare all libraries and cells first so that cells can be referenced by id
+		Map<EDIFCell,Integer> cellIds = new IdentityHashMap<>();
+		List<EDIFCell> cells = new ArrayList<>();
+		out.writeVarInt(netlist.getLibraries().size(), true);
+		for(EDIFLibrary lib : netlist.getLibraries()){
+			writeName(out, lib);
+			out.writeVarInt(lib.getCells().size(), true);
+			for(EDIFCell cell : lib.getCells()){
+				writeName(out, cell);
+				cellIds.put(cell, cells.size());
+				cells.add(cell);
+			}
+		}
+
+		Map<EDIFPort,Integer> portIds = new IdentityHashMap<>();
+		for(EDIFCell cell : cells){
+			int i = 0;
+			for(EDIFPort port : cell.getPorts()){
+				portIds.put(port, i++);
+			}
+		}
+
+		for(EDIFCell cell : cells){
+			writeName(out, cell.getEDIFView());
+			writeProperties(out, cell);
+			out.writeVarInt(cell.getPorts().size(), true);
+			for(EDIFPort port : cell.getPorts()){
+				writeName(out, port);
+				out.writeVarInt(port.getDirection().ordinal(), true);
+				out.writeVarInt(port.getWidth(), true);
+				writeProperties(out, port);
+			}
+			Map<EDIFCellInst,Integer> instIds = new IdentityHashMap<>();
+			out.writeVarInt(cell.getCellInsts().size(), true);
+			for(EDIFCellInst inst : cell.getCellInsts()){
+				instIds.put(inst, instIds.size());
+				writeName(out, inst);
+				Integer cellType = inst.getCellType() == null ? null : cellIds.get(inst.getCellType());
+				out.writeVarInt(cellType == null ? 0 : cellType + 1, true);
+				EDIFName viewref = inst.getViewref();
+				out.writeBoolean(viewref != null);
+				if(viewref != null) writeName(out, viewref);
+				writeProperties(out, inst);
+			}
+			out.writeVarInt(cell.getNets().size(), true);
+			for(EDIFNet net : cell.getNets()){
+				writeName(out, net);
+				writeProperties(out, net);
+				out.writeVarInt(net.getPortInsts().size(), true);
+				for(EDIFPortInst portInst : net.getPortInsts()){
+					writeString(out, portInst.getName());
+					out.writeVarInt(portInst.getIndex() + 1, true);
+					Integer inst = portInst.getCellInst() == null ? null : instIds.get(portInst.getCellInst());
+					out.writeVarInt(inst == null ? 0 : inst + 1, true);
+					Integer port = portInst.getPort() == null ? null : portIds.get(portInst.getPort());
+					out.writeVarInt(port == null ? 0 : port + 1, true);
+				}
+			}
+		}
+
+		EDIFDesign design = netlist.getDesign();
+		out.writeBoolean(design != null);
+		if(design != null){
+			writeName(out, design);
+			Integer top = design.getTopCell() == null ? null : cellIds.get(design.getTopCell());
+			out.writeVarInt(top == null ? 0 : top + 1, true);
+			writeProperties(out, design);
+		}
+	}
+
+	//===================================================================================//
+	/* Reading                                                                           */
+	//===================================================================================//
+
+	private String readString(UnsafeInput in){
+		int code = in.readVarInt(true);
+		if(code == NULL_STRING) return null;
+		if(code == NEW_STRING){
+			String s = in.readString();
+			strings.add(s);
+			return s;
+		}
+		return strings.get(code - 2);
+	}
+
+	private <T extends EDIFName> T readName(UnsafeInput in, T o){
+		o.setName(readString(in));
+		o.setEDIFRename(readString(in));
+		return o;
+	}
+
+	private EDIFPropertyValue readPropertyValue(UnsafeInput in){
+		EDIFPropertyValue value = new EDIFPropertyValue();
+		value.setType(EDIFValueType.values()[in.readVarInt(true)]);
+		value.setValue(readString(in));
+		return value;
+	}
+
+	private void readProperties(UnsafeInput in, EDIFPropertyObject o){
+		int count = in.readVarInt(true);
+		for(int i=0; i < count; i++){
+			EDIFName key = readName(in, new EDIFName());
+			o.addProperty(key, readPropertyValue(in));
+		}
+		o.setOwner(readString(in));
+	}
+
+	private EDIFNetlist readNetlist(UnsafeInput in){
+		EDIFNetlist netlist = readName(in, new EDIFNetlist());
+		int count = in.readVarInt(true);
+		for(int i=0; i < count; i++){
+			netlist.addComment(readString(in));
+		}
+		count = in.readVarInt(true);
+		for(int i=0; i < count; i++){
+			String key = readString(in);
+			netlist.addMetax(key, readPropertyValue(in));
+		}
+
+		List<EDIFCell> cells = new ArrayList<>();
+		int libCount = in.readVarInt(true);
+		for(int i=0; i < libCount; i++){
+			EDIFLibrary lib = readName(in, new EDIFLibrary());
+			int cellCount = in.readVarInt(true);
+			for(int j=0; j < cellCount; j++){
+				EDIFCell cell = readName(in, new EDIFCell());
+				lib.addCell(cell);
+				cells.add(cell);
+			}
+			netlist.addLibrary(lib);
+		}
+
+		EDIFPort[][] ports = new EDIFPort[cells.size()][];
+		for(int c=0; c < cells.size(); c++){
+			EDIFCell cell = cells.get(c);
+			cell.setView(readName(in, new EDIFName()));
+			readProperties(in, cell);
+			EDIFPort[] cellPorts = new EDIFPort[in.readVarInt(true)];
+			for(int i=0; i < cellPorts.length; i++){
+				EDIFPort port = readName(in, new EDIFPort());
+				port.setDirection(EDIFDirection.values()[in.readVarInt(true)]);
+				port.setWidth(in.readVarInt(true));
+				port.setIsLittleEndian();
+				readProperties(in, port);
+				cell.addPort(port);
+				cellPorts[i] = port;
+			}
+			ports[c] = cellPorts;
+		}
+
+		// Ports of all cells are needed before the port references of any nets are read
+		Map<EDIFCell,Integer> cellIds = new IdentityHashMap<>();
+		for(int c=0; c < cells.size(); c++){
+			cellIds.put(cells.get(c), c);
+		}
+		EDIFPort[] noPorts = new EDIFPort[0];
+		for(int c=0; c < cells.size(); c++){
+			EDIFCell cell = cells.get(c);
+			EDIFCellInst[] insts = new EDIFCellInst[in.readVarInt(true)];
+			for(int i=0; i < insts.length; i++){
+				EDIFCellInst inst = readName(in, new EDIFCellInst());
+				int cellType = in.readVarInt(true);
+				if(cellType > 0) inst.setCellType(cells.get(cellType - 1));
+				if(in.readBoolean()) inst.setViewref(readName(in, new EDIFName()));
+				readProperties(in, inst);
+				cell.addCellInst(inst);
+				insts[i] = inst;
+			}
+			int netCount = in.readVarInt(true);
+			for(int i=0; i < netCount; i++){
+				EDIFNet net = readName(in, new EDIFNet());
+				readProperties(in, net);
+				cell.addNet(net);
+				int portInstCount = in.readVarInt(true);
+				for(int j=0; j < portInstCount; j++){
+					EDIFPortInst portInst = new EDIFPortInst();
+					portInst.setName(readString(in));
+					portInst.setIndex(in.readVarInt(true) - 1);
+					int instId = in.readVarInt(true);
+					EDIFCellInst inst = instId == 0 ? null : insts[instId - 1];
+					int portId = in.readVarInt(true);
+					if(portId > 0){
+						EDIFCell portCell = inst == null ? cell : inst.getCellType();
+						Integer portCellId = portCell == null ? null : cellIds.get(portCell);
+						EDIFPort[] cellPorts = portCellId == null ? noPorts : ports[portCellId];
+						portInst.setPort(cellPorts[portId - 1]);
+					}
+					portInst.setCellInst(inst);
+					net.addPortInst(portInst);
+				}
+			}
+		}
+
+		if(in.readBoolean()){
+			EDIFDesign design = readName(in, new EDIFDesign());
+			int top = in.readVarInt(true);
+			if(top > 0) design.setTopCell(cells.get(top - 1));
+			readProperties(in, design);
+			netlist.setDesign(design);
+		}
+		return netlist;
+	}
+}
@@ -103,6 +103,7 @@ public class EDIFCell extends EDIFPropertyObject {
 				getName() + ", trying to add instance " + instance.getName() +
 				" which already exists inside this cell.");
 		}
+		if(instance.getName().contains(EDIFTools.EDIF_HIER_SEP)) invalidateHierNameIndex();
 		return instance;
 	}
 	
@@ -120,6 +121,7 @@ public class EDIFCell extends EDIFPropertyObject {
 		}
 		instance.updateEDIFRename();
 		instances.put(instance.getName(), instance);
+		if(instance.getName().contains(EDIFTools.EDIF_HIER_SEP)) invalidateHierNameIndex();
 		return instance;
 	}
 	
@@ -142,6 +144,7 @@ public class EDIFCell extends EDIFPropertyObject {
 				getName() + ", trying to add net " + net.getName() +
 				" which already exists inside this cell.");
 		}
+		if(net.getName().contains(EDIFTools.EDIF_HIER_SEP)) invalidateHierNameIndex();
 		return net;
 	}
 	
@@ -228,7 +231,28 @@ public class EDIFCell extends EDIFPropertyObject {
 	
 	public EDIFCellInst removeCellInst(String name){
 		if(instances == null) return null;
-		return instances.remove(name);
+		EDIFCellInst removed = instances.remove(name);
+		if(removed != null){
+			EDIFNetlist netlist = getNetlist();
+			if(netlist != null) netlist.removeFromHierNameIndex(removed);
+		}
+		return removed;
+	}
+	
+	/**
+	 * Notifies the netlist of this cell that hierarchical names under this cell may resolve 
+	 * differently, such that cached lookups are discarded.  Lookups cannot be invalidated by 
+	 * additions unless the new name contains a hierarchy separator, as failed lookups are not 
+	 * cached.  Removals are handled entry by entry (see 
+	 * {@link EDIFNetlist#removeFromHierNameIndex(EDIFCellInst)}).
+	 */
+	void invalidateHierNameIndex(){
+		EDIFNetlist netlist = getNetlist();
+		if(netlist != null) netlist.invalidateHierNameIndex();
+	}
+	
+	EDIFNetlist getNetlist(){
+		return library == null ? null : library.getNetlist();
 	}
 	
 	public EDIFNet createNet(String name){
@@ -178,6 +178,8 @@ public class EDIFCellInst extends EDIFPropertyObject {
 	public void setCellType(EDIFCell cellType) {
 		this.cellType = cellType;
 		this.viewref = cellType != null ? cellType.getEDIFView() : null;
+		EDIFNetlist netlist = parentCell == null ? null : parentCell.getNetlist();
+		if(netlist != null) netlist.removeChildrenFromHierNameIndex(this);
 	}
 	
 	public boolean isBlackBox(){
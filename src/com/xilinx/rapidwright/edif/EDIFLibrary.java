@@ -262,13 +262,27 @@ public class EDIFLibrary extends EDIFName {
 	
 
 	public void exportEDIF(Writer bw) throws IOException{
+		exportEDIFHeader(bw);
+		for(EDIFCell cell : getValidCellExportOrder()){
+			cell.exportEDIF(bw);
+		}
+		exportEDIFFooter(bw);
+	}
+	
+	/**
+	 * Writes the EDIF text that precedes the cells of the library.
+	 */
+	protected void exportEDIFHeader(Writer bw) throws IOException{
 		bw.write("  (Library ");
 		exportEDIFName(bw);
 		bw.write("\n    (edifLevel 0)\n");
 		bw.write("    (technology (numberDefinition ))\n");
-		for(EDIFCell cell : getValidCellExportOrder()){
-			cell.exportEDIF(bw);
-		}
+	}
+	
+	/**
+	 * Writes the EDIF text that follows the cells of the library.
+	 */
+	protected void exportEDIFFooter(Writer bw) throws IOException{
 		bw.write("  )\n");
 	}
 }
@@ -0,0 +1,295 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.edif;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Map;
+
+/**
+ * Splits a memory-mapped EDIF file (or a byte range of it) into tokens for the
+ * {@link EDIFParser}.  Bytes are scanned directly from the mapped file and tokens are
+ * resolved through a pool keyed by their bytes, such that a String is only created the
+ * first time a particular token is encountered.  Keywords are pre-seeded in the pool so
+ * they never allocate.  Tokenization rules (quotes, parentheses and whitespace) are
+ * identical to the streaming tokenizer of {@link EDIFParser}.
+ * Created on: Oct 18, 2020
+ */
+public class EDIFMappedTokenizer {
+
+	/** Largest region of the file that is mapped at once */
+	private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+	private static final String LEFT_PAREN = "(";
+
+	private static final String RIGHT_PAREN = ")";
+
+	private FileChannel channel;
+
+	/** File offset where the current mapped window begins */
+	private long windowStart;
+
+	/** File offset where tokenizing stops */
+	private long end;
+
+	private MappedByteBuffer window;
+
+	/** Position in the current window */
+	private int pos;
+
+	/** Number of valid bytes in the current window */
+	private int limit;
+
+	private int lineNumber;
+
+	/** Open addressing table of pooled strings */
+	private String[] pool;
+
+	private int poolSize;
+
+	/**
+	 * Creates a tokenizer over the byte range [start, end) of the file.
+	 * @param channel An open channel of the EDIF file.
+	 * @param start File offset of the first byte to tokenize.
+	 * @param end File offset after the last byte to tokenize.
+	 * @param keywords Strings that should be returned as-is when encountered (pre-seeded
+	 * in the pool).
+	 */
+	public EDIFMappedTokenizer(FileChannel channel, long start, long end, String[] keywords){
+		this.channel = channel;
+		this.end = end;
+		this.lineNumber = 1;
+		// Size the pool to the range so that small ranges (single cells) stay cheap
+		long capacity = Math.min(1 << 15, Math.max(64, (end - start) >>> 5));
+		this.pool = new String[Integer.highestOneBit((int) capacity) << 1];
+		for(String keyword : keywords){
+			addToPool(keyword);
+		}
+		map(start);
+	}
+
+	private void map(long start){
+		windowStart = start;
+		limit = (int) Math.min(MAX_WINDOW_SIZE, end - start);
+		try {
+			window = channel.map(MapMode.READ_ONLY, start, limit);
+		} catch (IOException e) {
+			throw new RuntimeException("ERROR: Failed to memory map EDIF file region "
+					+ start + "-" + (start+limit), e);
+		}
+		pos = 0;
+	}
+
+	public int getLineNumber(){
+		return lineNumber;
+	}
+
+	/**
+	 * Sets the line number of the current position (used when tokenizing a range that
+	 * starts in the middle of the file).
+	 */
+	public void setLineNumber(int lineNumber){
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * @return The file offset of the next byte to be scanned.
+	 */
+	public long getFileOffset(){
+		return windowStart + pos;
+	}
+
+	/**
+	 * Gets the next token in the file.
+	 * @return The next token or null if the end of the range was reached.
+	 */
+	public String next(){
+		int start = -1;
+		boolean inQuote = false;
+		while(true){
+			if(pos == limit){
+				if(windowStart + limit >= end){
+					return null;
+				}
+				// Slide the window, keeping the partially scanned token
+				int keep = start >= 0 ? start : pos;
+				int scanned = pos;
+				map(windowStart + keep);
+				pos = scanned - keep;
+				if(start >= 0) start = 0;
+			}
+			byte b = window.get(pos++);
+			switch(b){
+				case '"':
+					if(inQuote){
+						return getPooledString(start + 1, pos - start - 2);
+					}
+					if(start < 0) start = pos - 1;
+					inQuote = true;
+					break;
+				case '(':
+				case ')':
+					if(inQuote) break;
+					if(start >= 0){
+						// Leave the parenthesis for the next token
+						pos--;
+						return getPooledString(start, pos - start);
+					}
+					return b == '(' ? LEFT_PAREN : RIGHT_PAREN;
+				case '\n':
+					lineNumber++;
+				case ' ':
+				case '\r':
+				case '\t':
+					if(inQuote) break;
+					if(start >= 0){
+						return getPooledString(start, pos - 1 - start);
+					}
+					break;
+				default:
+					if(start < 0) start = pos - 1;
+			}
+		}
+	}
+
+	/**
+	 * Skips over the remainder of a form whose opening parenthesis was the last token
+	 * returned, without creating any tokens.  Parentheses inside quotes are ignored.
+	 * @return The file offset just after the closing parenthesis of the form.
+	 */
+	public long skipToEndOfForm(){
+		int depth = 1;
+		boolean inQuote = false;
+		while(true){
+			if(pos == limit){
+				if(windowStart + limit >= end){
+					throw new RuntimeException("ERROR: Unexpected end of EDIF file while "
+							+ "matching parenthesis on line " + lineNumber);
+				}
+				map(windowStart + pos);
+			}
+			switch(window.get(pos++)){
+				case '"':
+					inQuote = !inQuote;
+					break;
+				case '(':
+					if(!inQuote) depth++;
+					break;
+				case ')':
+					if(!inQuote && --depth == 0) return windowStart + pos;
+					break;
+				case '\n':
+					lineNumber++;
+					break;
+				default:
+			}
+		}
+	}
+
+	private static int hash(MappedByteBuffer buf, int offset, int length){
+		int h = 0;
+		for(int i=offset; i < offset + length; i++){
+			h = 31 * h + (buf.get(i) & 0xff);
+		}
+		return h;
+	}
+
+	private boolean matches(String s, int offset, int length){
+		if(s.length() != length) return false;
+		for(int i=0; i < length; i++){
+			if(s.charAt(i) != (char)(window.get(offset + i) & 0xff)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the unique String for the bytes in the current window, creating it only
+	 * if it has not been seen before.
+	 */
+	private String getPooledString(int offset, int length){
+		int h = hash(window, offset, length);
+		int mask = pool.length - 1;
+		int i = spread(h) & mask;
+		String s;
+		while((s = pool[i]) != null){
+			if(s.hashCode() == h && matches(s, offset, length)){
+				return s;
+			}
+			i = (i + 1) & mask;
+		}
+		char[] chars = new char[length];
+		for(int j=0; j < length; j++){
+			chars[j] = (char)(window.get(offset + j) & 0xff);
+		}
+		s = new String(chars);
+		insert(s, i);
+		return s;
+	}
+
+	private static int spread(int h){
+		return h ^ (h >>> 16);
+	}
+
+	private void addToPool(String s){
+		int mask = pool.length - 1;
+		int i = spread(s.hashCode()) & mask;
+		String existing;
+		while((existing = pool[i]) != null){
+			if(existing.equals(s)) return;
+			i = (i + 1) & mask;
+		}
+		insert(s, i);
+	}
+
+	private void insert(String s, int slot){
+		pool[slot] = s;
+		poolSize++;
+		if(poolSize * 2 > pool.length){
+			String[] old = pool;
+			pool = new String[old.length << 1];
+			poolSize = 0;
+			for(String o : old){
+				if(o != null) addToPool(o);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of unique strings created or pre-seeded by this tokenizer
+	 */
+	public int getPoolSize(){
+		return poolSize;
+	}
+
+	/**
+	 * Adds the strings of the pool to a map of unique strings, keeping strings already in it.
+	 * @param stringPool The map of unique strings, each mapped to itself.
+	 */
+	public void addPooledStrings(Map<String,String> stringPool){
+		for(String s : pool){
+			if(s != null) stringPool.putIfAbsent(s, s);
+		}
+	}
+}
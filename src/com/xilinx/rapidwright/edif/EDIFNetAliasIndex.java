@@ -0,0 +1,379 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.edif;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.xilinx.rapidwright.design.Net;
+
+/**
+ * Groups all hierarchical nets of a netlist into sets of electrically equivalent nets (aliases)
+ * without creating any Strings.  Each (hierarchical instance, net) pair is given an integer id
+ * and nets connected through hierarchical ports are merged with a union-find.  Ids are assigned
+ * in depth-first order of the instance hierarchy such that the nets of each top-level subtree
+ * form a contiguous range, which allows the subtrees to be processed in parallel.  The
+ * String-based views used by {@link EDIFNetlist} (parent net map and physical net pin map) are
+ * only created on request.
+ * Created on: Oct 18, 2020
+ */
+class EDIFNetAliasIndex {
+
+	/**
+	 * Id layout of a hierarchical cell, shared by all instances of the cell.  Ids of an
+	 * instance start with its own nets followed by the subtrees of its hierarchical children.
+	 */
+	private static class CellLayout {
+		EDIFCell cell;
+		EDIFNet[] nets;
+		IdentityHashMap<EDIFNet,Integer> netIndex;
+		/** Net index of each bit of the cell's ports, -1 if unconnected inside the cell */
+		IdentityHashMap<EDIFPort,int[]> portNetIndex;
+		/** Children that have contents (are not leaf cells or black boxes) */
+		EDIFCellInst[] children;
+		CellLayout[] childLayouts;
+		/** Offset of each child's ids from the first id of this cell */
+		int[] childOffsets;
+		/** Children that are leaf cells or black boxes */
+		EDIFCellInst[] leafChildren;
+		/** Number of ids in an instance of this cell (including its descendants) */
+		long size;
+	}
+
+	private EDIFNetlist netlist;
+
+	private IdentityHashMap<EDIFCell,CellLayout> layouts;
+
+	private CellLayout topLayout;
+
+	/** Union-find parent of each id, the root of a set is always its smallest id */
+	private int[] parent;
+
+	/** Marks ids of nets driven by a leaf cell output or a top-level input port */
+	private boolean[] isDriver;
+
+	/** For each root, the id of the net that drives the set or -1 if it has no driver.  Sets 
+	 *  without a driver are left out of the parent net map and physical net pin map. */
+	private int[] driver;
+
+	/**
+	 * Builds the alias sets of the netlist.
+	 * @param netlist The netlist to index.
+	 */
+	EDIFNetAliasIndex(EDIFNetlist netlist){
+		this.netlist = netlist;
+		this.layouts = new IdentityHashMap<>();
+		topLayout = getLayout(netlist.getTopCell());
+		if(topLayout.size > Integer.MAX_VALUE){
+			throw new RuntimeException("ERROR: Netlist has too many hierarchical nets ("
+					+ topLayout.size + ") to index");
+		}
+		int size = (int) topLayout.size;
+		parent = new int[size];
+		Arrays.setAll(parent, i -> i);
+		isDriver = new boolean[size];
+
+		for(EDIFNet net : topLayout.nets){
+			for(EDIFPortInst p : net.getPortInsts()){
+				if(p.isTopLevelPort() && p.isInput()){
+					isDriver[topLayout.netIndex.get(net)] = true;
+				}
+			}
+		}
+		// Subtrees of the top-level children use disjoint id ranges and can be merged in parallel
+		// before they are connected to the nets of the top cell
+		IntStream.range(0, topLayout.children.length).parallel().forEach(i ->
+			linkSubtree(topLayout.childLayouts[i], topLayout.childOffsets[i]));
+		link(topLayout, 0);
+
+		driver = new int[size];
+		Arrays.fill(driver, -1);
+		for(int i=0; i < size; i++){
+			if(isDriver[i]) driver[find(i)] = i;
+		}
+		isDriver = null;
+	}
+
+	private CellLayout getLayout(EDIFCell cell){
+		CellLayout layout = layouts.get(cell);
+		if(layout != null) return layout;
+		layout = new CellLayout();
+		layout.cell = cell;
+		layout.nets = cell.getNets().toArray(new EDIFNet[cell.getNets().size()]);
+		layout.netIndex = new IdentityHashMap<>();
+		layout.portNetIndex = new IdentityHashMap<>();
+		for(int i=0; i < layout.nets.length; i++){
+			layout.netIndex.put(layout.nets[i], i);
+			for(EDIFPortInst p : layout.nets[i].getPortInsts()){
+				if(!p.isTopLevelPort() || p.getPort() == null) continue;
+				int[] bits = layout.portNetIndex.get(p.getPort());
+				if(bits == null){
+					bits = new int[p.getPort().getWidth()];
+					Arrays.fill(bits, -1);
+					layout.portNetIndex.put(p.getPort(), bits);
+				}
+				int bit = getBit(p);
+				if(bit < bits.length) bits[bit] = i;
+			}
+		}
+		List<EDIFCellInst> children = new ArrayList<>();
+		List<EDIFCellInst> leafChildren = new ArrayList<>();
+		for(EDIFCellInst eci : cell.getCellInsts()){
+			if(eci.getCellType().isLeafCellOrBlackBox()){
+				leafChildren.add(eci);
+			}else{
+				children.add(eci);
+			}
+		}
+		layout.children = children.toArray(new EDIFCellInst[children.size()]);
+		layout.leafChildren = leafChildren.toArray(new EDIFCellInst[leafChildren.size()]);
+		layout.childLayouts = new CellLayout[layout.children.length];
+		layout.childOffsets = new int[layout.children.length];
+		long size = layout.nets.length;
+		for(int i=0; i < layout.children.length; i++){
+			CellLayout childLayout = getLayout(layout.children[i].getCellType());
+			layout.childLayouts[i] = childLayout;
+			layout.childOffsets[i] = (int) Math.min(size, Integer.MAX_VALUE);
+			size += childLayout.size;
+		}
+		layout.size = size;
+		layouts.put(cell, layout);
+		return layout;
+	}
+
+	/**
+	 * Gets the bit of the port a port inst connects to, single bit ports have no index.
+	 */
+	private static int getBit(EDIFPortInst p){
+		return p.getIndex() == -1 ? 0 : p.getIndex();
+	}
+
+	/**
+	 * Merges the nets of an instance with the internal nets of its hierarchical children and
+	 * marks the nets driven by its leaf children.
+	 */
+	private void link(CellLayout layout, int base){
+		for(EDIFCellInst leaf : layout.leafChildren){
+			for(EDIFPortInst p : leaf.getPortInsts()){
+				if(!p.isOutput() || p.getNet() == null) continue;
+				Integer idx = layout.netIndex.get(p.getNet());
+				if(idx != null) isDriver[base + idx] = true;
+			}
+		}
+		for(int i=0; i < layout.children.length; i++){
+			CellLayout childLayout = layout.childLayouts[i];
+			int childBase = base + layout.childOffsets[i];
+			for(EDIFPortInst p : layout.children[i].getPortInsts()){
+				if(p.getNet() == null || p.getPort() == null) continue;
+				int[] bits = childLayout.portNetIndex.get(p.getPort());
+				int bit = getBit(p);
+				if(bits == null || bit >= bits.length || bits[bit] == -1) continue;
+				Integer idx = layout.netIndex.get(p.getNet());
+				if(idx == null) continue;
+				union(base + idx, childBase + bits[bit]);
+			}
+		}
+	}
+
+	private void linkSubtree(CellLayout layout, int base){
+		link(layout, base);
+		for(int i=0; i < layout.children.length; i++){
+			linkSubtree(layout.childLayouts[i], base + layout.childOffsets[i]);
+		}
+	}
+
+	private int find(int id){
+		while(parent[id] != id){
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		return id;
+	}
+
+	private void union(int a, int b){
+		int ra = find(a);
+		int rb = find(b);
+		if(ra == rb) return;
+		if(ra < rb) parent[rb] = ra;
+		else parent[ra] = rb;
+	}
+
+	/**
+	 * Gets the index of the child whose subtree contains the id (relative to the layout).
+	 */
+	private static int getChildIndex(CellLayout layout, int id){
+		int[] offsets = layout.childOffsets;
+		int i = Arrays.binarySearch(offsets, id);
+		if(i < 0) i = -i - 2;
+		// Skip over children without any nets that share the same offset
+		while(i + 1 < offsets.length && offsets[i + 1] <= id) i++;
+		return i;
+	}
+
+	/**
+	 * Gets the hierarchical name of the net with the given id.
+	 */
+	private String getHierarchicalNetName(int id){
+		StringBuilder sb = new StringBuilder();
+		CellLayout layout = topLayout;
+		while(id >= layout.nets.length){
+			int i = getChildIndex(layout, id);
+			id -= layout.childOffsets[i];
+			if(sb.length() > 0) sb.append(EDIFTools.EDIF_HIER_SEP);
+			sb.append(layout.children[i].getName());
+			layout = layout.childLayouts[i];
+		}
+		if(sb.length() > 0) sb.append(EDIFTools.EDIF_HIER_SEP);
+		sb.append(layout.nets[id].getName());
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the net (within its parent cell) with the given id.
+	 */
+	private EDIFNet getNet(int id){
+		CellLayout layout = topLayout;
+		while(id >= layout.nets.length){
+			int i = getChildIndex(layout, id);
+			id -= layout.childOffsets[i];
+			layout = layout.childLayouts[i];
+		}
+		return layout.nets[id];
+	}
+
+	private String getParentNetName(int root, Map<Integer,String> parentNames){
+		return parentNames.computeIfAbsent(root, r -> getHierarchicalNetName(driver[r]));
+	}
+
+	private static String getHierarchicalInstName(String parentName, EDIFCellInst inst){
+		return parentName.isEmpty() ? inst.getName() : parentName + EDIFTools.EDIF_HIER_SEP + inst.getName();
+	}
+
+	/**
+	 * Visits every expanded instance in the same depth-first order in which ids were assigned.
+	 */
+	private interface InstanceVisitor {
+		void visit(CellLayout layout, int base, String hierInstName);
+	}
+
+	private void visitInstances(CellLayout layout, int base, String hierInstName, InstanceVisitor v){
+		v.visit(layout, base, hierInstName);
+		for(int i=0; i < layout.children.length; i++){
+			visitInstances(layout.childLayouts[i], base + layout.childOffsets[i],
+					getHierarchicalInstName(hierInstName, layout.children[i]), v);
+		}
+	}
+
+	/**
+	 * Creates the map from every driven hierarchical net name (and transformed primitive output
+	 * pin alias) to the name of the net that drives it.
+	 * @return The parent net map.
+	 */
+	Map<String,String> createParentNetMap(){
+		Map<String,String> parentNetMap = new HashMap<>();
+		Map<Integer,String> parentNames = new HashMap<>();
+		visitInstances(topLayout, 0, "", (layout, base, hierInstName) -> {
+			for(int i=0; i < layout.nets.length; i++){
+				int root = find(base + i);
+				if(driver[root] == -1) continue;
+				String parentNetName = getParentNetName(root, parentNames);
+				String alias = hierInstName.isEmpty() ? layout.nets[i].getName() :
+					hierInstName + EDIFTools.EDIF_HIER_SEP + layout.nets[i].getName();
+				parentNetMap.put(alias, parentNetName);
+			}
+			for(EDIFCellInst leaf : layout.leafChildren){
+				for(EDIFPortInst p : leaf.getPortInsts()){
+					if(!p.isOutput() || p.getNet() == null) continue;
+					Integer idx = layout.netIndex.get(p.getNet());
+					if(idx == null) continue;
+					int root = find(base + idx);
+					if(driver[root] == -1) continue;
+					EDIFHierPortInst hp = new EDIFHierPortInst(hierInstName, p);
+					if(!netlist.isTransformPrim(hp)) continue;
+					String alias = p.getPort().getWidth() > 1 ? hp.getTransformedNetName() : hp.toString();
+					parentNetMap.put(alias, getParentNetName(root, parentNames));
+				}
+			}
+		});
+		return parentNetMap;
+	}
+
+	/**
+	 * Creates the map from each parent net name to all of the leaf cell pins connected to it.
+	 * Pins of nets driven by GND or VCC cells are collected under the static net names
+	 * ({@link Net#GND_NET} and {@link Net#VCC_NET}).
+	 * @return The physical net pin map.
+	 */
+	Map<String, ArrayList<EDIFHierPortInst>> createPhysicalNetPinMap(){
+		Map<Integer,ArrayList<EDIFHierPortInst>> pinsByRoot = new HashMap<>();
+		visitInstances(topLayout, 0, "", (layout, base, hierInstName) -> {
+			for(int i=0; i < layout.nets.length; i++){
+				int root = find(base + i);
+				if(driver[root] == -1) continue;
+				ArrayList<EDIFHierPortInst> pins = pinsByRoot.computeIfAbsent(root, r -> new ArrayList<>());
+				for(EDIFPortInst p : layout.nets[i].getPortInsts()){
+					if(p.getCellInst() != null && p.getCellInst().getCellType().isLeafCellOrBlackBox()){
+						pins.add(new EDIFHierPortInst(hierInstName, p));
+					}
+				}
+			}
+		});
+		Map<String, ArrayList<EDIFHierPortInst>> physicalNetPinMap = new HashMap<>();
+		Map<Integer,String> parentNames = new HashMap<>();
+		for(Integer root : pinsByRoot.keySet().stream().sorted().toArray(Integer[]::new)){
+			ArrayList<EDIFHierPortInst> pins = pinsByRoot.get(root);
+			String staticNetName = getStaticNetName(getNet(driver[root]));
+			if(staticNetName != null){
+				ArrayList<EDIFHierPortInst> existing = physicalNetPinMap.get(staticNetName);
+				if(existing == null)
+					physicalNetPinMap.put(staticNetName, pins);
+				else
+					existing.addAll(pins);
+			}else{
+				physicalNetPinMap.put(getParentNetName(root, parentNames), pins);
+			}
+		}
+		return physicalNetPinMap;
+	}
+
+	/**
+	 * Gets the static net name if the net is driven by a GND or VCC cell.
+	 * @return The static net name or null if the net is not driven by a GND or VCC cell.
+	 */
+	private static String getStaticNetName(EDIFNet net){
+		for(EDIFPortInst p : net.getPortInsts()){
+			if(p.getCellInst() == null || !p.isOutput()) continue;
+			if(!p.getCellInst().getCellType().isLeafCellOrBlackBox()) continue;
+			String cellType = p.getCellInst().getCellType().getName();
+			if(cellType.equals("GND")) return Net.GND_NET;
+			if(cellType.equals("VCC")) return Net.VCC_NET;
+			return null;
+		}
+		return null;
+	}
+}
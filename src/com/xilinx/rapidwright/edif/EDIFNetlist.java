@@ -26,22 +26,36 @@
 package com.xilinx.rapidwright.edif;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
 import java.util.regex.Pattern;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
@@ -73,6 +87,18 @@ public class EDIFNetlist extends EDIFName {
 	
 	private Map<String, ArrayList<EDIFHierPortInst>> physicalNetPinMap;
 	
+	/** Sets of equivalent nets, from which the parent net and physical net pin maps are created */
+	private EDIFNetAliasIndex netAliasIndex;
+	
+	/** 
+	 * Caches hierarchical name lookups (see {@link #getCellInstFromHierName(String)} and 
+	 * {@link #getHierNetFromName(String)}) such that repeated lookups are constant time
+	 */
+	public static boolean USE_HIER_NAME_INDEX = true;
+	
+	/** Resolved hierarchical instance and net names, filled on demand */
+	private transient volatile HierNameIndex hierNameIndex;
+	
 	protected int nameSpaceUniqueCount = 0;
 
 	private transient Device device;
@@ -85,6 +111,14 @@ public class EDIFNetlist extends EDIFName {
 	
 	private boolean DEBUG = false;
 	
+	/** Renders cells in parallel when exporting EDIF (see {@link #exportEDIF(String)}) */
+	public static boolean PARALLEL_EXPORT = true;
+	
+	/** Number of cells rendered before their buffers are written to the file */
+	private static final int EXPORT_BATCH_SIZE = 4096;
+	
+	private static final int EXPORT_BUFFER_SIZE = 1 << 16;
+	
 	public EDIFNetlist(String name){
 		super(name);
 		init();
@@ -220,6 +254,7 @@ public class EDIFNetlist extends EDIFName {
 	 */
 	public void setDesign(EDIFDesign design) {
 		this.design = design;
+		invalidateHierNameIndex();
 	}
 	
 	
@@ -250,6 +285,13 @@ public class EDIFNetlist extends EDIFName {
 	public EDIFPropertyValue addMetax(String key, EDIFPropertyValue value){
 		return metax.put(key, value);
 	}
+	
+	/**
+	 * @return the metax entries of the netlist
+	 */
+	public Map<String,EDIFPropertyValue> getMetax() {
+		return metax;
+	}
 
 	/**
 	 * @return the comments
@@ -402,65 +444,125 @@ public class EDIFNetlist extends EDIFName {
 		return libraries.values();
 	}
 	
+	/**
+	 * Writes the netlist to an EDIF file.  Cells are rendered to their own byte buffers
+	 * (in parallel if {@link #PARALLEL_EXPORT} is set) and the buffers are then written in
+	 * order to the file.  The output is identical to rendering every cell through a single 
+	 * writer.  If the file name ends with '.gz', the output is gzip compressed.
+	 * @param fileName Name of the EDIF file to write.
+	 */
 	public void exportEDIF(String fileName){
-		BufferedWriter bw = null;
-		
 		//for(EDIFLibrary lib : getLibraries()){
 		//	lib.ensureValidEDIFCellNames();
 		//}
 		
-		try {
-			bw = new BufferedWriter(new FileWriter(fileName));
-			bw.write("(edif ");
-			exportEDIFName(bw);
-			bw.write("\n");
-			bw.write("  (edifversion 2 0 0)\n");
-			bw.write("  (edifLevel 0)\n");
-			bw.write("  (keywordmap (keywordlevel 0))\n");
-			bw.write("(status\n");
-			bw.write(" (written\n");
-			bw.write("  (timeStamp ");
-			SimpleDateFormat formatter = new SimpleDateFormat("yyyy MM dd HH mm ss");
-			bw.write(formatter.format(new java.util.Date()));
-			bw.write(")\n");
-			bw.write("  (program \""+Device.FRAMEWORK_NAME+"\" (version \"" + Device.RAPIDWRIGHT_VERSION + "\"))\n");
-			for(String comment : getComments()){
-				bw.write("  (comment \"");
-				bw.write(comment);
-				bw.write("\")\n");
-			}
-			for(Entry<String,EDIFPropertyValue> e : metax.entrySet()){
-				bw.write("(metax ");
-				bw.write(e.getKey());
-				bw.write(" ");
-				e.getValue().writeEDIFString(bw);
-				bw.write(")\n");
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			OutputStream out = Channels.newOutputStream(channel);
+			if(fileName.endsWith(".gz")){
+				out = new GZIPOutputStream(out, EXPORT_BUFFER_SIZE);
 			}
-			bw.write(" )\n");
-			bw.write(")\n");
+			out.write(render(this::exportEDIFHeader));
 			
-			getHDIPrimitivesLibrary().exportEDIF(bw);
+			List<EDIFLibrary> libs = new ArrayList<>();
+			libs.add(getHDIPrimitivesLibrary());
 			for(EDIFLibrary lib : getLibrariesMap().values()){
 				if(lib.getName().equals(EDIFTools.EDIF_LIBRARY_HDI_PRIMITIVES_NAME)) continue;
-				lib.exportEDIF(bw);
+				libs.add(lib);
 			}
-			bw.write("(comment \"Reference To The Cell Of Highest Level\")\n\n");
-			bw.write("  (design ");
-			EDIFDesign design = getDesign(); 
-			design.exportEDIFName(bw);
-			bw.write("\n    (cellref " + design.getTopCell().getLegalEDIFName() + " (libraryref ");
-			bw.write(design.getTopCell().getLibrary().getLegalEDIFName() +"))\n");
-			design.exportEDIFProperties(bw, "    ");
-			bw.write("  )\n");
-			bw.write(")\n");
-			bw.flush();
-			bw.close();
-		} catch (IOException e) {
+			for(EDIFLibrary lib : libs){
+				out.write(render(lib::exportEDIFHeader));
+				List<EDIFCell> cells = lib.getValidCellExportOrder();
+				for(int i=0; i < cells.size(); i += EXPORT_BATCH_SIZE){
+					List<EDIFCell> batch = cells.subList(i, Math.min(i + EXPORT_BATCH_SIZE, cells.size()));
+					List<byte[]> buffers = (PARALLEL_EXPORT ? batch.parallelStream() : batch.stream())
+							.map(c -> render(c::exportEDIF))
+							.collect(Collectors.toList());
+					for(byte[] buffer : buffers){
+						out.write(buffer);
+					}
+				}
+				out.write(render(lib::exportEDIFFooter));
+			}
+			out.write(render(this::exportEDIFFooter));
+			out.close();
+		} catch (IOException | UncheckedIOException e) {
 			MessageGenerator.briefError("ERROR: Failed to export EDIF file " + fileName);
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Writes part of the EDIF text to a writer.
+	 */
+	private interface EDIFExporter {
+		public void exportEDIF(Writer wr) throws IOException;
+	}
+	
+	/**
+	 * Renders EDIF text to bytes with the same (default) character encoding used
+	 * when writing to a file.
+	 */
+	private static byte[] render(EDIFExporter exporter){
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			Writer wr = new BufferedWriter(new OutputStreamWriter(bytes));
+			exporter.exportEDIF(wr);
+			wr.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Writes the EDIF header, status and comments that precede the libraries.
+	 */
+	private void exportEDIFHeader(Writer bw) throws IOException{
+		bw.write("(edif ");
+		exportEDIFName(bw);
+		bw.write("\n");
+		bw.write("  (edifversion 2 0 0)\n");
+		bw.write("  (edifLevel 0)\n");
+		bw.write("  (keywordmap (keywordlevel 0))\n");
+		bw.write("(status\n");
+		bw.write(" (written\n");
+		bw.write("  (timeStamp ");
+		SimpleDateFormat formatter = new SimpleDateFormat("yyyy MM dd HH mm ss");
+		bw.write(formatter.format(new java.util.Date()));
+		bw.write(")\n");
+		bw.write("  (program \""+Device.FRAMEWORK_NAME+"\" (version \"" + Device.RAPIDWRIGHT_VERSION + "\"))\n");
+		for(String comment : getComments()){
+			bw.write("  (comment \"");
+			bw.write(comment);
+			bw.write("\")\n");
+		}
+		for(Entry<String,EDIFPropertyValue> e : metax.entrySet()){
+			bw.write("(metax ");
+			bw.write(e.getKey());
+			bw.write(" ");
+			e.getValue().writeEDIFString(bw);
+			bw.write(")\n");
+		}
+		bw.write(" )\n");
+		bw.write(")\n");
+	}
+	
+	/**
+	 * Writes the design reference that follows the libraries.
+	 */
+	private void exportEDIFFooter(Writer bw) throws IOException{
+		bw.write("(comment \"Reference To The Cell Of Highest Level\")\n\n");
+		bw.write("  (design ");
+		EDIFDesign design = getDesign(); 
+		design.exportEDIFName(bw);
+		bw.write("\n    (cellref " + design.getTopCell().getLegalEDIFName() + " (libraryref ");
+		bw.write(design.getTopCell().getLibrary().getLegalEDIFName() +"))\n");
+		design.exportEDIFProperties(bw, "    ");
+		bw.write("  )\n");
+		bw.write(")\n");
+	}
+	
 	/**
 	 * Based on a hierarchical string, this method will get the instance corresponding
 	 * to the name provided.
@@ -469,8 +571,168 @@ public class EDIFNetlist extends EDIFName {
 	 * it returns the top cell instance.
 	 */
 	public EDIFCellInst getCellInstFromHierName(String name){
+		if(name.equals("")) return getTopCellInst();
+		if(!USE_HIER_NAME_INDEX) return findCellInstFromHierName(name);
+		EDIFHierCellInst i = getIndexedHierCellInst(name);
+		return i == null ? null : i.getInst();
+	}
+	
+	/**
+	 * Gets the index entry of a hierarchical instance name, resolving and adding it to the 
+	 * index if it is not present.  The parent instance is resolved (and indexed) first such 
+	 * that looking up many instances with a common parent only resolves the parent once.
+	 * @param name Hierarchical name of the instance (not empty).
+	 * @return The index entry (must not be modified or returned to users) or null if the 
+	 * instance could not be found.
+	 */
+	private EDIFHierCellInst getIndexedHierCellInst(String name){
+		HierNameIndex index = getHierNameIndex();
+		EDIFHierCellInst entry = index.cellInsts.get(name);
+		if(entry != null) return entry;
+		String parentName = getHierParentName(name);
+		EDIFCellInst inst = null;
+		EDIFCellInst parent = parentName.isEmpty() ? getTopCellInst() : getCellInstFromHierName(parentName);
+		if(parent != null){
+			String localName = parentName.isEmpty() ? name : name.substring(parentName.length() + 1);
+			inst = parent.getCellType().getCellInst(localName);
+		}
+		boolean fullSearch = inst == null;
+		if(fullSearch){
+			// Instance names with hierarchy separators need the full search
+			inst = findCellInstFromHierName(name);
+			if(inst == null) return null;
+		}
+		entry = new EDIFHierCellInst(parentName, inst);
+		index.addCellInst(name, entry, fullSearch);
+		return entry;
+	}
+	
+	private HierNameIndex getHierNameIndex(){
+		HierNameIndex index = hierNameIndex;
+		EDIFCellInst top = getTopCellInst();
+		if(index == null || index.top != top){
+			index = new HierNameIndex(top);
+			hierNameIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Clears the hierarchical name indices after the hierarchy of the netlist has changed in a 
+	 * way that cannot be tracked entry by entry (such as names with hierarchy separators being 
+	 * added).  Called by {@link EDIFCell} when the hierarchy changes.
+	 */
+	void invalidateHierNameIndex(){
+		HierNameIndex index = hierNameIndex;
+		if(index != null && !index.isEmpty()){
+			hierNameIndex = null;
+		}
+	}
+	
+	/**
+	 * Removes the entries of the hierarchical name indices that resolve through the instance, 
+	 * after it was removed from its parent cell.  Called by {@link EDIFCell}.
+	 * @param inst The removed instance.
+	 */
+	void removeFromHierNameIndex(EDIFCellInst inst){
+		HierNameIndex index = hierNameIndex;
+		if(index != null) index.removeCellInst(inst, true);
+	}
+	
+	/**
+	 * Removes the entries of the hierarchical name indices below the instance, after its cell 
+	 * type changed.  Called by {@link EDIFCellInst}.
+	 * @param inst The instance whose cell type changed.
+	 */
+	void removeChildrenFromHierNameIndex(EDIFCellInst inst){
+		HierNameIndex index = hierNameIndex;
+		if(index != null) index.removeCellInst(inst, false);
+	}
+	
+	/**
+	 * Resolved hierarchical names of a netlist, published as one object such that readers 
+	 * always see the instance and net entries of the same index.  Entries are removed 
+	 * incrementally as instances are removed or change cell type.  Net entries are checked 
+	 * when they are looked up, such that removing nets needs no update.
+	 */
+	private static class HierNameIndex {
+		/** Top cell instance that the entries are relative to */
+		final EDIFCellInst top;
+		final Map<String,EDIFHierCellInst> cellInsts = new ConcurrentHashMap<>();
+		final Map<String,EDIFHierNet> nets = new ConcurrentHashMap<>();
+		/** Sorted names of all entries, such that the entries below a name can be found */
+		final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+		/** The names each instance was resolved from, guarded by itself */
+		final Map<EDIFCellInst,List<String>> instNames = new IdentityHashMap<>();
+		/** Names of instances resolved by a full search, whose ancestors may not be indexed */
+		final Set<String> fullSearchNames = ConcurrentHashMap.newKeySet();
+		
+		HierNameIndex(EDIFCellInst top){
+			this.top = top;
+		}
+		
+		boolean isEmpty(){
+			return names.isEmpty();
+		}
+		
+		void addCellInst(String name, EDIFHierCellInst entry, boolean fullSearch){
+			cellInsts.put(name, entry);
+			names.add(name);
+			synchronized(instNames){
+				instNames.computeIfAbsent(entry.getInst(), i -> new ArrayList<>(1)).add(name);
+			}
+			if(fullSearch) fullSearchNames.add(name);
+		}
+		
+		void addNet(String name, EDIFHierNet entry){
+			nets.put(name, entry);
+			names.add(name);
+		}
+		
+		void removeCellInst(EDIFCellInst inst, boolean removeInst){
+			String[] names;
+			synchronized(instNames){
+				List<String> list = removeInst ? instNames.remove(inst) : instNames.get(inst);
+				names = list == null ? new String[0] : list.toArray(new String[list.size()]);
+			}
+			for(String name : names){
+				remove(name, removeInst);
+			}
+			// Ancestors of fully searched instances may not be indexed
+			for(String name : fullSearchNames.toArray(new String[0])){
+				fullSearchNames.remove(name);
+				remove(name, true);
+			}
+		}
+		
+		private void remove(String name, boolean removeName){
+			if(removeName){
+				names.remove(name);
+				cellInsts.remove(name);
+				nets.remove(name);
+			}
+			String prefix = name + EDIFTools.EDIF_HIER_SEP;
+			String end = name + (char)(EDIFTools.EDIF_HIER_SEP.charAt(0) + 1);
+			NavigableSet<String> below = names.subSet(prefix, true, end, false);
+			for(String child : below.toArray(new String[0])){
+				below.remove(child);
+				EDIFHierCellInst removed = cellInsts.remove(child);
+				if(removed != null){
+					synchronized(instNames){
+						List<String> childNames = instNames.get(removed.getInst());
+						if(childNames != null){
+							childNames.remove(child);
+							if(childNames.isEmpty()) instNames.remove(removed.getInst());
+						}
+					}
+				}
+				nets.remove(child);
+			}
+		}
+	}
+	
+	private EDIFCellInst findCellInstFromHierName(String name){
 		EDIFCellInst currInst = getTopCellInst();
-		if(name.equals("")) return currInst;
 		String[] parts = name.split(EDIFTools.EDIF_HIER_SEP);
 		for(int i=0; i < parts.length; i++){
 			EDIFCellInst checkInst = currInst.getCellType().getCellInst(parts[i]);
@@ -549,6 +811,12 @@ public class EDIFNetlist extends EDIFName {
 	 * @return Hierarchical cell instance reference or null if named instance could not be found
 	 */
 	public EDIFHierCellInst getHierCellInstFromName(String instName) {
+		if(USE_HIER_NAME_INDEX && !instName.isEmpty()){
+			EDIFHierCellInst entry = getIndexedHierCellInst(instName);
+			if(entry != null){
+				return new EDIFHierCellInst(entry.getHierarchicalInstName(), entry.getInst());
+			}
+		}
 		EDIFCellInst inst = getCellInstFromHierName(instName);
 		String parentName = getHierParentName(instName);
 		return new EDIFHierCellInst(parentName, inst);
@@ -561,6 +829,25 @@ public class EDIFNetlist extends EDIFName {
 	 * @return The absolute net with hierarchical name, or null if none could be found.
 	 */
 	public EDIFHierNet getHierNetFromName(String netName){
+		if(!USE_HIER_NAME_INDEX) return findHierNetFromName(netName);
+		HierNameIndex index = getHierNameIndex();
+		EDIFHierNet entry = index.nets.get(netName);
+		if(entry != null){
+			// Nets are not tracked when removed from their cell
+			EDIFNet net = entry.getNet();
+			if(net.getParentCell() == null || net.getParentCell().getNet(net.getName()) != net){
+				entry = null;
+			}
+		}
+		if(entry == null){
+			entry = findHierNetFromName(netName);
+			if(entry == null) return null;
+			index.addNet(netName, entry);
+		}
+		return new EDIFHierNet(entry.getHierarchicalInstName(), entry.getNet());
+	}
+	
+	private EDIFHierNet findHierNetFromName(String netName){
 		String instName = "";
 		String localNetName = netName;
 		int lastSep = netName.lastIndexOf(EDIFTools.EDIF_HIER_SEP);
@@ -743,7 +1030,7 @@ public class EDIFNetlist extends EDIFName {
 	}
 	
 	private static boolean isDeviceNullPrinted = false;
-	private boolean isTransformPrim(EDIFHierPortInst p){
+	boolean isTransformPrim(EDIFHierPortInst p){
 		EDIFCellInst cellInst = p.getPortInst().getCellInst();
 		if(!cellInst.getCellType().isPrimitive()) return false;
 		Unisim u = Unisim.valueOf(p.getPortInst().getCellInst().getCellType().getName());
@@ -907,7 +1194,7 @@ public class EDIFNetlist extends EDIFName {
 	
 	public Map<String,String> getParentNetMap(){
 		if(parentNetMap == null){
-			generateParentNetMap();
+			parentNetMap = getNetAliasIndex().createParentNetMap();
 		}
 		return parentNetMap;
 	}
@@ -915,60 +1202,27 @@ public class EDIFNetlist extends EDIFName {
 	public void resetParentNetMap(){
 		parentNetMap = null;
 		physicalNetPinMap = null;
+		netAliasIndex = null;
 	}
 	
-	private void generateParentNetMap(){
-		long start = 0;
-		if(DEBUG){
-			start = System.currentTimeMillis();
-		}
-		if(parentNetMap == null){
-			parentNetMap = new HashMap<>();
-		}
-		if(physicalNetPinMap == null){
-			physicalNetPinMap = new HashMap<String,ArrayList<EDIFHierPortInst>>();
-		}
-		EDIFCell c = getTopCell();
-		Queue<EDIFHierPortInst> queue = new LinkedList<>();
-		// All parent nets are either top-level inputs or outputs of leaf cells
-		// Here we gather all top-level inputs
-		for(EDIFNet n : c.getNets()){
-			for(EDIFPortInst p : n.getPortInsts()){
-				if(p.isTopLevelPort() && p.isInput()){
-					queue.add(new EDIFHierPortInst("", p));
-				}
-			}
-		}
-		// Here we search for all leaf cell insts 
-		Queue<EDIFHierCellInst> instQueue = new LinkedList<>();
-		instQueue.add(new EDIFHierCellInst("", getTopCellInst()));
-		while(!instQueue.isEmpty()){
-			EDIFHierCellInst currInst = instQueue.poll(); 
-			for(EDIFCellInst eci : currInst.getInst().getCellType().getCellInsts()){
-				// Checks if cell is primitive or black box
-				if(eci.getCellType().getCellInsts().size() == 0 && eci.getCellType().getNets().size() == 0){
-					for(EDIFPortInst portInst : eci.getPortInsts()){
-						if(portInst.isOutput()){
-							queue.add(new EDIFHierPortInst(currInst.getFullHierarchicalInstName(), portInst));
-						}
-					}
-				}else{
-					String hName = currInst.getFullHierarchicalInstName();
-					instQueue.add(new EDIFHierCellInst(hName,eci));
-				}
+	/**
+	 * Gets the sets of equivalent nets of the netlist, building them if needed.  Building the 
+	 * index does not create any Strings, those are only created when the parent net map or 
+	 * physical net pin map are requested.
+	 */
+	private EDIFNetAliasIndex getNetAliasIndex(){
+		if(netAliasIndex == null){
+			long start = 0;
+			if(DEBUG){
+				start = System.currentTimeMillis();
 			}
-		}
-		
-		for(EDIFHierPortInst pr : queue){
-			String parentNetName = pr.getHierarchicalNetName();
-			for(String alias : getNetAliases(parentNetName)){
-				parentNetMap.put(alias, parentNetName);
+			netAliasIndex = new EDIFNetAliasIndex(this);
+			if(DEBUG){
+				long stop = System.currentTimeMillis();
+				System.out.println("EDIFNetAliasIndex runtime: " + (stop-start)/1000.0f +" seconds ");
 			}
 		}
-		if(DEBUG){
-			long stop = System.currentTimeMillis();
-			System.out.println("generateParentNetMap() runtime: " + (stop-start)/1000.0f +" seconds ");
-		}
+		return netAliasIndex;
 	}
 	
 	/**
@@ -996,7 +1250,7 @@ public class EDIFNetlist extends EDIFName {
 	 */
 	public Map<String, ArrayList<EDIFHierPortInst>> getPhysicalNetPinMap() {
 		if(physicalNetPinMap == null){
-			generateParentNetMap();
+			physicalNetPinMap = getNetAliasIndex().createPhysicalNetPinMap();
 		}
 		return physicalNetPinMap;
 	}
@@ -30,6 +30,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -38,6 +40,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import com.xilinx.rapidwright.tests.CodePerfTracker;
 import com.xilinx.rapidwright.util.MessageGenerator;
@@ -57,7 +61,8 @@ public class EDIFParser {
 	
 	private int lineNumber;
 	
-	private char[] buffer = new char[8192*16*18];
+	/** Token buffer of the streaming tokenizer (not needed for memory mapped files) */
+	private char[] buffer;
 	
 	private int ch = -1;
 	
@@ -79,6 +84,26 @@ public class EDIFParser {
 	
 	private static boolean debug = false;
 	
+	/** Tokenizes uncompressed EDIF files directly from a memory mapping of the file */
+	public static boolean USE_MEMORY_MAPPED_IO = true;
+	
+	/** Set when the file is read through a memory mapping instead of the input stream */
+	private EDIFMappedTokenizer mappedTokenizer;
+	
+	private FileChannel channel;
+	
+	/** Parses the cells of each library in parallel (memory mapped files only) */
+	public static boolean PARALLEL_CELL_PARSING = true;
+	
+	/** When set, cell references of instances are recorded and resolved after all libraries are parsed */
+	private boolean deferCellRefs;
+	
+	private List<EDIFCellInst> deferredInsts;
+	
+	private List<String> deferredCellRefs;
+	
+	private List<String> deferredLibraryRefs;
+	
 	private static final String LEFT_PAREN = "(";
 	private static final String RIGHT_PAREN = ")";
 	private static final String EDIF = "edif";
@@ -119,9 +144,44 @@ public class EDIFParser {
 	private static final String METAX = "metax";
 	private static final String OWNER = "owner";
 	
+	private static final String[] KEYWORDS = new String[]{LEFT_PAREN, RIGHT_PAREN, EDIF, 
+		RENAME, EDIFVERSION, EDIFLEVEL, KEYWORDMAP, KEYWORDLEVEL, STATUS, WRITTEN, TIMESTAMP, 
+		PROGRAM, VERSION, COMMENT, LIBRARY, TECHNOLOGY, NUMBERDEFINITION, CELL, CELLTYPE, VIEW, 
+		VIEWTYPE, INTERFACE, PORT, DIRECTION, ARRAY, CONTENTS, INSTANCE, NET, VIEWREF, CELLREF, 
+		LIBRARYREF, PROPERTY, JOINED, PORTREF, MEMBER, INSTANCEREF, DESIGN, METAX, OWNER};
+	
 	public EDIFParser(String fileName) throws FileNotFoundException{
+		this(fileName, USE_MEMORY_MAPPED_IO);
+	}
+	
+	/**
+	 * Creates a parser for the EDIF file.
+	 * @param fileName Name of the EDIF file.
+	 * @param useMemoryMap If true and the file is not compressed, tokens are read directly
+	 * from a memory mapping of the file rather than through an input stream.
+	 * @throws FileNotFoundException If the file does not exist.
+	 */
+	public EDIFParser(String fileName, boolean useMemoryMap) throws FileNotFoundException{
 		this.fileName = fileName;
-		in = new BufferedInputStream(new FileInputStream(this.fileName));
+		if(useMemoryMap && !fileName.endsWith(".gz")){
+			RandomAccessFile file = new RandomAccessFile(fileName, "r");
+			channel = file.getChannel();
+			try {
+				mappedTokenizer = new EDIFMappedTokenizer(channel, 0, channel.size(), KEYWORDS);
+			} catch (IOException | RuntimeException e) {
+				closeMappedFile();
+				throw new RuntimeException("ERROR: Failed to read EDIF file: " + fileName, e);
+			}
+		}else{
+			in = new BufferedInputStream(new FileInputStream(this.fileName));
+			if(fileName.endsWith(".gz")){
+				try {
+					in = new GZIPInputStream(in);
+				} catch (IOException e) {
+					throw new RuntimeException("ERROR: Failed to read EDIF file: " + fileName, e);
+				}
+			}
+		}
 		init();
 	}
 	
@@ -130,12 +190,31 @@ public class EDIFParser {
 		init();
 	}
 	
+	/**
+	 * Creates a parser for a single cell in the byte range of the memory mapped file 
+	 * of the parent parser.  The range starts just after the opening parenthesis of the cell.
+	 */
+	private EDIFParser(EDIFParser parent, long start, long end, int lineNumber){
+		this.fileName = parent.fileName;
+		this.channel = parent.channel;
+		mappedTokenizer = new EDIFMappedTokenizer(channel, start, end, KEYWORDS);
+		mappedTokenizer.setLineNumber(lineNumber);
+		init();
+		deferCellRefs = true;
+	}
+	
 	private void init(){
+		if(mappedTokenizer == null){
+			buffer = new char[8192*16*18];
+		}
 		lineNumber = 1;
 		nextTokens = new LinkedList<>();
 		stringPool = new WeakHashMap<>();
 		edifInstCellMap = new HashMap<String, Map<String,EDIFCell>>();
 		portLookup = new HashMap<>();
+		deferredInsts = new ArrayList<>();
+		deferredCellRefs = new ArrayList<>();
+		deferredLibraryRefs = new ArrayList<>();
 	}
 	
 	/**
@@ -192,7 +271,7 @@ public class EDIFParser {
 	}
 	
 	private String debugToken(String token){
-		if(debug) System.out.println("<" + token + "> : " + lineNumber);
+		if(debug) System.out.println("<" + token + "> : " + getLineNumber());
 		return token;
 	}
 	
@@ -206,14 +285,26 @@ public class EDIFParser {
 		return curr;
 	}
 	
+	/**
+	 * Gets the pool of unique token strings.  When reading a memory mapped file, tokens are 
+	 * pooled inside the {@link EDIFMappedTokenizer} while parsing and only added to this pool 
+	 * once the file has been parsed (see {@link #parseEDIFNetlist()}).
+	 */
 	public Map<String,String> getStringPool(){
 		return stringPool;
 	}
 	
+	private int getLineNumber(){
+		return mappedTokenizer == null ? lineNumber : mappedTokenizer.getLineNumber();
+	}
+	
 	private String getNextToken(){
 		if(!nextTokens.isEmpty()){
 			return debugToken(nextTokens.poll());
 		}
+		if(mappedTokenizer != null){
+			return debugToken(mappedTokenizer.next());
+		}
 		String returnToken = null;
 		try{
 			outer: while((ch = in.read()) != -1){
@@ -321,8 +412,41 @@ public class EDIFParser {
 		return o;
 	}
 	
-	@SuppressWarnings("unused")
+	/**
+	 * Parses the EDIF file.  A memory mapped file is closed once it has been parsed or parsing
+	 * failed.
+	 * @return The parsed netlist.
+	 */
 	public EDIFNetlist parseEDIFNetlist(){
+		try {
+			return parseNetlist();
+		} finally {
+			closeMappedFile();
+		}
+	}
+	
+	/**
+	 * Closes the channel of a memory mapped file and drops the tokenizer, which holds the only
+	 * reference to the mapping (it is unmapped once garbage collected).  The strings pooled by
+	 * the tokenizer are kept in the string pool of this parser.
+	 */
+	private void closeMappedFile(){
+		if(mappedTokenizer != null){
+			mappedTokenizer.addPooledStrings(stringPool);
+			mappedTokenizer = null;
+		}
+		if(channel != null){
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			channel = null;
+		}
+	}
+	
+	@SuppressWarnings("unused")
+	private EDIFNetlist parseNetlist(){
 		expect(LEFT_PAREN, getNextToken());
 		expect(EDIF, getNextToken());
 		currNetlist = (EDIFNetlist) parseEDIFNameObject(new EDIFNetlist());
@@ -417,6 +541,7 @@ public class EDIFParser {
 			 
 		}
 		expect(RIGHT_PAREN, currToken);  // edif end
+		resolveDeferredCellRefs();
 		
 		// Update PortInsts
 		for(EDIFLibrary lib : currNetlist.getLibraries()){
@@ -467,13 +592,63 @@ public class EDIFParser {
 		expect(RIGHT_PAREN, getNextToken());
 		
 		String currToken = null;
-		while(LEFT_PAREN.equals(currToken = getNextToken())){
-			library.addCell(parseEDIFCell(library)); 
+		if(mappedTokenizer != null && PARALLEL_CELL_PARSING){
+			currToken = parseEDIFCellsInParallel(library);
+		}else{
+			while(LEFT_PAREN.equals(currToken = getNextToken())){
+				library.addCell(parseEDIFCell(library)); 
+			}
 		}
 		expect(RIGHT_PAREN, currToken);
 		return library;
 	}
 	
+	/**
+	 * Parses the cells of a library in two phases.  First, the byte range of each cell
+	 * is found by matching parentheses (no tokens are created).  Second, each cell is 
+	 * parsed independently on the fork-join pool by its own parser.  The cells are then 
+	 * added to the library in file order and the references between cells are resolved 
+	 * once all libraries have been parsed.
+	 * @param library The library being parsed.
+	 * @return The token following the last cell of the library. 
+	 */
+	private String parseEDIFCellsInParallel(EDIFLibrary library){
+		List<EDIFParser> cellParsers = new ArrayList<>();
+		String currToken = null;
+		while(LEFT_PAREN.equals(currToken = getNextToken())){
+			long start = mappedTokenizer.getFileOffset();
+			int line = mappedTokenizer.getLineNumber();
+			long end = mappedTokenizer.skipToEndOfForm();
+			cellParsers.add(new EDIFParser(this, start, end, line));
+		}
+		List<EDIFCell> cells = cellParsers.parallelStream()
+				.map(p -> p.parseEDIFCell(library))
+				.collect(Collectors.toList());
+		for(int i=0; i < cells.size(); i++){
+			EDIFParser p = cellParsers.get(i);
+			// The channel is shared with this parser and closed by it
+			p.mappedTokenizer.addPooledStrings(stringPool);
+			p.mappedTokenizer = null;
+			p.stringPool.forEach(stringPool::putIfAbsent);
+			library.addCell(updateEDIFRefCellMap(library, cells.get(i)));
+			portLookup.putAll(p.portLookup);
+			deferredInsts.addAll(p.deferredInsts);
+			deferredCellRefs.addAll(p.deferredCellRefs);
+			deferredLibraryRefs.addAll(p.deferredLibraryRefs);
+		}
+		return currToken;
+	}
+	
+	private void resolveDeferredCellRefs(){
+		for(int i=0; i < deferredInsts.size(); i++){
+			EDIFCell cellType = getRefEDIFCell(deferredCellRefs.get(i), deferredLibraryRefs.get(i));
+			deferredInsts.get(i).setCellType(cellType);
+		}
+		deferredInsts.clear();
+		deferredCellRefs.clear();
+		deferredLibraryRefs.clear();
+	}
+	
 	/**
 	 * This method will arbitrate between existing temporary cells created
 	 * for their reference and newly created cells as parsed in the file.  
@@ -664,7 +839,13 @@ public class EDIFParser {
 		expect(LEFT_PAREN,getNextToken());
 		expect(LIBRARYREF,getNextToken());
 		String libraryref = getNextToken();
-		inst.setCellType(getRefEDIFCell(cellref, libraryref));
+		if(deferCellRefs){
+			deferredInsts.add(inst);
+			deferredCellRefs.add(cellref);
+			deferredLibraryRefs.add(libraryref);
+		}else{
+			inst.setCellType(getRefEDIFCell(cellref, libraryref));
+		}
 		expect(RIGHT_PAREN,getNextToken());
 		expect(RIGHT_PAREN,getNextToken());
 		expect(RIGHT_PAREN,getNextToken());
@@ -732,7 +913,7 @@ public class EDIFParser {
 			if(expectedString.equals(token.toLowerCase())) return;
 			new Exception().printStackTrace();
 			MessageGenerator.briefErrorAndExit("Parsing Error: Expected token: " + expectedString +
-					", encountered: " + token + " on line: " + lineNumber + ".");
+					", encountered: " + token + " on line: " + getLineNumber() + ".");
 		}
 	}
 	
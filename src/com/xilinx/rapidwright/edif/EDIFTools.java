@@ -136,6 +136,9 @@ public class EDIFTools {
 	/** Flag to switch EDIF files to KRYO files to make Java debugging faster  (must run once without debugging mode first, once set to true) */
 	public static final boolean EDIF_DEBUG = false;
 
+	/** Flag to read/write a binary cache file (see {@link EDIFBinaryNetlist}) next to EDIF files loaded by name, off by default */
+	public static boolean USE_BINARY_NETLIST_CACHE = false;
+
 	public static int UNIQUE_COUNT = 0;
 	
 	private static String getUniqueNetSuffix() {
@@ -683,7 +686,23 @@ public class EDIFTools {
 		t.stop().printSummary();
 	}
 
+	/**
+	 * Loads the EDIF file.  If {@link #USE_BINARY_NETLIST_CACHE} is set, the netlist is 
+	 * read from its binary cache file when the cache matches the EDIF file, otherwise the 
+	 * EDIF file is parsed and the binary cache is (re)written next to it.
+	 * @param fileName Name of the EDIF file.
+	 * @return The loaded netlist.
+	 */
 	public static EDIFNetlist loadEDIFFile(String fileName){
+		if(USE_BINARY_NETLIST_CACHE){
+			try{
+				EDIFNetlist netlist = EDIFBinaryNetlist.readBinaryNetlistCache(fileName);
+				if(netlist != null) return netlist;
+			}catch(RuntimeException e){
+				System.err.println("WARNING: Failed to read binary netlist cache of " + fileName
+						+ ", parsing EDIF instead: " + e.getMessage());
+			}
+		}
 		EDIFParser p = null;
 		try {
 			p = new EDIFParser(fileName);
@@ -691,7 +710,16 @@ public class EDIFTools {
 			e.printStackTrace();
 			throw new RuntimeException("ERROR: Couldn't read file : " + fileName);
 		}
-		return p.parseEDIFNetlist();
+		EDIFNetlist netlist = p.parseEDIFNetlist();
+		if(USE_BINARY_NETLIST_CACHE){
+			try{
+				EDIFBinaryNetlist.writeBinaryNetlistCache(fileName, netlist);
+			}catch(RuntimeException e){
+				System.err.println("WARNING: Failed to write binary netlist cache of " + fileName 
+						+ ": " + e.getMessage());
+			}
+		}
+		return netlist;
 	}
 
 	public static void ensureCorrectPartInEDIF(EDIFNetlist edif, String partName){
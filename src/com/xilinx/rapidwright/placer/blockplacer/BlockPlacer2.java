@@ -24,11 +24,21 @@ package com.xilinx.rapidwright.placer.blockplacer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Module;
@@ -68,6 +78,22 @@ public class BlockPlacer2 {
 	private HashMap<Site, HardMacro> currentPlacements;
 	/** The current temperature of the simulated annealing schedule */
 	private double currentTemp;
+	/** Sum of the lengths of all paths, kept up to date by {@link #currentSystemCost()} */
+	private long totalWireLength;
+	/** Paths whose length was updated for the current move */
+	private Path[] movePaths = new Path[16];
+	/** Lengths of movePaths before the current move, used to roll back a rejected move */
+	private int[] movePrevLengths = new int[16];
+	/** Number of valid entries in movePaths */
+	private int movePathCount;
+	/** Used to visit each path connected to the blocks of the current move once */
+	private Set<Path> movePathSet = Collections.newSetFromMap(new IdentityHashMap<Path, Boolean>());
+	/** Halo-expanded bounding boxes of the hard macros checked for overlaps */
+	private TileOccupancyGrid occupancy;
+	/** The box and anchor site each hard macro was added to the occupancy grid with */
+	private IdentityHashMap<HardMacro, OccupiedArea> occupiedAreas;
+	/** Number of hard macros in the occupancy grid anchored at each site */
+	private HashMap<Site, Integer> occupiedAnchors;
 	/** Number of accepted moves in the current temperature step */
 	private int currentAcceptedMoveCount = 0;
 	/** Total number of moves through the entire execution of the annealer */
@@ -92,6 +118,8 @@ public class BlockPlacer2 {
 	public boolean verbose = true;
 
 	public static int DEBUG_LEVEL = 1;
+	/** Check overlaps through a tile occupancy grid instead of comparing against every hard macro */
+	public static boolean USE_OCCUPANCY_GRID = true;
 	// DEBUG
 	//private HashMap<HardMacro, Integer> moveCount = new HashMap<HardMacro, Integer>();
 	private String inputXPNFileName;
@@ -156,6 +184,9 @@ public class BlockPlacer2 {
 		
 		// Create Hard Macro objects from module instances
 		for(ModuleInst mi : design.getModuleInsts()){
+			// A hard macro copies the placement state, create any deferred routing first so it
+			// is not tracked by both objects
+			mi.placeRouting();
 			HardMacro hm = new HardMacro(mi);
 			hardMacros.add(hm);
 			hm.setValidPlacements();
@@ -183,6 +214,7 @@ public class BlockPlacer2 {
 		currentPlacements = new HashMap<Site, HardMacro>();
 
 		Device dev = design.getDevice(); 
+		clearOccupancy();
 		Tile center = dev.getTile(dev.getRows()/2, dev.getColumns()/2);
 		PriorityQueue<Site> sites = new PriorityQueue<Site>(1024, new Comparator<Site>() {
 			public int compare(Site i, Site j) {return i.getTile().getManhattanDistance(center) - j.getTile().getManhattanDistance(center);}});
@@ -194,13 +226,15 @@ public class BlockPlacer2 {
 				Site site = sites.remove();
 				hm.setTempAnchorSite(site, currentPlacements);
 				if(checkValidPlacement(hm)){
-					if(!hm.place(site)){
+					// Routing is created once the final placement is known
+					if(!hm.place(site, true)){
 						throw new RuntimeException("ERROR: Failed to place " + hm.getName() + " at " + site.getName());
 					}
 					hm.calculateTileSize();
 					break;
 				}
 			}
+			occupy(hm);
 			/*for(Site site : hm.getValidPlacements()){
 				hm.setTempAnchorSite(site, currentPlacements);
 				if(checkValidPlacement(hm)){
@@ -213,15 +247,14 @@ public class BlockPlacer2 {
 			}*/
 		}
 		// We have p
-		for(Path path : allPaths){
-			path.calculateLength();
-		}
+		fullSystemCost();
 		
 		ArrayList<HardMacro> prunedList = new ArrayList<>();
 		for(HardMacro hm : new ArrayList<>(hardMacros)){
 			if(hm.getValidPlacements().size() > 2) prunedList.add(hm);
 		}
 		hardMacros = prunedList;
+		buildOccupancy();
 	}
 	
 	private void unplaceDesign(){
@@ -288,13 +321,97 @@ public class BlockPlacer2 {
 	}
 	
 	private boolean checkValidPlacement(HardMacro hm){
+		return checkValidPlacement(hm, null);
+	}
+	
+	/**
+	 * Checks that the hard macro is at a valid site and does not overlap another hard macro.
+	 * When the occupancy grid is used, hm must not be in the grid.
+	 * @param hm The hard macro to check.
+	 * @param other Another hard macro taken out of the occupancy grid that hm should also be 
+	 * checked against, or null.
+	 * @return True if the placement is legal.
+	 */
+	private boolean checkValidPlacement(HardMacro hm, HardMacro other){
 		if(!hm.isValidPlacement()) return false;
-		for(HardMacro hardMacro : hardMacros){
-			if(hardMacro.equals(hm)) continue;
-			if(hm.getTempAnchorSite().equals(hardMacro.getTempAnchorSite())) return false;
-			if(hm.overlaps(hardMacro)){
-				return false;
+		if(occupancy == null){
+			for(HardMacro hardMacro : hardMacros){
+				if(hardMacro.equals(hm)) continue;
+				if(hm.getTempAnchorSite().equals(hardMacro.getTempAnchorSite())) return false;
+				if(hm.overlaps(hardMacro)){
+					return false;
+				}
 			}
+			return true;
+		}
+		if(occupiedAnchors.containsKey(hm.getTempAnchorSite())) return false;
+		if(occupancy.isAnyOccupied(hm.top, hm.bottom, hm.left, hm.right)) return false;
+		if(other != null && other.getTempAnchorSite() != null){
+			if(hm.getTempAnchorSite().equals(other.getTempAnchorSite())) return false;
+			if(hm.overlaps(other)) return false;
+		}
+		return true;
+	}
+	
+	/** The area a hard macro was added to the occupancy grid with */
+	private static class OccupiedArea {
+		int top, bottom, left, right;
+		Site anchor;
+	}
+	
+	private void clearOccupancy(){
+		if(!USE_OCCUPANCY_GRID){
+			occupancy = null;
+			return;
+		}
+		if(occupancy == null){
+			occupancy = new TileOccupancyGrid(dev);
+		}else{
+			occupancy.clear();
+		}
+		occupiedAreas = new IdentityHashMap<HardMacro, OccupiedArea>();
+		occupiedAnchors = new HashMap<Site, Integer>();
+	}
+	
+	/**
+	 * Fills the occupancy grid with the hard macros that moves are checked against.
+	 */
+	private void buildOccupancy(){
+		clearOccupancy();
+		for(HardMacro hm : hardMacros){
+			occupy(hm);
+		}
+	}
+	
+	/**
+	 * Adds the hard macro at its temporary anchor site to the occupancy grid.  Another hard
+	 * macro overlaps it (see {@link HardMacro#overlaps(HardMacro)}) if its bounding box hits 
+	 * the halo-shifted box added here.
+	 */
+	private void occupy(HardMacro hm){
+		if(occupancy == null || hm.getTempAnchorSite() == null) return;
+		OccupiedArea area = new OccupiedArea();
+		area.top = hm.top - HardMacro.HALO;
+		area.bottom = hm.bottom + HardMacro.HALO;
+		area.left = hm.left + HardMacro.HALO;
+		area.right = hm.right + HardMacro.HALO;
+		area.anchor = hm.getTempAnchorSite();
+		occupancy.addRectangle(area.top, area.bottom, area.left, area.right);
+		occupiedAnchors.merge(area.anchor, 1, Integer::sum);
+		occupiedAreas.put(hm, area);
+	}
+	
+	/**
+	 * Takes the hard macro out of the occupancy grid.
+	 * @return True if the hard macro was in the grid.
+	 */
+	private boolean vacate(HardMacro hm){
+		if(occupancy == null) return false;
+		OccupiedArea area = occupiedAreas.remove(hm);
+		if(area == null) return false;
+		occupancy.removeRectangle(area.top, area.bottom, area.left, area.right);
+		if(occupiedAnchors.merge(area.anchor, -1, Integer::sum) == 0){
+			occupiedAnchors.remove(area.anchor);
 		}
 		return true;
 	}
@@ -329,12 +446,7 @@ public class BlockPlacer2 {
 				}
 				else{
 					// Undo the move, we are not accepting it
-					currentMove.undoMove(currentPlacements);
-					double testCost = currentSystemCost();
-					if(testCost != previousCost){
-						MessageGenerator.briefError("ERROR_startTemp: Undo move caused improper system cost change: prev=" + previousCost + " incorrect=" + testCost + " move= " + currentMove.toString());
-						MessageGenerator.waitOnAnyKeySilent();
-					}
+					rejectMove(previousCost);
 				}
 			}// Move loop
 		}
@@ -357,12 +469,21 @@ public class BlockPlacer2 {
 	}
 	
 	public Design placeDesign(Design design, boolean debugFlow){
+		return placeDesign(design, debugFlow, 1);
+	}
+	
+	/**
+	 * Places the hard macros of the design.  With more than one thread, independent annealing
+	 * runs with different seeds are performed concurrently and the placement with the lowest
+	 * final cost is kept.
+	 * @param design The design to place.
+	 * @param debugFlow Only consider placements that are open in the existing implementation.
+	 * @param threads Number of annealing runs performed in parallel, 1 or less anneals once.
+	 * @return The placed design.
+	 */
+	public Design placeDesign(Design design, boolean debugFlow, int threads){
 		this.design = design;
 		rand = new Random(seed);
-		boolean finished = false;
-		double changeInCost = 0.0;
-		int maxInnerIteration = 0;
-		double r;
 		//MessageGenerator.printHeader(this.getClass().getCanonicalName());
 		long start = System.currentTimeMillis();
 		//System.out.println("Initialization Time: " + ((System.currentTimeMillis()-start)/1000.0) + " secs");
@@ -370,6 +491,146 @@ public class BlockPlacer2 {
 		initializePlacer(debugFlow);
 		initialPlacement();
 		//HandPlacer.openDesign(design);
+		if(threads <= 1){
+			anneal();
+		}else{
+			annealInParallel(threads);
+		}
+
+		// Store final results
+		placerRuntime  = ((System.currentTimeMillis()-start)/1000.0);
+		if(DEBUG_LEVEL > 0) System.out.println(seed + ": " + finalSystemCost + " / " + finalBestCost + " Runtime: " + placerRuntime + "secs");
+		if(DEBUG_LEVEL > 0) System.out.printf("  Perturbation Time: %.3f secs (%9.0f moves/sec)\n", placerRuntime,(totalMoves/placerRuntime));	
+		
+		if(DEBUG_LEVEL > 0) System.out.println("Final System Cost: " + finalSystemCost);
+		/*
+		HashSet<HardMacro> fineTunePlacement = new HashSet<HardMacro>(); 
+		
+		for(HardMacro hm : hardMacros){
+			if(hm.tileSize < 60){
+				fineTunePlacement.add(hm);
+			}
+		}
+		
+		for(HardMacro hm : fineTunePlacement){
+			// Keep the original spot, in the case we suggest a worst spot
+			Site original = hm.getTempAnchorSite();
+			int originalMaxLength = 0;
+			// Determine all of the connecting points to this hard macro
+			HashSet<Point> pointsList = new HashSet<Point>();
+			for(Path path : hm.getConnectedPaths()){
+				if(path.getLength() > originalMaxLength){
+					originalMaxLength = path.getLength();
+				}
+				for(PathPort pp : path){
+					if(pp.getBlock()== null || !pp.getBlock().equals(hm)){
+						pointsList.add(new Point(pp.getPortTile()));
+					}
+				}
+			}
+			
+			Point center = SmallestEnclosingCircle.getCenterPoint(pointsList);
+			Tile centroid = dev.getTile("INT_X" + center.x + "Y" + center.y);
+			Site newCandidateSite = null;
+			if(centroid != null && centroid.getSites() != null && centroid.getSites().length > 0){
+				newCandidateSite = centroid.getSites()[0];
+			}
+			
+
+			if(newCandidateSite != null){
+				if(DEBUG_LEVEL > 0) System.out.println("Moving " + hm.getName() + " from " + original.getTile() + " to " + newCandidateSite.getTile());
+				currentMove.setMove(newCandidateSite, original, null, hm);
+				hm.setTempAnchorSite(newCandidateSite, currentPlacements);
+				currentSystemCost();
+				int longestPath = 0;
+				for(Path path : hm.getConnectedPaths()){
+					if(path.getLength() > longestPath){
+						longestPath = path.getLength();
+					}
+				}
+				if(originalMaxLength+5 < longestPath){
+					if(DEBUG_LEVEL > 0) System.out.println("  Undo move: old max length: " + originalMaxLength + " new max length " + longestPath);
+					currentMove.undoMove(currentPlacements);
+					currentSystemCost();
+				}
+			}
+		}
+
+		System.out.println("Final System Cost (after fine tuning): " + this.currentSystemCost());
+		*/
+		//MessageGenerator.waitOnAnyKey();
+		
+		
+		// Sort hard macros, largest first to place them first
+		HardMacro[] array = new HardMacro[hardMacros.size()];
+		array = hardMacros.toArray(array);
+		Arrays.sort(array);
+		
+		TileOccupancyGrid usedTiles = new TileOccupancyGrid(dev);
+        // Added variable for genreating partial dcp
+        boolean save_and_exit = false;
+		// Perform final placement of all hard macros
+		for(HardMacro hm : array){	
+			//System.out.println(moveCount.get(hm) + " " + hm.tileSize + " " + hm.getName());
+			HashSet<Tile> footPrint = isValidPlacement((ModuleInst)hm, hm.getModule().getAnchor().getSite(), hm.getTempAnchorSite().getTile(), usedTiles);
+			if(footPrint == null){
+				
+				if(!placeModuleNear((ModuleInst)hm, hm.getTempAnchorSite().getTile(), usedTiles)){
+					System.out.println("Saving as debug.");
+                    // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
+					if(save_partial_dcp) {
+                        save_and_exit = true;
+                        System.out.println("ERROR: Placement failed for "+hm.getName());
+                        hm.unplace(); 
+                    } else
+                        MessageGenerator.briefErrorAndExit("ERROR: Placement failed, couldn't find valid site for " + hm.getName());	                   
+				}
+			}
+			else{
+				usedTiles.markOccupied(footPrint);
+				if(!hm.place(hm.getTempAnchorSite())){
+                    // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
+					if(save_partial_dcp) {
+                        save_and_exit = true;
+                        System.out.println("ERROR: Placement failed for "+hm.getName());
+                        hm.unplace(); 
+                    } else 
+                        MessageGenerator.briefErrorAndExit("ERROR: Problem placing " + hm.getName() + " on site: " + hm.getTempAnchorSite());
+				}
+			}
+		}
+		
+		// Create the routing deferred by any placement above before the design is used
+		for(HardMacro hm : macroMap.values()){
+			if(hm.isRoutingDeferred() && !hm.placeRouting()){
+				MessageGenerator.briefError("ERROR: Couldn't place routing of " + hm.getName());
+			}
+		}
+		
+		design.clearUsedSites();
+		for(SiteInst i : design.getSiteInsts()){
+			i.place(i.getSite());
+		}
+		
+        // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
+        if(save_and_exit) {
+			String placedDCPName = "partialy_placed.dcp";
+			design.writeCheckpoint(placedDCPName);
+			MessageGenerator.briefErrorAndExit("ERROR: Placement failed, couldn't find valid site for all the IPs. Partially placed .dcp saved for debug " );
+		}
+                
+		return design;
+	}
+	
+	/**
+	 * Runs the simulated annealing schedule (followed by a freezing phase) on the temporary
+	 * anchor sites of the hard macros and stores the final and best costs.
+	 */
+	private void anneal(){
+		boolean finished = false;
+		double changeInCost = 0.0;
+		int maxInnerIteration = 0;
+		double r;
 		int totalFootprint = 0;
 		for(HardMacro hm : hardMacros){
 			totalFootprint += hm.getTileSize();
@@ -416,28 +677,6 @@ public class BlockPlacer2 {
 					}
 					
 					r = rand.nextDouble();
-					int numPath0 = 0;
-					int numPath1 = 0;
-					double tmp =0.0;
-					double AvgChange = 0.0;
-					if(currentMove.getBlock0() != null){
-						for(Path wire : currentMove.getBlock0().getConnectedPaths()){
-							wire.calculateLength();
-							tmp = tmp + wire.getLength();
-						}
-						numPath0 = currentMove.getBlock0().getConnectedPaths().size();
-						AvgChange = AvgChange + tmp/numPath0;
-					}
-					tmp =0.0;
-					if(currentMove.getBlock1() != null){
-						for(Path wire : currentMove.getBlock1().getConnectedPaths()){
-							wire.calculateLength();
-							tmp = tmp + wire.getLength();
-						}
-						numPath1 = currentMove.getBlock1().getConnectedPaths().size();
-						AvgChange = AvgChange + tmp/numPath1;
-					}
-					int numPaths = Math.max(numPath0, numPath1);
 					//double costChange = (changeInCost)*(numPath0+numPath1);
 					double costChange = (changeInCost);
 					//boolean acceptMove = (r < Math.exp(-changeInCost/(scaleFactor*currentTemp)));
@@ -457,12 +696,7 @@ public class BlockPlacer2 {
 					}
 					else{
 						// Undo the move, we are not accepting it
-						currentMove.undoMove(currentPlacements);
-						double testCost = currentSystemCost();
-						if(testCost != prevSystemCost){
-							MessageGenerator.briefError("ERROR: Undo move caused improper system cost change: prev=" + prevSystemCost + " incorrect=" + testCost + " move= " + currentMove.toString());
-							MessageGenerator.waitOnAnyKeySilent();
-						}
+						rejectMove(prevSystemCost);
 					}
 					//moveAcceptanceRate = ((double)currentAcceptedMoveCount) / moveCount;
 					//moveAcceptanceRate = ((double)currentAcceptedMoveCount) / (Math.min(moveCount, hardMacros.size()));
@@ -521,136 +755,114 @@ public class BlockPlacer2 {
 				}
 				else{
 					// Undo the move, we are not accepting it
-					currentMove.undoMove(currentPlacements);
-					double testCost = currentSystemCost();
-					if(testCost != prevSystemCost){
-						MessageGenerator.briefError("ERROR: Undo move caused improper system cost change: prev=" + prevSystemCost + " incorrect=" + testCost + " move= " + currentMove.toString());
-						MessageGenerator.waitOnAnyKeySilent();
-					}
+					rejectMove(prevSystemCost);
 				}
 				moveAcceptanceRate = ((double)currentAcceptedMoveCount) / moveCount;
 			}// Move loop
 			
 		}//End of Freezing
 
-		// Store final results
 		finalSystemCost = prevSystemCost;
 		finalBestCost = bestSoFar;
-		placerRuntime  = ((System.currentTimeMillis()-start)/1000.0);
-		if(DEBUG_LEVEL > 0) System.out.println(seed + ": " + currSystemCost + " / " + bestSoFar + " Runtime: " + placerRuntime + "secs");
-		if(DEBUG_LEVEL > 0) System.out.printf("  Perturbation Time: %.3f secs (%9.0f moves/sec)\n", placerRuntime,(totalMoves/placerRuntime));	
-		
-		if(DEBUG_LEVEL > 0) System.out.println("Final System Cost: " + finalSystemCost);
-		/*
-		HashSet<HardMacro> fineTunePlacement = new HashSet<HardMacro>(); 
-		
-		for(HardMacro hm : hardMacros){
-			if(hm.tileSize < 60){
-				fineTunePlacement.add(hm);
-			}
+	}
+	
+	/**
+	 * Runs independent annealing schedules with different seeds on a thread pool.  This placer
+	 * performs the first run, each other run uses its own copies of the hard macros and paths.
+	 * The temporary anchor sites of the run with the lowest final cost are kept.
+	 * @param threads Number of annealing runs (and threads).
+	 */
+	private void annealInParallel(int threads){
+		List<BlockPlacer2> replicas = new ArrayList<BlockPlacer2>();
+		List<Map<HardMacro,HardMacro>> copies = new ArrayList<Map<HardMacro,HardMacro>>();
+		replicas.add(this);
+		copies.add(null);
+		for(int i=1; i < threads; i++){
+			Map<HardMacro,HardMacro> copyMap = new IdentityHashMap<HardMacro, HardMacro>();
+			replicas.add(createReplica(seed + i, copyMap));
+			copies.add(copyMap);
 		}
 		
-		for(HardMacro hm : fineTunePlacement){
-			// Keep the original spot, in the case we suggest a worst spot
-			Site original = hm.getTempAnchorSite();
-			int originalMaxLength = 0;
-			// Determine all of the connecting points to this hard macro
-			HashSet<Point> pointsList = new HashSet<Point>();
-			for(Path path : hm.getConnectedPaths()){
-				if(path.getLength() > originalMaxLength){
-					originalMaxLength = path.getLength();
-				}
-				for(PathPort pp : path){
-					if(pp.getBlock()== null || !pp.getBlock().equals(hm)){
-						pointsList.add(new Point(pp.getPortTile()));
-					}
-				}
-			}
-			
-			Point center = SmallestEnclosingCircle.getCenterPoint(pointsList);
-			Tile centroid = dev.getTile("INT_X" + center.x + "Y" + center.y);
-			Site newCandidateSite = null;
-			if(centroid != null && centroid.getSites() != null && centroid.getSites().length > 0){
-				newCandidateSite = centroid.getSites()[0];
-			}
-			
-
-			if(newCandidateSite != null){
-				if(DEBUG_LEVEL > 0) System.out.println("Moving " + hm.getName() + " from " + original.getTile() + " to " + newCandidateSite.getTile());
-				currentMove.setMove(newCandidateSite, original, null, hm);
-				hm.setTempAnchorSite(newCandidateSite, currentPlacements);
-				currentSystemCost();
-				int longestPath = 0;
-				for(Path path : hm.getConnectedPaths()){
-					if(path.getLength() > longestPath){
-						longestPath = path.getLength();
-					}
-				}
-				if(originalMaxLength+5 < longestPath){
-					if(DEBUG_LEVEL > 0) System.out.println("  Undo move: old max length: " + originalMaxLength + " new max length " + longestPath);
-					currentMove.undoMove(currentPlacements);
-					currentSystemCost();
-				}
-			}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		for(BlockPlacer2 replica : replicas){
+			results.add(pool.submit(() -> replica.anneal()));
 		}
-
-		System.out.println("Final System Cost (after fine tuning): " + this.currentSystemCost());
-		*/
-		//MessageGenerator.waitOnAnyKey();
-		
-		
-		// Sort hard macros, largest first to place them first
-		HardMacro[] array = new HardMacro[hardMacros.size()];
-		array = hardMacros.toArray(array);
-		Arrays.sort(array);
-		
-		HashSet<Tile> usedTiles = new HashSet<Tile>();
-        // Added variable for genreating partial dcp
-        boolean save_and_exit = false;
-		// Perform final placement of all hard macros
-		for(HardMacro hm : array){	
-			//System.out.println(moveCount.get(hm) + " " + hm.tileSize + " " + hm.getName());
-			HashSet<Tile> footPrint = isValidPlacement((ModuleInst)hm, hm.getModule().getAnchor().getSite(), hm.getTempAnchorSite().getTile(), usedTiles);
-			if(footPrint == null){
-				
-				if(!placeModuleNear((ModuleInst)hm, hm.getTempAnchorSite().getTile(), usedTiles)){
-					System.out.println("Saving as debug.");
-                    // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
-					if(save_partial_dcp) {
-                        save_and_exit = true;
-                        System.out.println("ERROR: Placement failed for "+hm.getName());
-                        hm.unplace(); 
-                    } else
-                        MessageGenerator.briefErrorAndExit("ERROR: Placement failed, couldn't find valid site for " + hm.getName());	                   
-				}
-			}
-			else{
-				usedTiles.addAll(footPrint);
-				if(!hm.place(hm.getTempAnchorSite())){
-                    // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
-					if(save_partial_dcp) {
-                        save_and_exit = true;
-                        System.out.println("ERROR: Placement failed for "+hm.getName());
-                        hm.unplace(); 
-                    } else 
-                        MessageGenerator.briefErrorAndExit("ERROR: Problem placing " + hm.getName() + " on site: " + hm.getTempAnchorSite());
-				}
+		for(int i=0; i < replicas.size(); i++){
+			try {
+				results.get(i).get();
+			} catch (InterruptedException | ExecutionException e) {
+				pool.shutdownNow();
+				throw new RuntimeException("ERROR: Annealing run with seed " + 
+						replicas.get(i).seed + " failed.", e);
 			}
 		}
+		pool.shutdown();
 		
-		design.clearUsedSites();
-		for(SiteInst i : design.getSiteInsts()){
-			i.place(i.getSite());
+		int best = 0;
+		for(int i=1; i < replicas.size(); i++){
+			if(replicas.get(i).finalSystemCost < replicas.get(best).finalSystemCost) best = i;
 		}
+		for(int i=1; i < replicas.size(); i++){
+			totalMoves += replicas.get(i).totalMoves;
+		}
+		if(best == 0) return;
 		
-        // Updated code. Goal: if placement fails, unplace that IP and generate .dcp in order to let vivado continue PAR
-        if(save_and_exit) {
-			String placedDCPName = "partialy_placed.dcp";
-			design.writeCheckpoint(placedDCPName);
-			MessageGenerator.briefErrorAndExit("ERROR: Placement failed, couldn't find valid site for all the IPs. Partially placed .dcp saved for debug " );
+		BlockPlacer2 winner = replicas.get(best);
+		if(DEBUG_LEVEL > 0) System.out.println("Keeping placement of seed " + winner.seed);
+		HashMap<Site, HardMacro> scratch = new HashMap<Site, HardMacro>();
+		currentPlacements.clear();
+		for(Entry<HardMacro,HardMacro> e : copies.get(best).entrySet()){
+			HardMacro hm = e.getKey();
+			hm.setTempAnchorSite(e.getValue().getTempAnchorSite(), scratch);
+			currentPlacements.put(hm.getTempAnchorSite(), hm);
 		}
-                
-		return design;
+		currentMove = new Move();
+		buildOccupancy();
+		fullSystemCost();
+		finalSystemCost = winner.finalSystemCost;
+		finalBestCost = winner.finalBestCost;
+	}
+	
+	/**
+	 * Creates a placer sharing the design of this one, with its own copies of the hard macros
+	 * (at their current temporary anchor sites) and of the paths between them.
+	 * @param replicaSeed The random seed of the new placer.
+	 * @param copyMap Populated with each hard macro of this placer and its copy.
+	 * @return The new placer, ready to anneal.
+	 */
+	private BlockPlacer2 createReplica(long replicaSeed, Map<HardMacro,HardMacro> copyMap){
+		BlockPlacer2 replica = new BlockPlacer2();
+		replica.setSeed(replicaSeed);
+		replica.rand = new Random(replicaSeed);
+		replica.design = design;
+		replica.dev = dev;
+		replica.alpha = alpha;
+		replica.beta = beta;
+		replica.verbose = verbose;
+		replica.currentMove = new Move();
+		replica.currentPlacements = new HashMap<Site, HardMacro>();
+		replica.allPaths = new HashSet<Path>();
+		replica.hardMacros = new ArrayList<HardMacro>();
+		replica.macroMap = new HashMap<ModuleInst, HardMacro>();
+		for(Entry<ModuleInst,HardMacro> e : macroMap.entrySet()){
+			HardMacro hm = e.getValue();
+			HardMacro copy = new HardMacro(hm);
+			copy.setValidPlacements();
+			copy.setTileSize(hm.getTileSize());
+			if(hm.getTempAnchorSite() != null){
+				copy.setTempAnchorSite(hm.getTempAnchorSite(), replica.currentPlacements);
+			}
+			replica.macroMap.put(e.getKey(), copy);
+			copyMap.put(hm, copy);
+		}
+		for(HardMacro hm : hardMacros){
+			replica.hardMacros.add(copyMap.get(hm));
+		}
+		replica.populateAllPaths();
+		replica.buildOccupancy();
+		replica.fullSystemCost();
+		return replica;
 	}
 	
 	enum Direction{UP, DOWN, LEFT, RIGHT};
@@ -666,7 +878,7 @@ public class BlockPlacer2 {
 		return null;
 	}
 	
-	public boolean placeModuleNear(ModuleInst modInst, Tile tile, HashSet<Tile> usedTiles){
+	public boolean placeModuleNear(ModuleInst modInst, Tile tile, TileOccupancyGrid usedTiles){
 		Site anchorSite = modInst.getModule().getAnchor().getSite();
 		Tile proposedAnchorTile = tile;
 		Direction dir = Direction.UP;
@@ -728,7 +940,7 @@ public class BlockPlacer2 {
 				
 				Site newAnchorSite = anchorSite.getCorrespondingSite(modInst.getModule().getAnchor().getSiteTypeEnum(), proposedAnchorTile);
 				if(tiles != null && modInst.place(newAnchorSite)){
-					usedTiles.addAll(tiles);
+					usedTiles.markOccupied(tiles);
 					return true;
 				}
 				else{
@@ -758,7 +970,7 @@ public class BlockPlacer2 {
 		}
 		Site newAnchorSite = anchorSite.getCorrespondingSite(modInst.getModule().getAnchor().getSiteTypeEnum(), proposedAnchorTile);
 		if(modInst.place(newAnchorSite)){
-			usedTiles.addAll(tiles);
+			usedTiles.markOccupied(tiles);
 			return true;
 		}
 		if(DEBUG_LEVEL > 0) System.out.println("Placement failed: place() " + modInst.getName());
@@ -766,8 +978,8 @@ public class BlockPlacer2 {
 	}
 	
 	
-	private HashSet<Tile> isValidPlacement(ModuleInst modInst, Site anchorSite, Tile proposedAnchorTile, HashSet<Tile> usedTiles){
-		if(usedTiles.contains(proposedAnchorTile)){
+	private HashSet<Tile> isValidPlacement(ModuleInst modInst, Site anchorSite, Tile proposedAnchorTile, TileOccupancyGrid usedTiles){
+		if(usedTiles.isOccupied(proposedAnchorTile)){
 			return null;
 		}
 		
@@ -785,7 +997,7 @@ public class BlockPlacer2 {
 				continue;
 			}
 			Tile newTile = modInst.getCorrespondingTile(i.getTile(), proposedAnchorTile, dev);
-			if(newTile == null || usedTiles.contains(newTile)){
+			if(newTile == null || usedTiles.isOccupied(newTile)){
 				return null;
 			}
 			
@@ -801,7 +1013,7 @@ public class BlockPlacer2 {
 		for(Net n : modInst.getModule().getNets()){
 			for(PIP p : n.getPIPs()){
 				Tile newTile = modInst.getCorrespondingTile(p.getTile(), proposedAnchorTile, dev);
-				if(newTile == null || usedTiles.contains(newTile)){
+				if(newTile == null || usedTiles.isOccupied(newTile)){
 					return null;
 				}
 				if(!newTile.getTileTypeEnum().equals(p.getTile().getTileTypeEnum())){
@@ -865,6 +1077,7 @@ public class BlockPlacer2 {
 		// Updated code. Store initial number of valid Sites
         int nr_valid_sites = validSiteRange.size();
         int rand_site = 0;
+		boolean hm0InGrid = vacate(hm0);
 		while(true){
 			/*if(iterations > 10*validSites.size()){
 				selected = hardMacros.get(rand.nextInt(hardMacros.size()-1));
@@ -874,6 +1087,7 @@ public class BlockPlacer2 {
 				iterations = 0;
 			}*/
 			if(iterations >=  nr_valid_sites){  // Updated code. Maximum trial nr = nr valid Sites
+				if(hm0InGrid) occupy(hm0);
                 return false;
 			}
 			iterations++;
@@ -889,6 +1103,7 @@ public class BlockPlacer2 {
 					site1 = validSiteRange.get(0);
 				}
 			}else{
+				if(hm0InGrid) occupy(hm0);
 				return false;
 			}
 			if(site0.equals(site1)) {
@@ -897,17 +1112,22 @@ public class BlockPlacer2 {
                 continue;
 			}
 			hm1 = currentPlacements.get(site1);
+			if(hm1 == hm0) hm1 = null;
 				
 			if(hm1 != null){
+				boolean hm1InGrid = vacate(hm1);
 				hm1.setTempAnchorSite(site0, currentPlacements);
 				hm0.setTempAnchorSite(site1, currentPlacements);
-				if((!checkValidPlacement(hm0)) || (!checkValidPlacement(hm1))){
+				if((!checkValidPlacement(hm0, hm1InGrid ? hm1 : null)) || 
+						(!checkValidPlacement(hm1, hm0InGrid ? hm0 : null))){
 					hm1.setTempAnchorSite(site1, currentPlacements);
 					hm0.setTempAnchorSite(site0, currentPlacements);
+					if(hm1InGrid) occupy(hm1);
 					//if(DEBUG_LEVEL > 1) System.out.println("  BAD SWAP");
 					validSiteRange.remove(rand_site); // Updated code. Remove sites that were already checked
                     continue;
 				}
+				if(hm1InGrid) occupy(hm1);
 				//System.out.println(hm0.getName()+"<->"+hm1.getName());
 				break;
 			}
@@ -923,6 +1143,7 @@ public class BlockPlacer2 {
 				break;
 			}
 		}
+		if(hm0InGrid) occupy(hm0);
         currentMove.setMove(site0, site1, hm0, hm1);
 		return true;
 	}
@@ -942,32 +1163,75 @@ public class BlockPlacer2 {
 		return tmpCurrentTemp;
 	}
 	
+	/**
+	 * Recomputes the length of every path and the total wire length.
+	 * @return The system cost.
+	 */
+	private double fullSystemCost(){
+		totalWireLength = 0;
+		for(Path path : allPaths){
+			path.calculateLength();
+			totalWireLength += path.getLength();
+		}
+		movePathCount = 0;
+		return alpha * totalWireLength;
+	}
+	
+	/**
+	 * Gets the system cost after the current move.  Only the paths connected to the blocks of
+	 * the move are measured again, their previous lengths are kept so that
+	 * {@link #rejectMove(double)} can roll the move back.
+	 * @return The system cost.
+	 */
 	private double currentSystemCost(){
-		int totalWireLength = 0;
-		double tmp = 0.0;
-		if(currentMove.getBlock0() != null){
-			for(Path wire : currentMove.getBlock0().getConnectedPaths()){
-				wire.calculateLength();
-				tmp = tmp + wire.getLength();
+		movePathCount = 0;
+		movePathSet.clear();
+		updateConnectedPaths(currentMove.getBlock0());
+		updateConnectedPaths(currentMove.getBlock1());
+		return alpha * totalWireLength;
+	}
+	
+	private void updateConnectedPaths(HardMacro block){
+		if(block == null) return;
+		for(Path path : block.getConnectedPaths()){
+			if(!movePathSet.add(path)) continue;
+			if(movePathCount == movePaths.length){
+				movePaths = Arrays.copyOf(movePaths, movePathCount * 2);
+				movePrevLengths = Arrays.copyOf(movePrevLengths, movePathCount * 2);
 			}
-			//System.out.println(currentMove.block0.getName()+":"+currentMove.block0.getConnectedPaths().size());
+			int prevLength = path.getLength();
+			movePaths[movePathCount] = path;
+			movePrevLengths[movePathCount++] = prevLength;
+			path.calculateLength();
+			totalWireLength += path.getLength() - prevLength;
 		}
-		tmp = 0.0;
-		if(currentMove.getBlock1() != null){
-			for(Path wire : currentMove.getBlock1().getConnectedPaths()){
-				wire.calculateLength();
-				tmp = tmp + wire.getLength();
-			}
-			//System.out.println(currentMove.block1.getName()+":"+currentMove.block1.getConnectedPaths().size());
+	}
+	
+	/**
+	 * Undoes the current move and restores the path lengths measured by 
+	 * {@link #currentSystemCost()}.
+	 * @param prevSystemCost The system cost before the move, checked when debugging.
+	 */
+	private void rejectMove(double prevSystemCost){
+		boolean block0InGrid = currentMove.getBlock0() != null && vacate(currentMove.getBlock0());
+		boolean block1InGrid = currentMove.getBlock1() != null && vacate(currentMove.getBlock1());
+		currentMove.undoMove(currentPlacements);
+		if(block0InGrid) occupy(currentMove.getBlock0());
+		if(block1InGrid) occupy(currentMove.getBlock1());
+		for(int i=0; i < movePathCount; i++){
+			Path path = movePaths[i];
+			totalWireLength += movePrevLengths[i] - path.getLength();
+			path.setLength(movePrevLengths[i]);
+			movePaths[i] = null;
 		}
-		int maxPathLength = 0;
-		for(Path path : allPaths){
-			totalWireLength += path.getLength();
-			if(path.getLength() > maxPathLength){
-				maxPathLength = path.getLength();
+		movePathCount = 0;
+		if(DEBUG_LEVEL > 1){
+			double testCost = fullSystemCost();
+			if(testCost != prevSystemCost){
+				MessageGenerator.briefError("ERROR: Undo move caused improper system cost change: prev=" + prevSystemCost + " incorrect=" + testCost + " move= " + currentMove.toString());
+				MessageGenerator.waitOnAnyKeySilent();
 			}
 		}
-		return alpha * totalWireLength;
 	}
 
 	/**
@@ -989,6 +1253,9 @@ public class BlockPlacer2 {
 		
 		// Create Hard Macro objects from module instances
 		for(ModuleInst mi : design.getModuleInsts()){
+			// A hard macro copies the placement state, create any deferred routing first so it
+			// is not tracked by both objects
+			mi.placeRouting();
 			HardMacro hm = new HardMacro(mi);
 			hardMacros.add(hm);
 			macroMap.put(mi, hm);
@@ -1012,6 +1279,6 @@ public class BlockPlacer2 {
 			System.out.println();
 		}
 		
-		System.out.println("System cost for file: " + fileName + " is " + currentSystemCost());
+		System.out.println("System cost for file: " + fileName + " is " + fullSystemCost());
 	}
 }
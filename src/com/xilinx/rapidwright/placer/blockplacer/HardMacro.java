@@ -72,11 +72,13 @@ public class HardMacro extends ModuleInst implements Comparable<Object> {
 	 * Updates the total number of tiles used in the hard macro.
 	 */
 	public void calculateTileSize(){
+		// Counted on the module, the footprint is the same at any placement and this 
+		// doesn't require the routing of the instance to be created
 		HashSet<Tile> tileSet = new HashSet<Tile>(); 
-		for(SiteInst i : getSiteInsts()){
+		for(SiteInst i : getModule().getSiteInsts()){
 			tileSet.add(i.getTile());
 		}
-		for(Net n : getNets()){
+		for(Net n : getModule().getNets()){
 			for(PIP p : n.getPIPs()){
 				tileSet.add(p.getTile());
 			}
@@ -53,6 +53,13 @@ public class Path extends ArrayList<PathPort>{
 		return length;
 	}
 	
+	/**
+	 * Restores a previously calculated length (used to roll back a rejected move).
+	 */
+	void setLength(int length){
+		this.length = length;
+	}
+	
 	public int getHPWL(){
 		return hpwl;
 	}
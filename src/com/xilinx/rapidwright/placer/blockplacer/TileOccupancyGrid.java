@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.placer.blockplacer;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.Tile;
+
+/**
+ * Tracks occupied tiles of a device in a bitset indexed by (tile row, tile column).  Each row is
+ * stored in consecutive 64-bit words so that a rectangle can be tested with a few word
+ * operations per row.  A per-tile count lets overlapping rectangles be added and removed
+ * independently, the bit of a tile is set while its count is non-zero.  Counts are stored
+ * bit-sliced (bit i of the counts of the 64 tiles of a word in one long per i), so that adding or
+ * removing a rectangle is a ripple carry over a few words per row instead of a loop over its
+ * tiles.
+ *
+ * Created on: Oct 18, 2020
+ */
+public class TileOccupancyGrid {
+
+	private int rows;
+
+	private int columns;
+
+	private int wordsPerRow;
+
+	/** Occupied bits, row by row */
+	private long[] bits;
+
+	/** Number of bits of the count of each tile */
+	private static final int COUNT_BITS = 16;
+
+	/** Number of rectangles (or marks) covering each tile, bit i of the counts of word w at 
+	 * index w * COUNT_BITS + i */
+	private long[] counts;
+
+	public TileOccupancyGrid(int rows, int columns){
+		this.rows = rows;
+		this.columns = columns;
+		this.wordsPerRow = (columns + 63) >>> 6;
+		this.bits = new long[rows * wordsPerRow];
+		this.counts = new long[rows * wordsPerRow * COUNT_BITS];
+	}
+
+	/**
+	 * Creates an empty grid covering all tiles of the device.
+	 */
+	public TileOccupancyGrid(Device dev){
+		this(dev.getRows(), dev.getColumns());
+	}
+
+	/**
+	 * Marks every tile as free.
+	 */
+	public void clear(){
+		Arrays.fill(bits, 0L);
+		Arrays.fill(counts, 0L);
+	}
+
+	/**
+	 * Checks if the tile is occupied.
+	 * @param row Tile row.
+	 * @param column Tile column.
+	 * @return True if the tile is occupied, false if it is free or outside the grid.
+	 */
+	public boolean isOccupied(int row, int column){
+		if(row < 0 || row >= rows || column < 0 || column >= columns) return false;
+		return (bits[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	public boolean isOccupied(Tile t){
+		return isOccupied(t.getRow(), t.getColumn());
+	}
+
+	/**
+	 * Marks the tile as occupied.  Marking a tile more than once has no further effect.
+	 */
+	public void markOccupied(Tile t){
+		int row = t.getRow();
+		int column = t.getColumn();
+		if(row < 0 || row >= rows || column < 0 || column >= columns) return;
+		int word = row * wordsPerRow + (column >>> 6);
+		long mask = 1L << column;
+		if((bits[word] & mask) == 0) increment(word, mask);
+	}
+
+	/**
+	 * Marks all tiles of the collection as occupied.
+	 */
+	public void markOccupied(Collection<Tile> tiles){
+		for(Tile t : tiles){
+			markOccupied(t);
+		}
+	}
+
+	/**
+	 * Checks if any tile in the rectangle is occupied.  Parts of the rectangle outside of the
+	 * grid are ignored.
+	 * @param top Smallest tile row of the rectangle.
+	 * @param bottom Largest tile row of the rectangle.
+	 * @param left Smallest tile column of the rectangle.
+	 * @param right Largest tile column of the rectangle.
+	 * @return True if at least one tile of the rectangle is occupied.
+	 */
+	public boolean isAnyOccupied(int top, int bottom, int left, int right){
+		top = Math.max(top, 0);
+		bottom = Math.min(bottom, rows - 1);
+		left = Math.max(left, 0);
+		right = Math.min(right, columns - 1);
+		if(top > bottom || left > right) return false;
+		int firstWord = left >>> 6;
+		int lastWord = right >>> 6;
+		long firstMask = -1L << left;
+		long lastMask = -1L >>> (63 - (right & 63));
+		for(int row=top; row <= bottom; row++){
+			int base = row * wordsPerRow;
+			if(firstWord == lastWord){
+				if((bits[base + firstWord] & firstMask & lastMask) != 0) return true;
+				continue;
+			}
+			if((bits[base + firstWord] & firstMask) != 0) return true;
+			for(int w=firstWord+1; w < lastWord; w++){
+				if(bits[base + w] != 0) return true;
+			}
+			if((bits[base + lastWord] & lastMask) != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a rectangle of occupied tiles, clipped to the grid.
+	 * @see #isAnyOccupied(int, int, int, int)
+	 */
+	public void addRectangle(int top, int bottom, int left, int right){
+		top = Math.max(top, 0);
+		bottom = Math.min(bottom, rows - 1);
+		left = Math.max(left, 0);
+		right = Math.min(right, columns - 1);
+		if(top > bottom || left > right) return;
+		int firstWord = left >>> 6;
+		int lastWord = right >>> 6;
+		for(int row=top; row <= bottom; row++){
+			int base = row * wordsPerRow;
+			for(int w=firstWord; w <= lastWord; w++){
+				increment(base + w, getMask(w, left, right));
+			}
+		}
+	}
+
+	/**
+	 * Removes a rectangle previously added with {@link #addRectangle(int, int, int, int)}.
+	 * @see #isAnyOccupied(int, int, int, int)
+	 */
+	public void removeRectangle(int top, int bottom, int left, int right){
+		top = Math.max(top, 0);
+		bottom = Math.min(bottom, rows - 1);
+		left = Math.max(left, 0);
+		right = Math.min(right, columns - 1);
+		if(top > bottom || left > right) return;
+		int firstWord = left >>> 6;
+		int lastWord = right >>> 6;
+		for(int row=top; row <= bottom; row++){
+			int base = row * wordsPerRow;
+			for(int w=firstWord; w <= lastWord; w++){
+				decrement(base + w, getMask(w, left, right));
+			}
+		}
+	}
+
+	/**
+	 * Gets the bits of word w (within a row) that are in the column range.
+	 */
+	private static long getMask(int w, int left, int right){
+		long mask = -1L;
+		if(w == left >>> 6) mask &= -1L << left;
+		if(w == right >>> 6) mask &= -1L >>> (63 - (right & 63));
+		return mask;
+	}
+
+	/**
+	 * Adds one to the counts of the tiles of the word in the mask.
+	 */
+	private void increment(int word, long mask){
+		int base = word * COUNT_BITS;
+		long carry = mask;
+		for(int i=0; i < COUNT_BITS && carry != 0; i++){
+			long next = counts[base + i] & carry;
+			counts[base + i] ^= carry;
+			carry = next;
+		}
+		bits[word] |= mask;
+	}
+
+	/**
+	 * Subtracts one from the non-zero counts of the tiles of the word in the mask.
+	 */
+	private void decrement(int word, long mask){
+		int base = word * COUNT_BITS;
+		long borrow = mask & bits[word];
+		if(borrow == 0) return;
+		long occupied = 0;
+		for(int i=0; i < COUNT_BITS; i++){
+			long next = ~counts[base + i] & borrow;
+			counts[base + i] ^= borrow;
+			borrow = next;
+			occupied |= counts[base + i];
+		}
+		bits[word] = occupied;
+	}
+}
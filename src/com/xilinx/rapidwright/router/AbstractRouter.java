@@ -23,11 +23,13 @@
 package com.xilinx.rapidwright.router;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.PriorityQueue;
 
 import com.xilinx.rapidwright.design.Design;
@@ -64,6 +66,19 @@ public abstract class AbstractRouter{
 	protected PriorityQueue<RouteNode> queue;
 	/** Some nodes are reserved for particular routes to minimize routing conflicts later */
 	protected HashMap<Net,ArrayList<RouteNode>> reservedNodes;
+	/** Optional compact (int-indexed) routing graph, null if routing on RouteNode objects */
+	protected RouteNodeGraph routingGraph;
+	
+	/** Optional A* lookahead used to estimate the cost to reach the sink, null if disabled */
+	protected RouterLookahead lookahead;
+	
+	/** A flag indicating if node costs include present sharing and history congestion costs */
+	protected boolean negotiatedCongestion = false;
+	/** Cost factor applied to each other net currently occupying a node */
+	protected float presentCongestionFactor = 1.0f;
+	/** Accumulated congestion history cost of each node that has been overused, kept in 
+	 *  the {@link #routingGraph} instead when routing on it */
+	protected HashMap<RouteNode,Integer> nodeHistory;
 
 	/** PIPs that are part of the most recently routed connection */
 	protected ArrayList<PIP> pipList;
@@ -109,6 +124,7 @@ public abstract class AbstractRouter{
 		usedClkResources = new HashSet<Integer>();
 		usedNodesMap = new HashMap<RouteNode, LinkedList<Net>>();
 		reservedNodes = new HashMap<Net, ArrayList<RouteNode>>();
+		nodeHistory = new HashMap<RouteNode, Integer>();
 		// Create a compare function based on node's cost
 		queue = new PriorityQueue<RouteNode>(16, new Comparator<RouteNode>() {
 			public int compare(RouteNode i, RouteNode j) {return i.getCost() - j.getCost();}});
@@ -150,8 +166,11 @@ public abstract class AbstractRouter{
 	 */
 	protected RouteNode setWireAsUnused(Tile t, int wire, Net net){
 		RouteNode n = new RouteNode(t, wire, null, 0);
-		usedNodes.remove(n);
-		removeUsedWireMapping(net, n);		
+		removeUsedWireMapping(net, n);
+		if(!negotiatedCongestion || !usedNodesMap.containsKey(n)){
+			// When sharing is allowed, the node stays used while other nets occupy it
+			markNodeUnused(n);
+		}
 		return n;
 	}
 	
@@ -245,6 +264,56 @@ public abstract class AbstractRouter{
 	
 	public void markNodeUsed(RouteNode n){
 		usedNodes.add(n);
+		if(routingGraph != null){
+			routingGraph.setUsed(routingGraph.getNodeId(n), true);
+		}
+	}
+	
+	public void markNodeUnused(RouteNode n){
+		usedNodes.remove(n);
+		if(routingGraph != null){
+			int id = routingGraph.lookupNodeId(n.getTile(), n.getWire());
+			if(id != RouteNodeGraph.NULL_ID) routingGraph.setUsed(id, false);
+		}
+	}
+	
+	public void markNodesUsed(Collection<RouteNode> nodes){
+		for(RouteNode n : nodes){
+			markNodeUsed(n);
+		}
+	}
+	
+	public void markNodesUnused(Collection<RouteNode> nodes){
+		for(RouteNode n : nodes){
+			markNodeUnused(n);
+		}
+	}
+	
+	/**
+	 * Enables or disables routing on the compact int-indexed routing graph 
+	 * ({@link RouteNodeGraph}).  When enabled, connection expansion does not allocate 
+	 * {@link RouteNode} objects and visited/used lookups are array accesses. 
+	 * @param useRoutingGraph True to route on the compact graph, false to route on 
+	 * RouteNode objects (default).
+	 */
+	public void setUseRoutingGraph(boolean useRoutingGraph){
+		if(!useRoutingGraph){
+			routingGraph = null;
+			return;
+		}
+		if(routingGraph != null) return;
+		routingGraph = new RouteNodeGraph();
+		for(RouteNode n : usedNodes){
+			routingGraph.setUsed(routingGraph.getNodeId(n), true);
+		}
+	}
+	
+	public boolean isUsingRoutingGraph(){
+		return routingGraph != null;
+	}
+	
+	public RouteNodeGraph getRoutingGraph(){
+		return routingGraph;
 	}
 	
 	/**
@@ -301,11 +370,14 @@ public abstract class AbstractRouter{
 			y = switchMatrixSink.getTile().getTileYCoordinate() - routeNode.getTile().getTileYCoordinate();			
 		}
 		
-		// ABS
-		if(x < 0) x = -x;
-		if(y < 0) y = -y;
-
-		routeNode.setCost(((x + y) << 1) + routeNode.getLevel() + routeNode.getHistory());
+		int distanceCost = getDistanceCost(routeNode.getTile(), routeNode.getWire(), x, y);
+		if(negotiatedCongestion){
+			routeNode.setHistory(getNodeHistory(routeNode));
+		}
+		routeNode.setCost(distanceCost + routeNode.getLevel() + routeNode.getHistory());
+		if(negotiatedCongestion && usedNodes.contains(routeNode)){
+			routeNode.setCost(routeNode.getCost() + getPresentCongestionCost(routeNode));
+		}
 		
 		// Favor clock wires when routing the clock tree
 		if(isCurrSinkAClkWire && routeNode.getWireName().contains("CLK") && !isRouteThrough){
@@ -327,6 +399,126 @@ public abstract class AbstractRouter{
 		}
 	}
 
+	/**
+	 * Estimates the remaining cost to reach the sink from a node.  By default this is 
+	 * twice the Manhattan distance, if the lookahead is enabled (see 
+	 * {@link #setUseLookahead(boolean)}) the precomputed minimum hop count for the wire
+	 * type and offset is used instead when available.
+	 * @param tile Tile of the node.
+	 * @param wire Wire of the node.
+	 * @param x Tile X coordinate of the sink minus that of the node.
+	 * @param y Tile Y coordinate of the sink minus that of the node.
+	 * @return The estimated cost to reach the sink.
+	 */
+	protected int getDistanceCost(Tile tile, int wire, int x, int y){
+		if(lookahead != null){
+			int hops = lookahead.getCost(tile, wire, x, y);
+			if(hops >= 0) return hops << 1;
+		}
+		// ABS
+		if(x < 0) x = -x;
+		if(y < 0) y = -y;
+		return (x + y) << 1;
+	}
+	
+	/**
+	 * Enables or disables the A* lookahead cost estimate ({@link RouterLookahead}).  
+	 * The lookahead of the device is built (or loaded from its cached file) the first
+	 * time it is enabled.
+	 * @param useLookahead True to use the lookahead, false to use Manhattan distance (default).
+	 */
+	public void setUseLookahead(boolean useLookahead){
+		lookahead = useLookahead ? RouterLookahead.getLookahead(dev) : null;
+	}
+	
+	public boolean isUsingLookahead(){
+		return lookahead != null;
+	}
+	
+	/**
+	 * Cost function for routing on the {@link RouteNodeGraph}, equivalent to 
+	 * {@link #setCost(RouteNode, boolean)} for non-clock sinks.
+	 * @param id The id of the node in the routing graph to calculate and set its cost.
+	 * @param switchMatrixSinkId The id of the switch matrix sink, or 
+	 * {@link RouteNodeGraph#NULL_ID} if there is none.
+	 */
+	protected void setCost(int id, int switchMatrixSinkId){
+		Tile target = (switchMatrixSink == null || foundSwitchMatrixSink) ? 
+				currSink.getTile() : switchMatrixSink.getTile(); 
+		Tile tile = routingGraph.getTile(id);
+		int x = target.getTileXCoordinate() - tile.getTileXCoordinate();
+		int y = target.getTileYCoordinate() - tile.getTileYCoordinate();
+		int distanceCost = getDistanceCost(tile, routingGraph.getWire(id), x, y);
+		
+		routingGraph.setCost(id, distanceCost + routingGraph.getLevel(id) + routingGraph.getHistory(id));
+		if(negotiatedCongestion && routingGraph.isUsed(id)){
+			tempNode.setTileAndWire(tile, routingGraph.getWire(id));
+			routingGraph.setCost(id, routingGraph.getCost(id) + getPresentCongestionCost(tempNode));
+		}
+		
+		if(id == switchMatrixSinkId){
+			foundSwitchMatrixSink = true;
+			routingGraph.clearQueue();
+			routingGraph.setCost(id, routingGraph.getCost(id) - 1100);
+			routingGraph.setLevel(id, -15);
+		}
+	}
+	
+	/**
+	 * Gets the present sharing cost of a node, which grows with the number of other
+	 * nets currently occupying it and the present congestion factor.
+	 * @param routeNode The node to examine.
+	 * @return The present sharing cost, 0 if no other net uses the node.
+	 */
+	protected int getPresentCongestionCost(RouteNode routeNode){
+		LinkedList<Net> users = usedNodesMap.get(routeNode);
+		if(users == null) return 0;
+		int occupancy = users.contains(currNet) ? users.size() - 1 : users.size();
+		return (int)(presentCongestionFactor * occupancy);
+	}
+	
+	/**
+	 * Gets the accumulated congestion history cost of a node.
+	 * @param routeNode The node to examine.
+	 * @return The history cost, 0 if the node has never been overused.
+	 */
+	protected int getNodeHistory(RouteNode routeNode){
+		if(routingGraph != null){
+			int id = routingGraph.lookupNodeId(routeNode.getTile(), routeNode.getWire());
+			return id == RouteNodeGraph.NULL_ID ? 0 : routingGraph.getHistory(id);
+		}
+		Integer history = nodeHistory.get(routeNode);
+		return history == null ? 0 : history;
+	}
+	
+	/**
+	 * Increases the history cost of a node that is overused by the 
+	 * provided amount.
+	 * @param routeNode The overused node.
+	 * @param increment The amount to add to the node's history cost.
+	 */
+	protected void addNodeHistory(RouteNode routeNode, int increment){
+		if(routingGraph != null){
+			int id = routingGraph.getNodeId(routeNode);
+			routingGraph.setHistory(id, routingGraph.getHistory(id) + increment);
+			return;
+		}
+		nodeHistory.put(routeNode, getNodeHistory(routeNode) + increment);
+	}
+	
+	/**
+	 * Gets all nodes that are currently occupied by more than one net.
+	 * @return The list of overused nodes.
+	 */
+	public List<RouteNode> getOverusedNodes(){
+		List<RouteNode> overused = new ArrayList<>();
+		for(Entry<RouteNode,LinkedList<Net>> e : usedNodesMap.entrySet()){
+			if(e.getValue().size() > 1){
+				overused.add(e.getKey());
+			}
+		}
+		return overused;
+	}
 	
 	/**
 	 * Checks each node in a PIP to see if there are other nodes that should be
@@ -337,12 +529,35 @@ public abstract class AbstractRouter{
 	 * the usedNodesMap should not be updated
 	 */
 	protected void markIntermediateNodesAsUsed(PIP pip, Net currentNet){
+		for(Wire w : getIntermediateWires(pip)){
+			RouteNode tmp = setWireAsUsed(w.getTile(), w.getWireIndex(), currentNet);
+			if(currentNet != null) addUsedWireMapping(currentNet, tmp);
+		}
+	}
+	
+	/**
+	 * Reverses {@link #markIntermediateNodesAsUsed(PIP, Net)} when a net is ripped up.
+	 * @param pip The pip to check intermediate used nodes for
+	 * @param currentNet The net currently associated with the intermediate nodes
+	 */
+	protected void markIntermediateNodesAsUnused(PIP pip, Net currentNet){
+		for(Wire w : getIntermediateWires(pip)){
+			setWireAsUnused(w.getTile(), w.getWireIndex(), currentNet);
+		}
+	}
+	
+	/**
+	 * Gets the wires of the nodes in a PIP that are external to the PIP's tile.
+	 * @param pip The pip to examine
+	 * @return The list of wires outside of the PIP's tile that are part of the PIP's nodes.
+	 */
+	protected List<Wire> getIntermediateWires(PIP pip){
+		List<Wire> intermediates = new ArrayList<>();
 		List<Wire> wires = pip.getTile().getWireConnections(pip.getEndWireIndex());
 		if(wires != null && wires.size() > 1){
 			for(Wire w : wires){
 				if(!w.getTile().equals(pip.getTile())){
-					RouteNode tmp = setWireAsUsed(w.getTile(), w.getWireIndex(), currentNet);
-					if(currentNet != null) addUsedWireMapping(currentNet, tmp);
+					intermediates.add(w);
 				}
 			}
 		}
@@ -352,12 +567,12 @@ public abstract class AbstractRouter{
 			if(wires != null && wires.size() > 1){
 				for(Wire w : wires){
 					if(!w.getTile().equals(pip.getTile())){
-						RouteNode tmp = setWireAsUsed(w.getTile(), w.getWireIndex(), currentNet);
-						if(currentNet != null) addUsedWireMapping(currentNet, tmp);
+						intermediates.add(w);
 					}
 				}
 			}
 		}
+		return intermediates;
 	}
 
 	public static boolean isClkPin(SitePinInst sinkPin){
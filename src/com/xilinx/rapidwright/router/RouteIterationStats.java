@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+/**
+ * Captures the statistics of a single rip-up and re-route iteration of the
+ * negotiated congestion mode of the {@link Router}.
+ *
+ * Created on: Oct 18, 2020
+ */
+public class RouteIterationStats {
+
+	private int iteration;
+
+	private int netsRouted;
+
+	private int connectionsRouted;
+
+	private int overusedNodes;
+
+	private int failedConnections;
+
+	private float presentCongestionFactor;
+
+	private long runtimeMillis;
+
+	public RouteIterationStats(int iteration, int netsRouted, int connectionsRouted,
+			int overusedNodes, int failedConnections, float presentCongestionFactor,
+			long runtimeMillis){
+		this.iteration = iteration;
+		this.netsRouted = netsRouted;
+		this.connectionsRouted = connectionsRouted;
+		this.overusedNodes = overusedNodes;
+		this.failedConnections = failedConnections;
+		this.presentCongestionFactor = presentCongestionFactor;
+		this.runtimeMillis = runtimeMillis;
+	}
+
+	/**
+	 * @return The iteration number (0 is the initial routing pass)
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * @return Number of nets (re-)routed during the iteration
+	 */
+	public int getNetsRouted() {
+		return netsRouted;
+	}
+
+	/**
+	 * @return Number of sink connections (re-)routed during the iteration
+	 */
+	public int getConnectionsRouted() {
+		return connectionsRouted;
+	}
+
+	/**
+	 * @return Number of nodes used by more than one net at the end of the iteration
+	 */
+	public int getOverusedNodes() {
+		return overusedNodes;
+	}
+
+	/**
+	 * @return Number of connections that could not be routed during the iteration
+	 */
+	public int getFailedConnections() {
+		return failedConnections;
+	}
+
+	/**
+	 * @return The present congestion cost factor used during the iteration
+	 */
+	public float getPresentCongestionFactor() {
+		return presentCongestionFactor;
+	}
+
+	/**
+	 * @return Runtime of the iteration in milliseconds
+	 */
+	public long getRuntimeMillis() {
+		return runtimeMillis;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("Iteration %3d: nets=%7d conns=%8d overused=%7d failed=%5d presFac=%8.2f %7dms",
+				iteration, netsRouted, connectionsRouted, overusedNodes, failedConnections,
+				presentCongestionFactor, runtimeMillis);
+	}
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.Wire;
+
+/**
+ * A compact routing resource graph to be used by the {@link Router} in place of
+ * allocating a {@link RouteNode} for every candidate wire.  Each node (tile and wire
+ * combination) is assigned a dense integer id the first time it is encountered and all
+ * routing state (cost, parent, level, history, visited and used) is kept in primitive
+ * arrays indexed by that id.  The fan-out of each node is cached on first expansion so
+ * that subsequent expansions do not allocate.  The visited state is reset between
+ * connections by advancing an epoch counter rather than clearing a set.
+ *
+ * Created on: Oct 18, 2020
+ */
+public class RouteNodeGraph {
+
+	/** Sentinel id used for nodes that have no parent */
+	public static final int NULL_ID = -1;
+	/** Edge flag indicating the edge is a PIP inside the tile of the parent node */
+	public static final byte EDGE_PIP = 0x1;
+	/** Edge flag indicating the edge needs site usage checks before being followed */
+	public static final byte EDGE_SITE_CHECK = 0x2;
+	/** Edge flag indicating the edge is a route-thru */
+	public static final byte EDGE_ROUTE_THRU = 0x4;
+
+	private static final int[] NO_CHILDREN = new int[0];
+
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	/** Maps each tile to the ids of its wires, ids are allocated lazily (-1 means unassigned) */
+	private HashMap<Tile,int[]> tileWireIds;
+
+	private Tile[] tiles;
+
+	private int[] wires;
+
+	private int[] cost;
+
+	private int[] parent;
+
+	private int[] level;
+
+	private int[] history;
+
+	private int[] visited;
+
+	private int[] source;
+
+	private boolean[] used;
+
+	/** Cached downhill node ids of each node, null until the node is first expanded */
+	private int[][] children;
+
+	/** Flags (see EDGE_* constants) for each entry in children */
+	private byte[][] childFlags;
+
+	/** Number of ids allocated so far */
+	private int size;
+
+	/** Current search epoch, a node is visited if visited[id] == visitEpoch */
+	private int visitEpoch;
+
+	/** Current source epoch, a node is a source if source[id] == sourceEpoch */
+	private int sourceEpoch;
+
+	/** Binary min-heap of node ids ordered by cost */
+	private int[] heap;
+
+	private int heapSize;
+
+	public RouteNodeGraph(){
+		tileWireIds = new HashMap<>();
+		tiles = new Tile[INITIAL_CAPACITY];
+		wires = new int[INITIAL_CAPACITY];
+		cost = new int[INITIAL_CAPACITY];
+		parent = new int[INITIAL_CAPACITY];
+		level = new int[INITIAL_CAPACITY];
+		history = new int[INITIAL_CAPACITY];
+		visited = new int[INITIAL_CAPACITY];
+		source = new int[INITIAL_CAPACITY];
+		used = new boolean[INITIAL_CAPACITY];
+		children = new int[INITIAL_CAPACITY][];
+		childFlags = new byte[INITIAL_CAPACITY][];
+		heap = new int[1024];
+		size = 0;
+		visitEpoch = 1;
+		sourceEpoch = 1;
+	}
+
+	/**
+	 * Gets the id of the node represented by the tile and wire, allocating
+	 * a new id if it has not been seen before.
+	 * @param tile The tile of the node.
+	 * @param wire The wire index of the node in the tile.
+	 * @return The dense id of the node.
+	 */
+	public int getNodeId(Tile tile, int wire){
+		int[] ids = tileWireIds.get(tile);
+		if(ids == null){
+			ids = new int[Math.max(tile.getWireCount(), wire+1)];
+			Arrays.fill(ids, NULL_ID);
+			tileWireIds.put(tile, ids);
+		}else if(wire >= ids.length){
+			int oldLength = ids.length;
+			ids = Arrays.copyOf(ids, wire+1);
+			Arrays.fill(ids, oldLength, ids.length, NULL_ID);
+			tileWireIds.put(tile, ids);
+		}
+		int id = ids[wire];
+		if(id == NULL_ID){
+			id = allocateId(tile, wire);
+			ids[wire] = id;
+		}
+		return id;
+	}
+
+	public int getNodeId(RouteNode n){
+		return getNodeId(n.getTile(), n.getWire());
+	}
+
+	/**
+	 * Looks up the id of the node without allocating a new one.
+	 * @return The node id or {@link #NULL_ID} if the node has not been seen yet.
+	 */
+	public int lookupNodeId(Tile tile, int wire){
+		int[] ids = tileWireIds.get(tile);
+		if(ids == null || wire < 0 || wire >= ids.length) return NULL_ID;
+		return ids[wire];
+	}
+
+	private int allocateId(Tile tile, int wire){
+		if(size == tiles.length){
+			grow();
+		}
+		int id = size++;
+		tiles[id] = tile;
+		wires[id] = wire;
+		parent[id] = NULL_ID;
+		return id;
+	}
+
+	private void grow(){
+		int capacity = tiles.length << 1;
+		tiles = Arrays.copyOf(tiles, capacity);
+		wires = Arrays.copyOf(wires, capacity);
+		cost = Arrays.copyOf(cost, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		level = Arrays.copyOf(level, capacity);
+		history = Arrays.copyOf(history, capacity);
+		visited = Arrays.copyOf(visited, capacity);
+		source = Arrays.copyOf(source, capacity);
+		used = Arrays.copyOf(used, capacity);
+		children = Arrays.copyOf(children, capacity);
+		childFlags = Arrays.copyOf(childFlags, capacity);
+	}
+
+	/**
+	 * Gets the downhill node ids of the provided node.  The fan-out is
+	 * computed from the device on the first call and cached afterwards.
+	 * @param id The node to expand.
+	 * @return The array of downhill node ids (empty if the node has no connections).
+	 */
+	public int[] getChildren(int id){
+		int[] c = children[id];
+		if(c == null){
+			c = buildChildren(id);
+		}
+		return c;
+	}
+
+	/**
+	 * Gets the edge flags (see EDGE_* constants) for each child of the node,
+	 * in the same order as {@link #getChildren(int)}.
+	 */
+	public byte[] getChildFlags(int id){
+		getChildren(id);
+		return childFlags[id];
+	}
+
+	private int[] buildChildren(int id){
+		Tile tile = tiles[id];
+		List<Wire> conns = tile.getWireConnections(wires[id]);
+		if(conns == null || conns.isEmpty()){
+			children[id] = NO_CHILDREN;
+			childFlags[id] = new byte[0];
+			return NO_CHILDREN;
+		}
+		boolean isSwitchBox = tile.getName().startsWith("INT");
+		int[] c = new int[conns.size()];
+		byte[] flags = new byte[conns.size()];
+		for(int i=0; i < c.length; i++){
+			Wire w = conns.get(i);
+			// getNodeId() may grow the arrays, so don't cache them locally
+			c[i] = getNodeId(w.getTile(), w.getWireIndex());
+			byte flag = 0;
+			boolean sameTile = w.getTile().equals(tile);
+			if(sameTile && w.isEndPIPWire()) flag |= EDGE_PIP;
+			if(w.isRouteThru()) flag |= EDGE_ROUTE_THRU | EDGE_SITE_CHECK;
+			if(sameTile && !isSwitchBox) flag |= EDGE_SITE_CHECK;
+			flags[i] = flag;
+		}
+		children[id] = c;
+		childFlags[id] = flags;
+		return c;
+	}
+
+	/**
+	 * Checks if there is a PIP inside the tile of the parent node that drives the child node.
+	 */
+	public boolean isPIPEdge(int parentId, int childId){
+		int[] c = getChildren(parentId);
+		byte[] flags = childFlags[parentId];
+		for(int i=0; i < c.length; i++){
+			if(c[i] == childId && (flags[i] & EDGE_PIP) != 0){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Starts a new search, all nodes become unvisited and no longer sources.
+	 */
+	public void startNewSearch(){
+		visitEpoch++;
+		sourceEpoch++;
+		if(visitEpoch == Integer.MAX_VALUE){
+			Arrays.fill(visited, 0);
+			visitEpoch = 1;
+		}
+		if(sourceEpoch == Integer.MAX_VALUE){
+			Arrays.fill(source, 0);
+			sourceEpoch = 1;
+		}
+		heapSize = 0;
+	}
+
+	public boolean isVisited(int id){
+		return visited[id] == visitEpoch;
+	}
+
+	public void setVisited(int id){
+		visited[id] = visitEpoch;
+	}
+
+	public boolean isSource(int id){
+		return source[id] == sourceEpoch;
+	}
+
+	public void setSource(int id){
+		source[id] = sourceEpoch;
+	}
+
+	public boolean isUsed(int id){
+		return used[id];
+	}
+
+	public void setUsed(int id, boolean isUsed){
+		used[id] = isUsed;
+	}
+
+	public int getCost(int id){
+		return cost[id];
+	}
+
+	public void setCost(int id, int cost){
+		this.cost[id] = cost;
+	}
+
+	public int getParent(int id){
+		return parent[id];
+	}
+
+	public void setParent(int id, int parentId){
+		parent[id] = parentId;
+	}
+
+	public int getLevel(int id){
+		return level[id];
+	}
+
+	public void setLevel(int id, int level){
+		this.level[id] = level;
+	}
+
+	public int getHistory(int id){
+		return history[id];
+	}
+
+	public void setHistory(int id, int history){
+		this.history[id] = history;
+	}
+
+	public Tile getTile(int id){
+		return tiles[id];
+	}
+
+	public int getWire(int id){
+		return wires[id];
+	}
+
+	/**
+	 * Number of node ids allocated so far.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Creates a {@link RouteNode} view of the node, for use with code that still
+	 * operates on objects (this allocates and should be kept out of inner loops).
+	 */
+	public RouteNode getRouteNode(int id){
+		RouteNode n = new RouteNode(tiles[id], wires[id]);
+		n.setCost(cost[id]);
+		n.setLevel(level[id]);
+		n.setHistory(history[id]);
+		return n;
+	}
+
+	// Priority queue of node ids, ordered by lowest cost
+
+	public boolean isQueueEmpty(){
+		return heapSize == 0;
+	}
+
+	public void clearQueue(){
+		heapSize = 0;
+	}
+
+	public int peekQueue(){
+		return heap[0];
+	}
+
+	public void addToQueue(int id){
+		if(heapSize == heap.length){
+			heap = Arrays.copyOf(heap, heap.length << 1);
+		}
+		int i = heapSize++;
+		int c = cost[id];
+		while(i > 0){
+			int p = (i - 1) >>> 1;
+			int pid = heap[p];
+			if(cost[pid] <= c) break;
+			heap[i] = pid;
+			i = p;
+		}
+		heap[i] = id;
+	}
+
+	public int removeFromQueue(){
+		int top = heap[0];
+		int last = heap[--heapSize];
+		if(heapSize > 0){
+			int c = cost[last];
+			int i = 0;
+			int half = heapSize >>> 1;
+			while(i < half){
+				int child = (i << 1) + 1;
+				int right = child + 1;
+				if(right < heapSize && cost[heap[right]] < cost[heap[child]]){
+					child = right;
+				}
+				if(c <= cost[heap[child]]) break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+		}
+		return top;
+	}
+}
@@ -25,16 +25,22 @@
 package com.xilinx.rapidwright.router;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.xilinx.rapidwright.design.Cell;
 import com.xilinx.rapidwright.design.Design;
@@ -81,11 +87,20 @@ public class Router extends AbstractRouter {
 	private static HashMap<String,String> clkSitePIPNames;
 	private static HashSet<String> lutOutputPinNames;
 	
-	private static boolean allowWireOverlap = false;
+	private boolean allowWireOverlap = false;
 	
 	public static boolean ENABLE_RIPUP = false; // TODO - This mode is WIP
 	
 	public static boolean ENABLE_LUT_INPUT_SWAP = true;
+	
+	/** Enables PathFinder-style negotiated congestion (rip-up and re-route) in routeDesign() */
+	public static boolean ENABLE_NEGOTIATED_CONGESTION = false;
+	/** Maximum number of rip-up and re-route iterations in negotiated congestion mode */
+	public static int MAX_NEGOTIATION_ITERATIONS = 50;
+	/** Growth factor of the present congestion cost factor applied after each iteration */
+	public static float PRESENT_CONGESTION_MULTIPLIER = 1.5f;
+	/** Amount of history cost added to a node per overuse after each iteration */
+	public static int HISTORY_CONGESTION_FACTOR = 1;
 
 	
 	private PBlock routingPblock;
@@ -94,9 +109,34 @@ public class Router extends AbstractRouter {
 	private boolean isCurrNetClk;
 	
 	private ArrayList<SitePinInst> failedRoutes = new ArrayList<SitePinInst>();
+	
+	/** Region this router is restricted to when routing a partition in parallel, null if unrestricted */
+	private RoutingPartition routingPartition;
+	
+	/** Set on partition workers: routes are only computed into {@link #computedPIPs}, the 
+	 *  design (nets, pins, site PIPs and LUT pin mappings) is left untouched */
+	private boolean computeOnly = false;
+	
+	/** Set when computing a net's routes would have required changing the design */
+	private boolean designChangeNeeded;
+	
+	/** PIPs found for each net when {@link #computeOnly} is set */
+	private HashMap<Net,HashSet<PIP>> computedPIPs;
+	
+	/** Value of {@link #ENABLE_RIPUP} for this router, toggled while re-routing ripped-up nets */
+	private boolean ripupEnabled = ENABLE_RIPUP;
+	
+	/** Statistics of each routing iteration in negotiated congestion mode */
+	private ArrayList<RouteIterationStats> iterationStats = new ArrayList<RouteIterationStats>();
+	
+	/** Signal nets routed in negotiated congestion mode, the only nets that may share nodes */
+	private HashSet<Net> negotiableNets = new HashSet<Net>();
 
 	private boolean supressWarningsErrors = false;
 	
+	/** Prints the statistics of each negotiated congestion iteration */
+	public boolean verbose = false;
+	
 	/** Nets found to conflict with a particular net that will be ripped-up and re-routed */
 	private HashSet<RouteNode> conflictNodes;
 	
@@ -186,7 +226,10 @@ public class Router extends AbstractRouter {
 			// Only allow over subscribed if the net is routed with this router
 			//   We don't want to rip-up nets from pre-compiled blocks, these have
 			//   already satisfied a timing constraint and should remain intact.
-			return allowWireOverlap && usedNodesMap.get(n)!= null;
+			return allowWireOverlap && canShareNode(n);
+		}
+		if(routingPartition != null && !routingPartition.contains(n.getTile())){
+			return false;
 		}
 		if(routingPblock != null){
 			return routingPblock.getAllTiles().contains(n.getTile());
@@ -195,6 +238,24 @@ public class Router extends AbstractRouter {
 	}
 	
 	
+	/**
+	 * Checks if a used node may also be used by the current net.  In negotiated congestion 
+	 * mode, static, clock and pre-routed nets are never ripped up, so their nodes are 
+	 * hard-blocked and only negotiable signal nets share nodes with each other.
+	 * @param n The used node.
+	 * @return True if the node is used by nets routed with this router that can share it.
+	 */
+	private boolean canShareNode(RouteNode n){
+		LinkedList<Net> users = usedNodesMap.get(n);
+		if(users == null) return false;
+		if(!negotiatedCongestion) return true;
+		if(!negotiableNets.contains(currNet)) return false;
+		for(Net user : users){
+			if(!negotiableNets.contains(user)) return false;
+		}
+		return true;
+	}
+	
 	public static final int LONG_LINE_THRESHOLD = 11;
 	
 	/**
@@ -205,6 +266,10 @@ public class Router extends AbstractRouter {
 	 * 
 	 */
 	protected void routeConnection(){
+		if(routingGraph != null && !isCurrSinkAClkWire){
+			routeConnectionOnGraph();
+			return;
+		}
 		prepareForRoutingConnection();
 
 		// Check if we should route on just longs
@@ -236,6 +301,28 @@ public class Router extends AbstractRouter {
 		totalNodesProcessed += nodesProcessed;
 	}
 	
+	/**
+	 * Equivalent of {@link #routeConnection()} when routing on the compact 
+	 * {@link RouteNodeGraph} (see {@link #setUseRoutingGraph(boolean)}).
+	 */
+	protected void routeConnectionOnGraph(){
+		prepareForRoutingConnectionOnGraph(null);
+		if(routingGraph.isQueueEmpty()) return;
+		
+		// Check if we should route on just longs
+		Tile bestSrc = routingGraph.getTile(routingGraph.peekQueue());
+		int x = Math.abs(bestSrc.getTileXCoordinate() - currSink.getTile().getTileXCoordinate());
+		int y = Math.abs(bestSrc.getTileYCoordinate() - currSink.getTile().getTileYCoordinate());
+		if(x > LONG_LINE_THRESHOLD || y > LONG_LINE_THRESHOLD){
+			int bestSrcId = routingGraph.peekQueue();
+			RouteNode src = new RouteNode(bestSrc, routingGraph.getWire(bestSrcId));
+			prepareForRoutingConnectionOnGraph(getLongLinePath(src));
+		}
+		
+		routeOnGraph();
+		totalNodesProcessed += nodesProcessed;
+	}
+	
 	public RouteNode findSwitchBoxInput(RouteNode src){		
 		RouteNode curr = src;
 		Queue<RouteNode> q = new LinkedList<RouteNode>();
@@ -586,16 +673,7 @@ public class Router extends AbstractRouter {
 						currPathNode = currPathNode.getParent();
 					}
 					// Include path (if any) from last switch box pin 
-					if(pathFromSinkToSwitchBox != null && pathFromSinkToSwitchBox.size() > 1){
-						RouteNode prev = null;
-						for(RouteNode n : pathFromSinkToSwitchBox){
-							if(prev != null && prev.getTile().equals(n.getTile())) {
-								PIP newPIP = prev.getTile().getPIP(prev.getWire(), n.getWire());
-								pipList.add(newPIP);
-							}
-							prev = n;
-						}						
-					}
+					addPathFromSinkToSwitchBox();
 					
 					// We are now done with the routing of this connection
 					successfulRoute = true;
@@ -612,50 +690,8 @@ public class Router extends AbstractRouter {
 					int currWire = w.getWireIndex();
 
 					// Check if is a routethru, check if the site is consumed by something else
-					// If a cell has been placed next to the first Site pin connection, we'll
-					// assume this is not available
-					if(currNode.getTile().equals(w.getTile()) && !currNode.getTile().getName().startsWith("INT")){
-						// Look for possible route-thru conflict
-						SitePin sp = currNode.getTile().getSitePinFromWire(currNode.getWire());
-						// Check to make sure the site pin we found is not the source of the net
-						if(sp != null && !sp.getSite().equals(currNet.getSource().getSite()) 
-						        && !sp.getPinName().equals(currNet.getSource().getName())){
-							for(BELPin p : sp.getBELPin().getSiteConns()){
-								SiteInst si = design.getSiteInstFromSite(sp.getSite());
-								if(si != null){
-									if( si.getCell(p.getBEL().getName()) != null ) continue nextNode; 
-								}
-							}
-						}
-					}
-					if(w.isRouteThru()){
-						SitePin wsp = w.getSitePin();
-						
-						// TODO Let's not support LUT route-thrus for now
-						if(wsp != null && Utils.isSLICE(wsp.getSite().getSiteTypeEnum())){
-							continue nextNode;
-						}
-						SitePin pin = w.getSitePin();
-						if(pin != null){
-							SiteInst si = design.getSiteInstFromSite(pin.getSite());
-							if(si != null){
-								for(BELPin epin : pin.getBELPin().getSiteConns()){
-									BEL et = epin.getBEL();
-									if(et.getBELClass() == BELClass.RBEL){
-										SitePIP sp = si.getUsedSitePIP(epin);
-										if(sp != null){
-											for(BELPin src : sp.getInputPin().getSiteConns()){
-												if(!src.isOutput()) continue;
-												Cell possibleCell = si.getCell(sp.getBELName());
-												if(possibleCell != null) continue nextNode;
-											}
-										}
-									}else{
-										if(et != null && si.getCell(et.getName()) != null) continue nextNode;
-									}
-								}
-							}							
-						}
+					if(isBlockedBySiteUsage(currNode.getTile(), currNode.getWire(), w)){
+						continue nextNode;
 					}
 
 					// Don't follow INT tile sinks 
@@ -692,6 +728,222 @@ public class Router extends AbstractRouter {
 	
 
 	
+	/**
+	 * Checks if following the wire w from the current node would conflict with
+	 * a site that is already occupied by placed cells (route-thrus and site pin 
+	 * connections outside of switch boxes).
+	 * @param currTile Tile of the node being expanded.
+	 * @param currWire Wire of the node being expanded.
+	 * @param w The candidate wire downhill of the current node.
+	 * @return True if the wire should not be followed, false otherwise.
+	 */
+	private boolean isBlockedBySiteUsage(Tile currTile, int currWire, Wire w){
+		// If a cell has been placed next to the first Site pin connection, we'll
+		// assume this is not available
+		if(currTile.equals(w.getTile()) && !currTile.getName().startsWith("INT")){
+			// Look for possible route-thru conflict
+			SitePin sp = currTile.getSitePinFromWire(currWire);
+			// Check to make sure the site pin we found is not the source of the net
+			if(sp != null && !sp.getSite().equals(currNet.getSource().getSite()) 
+			        && !sp.getPinName().equals(currNet.getSource().getName())){
+				for(BELPin p : sp.getBELPin().getSiteConns()){
+					SiteInst si = design.getSiteInstFromSite(sp.getSite());
+					if(si != null){
+						if( si.getCell(p.getBEL().getName()) != null ) return true; 
+					}
+				}
+			}
+		}
+		if(w.isRouteThru()){
+			SitePin wsp = w.getSitePin();
+			
+			// TODO Let's not support LUT route-thrus for now
+			if(wsp != null && Utils.isSLICE(wsp.getSite().getSiteTypeEnum())){
+				return true;
+			}
+			SitePin pin = w.getSitePin();
+			if(pin != null){
+				SiteInst si = design.getSiteInstFromSite(pin.getSite());
+				if(si != null){
+					for(BELPin epin : pin.getBELPin().getSiteConns()){
+						BEL et = epin.getBEL();
+						if(et.getBELClass() == BELClass.RBEL){
+							SitePIP sp = si.getUsedSitePIP(epin);
+							if(sp != null){
+								for(BELPin src : sp.getInputPin().getSiteConns()){
+									if(!src.isOutput()) continue;
+									Cell possibleCell = si.getCell(sp.getBELName());
+									if(possibleCell != null) return true;
+								}
+							}
+						}else{
+							if(et != null && si.getCell(et.getName()) != null) return true;
+						}
+					}
+				}							
+			}
+		}
+		return false;
+	}
+	
+	private boolean canUseNode(int id){
+		if(routingGraph.isUsed(id)){
+			if(!allowWireOverlap) return false;
+			tempNode.setTileAndWire(routingGraph.getTile(id), routingGraph.getWire(id));
+			return canShareNode(tempNode);
+		}
+		if(routingPartition != null && !routingPartition.contains(routingGraph.getTile(id))){
+			return false;
+		}
+		if(routingPblock != null){
+			return routingPblock.getAllTiles().contains(routingGraph.getTile(id));
+		}
+		return true;
+	}
+	
+	/**
+	 * Seeds the routing graph queue with the current sources and (optionally) 
+	 * a long line path leading towards the sink.
+	 * @param longLineNodes Path of nodes (sink first) found by the long line router, 
+	 * or null if none.
+	 */
+	protected void prepareForRoutingConnectionOnGraph(List<RouteNode> longLineNodes){
+		pipList = new ArrayList<PIP>();
+		routingGraph.startNewSearch();
+		nodesProcessed = 0;
+		successfulRoute = false;
+		foundSwitchMatrixSink = false;
+		int switchMatrixSinkId = switchMatrixSink == null ? 
+				RouteNodeGraph.NULL_ID : routingGraph.getNodeId(switchMatrixSink);
+		for(RouteNode src : currSources){
+			routingGraph.setSource(routingGraph.getNodeId(src));
+		}
+		for(RouteNode src : currSources){
+			int id = routingGraph.getNodeId(src);
+			if(routingGraph.getChildren(id).length == 0) continue;
+			routingGraph.setParent(id, RouteNodeGraph.NULL_ID);
+			routingGraph.setLevel(id, src.getLevel());
+			setCost(id, switchMatrixSinkId);
+			// Queued nodes are marked visited so their cost is not changed while in the queue
+			routingGraph.setVisited(id);
+			routingGraph.addToQueue(id);
+		}
+		if(longLineNodes == null) return;
+		for(int i=longLineNodes.size()-1; i >= 0; i--){
+			RouteNode ll = longLineNodes.get(i);
+			int id = routingGraph.getNodeId(ll);
+			if(routingGraph.isVisited(id) || routingGraph.getChildren(id).length == 0) continue;
+			RouteNode llParent = ll.getParent();
+			boolean isSource = llParent == null || routingGraph.isSource(id);
+			routingGraph.setParent(id, isSource ? RouteNodeGraph.NULL_ID : routingGraph.getNodeId(llParent));
+			routingGraph.setLevel(id, ll.getLevel());
+			setCost(id, switchMatrixSinkId);
+			routingGraph.setVisited(id);
+			routingGraph.addToQueue(id);
+		}
+	}
+	
+	/**
+	 * Equivalent of {@link #route()} that operates on the {@link RouteNodeGraph}.  
+	 * No RouteNode objects are created during expansion and visited state is 
+	 * tracked by the epoch of the graph.
+	 */
+	protected void routeOnGraph(){
+		int ceilingCost = currSinkPin.getSiteTypeEnum().equals(SiteTypeEnum.BUFGCTRL) ? 2000 : minCeilingCost;
+		int sinkId = routingGraph.getNodeId(currSink);
+		int switchMatrixSinkId = switchMatrixSink == null ? 
+				RouteNodeGraph.NULL_ID : routingGraph.getNodeId(switchMatrixSink);
+		
+		while(!routingGraph.isQueueEmpty()){
+			if(nodesProcessed > 100000){
+				// If we haven't found a route by now, we probably never will
+				return;
+			}
+			int currId = routingGraph.removeFromQueue();
+			nodesProcessed++;
+			Tile currTile = routingGraph.getTile(currId);
+			int currWire = routingGraph.getWire(currId);
+			int[] children = routingGraph.getChildren(currId);
+			byte[] flags = routingGraph.getChildFlags(currId);
+			for(int i=0; i < children.length; i++){
+				int childId = children[i];
+				if(currId == sinkId || childId == sinkId){
+					int pathId = currId;
+					if(currId != sinkId){
+						routingGraph.setParent(childId, currId);
+						pathId = childId;
+					}
+					recordRouteFromGraph(pathId);
+					return;
+				}
+				if((flags[i] & RouteNodeGraph.EDGE_SITE_CHECK) != 0){
+					Wire w = currTile.getWireConnections(currWire).get(i);
+					if(isBlockedBySiteUsage(currTile, currWire, w)) continue;
+				}
+				Tile childTile = routingGraph.getTile(childId);
+				int childWire = routingGraph.getWire(childId);
+				// Don't follow INT tile sinks 
+				if(switchMatrixSink != null && !childTile.equals(switchMatrixSink.getTile()) &&
+					allExclusiveIntSinks.contains(childTile.getWireName(childWire))){
+					continue;
+				}
+				if(routingGraph.isVisited(childId) || !canUseNode(childId)) continue;
+				if(routingGraph.getChildren(childId).length == 0) continue;
+				
+				boolean isSource = routingGraph.isSource(childId);
+				routingGraph.setParent(childId, isSource ? RouteNodeGraph.NULL_ID : currId);
+				routingGraph.setLevel(childId, routingGraph.getLevel(currId) + 1);
+				setCost(childId, switchMatrixSinkId);
+				if(routingGraph.isQueueEmpty() || routingGraph.getCost(childId) < 
+						(routingGraph.getCost(routingGraph.peekQueue()) + ceilingCost)){
+					routingGraph.setVisited(childId);
+					routingGraph.addToQueue(childId);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Follows the parent ids in the routing graph from the sink back to the 
+	 * source and populates the PIP list for the connection.
+	 * @param pathId The id of the sink node (end of the path).
+	 */
+	private void recordRouteFromGraph(int pathId){
+		if(allowWireOverlap){
+			conflictNodes = new HashSet<RouteNode>();
+		}
+		int parentId = routingGraph.getParent(pathId);
+		while(parentId != RouteNodeGraph.NULL_ID){
+			if(allowWireOverlap && routingGraph.isUsed(pathId)){
+				conflictNodes.add(routingGraph.getRouteNode(pathId));
+			}
+			if(routingGraph.isPIPEdge(parentId, pathId)){
+				pipList.add(new PIP(routingGraph.getTile(pathId), routingGraph.getWire(parentId), 
+									routingGraph.getWire(pathId)));
+			}
+			pathId = parentId;
+			parentId = routingGraph.getParent(pathId);
+		}
+		addPathFromSinkToSwitchBox();
+		successfulRoute = true;
+	}
+	
+	/**
+	 * Includes path (if any) from last switch box pin to the sink pin
+	 */
+	private void addPathFromSinkToSwitchBox(){
+		if(pathFromSinkToSwitchBox != null && pathFromSinkToSwitchBox.size() > 1){
+			RouteNode prev = null;
+			for(RouteNode n : pathFromSinkToSwitchBox){
+				if(prev != null && prev.getTile().equals(n.getTile())) {
+					PIP newPIP = prev.getTile().getPIP(prev.getWire(), n.getWire());
+					pipList.add(newPIP);
+				}
+				prev = n;
+			}						
+		}
+	}
+	
 	private void prepareSwitchBoxSink(SitePinInst currPin){
 		// For the input, find the entry point into its switch box
 		switchMatrixSink = null;
@@ -714,7 +966,9 @@ public class Router extends AbstractRouter {
 				if(!supressWarningsErrors) MessageGenerator.briefError("Warning unsupported clock pin: " + currPin);
 			}else if(!rBelName.equals("")){
 				SitePIP existingPIP = currPin.getSiteInst().getUsedSitePIP(rBelName);
-				if(existingPIP == null) {
+				if(existingPIP == null && computeOnly) {
+					designChangeNeeded = true;
+				}else if(existingPIP == null) {
 					//SitePIP p = new SitePIP(dev, currPin.getSiteInst(), rBelName, "CLK", "OUT");
 					currPin.getSiteInst().addSitePIP(rBelName, "CLK");					
 				}
@@ -848,6 +1102,11 @@ public class Router extends AbstractRouter {
 			}
 		}
 		if(pinsToSwap != null){
+			if(computeOnly){
+				// Leave the swap to the serial pass
+				designChangeNeeded = true;
+				return;
+			}
 			for(SitePinInst curr : pinsToSwap){
 				swapLUTPinForUnused(curr);
 			}
@@ -875,7 +1134,7 @@ public class Router extends AbstractRouter {
 			
 			
 			// If initial route fails, see if we can swap a LUT input
-			if(!successfulRoute){
+			if(!successfulRoute && !computeOnly){
 				String origPinName = "A" + currSinkPin.getName().charAt(1);
 				for(String alternate : getAlternativeLUTInputs(currSinkPin)){
 					swapLUTInputPins(currSinkPin, alternate);
@@ -894,10 +1153,10 @@ public class Router extends AbstractRouter {
 			if(successfulRoute){
 				// Add these PIPs to the rest used in the net
 				netPIPs.addAll(pipList);
-				currPin.setRouted(true);
+				if(!computeOnly) currPin.setRouted(true);
 			} 
 			else{
-				if(ENABLE_RIPUP){
+				if(ripupEnabled){
 					failedRoutes.add(currPin);					
 				}else{
 					failedConnections++;
@@ -1063,6 +1322,10 @@ public class Router extends AbstractRouter {
 			markIntermediateNodesAsUsed(pip, currNet);
 		}
 		// Let's add these PIPs to the actual net, to be included in the design
+		if(computeOnly){
+			computedPIPs.put(currNet, new HashSet<PIP>(netPIPs));
+			return;
+		}
 		currNet.setPIPs(netPIPs);
 	}
 	
@@ -1687,7 +1950,7 @@ public class Router extends AbstractRouter {
 				currPin.setRouted(true);
 			} 
 			else{
-				if(ENABLE_RIPUP){
+				if(ripupEnabled){
 					failedRoutes.add(currPin);					
 				}else{
 					failedConnections++;
@@ -1803,7 +2066,7 @@ public class Router extends AbstractRouter {
 			// release some reservedNodes
 			ArrayList<RouteNode> rNodes = reservedNodes.remove(currNet);
 			if(rNodes != null){
-				usedNodes.removeAll(rNodes);
+				markNodesUnused(rNodes);
 			}
 			
 			prepareSinkPinsForRouting(currSource, currPin);
@@ -1832,7 +2095,7 @@ public class Router extends AbstractRouter {
 				currPin.setRouted(true);
 			} 
 			else{
-				if(ENABLE_RIPUP){
+				if(ripupEnabled){
 					failedRoutes.add(currPin);					
 				}else{
 					failedConnections++;
@@ -1858,7 +2121,7 @@ public class Router extends AbstractRouter {
 					ArrayList<RouteNode> rNodes = reservedNodes.remove(currNet);
 					
 					if(rNodes != null){
-						usedNodes.removeAll(rNodes);
+						markNodesUnused(rNodes);
 					}
 					
 					netPIPs = new HashSet<PIP>();
@@ -1892,7 +2155,7 @@ public class Router extends AbstractRouter {
 				// release some reservedNodes
 				ArrayList<RouteNode> rNodes = reservedNodes.remove(currNet);
 				if(rNodes != null){
-					usedNodes.removeAll(rNodes);
+					markNodesUnused(rNodes);
 				}
 				netPIPs = new HashSet<PIP>(currNet.getPIPs());
 				routeStaticNet();	
@@ -1962,58 +2225,41 @@ public class Router extends AbstractRouter {
 	 * @return The final routed design.
 	 */
 	public Design routeDesign(){
+		ripupEnabled = ENABLE_RIPUP;
 		identifyMissingPins();
 		reserveCriticalNodes();
 		markExistingRouteResourcesUsed();
 		
+		long initialStart = System.currentTimeMillis();
+		int initialConnections = totalConnections;
+		int initialFailed = failedConnections;
+		negotiableNets.clear();
+		presentCongestionFactor = 1.0f;
+		if(ENABLE_NEGOTIATED_CONGESTION){
+			// Overlaps are allowed and resolved through negotiation instead of failing
+			negotiatedCongestion = true;
+			allowWireOverlap = true;
+			iterationStats.clear();
+		}
+		
 		// Start Routing
 		for (Net nn : design.getNets()){
-			currNet = nn;
-
-			// Ignore nets with no pins
-			if(currNet.getPins().size() == 0){
-				continue;
+			if(!isNetToBeRouted(nn)) continue;
+			if(negotiatedCongestion && !nn.isStaticNet() && !nn.isClockNet()){
+				// Known before routing, so that the net can share nodes with other signal nets
+				negotiableNets.add(nn);
 			}
-			
-			// Consider all nets as fully routed except static nets (TODO - add support to analyze all nets)
-			if(currNet.getPIPs().size() > 0) continue;
+			routeAndCommitNet(nn);
+		}
 		
-			if(currNet.getSource() == null && !currNet.isStaticNet()){
-				EDIFNet logNet = currNet.getLogicalNet();
-				if(logNet != null && logNet.getParentCell().getName().equals("IOBUF")) {
-					continue;
-				}
-				if(!supressWarningsErrors) MessageGenerator.briefError("WARNING: " + currNet.getName() + " does not have a source pin associated with it.");
-				continue;
-			}
-			
-			// release some reservedNodes
-			ArrayList<RouteNode> rNodes = reservedNodes.remove(currNet);
-			
-			if(rNodes != null){
-				usedNodes.removeAll(rNodes);
-			}
-			
-			// netPIPs are the pips that belong to a particular net
-			netPIPs = new HashSet<PIP>(currNet.getPIPs());
-			long start = System.currentTimeMillis();
-			if(currNet.isStaticNet()){
-				routeStaticNet();
-			}else if(currNet.isClockNet()){
-				routeClockNet();
-			}else{
-				routeNet();
-			}
-			
-			if(netPIPs.size() == 0 && rNodes != null){
-				usedNodes.addAll(rNodes);
-				reservedNodes.put(nn, rNodes);
-			}
-			
-			long stop = System.currentTimeMillis();
-			//if(stop-start > 100) System.out.println((stop-start) + "ms : " + currNet.getName());
-			
-			markAndUpdateNetPIPsAsUsed();
+		if(negotiatedCongestion){
+			RouteIterationStats stats = new RouteIterationStats(0, negotiableNets.size(), 
+				totalConnections - initialConnections, getOverusedNodes().size(), 
+				failedConnections - initialFailed, presentCongestionFactor, System.currentTimeMillis() - initialStart);
+			iterationStats.add(stats);
+			if(verbose) System.out.println(stats);
+			negotiateCongestion();
+			return design;
 		}
 
 		// Resolve congestion issues
@@ -2062,9 +2308,9 @@ public class Router extends AbstractRouter {
 				// Re-route ripped-up nets
 				for(Net net : netsToRipUpAndReroute){
 					currNet = net;
-					ENABLE_RIPUP = false;
+					ripupEnabled = false;
 					routeNet();
-					ENABLE_RIPUP = true;
+					ripupEnabled = true;
 				}
 
 			}else{
@@ -2078,6 +2324,303 @@ public class Router extends AbstractRouter {
 		return design;
 	}	
 	
+	/**
+	 * Routes the design using multiple threads.  Signal nets are spatially partitioned 
+	 * (quad-tree of the device tile grid) by their bounding box.  Nets of each leaf partition
+	 * are routed on a worker thread by a separate router restricted to the region of the 
+	 * partition, with its own queue and visited state.  Workers only compute PIPs and never 
+	 * change the design; once all workers are done, their results are applied on the calling
+	 * thread in a fixed partition order.  Nets that failed, would need a LUT pin swap or site 
+	 * PIP, conflict with an already merged net or cross partition boundaries are then routed 
+	 * serially along with clock and static nets.  
+	 * The result is therefore deterministic for a given design and thread count.
+	 * Negotiated congestion ({@link #ENABLE_NEGOTIATED_CONGESTION}) is only supported 
+	 * by {@link #routeDesign()}.
+	 * @param threads Number of worker threads, 1 or less routes serially with {@link #routeDesign()}.
+	 * @return The final routed design.
+	 */
+	public Design routeDesign(int threads){
+		if(threads <= 1) return routeDesign();
+		ripupEnabled = ENABLE_RIPUP;
+		identifyMissingPins();
+		reserveCriticalNodes();
+		markExistingRouteResourcesUsed();
+		
+		// Aim for roughly 4 partitions per thread
+		int depth = 1;
+		while((1 << (2 * depth)) < threads * 4) depth++;
+		RoutingPartition root = RoutingPartition.createRoot(dev, depth);
+		ArrayList<Net> serialNets = new ArrayList<Net>();
+		for(Net net : design.getNets()){
+			if(!isNetToBeRouted(net)) continue;
+			if(net.isStaticNet() || net.isClockNet()){
+				serialNets.add(net);
+			}else{
+				root.addNet(net);
+			}
+		}
+		List<RoutingPartition> partitions = new ArrayList<RoutingPartition>();
+		List<Net> crossingNets = new ArrayList<Net>();
+		root.collect(partitions, crossingNets);
+		
+		List<Router> workers = createPartitionWorkers(root, partitions);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<HashSet<Net>>> results = new ArrayList<Future<HashSet<Net>>>();
+		for(Router worker : workers){
+			results.add(pool.submit(() -> worker.routePartition()));
+		}
+		// Workers read the design, so it is only changed once all of them are done
+		List<HashSet<Net>> failedNets = new ArrayList<HashSet<Net>>();
+		for(int i=0; i < workers.size(); i++){
+			try {
+				failedNets.add(results.get(i).get());
+			} catch (InterruptedException | ExecutionException e) {
+				pool.shutdownNow();
+				throw new RuntimeException("ERROR: Parallel routing of partition " + 
+						partitions.get(i) + " failed.", e);
+			}
+		}
+		pool.shutdown();
+		for(int i=0; i < workers.size(); i++){
+			mergePartitionResults(workers.get(i), failedNets.get(i), crossingNets);
+		}
+		
+		for(Net net : crossingNets){
+			routeAndCommitNet(net);
+		}
+		for(Net net : serialNets){
+			routeAndCommitNet(net);
+		}
+		return design;
+	}
+	
+	/**
+	 * Creates one router per partition.  Each worker only sees the used nodes and
+	 * reserved nodes within its partition, which keeps its state independent of the others.
+	 */
+	private List<Router> createPartitionWorkers(RoutingPartition root, List<RoutingPartition> partitions){
+		HashMap<RoutingPartition,Router> workerMap = new HashMap<RoutingPartition, Router>();
+		List<Router> workers = new ArrayList<Router>();
+		for(RoutingPartition partition : partitions){
+			Router worker = new Router(design);
+			worker.routingPartition = partition;
+			worker.routingPblock = routingPblock;
+			worker.supressWarningsErrors = supressWarningsErrors;
+			worker.lookahead = lookahead;
+			worker.computeOnly = true;
+			worker.computedPIPs = new HashMap<Net,HashSet<PIP>>();
+			worker.ripupEnabled = false;
+			for(Net net : partition.getNets()){
+				ArrayList<RouteNode> rNodes = reservedNodes.get(net);
+				if(rNodes != null) worker.reservedNodes.put(net, rNodes);
+			}
+			workerMap.put(partition, worker);
+			workers.add(worker);
+		}
+		for(RouteNode n : usedNodes){
+			Router worker = workerMap.get(root.getPartition(n.getTile()));
+			if(worker != null) worker.usedNodes.add(n);
+		}
+		for(Entry<RouteNode,LinkedList<Net>> e : usedNodesMap.entrySet()){
+			Router worker = workerMap.get(root.getPartition(e.getKey().getTile()));
+			if(worker != null) worker.usedNodesMap.put(e.getKey(), new LinkedList<Net>(e.getValue()));
+		}
+		if(isUsingRoutingGraph()){
+			for(Router worker : workers){
+				worker.setUseRoutingGraph(true);
+			}
+		}
+		return workers;
+	}
+	
+	/**
+	 * Routes all nets of the partition assigned to this router (worker thread entry point).
+	 * @return The set of nets that had at least one connection fail to route.
+	 */
+	private HashSet<Net> routePartition(){
+		HashSet<Net> failedNets = new HashSet<Net>();
+		for(Net net : routingPartition.getNets()){
+			int failedBefore = failedConnections;
+			designChangeNeeded = false;
+			routeAndCommitNet(net);
+			if(failedConnections > failedBefore || designChangeNeeded){
+				failedNets.add(net);
+			}
+		}
+		return failedNets;
+	}
+	
+	/**
+	 * Applies the routes computed by a partition worker to the design and this router.  
+	 * Nets that failed or that use a node already used by a previously merged net are
+	 * added to the list of nets to be routed serially.
+	 */
+	private void mergePartitionResults(Router worker, HashSet<Net> failedNets, List<Net> serialNets){
+		totalConnections += worker.totalConnections;
+		totalNodesProcessed += worker.totalNodesProcessed;
+		for(Net net : worker.routingPartition.getNets()){
+			ArrayList<RouteNode> rNodes = reservedNodes.remove(net);
+			if(rNodes != null){
+				markNodesUnused(rNodes);
+			}
+			HashSet<PIP> pips = worker.computedPIPs.get(net);
+			if(pips == null || failedNets.contains(net) || usesAnyUsedNode(pips)){
+				if(rNodes != null){
+					markNodesUsed(rNodes);
+					reservedNodes.put(net, rNodes);
+				}
+				serialNets.add(net);
+				continue;
+			}
+			currNet = net;
+			netPIPs = pips;
+			markAndUpdateNetPIPsAsUsed();
+			for(SitePinInst p : net.getPins()){
+				if(!p.isOutPin()) p.setRouted(true);
+			}
+		}
+	}
+	
+	private boolean usesAnyUsedNode(Collection<PIP> pips){
+		for(PIP p : pips){
+			if(isNodeUsed(p.getTile(), p.getStartWireIndex())) return true;
+			if(isNodeUsed(p.getTile(), p.getEndWireIndex())) return true;
+			for(Wire w : getIntermediateWires(p)){
+				if(isNodeUsed(w.getTile(), w.getWireIndex())) return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks if the net should be routed by {@link #routeDesign()}. 
+	 * @param net The net to check.
+	 * @return True if the net has pins, is not already routed and has a source 
+	 * (or is a static net).
+	 */
+	private boolean isNetToBeRouted(Net net){
+		// Ignore nets with no pins
+		if(net.getPins().size() == 0){
+			return false;
+		}
+		
+		// Consider all nets as fully routed except static nets (TODO - add support to analyze all nets)
+		if(net.getPIPs().size() > 0) return false;
+	
+		if(net.getSource() == null && !net.isStaticNet()){
+			EDIFNet logNet = net.getLogicalNet();
+			if(logNet != null && logNet.getParentCell().getName().equals("IOBUF")) {
+				return false;
+			}
+			if(!supressWarningsErrors) MessageGenerator.briefError("WARNING: " + net.getName() + " does not have a source pin associated with it.");
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Routes the net and marks its resources as used.  Reserved nodes of the net
+	 * are released before routing and restored if the net could not be routed.
+	 * @param net The net to route.
+	 */
+	private void routeAndCommitNet(Net net){
+		currNet = net;
+		// release some reservedNodes
+		ArrayList<RouteNode> rNodes = reservedNodes.remove(currNet);
+		
+		if(rNodes != null){
+			markNodesUnused(rNodes);
+		}
+		
+		// netPIPs are the pips that belong to a particular net
+		netPIPs = new HashSet<PIP>(currNet.getPIPs());
+		if(currNet.isStaticNet()){
+			routeStaticNet();
+		}else if(currNet.isClockNet()){
+			routeClockNet();
+		}else{
+			routeNet();
+		}
+		
+		if(netPIPs.size() == 0 && rNodes != null){
+			markNodesUsed(rNodes);
+			reservedNodes.put(net, rNodes);
+		}
+		
+		markAndUpdateNetPIPsAsUsed();
+	}
+	
+	/**
+	 * PathFinder-style negotiated congestion loop.  Each iteration increases the
+	 * history cost of overused nodes and the present sharing cost factor, then rips up
+	 * and re-routes only the nets that occupy overused nodes.  Iterations stop when 
+	 * no node is overused or after {@link #MAX_NEGOTIATION_ITERATIONS}.  Only the signal nets
+	 * in {@link #negotiableNets} are ripped up, the nodes of other nets can't be shared.
+	 */
+	private void negotiateCongestion(){
+		List<RouteNode> overused = getOverusedNodes();
+		for(int i=1; i <= MAX_NEGOTIATION_ITERATIONS && !overused.isEmpty(); i++){
+			long start = System.currentTimeMillis();
+			int connectionsBefore = totalConnections;
+			int failedBefore = failedConnections;
+			
+			// Update history costs and collect the nets to rip-up
+			LinkedHashSet<Net> netsToReroute = new LinkedHashSet<Net>();
+			for(RouteNode n : overused){
+				LinkedList<Net> users = usedNodesMap.get(n);
+				addNodeHistory(n, HISTORY_CONGESTION_FACTOR * (users.size() - 1));
+				for(Net net : users){
+					if(negotiableNets.contains(net)) netsToReroute.add(net);
+				}
+			}
+			presentCongestionFactor *= PRESENT_CONGESTION_MULTIPLIER;
+			
+			for(Net net : netsToReroute){
+				ripUpNet(net);
+				currNet = net;
+				netPIPs = new HashSet<PIP>();
+				routeNet();
+				markAndUpdateNetPIPsAsUsed();
+			}
+			
+			overused = getOverusedNodes();
+			RouteIterationStats stats = new RouteIterationStats(i, netsToReroute.size(), 
+				totalConnections - connectionsBefore, overused.size(), failedConnections - failedBefore, 
+				presentCongestionFactor, System.currentTimeMillis() - start);
+			iterationStats.add(stats);
+			if(verbose) System.out.println(stats);
+		}
+		negotiatedCongestion = false;
+		allowWireOverlap = false;
+		
+		if(!overused.isEmpty() && !supressWarningsErrors){
+			MessageGenerator.briefError("ERROR: " + overused.size() + " node(s) remain overused after " 
+				+ (iterationStats.size()-1) + " negotiated congestion iteration(s).");
+		}
+	}
+	
+	/**
+	 * Removes the routing of a net and releases all of its used resources.
+	 * @param net The net to rip-up.
+	 */
+	private void ripUpNet(Net net){
+		for(PIP p : net.getPIPs()){
+			setWireAsUnused(p.getTile(), p.getStartWireIndex(), net);
+			setWireAsUnused(p.getTile(), p.getEndWireIndex(), net);
+			markIntermediateNodesAsUnused(p, net);
+		}
+		net.unroute();
+	}
+	
+	/**
+	 * Gets the statistics of each iteration of the last negotiated congestion run 
+	 * (see {@link #ENABLE_NEGOTIATED_CONGESTION}).  Iteration 0 is the initial routing pass.
+	 * @return The list of iteration statistics.
+	 */
+	public List<RouteIterationStats> getIterationStats(){
+		return iterationStats;
+	}
+	
 	protected static void printTimeHelper(String timedOperation, long start) {
 		System.out.printf("%s %8.3fs\n", timedOperation,
 				(System.nanoTime() - start) / 1000000000.0);
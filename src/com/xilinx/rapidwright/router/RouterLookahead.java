@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import com.esotericsoftware.kryo.io.Output;
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.IntentCode;
+import com.xilinx.rapidwright.device.Part;
+import com.xilinx.rapidwright.device.PartNameTools;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.TileTypeEnum;
+import com.xilinx.rapidwright.device.Wire;
+import com.xilinx.rapidwright.util.FileTools;
+import com.xilinx.rapidwright.util.MessageGenerator;
+
+/**
+ * A precomputed A* lookahead table for a device.  For each wire type and each (dx, dy) 
+ * tile offset, it stores the minimum number of hops needed to reach a site input pin feed
+ * wire located at that offset.  A wire type is the wire name without its trailing index
+ * (for example NN2_E_BEG), so wires of different directions and lengths are kept apart.
+ * The table is built once per device by expanding all wires of a switch box in the middle
+ * of the device, the entry of a wire type being the minimum over all of its wires.  
+ * Wires of a type that was not sampled use the minimum over all sampled wires of their 
+ * intent code.  The table is cached on disk in the home directory of the user 
+ * (see {@link #CACHE_DIR}), or only kept in memory if it can't be written there.
+ *
+ * Created on: Oct 18, 2020
+ */
+public class RouterLookahead {
+
+	/** Suffix of the lookahead file, appended to the device name */
+	public static final String LOOKAHEAD_FILE_SUFFIX = "_lookahead.dat";
+	/** Directory where lookahead files are stored, in the home directory of the user by default */
+	public static String CACHE_DIR = System.getProperty("user.home") + File.separator 
+			+ ".rapidwright" + File.separator + "cache";
+	/** Largest tile offset (in each of x and y) covered by the table */
+	public static final int MAX_OFFSET = 24;
+	/** Maximum number of hops explored from each wire type */
+	public static final int MAX_HOPS = 16;
+	/** Prints a message when a table is built */
+	public static boolean verbose = false;
+	/** Version of the file format, bumped when the table contents change */
+	private static final int VERSION = 2;
+
+	private static final short UNREACHED = Short.MAX_VALUE;
+	
+	/** Key of wires that have no entry of their own */
+	private static final int NO_KEY = -1;
+
+	private static HashMap<String,RouterLookahead> lookaheads = new HashMap<>();
+
+	private int version;
+
+	private String deviceName;
+
+	private int maxOffset;
+	
+	/** Wire type of each key */
+	private String[] keyNames;
+	
+	/** Intent code ordinal of each key */
+	private int[] keyIntentCodes;
+
+	/** Minimum hops indexed by [key][dx + maxOffset][dy + maxOffset] */
+	private short[] table;
+	
+	/** Minimum hops over all keys of an intent code, indexed as {@link #table} by intent code */
+	private short[] intentCodeTable;
+	
+	/** Smallest number of hops per tile of distance seen on the edge of the window, used 
+	 *  to extend estimates beyond it */
+	private float hopsPerTile;
+	
+	/** Key of each wire, per tile type, filled in as tile types are queried */
+	private transient volatile Map<TileTypeEnum,int[]> wireKeys;
+
+	/** Needed for serialization */
+	private RouterLookahead(){
+
+	}
+
+	private RouterLookahead(String deviceName, int maxOffset, List<String> keyNames, 
+			int[] keyIntentCodes){
+		this.version = VERSION;
+		this.deviceName = deviceName;
+		this.maxOffset = maxOffset;
+		this.keyNames = keyNames.toArray(new String[keyNames.size()]);
+		this.keyIntentCodes = keyIntentCodes;
+		int width = 2 * maxOffset + 1;
+		this.table = new short[this.keyNames.length * width * width];
+		Arrays.fill(table, UNREACHED);
+		this.intentCodeTable = new short[IntentCode.values().length * width * width];
+		Arrays.fill(intentCodeTable, UNREACHED);
+	}
+
+	/**
+	 * Gets the lookahead table of the device.  The table is loaded from disk if a
+	 * current cached copy exists, otherwise it is built and saved for later use.  Tables
+	 * are shared process-wide.  A cached copy is current if it is newer than the device 
+	 * file (when its location is known) and of the current version.
+	 * @param dev The device of the table.
+	 * @return The lookahead table of the device.
+	 */
+	public static synchronized RouterLookahead getLookahead(Device dev){
+		RouterLookahead lookahead = lookaheads.get(dev.getName());
+		if(lookahead != null) return lookahead;
+		String fileName = getLookaheadFileName(dev);
+		String deviceFileName = getDeviceFileName(dev);
+		if(new File(fileName).exists() && 
+				(deviceFileName == null || FileTools.isFileNewer(fileName, deviceFileName))){
+			try{
+				lookahead = FileTools.readObjectFromKryoFile(fileName, RouterLookahead.class);
+			}catch(RuntimeException e){
+				// Files of an older format may not deserialize, rebuild them
+				lookahead = null;
+			}
+			if(lookahead != null && (lookahead.version != VERSION ||
+					!dev.getName().equals(lookahead.deviceName))){
+				lookahead = null;
+			}
+		}
+		if(lookahead == null){
+			lookahead = build(dev);
+			writeLookahead(fileName, lookahead);
+		}
+		lookaheads.put(dev.getName(), lookahead);
+		return lookahead;
+	}
+
+	private static String getDeviceFileName(Device dev){
+		String rwPath = FileTools.getRapidWrightPath();
+		if(rwPath == null) return null;
+		Part part = PartNameTools.getPart(dev.getName());
+		if(part == null) return null;
+		return rwPath + File.separator + FileTools.getDeviceResourceName(part);
+	}
+
+	/**
+	 * Writes the lookahead under a temporary name and renames it, such that other processes
+	 * never read a partial file.  If the cache directory is not writable the lookahead is 
+	 * only kept in memory.
+	 */
+	private static void writeLookahead(String fileName, RouterLookahead lookahead){
+		File file = new File(fileName);
+		File tmpFile = null;
+		try{
+			file.getParentFile().mkdirs();
+			tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			try(Output out = new Output(new FileOutputStream(tmpFile))){
+				FileTools.getKryoInstance().writeObject(out, lookahead);
+			}
+			if(!tmpFile.renameTo(file)){
+				file.delete();
+				tmpFile.renameTo(file);
+			}
+		}catch(IOException | RuntimeException e){
+			if(verbose){
+				System.out.println("INFO: Couldn't write lookahead file " + fileName 
+						+ ", keeping it in memory only: " + e.getMessage());
+			}
+		}finally{
+			if(tmpFile != null && tmpFile.exists()){
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Gets the name of the file where the lookahead of the device is cached.
+	 * @param dev The device of the table.
+	 * @return The file name under {@link #CACHE_DIR}.
+	 */
+	public static String getLookaheadFileName(Device dev){
+		return CACHE_DIR + File.separator + dev.getName() + LOOKAHEAD_FILE_SUFFIX;
+	}
+
+	/**
+	 * Gets the type of a wire, its name without the trailing index.
+	 * @param wireName Name of the wire.
+	 * @return The wire type.
+	 */
+	public static String getWireType(String wireName){
+		int end = wireName.length();
+		while(end > 0 && Character.isDigit(wireName.charAt(end-1))) end--;
+		return wireName.substring(0, end);
+	}
+	
+	private int[] getWireKeys(Tile tile){
+		if(wireKeys == null){
+			synchronized(this){
+				if(wireKeys == null) wireKeys = new ConcurrentHashMap<>();
+			}
+		}
+		int[] keys = wireKeys.get(tile.getTileTypeEnum());
+		if(keys != null) return keys;
+		Map<String,Integer> keyIndex = new HashMap<>();
+		for(int i=0; i < keyNames.length; i++){
+			keyIndex.put(keyNames[i], i);
+		}
+		keys = new int[tile.getWireCount()];
+		for(int wire=0; wire < keys.length; wire++){
+			Integer key = keyIndex.get(getWireType(tile.getWireName(wire)));
+			keys[wire] = key == null ? NO_KEY : key;
+		}
+		wireKeys.put(tile.getTileTypeEnum(), keys);
+		return keys;
+	}
+
+	/**
+	 * Gets the minimum number of hops needed from a wire to reach an input pin feed located
+	 * dx, dy tiles away.  Beyond the window of the table, the estimate continues from the 
+	 * closest entry on the edge of the window at the smallest hop rate seen on that edge, so
+	 * that estimates agree on both sides of the window edge.
+	 * @param tile Tile of the wire.
+	 * @param wire Index of the wire in the tile.
+	 * @param dx Tile X coordinate of the sink minus the tile X coordinate of the wire.
+	 * @param dy Tile Y coordinate of the sink minus the tile Y coordinate of the wire.
+	 * @return The estimated minimum number of hops, or -1 if the table has no estimate.
+	 */
+	public int getCost(Tile tile, int wire, int dx, int dy){
+		int[] keys = getWireKeys(tile);
+		int key = wire < keys.length ? keys[wire] : NO_KEY;
+		int cx = Math.max(-maxOffset, Math.min(maxOffset, dx));
+		int cy = Math.max(-maxOffset, Math.min(maxOffset, dy));
+		short cost = key == NO_KEY ? 
+				intentCodeTable[getIndex(tile.getWireIntentCode(wire).ordinal(), cx, cy)] : 
+				table[getIndex(key, cx, cy)];
+		if(cost == UNREACHED) return -1;
+		int beyond = Math.abs(dx - cx) + Math.abs(dy - cy);
+		return beyond == 0 ? cost : cost + (int)(beyond * hopsPerTile);
+	}
+
+	/**
+	 * Gets the minimum number of hops needed from any sampled wire of the intent code to
+	 * reach an input pin feed located dx, dy tiles away.
+	 * @param intentCode The intent code of the wire.
+	 * @param dx Tile X coordinate of the sink minus the tile X coordinate of the wire.
+	 * @param dy Tile Y coordinate of the sink minus the tile Y coordinate of the wire.
+	 * @return The minimum number of hops, or -1 if the table has no estimate.
+	 */
+	public int getCost(IntentCode intentCode, int dx, int dy){
+		if(dx > maxOffset || dx < -maxOffset || dy > maxOffset || dy < -maxOffset) return -1;
+		short cost = intentCodeTable[getIndex(intentCode.ordinal(), dx, dy)];
+		return cost == UNREACHED ? -1 : cost;
+	}
+
+	private int getIndex(int row, int dx, int dy){
+		int width = 2 * maxOffset + 1;
+		return (row * width + dx + maxOffset) * width + dy + maxOffset;
+	}
+
+	private static boolean isSinkWire(IntentCode ic){
+		switch(ic){
+			case NODE_PINFEED:
+			case PINFEED:
+			case PINFEEDR:
+			case LUTINPUT:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static Tile getCenterSwitchBox(Device dev){
+		int row = dev.getRows() / 2;
+		int center = dev.getColumns() / 2;
+		for(int i=0; i < center; i++){
+			for(int col : new int[]{center + i, center - i}){
+				Tile t = dev.getTile(row, col);
+				if(t != null && Router.isSwitchBox(t)) return t;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the lookahead table of the device.
+	 * @param dev The device to build the table for.
+	 * @return The new lookahead table.
+	 */
+	public static RouterLookahead build(Device dev){
+		long start = System.currentTimeMillis();
+		Tile center = getCenterSwitchBox(dev);
+		if(center == null){
+			MessageGenerator.briefError("WARNING: Could not find a switch box to build the "
+					+ "router lookahead for device " + dev.getName());
+			return new RouterLookahead(dev.getName(), MAX_OFFSET, new ArrayList<String>(), new int[0]);
+		}
+		// Group the wires of the switch box by wire type
+		LinkedHashMap<String,List<Integer>> wiresByType = new LinkedHashMap<>();
+		for(int wire=0; wire < center.getWireCount(); wire++){
+			List<Wire> conns = center.getWireConnections(wire);
+			if(conns == null || conns.isEmpty()) continue;
+			wiresByType.computeIfAbsent(getWireType(center.getWireName(wire)), 
+					k -> new ArrayList<>()).add(wire);
+		}
+		List<String> keyNames = new ArrayList<>(wiresByType.keySet());
+		List<List<Integer>> keyWires = new ArrayList<>(wiresByType.values());
+		int[] keyIntentCodes = new int[keyNames.size()];
+		for(int key=0; key < keyIntentCodes.length; key++){
+			keyIntentCodes[key] = center.getWireIntentCode(keyWires.get(key).get(0)).ordinal();
+		}
+		RouterLookahead lookahead = new RouterLookahead(dev.getName(), MAX_OFFSET, keyNames, keyIntentCodes);
+		// Keys fill separate rows of the table
+		IntStream.range(0, keyNames.size()).parallel().forEach(
+				key -> lookahead.expandWireType(center, keyWires.get(key), key));
+		lookahead.finishTables();
+		if(verbose){
+			System.out.println("Built router lookahead for " + dev.getName() + " in " +
+				(System.currentTimeMillis() - start) + "ms");
+		}
+		return lookahead;
+	}
+
+	/**
+	 * Breadth first expansion from all wires of a type at once, recording the fewest hops
+	 * from any of them to each input pin feed found within the offset window.
+	 */
+	private void expandWireType(Tile tile, List<Integer> wires, int key){
+		int x0 = tile.getTileXCoordinate();
+		int y0 = tile.getTileYCoordinate();
+		HashSet<RouteNode> visited = new HashSet<>();
+		Queue<RouteNode> q = new LinkedList<>();
+		for(int wire : wires){
+			RouteNode src = new RouteNode(tile, wire);
+			if(visited.add(src)) q.add(src);
+		}
+		while(!q.isEmpty()){
+			RouteNode curr = q.poll();
+			int dx = curr.getTile().getTileXCoordinate() - x0;
+			int dy = curr.getTile().getTileYCoordinate() - y0;
+			if(isSinkWire(curr.getIntentCode())){
+				int idx = getIndex(key, dx, dy);
+				if(curr.getLevel() < table[idx]){
+					table[idx] = (short) curr.getLevel();
+				}
+				continue;
+			}
+			if(curr.getLevel() >= MAX_HOPS) continue;
+			List<Wire> conns = curr.getConnections();
+			if(conns == null) continue;
+			for(Wire w : conns){
+				if(w.isRouteThru()) continue;
+				Tile t = w.getTile();
+				if(Math.abs(t.getTileXCoordinate() - x0) > maxOffset ||
+						Math.abs(t.getTileYCoordinate() - y0) > maxOffset) continue;
+				RouteNode next = new RouteNode(w, curr);
+				if(!visited.add(next)) continue;
+				q.add(next);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the intent code minimums and the hop rate used beyond the window once all
+	 * wire types are expanded.
+	 */
+	private void finishTables(){
+		hopsPerTile = Float.MAX_VALUE;
+		for(int key=0; key < keyNames.length; key++){
+			for(int dx=-maxOffset; dx <= maxOffset; dx++){
+				for(int dy=-maxOffset; dy <= maxOffset; dy++){
+					short cost = table[getIndex(key, dx, dy)];
+					if(cost == UNREACHED) continue;
+					int idx = getIndex(keyIntentCodes[key], dx, dy);
+					if(cost < intentCodeTable[idx]) intentCodeTable[idx] = cost;
+					if(Math.abs(dx) == maxOffset || Math.abs(dy) == maxOffset){
+						hopsPerTile = Math.min(hopsPerTile, (float) cost / (Math.abs(dx) + Math.abs(dy)));
+					}
+				}
+			}
+		}
+		if(hopsPerTile == Float.MAX_VALUE) hopsPerTile = 0;
+	}
+}
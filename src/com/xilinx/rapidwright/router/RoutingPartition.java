@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.xilinx.rapidwright.design.Net;
+import com.xilinx.rapidwright.design.SitePinInst;
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.Tile;
+
+/**
+ * A rectangular region of the device tile grid used to split nets for parallel
+ * routing.  Partitions form a quad-tree: a net is stored in the smallest partition that
+ * fully contains its bounding box.  Leaf partitions are disjoint and can be routed
+ * independently, nets stored at inner partitions cross a boundary and are routed serially.
+ *
+ * Created on: Oct 18, 2020
+ */
+public class RoutingPartition {
+
+	private int minRow;
+
+	private int maxRow;
+
+	private int minColumn;
+
+	private int maxColumn;
+
+	private int depth;
+
+	private RoutingPartition[] children;
+
+	private List<Net> nets;
+
+	public RoutingPartition(int minRow, int maxRow, int minColumn, int maxColumn, int depth){
+		this.minRow = minRow;
+		this.maxRow = maxRow;
+		this.minColumn = minColumn;
+		this.maxColumn = maxColumn;
+		this.depth = depth;
+		this.nets = new ArrayList<>();
+	}
+
+	/**
+	 * Creates the root partition spanning the entire device.
+	 * @param dev The device to partition.
+	 * @param maxDepth The depth of the quad-tree (number of times a region can be split).
+	 * @return The root partition.
+	 */
+	public static RoutingPartition createRoot(Device dev, int maxDepth){
+		RoutingPartition root = new RoutingPartition(0, dev.getRows()-1, 0, dev.getColumns()-1, maxDepth);
+		return root;
+	}
+
+	/**
+	 * Checks if the tile lies inside the region of this partition.
+	 */
+	public boolean contains(Tile t){
+		int row = t.getRow();
+		int col = t.getColumn();
+		return row >= minRow && row <= maxRow && col >= minColumn && col <= maxColumn;
+	}
+
+	private boolean contains(int[] bbox){
+		return bbox[0] >= minRow && bbox[1] <= maxRow && bbox[2] >= minColumn && bbox[3] <= maxColumn;
+	}
+
+	/**
+	 * Computes the bounding box of the tiles of a net's pins.
+	 * @param net The net to examine.
+	 * @return The bounding box as {minRow, maxRow, minColumn, maxColumn}.
+	 */
+	public static int[] getBoundingBox(Net net){
+		int[] bbox = new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for(SitePinInst p : net.getPins()){
+			Tile t = p.getTile();
+			bbox[0] = Math.min(bbox[0], t.getRow());
+			bbox[1] = Math.max(bbox[1], t.getRow());
+			bbox[2] = Math.min(bbox[2], t.getColumn());
+			bbox[3] = Math.max(bbox[3], t.getColumn());
+		}
+		return bbox;
+	}
+
+	/**
+	 * Stores the net in the smallest partition under this one that fully
+	 * contains its bounding box.
+	 * @param net The net to add.
+	 */
+	public void addNet(Net net){
+		int[] bbox = getBoundingBox(net);
+		RoutingPartition curr = this;
+		while(curr.depth > 0){
+			RoutingPartition child = curr.getChildContaining(bbox);
+			if(child == null) break;
+			curr = child;
+		}
+		curr.nets.add(net);
+	}
+
+	private RoutingPartition getChildContaining(int[] bbox){
+		if(minRow == maxRow && minColumn == maxColumn) return null;
+		if(children == null){
+			int midRow = (minRow + maxRow) / 2;
+			int midColumn = (minColumn + maxColumn) / 2;
+			children = new RoutingPartition[]{
+				new RoutingPartition(minRow, midRow, minColumn, midColumn, depth-1),
+				new RoutingPartition(minRow, midRow, midColumn+1, maxColumn, depth-1),
+				new RoutingPartition(midRow+1, maxRow, minColumn, midColumn, depth-1),
+				new RoutingPartition(midRow+1, maxRow, midColumn+1, maxColumn, depth-1),
+			};
+		}
+		for(RoutingPartition child : children){
+			if(child.contains(bbox)) return child;
+		}
+		return null;
+	}
+
+	/**
+	 * Collects the leaf partitions with nets (which are disjoint and can be routed in
+	 * parallel) and the nets that cross partition boundaries, in a deterministic order.
+	 * @param leaves The list to populate with leaf partitions.
+	 * @param crossingNets The list to populate with nets stored in non-leaf partitions.
+	 */
+	public void collect(List<RoutingPartition> leaves, List<Net> crossingNets){
+		if(children == null){
+			if(!nets.isEmpty()) leaves.add(this);
+			return;
+		}
+		crossingNets.addAll(nets);
+		for(RoutingPartition child : children){
+			child.collect(leaves, crossingNets);
+		}
+	}
+
+	/**
+	 * Finds the smallest partition under this one that contains the tile.
+	 * @param t The tile to look up.
+	 * @return The deepest partition containing the tile, or null if the tile is outside 
+	 * of this partition.
+	 */
+	public RoutingPartition getPartition(Tile t){
+		if(!contains(t)) return null;
+		RoutingPartition curr = this;
+		search: while(curr.children != null){
+			for(RoutingPartition child : curr.children){
+				if(child.contains(t)){
+					curr = child;
+					continue search;
+				}
+			}
+			break;
+		}
+		return curr;
+	}
+
+	/**
+	 * Gets the nets stored directly in this partition.
+	 */
+	public List<Net> getNets(){
+		return nets;
+	}
+
+	@Override
+	public String toString(){
+		return "[rows " + minRow + "-" + maxRow + ", columns " + minColumn + "-" + maxColumn +
+				", nets=" + nets.size() + "]";
+	}
+}
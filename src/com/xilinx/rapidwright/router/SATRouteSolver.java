@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pure Java solver for the routing problems {@link SATRouter} prepares for evRouter, so 
+ * that small pblocks can be routed on hosts without Vivado.  It routes the nets and 
+ * graph recorded in a {@link SATRouterGraph}, including the LUT input crossbar, with 
+ * negotiated congestion: nets are routed independently, nodes used by more than one net 
+ * become more expensive on every pass and the nets using them are ripped up and rerouted 
+ * until no node is shared.  Each thread runs its own search with a different net order 
+ * (seed), the legal solution of the lowest seed is used so results don't depend on thread 
+ * timing.  Unlike evRouter, the solver is heuristic: it isn't guaranteed to find a solution 
+ * when one exists, nor to prove that none exists when it gives up.
+ * 
+ * Created on: Oct 18, 2020
+ */
+public class SATRouteSolver {
+
+	/** Number of passes allowed when no maximum is given */
+	public static int DEFAULT_MAX_PASSES = 200;
+	
+	/** Growth of the cost of shared nodes on each pass */
+	public static float PRESENT_COST_FACTOR = 1.5f;
+	
+	/** Cost added to a node for each pass it is shared at the end of */
+	public static float HISTORY_COST_FACTOR = 1.0f;
+	
+	/** Vertex count of the graph */
+	private int vertexCount;
+	
+	/** Fanouts of vertex v are fanouts[fanoutStart[v]] to fanouts[fanoutStart[v+1]-1] */
+	private int[] fanoutStart;
+	
+	private int[] fanouts;
+	
+	private List<int[]> netTerminals;
+	
+	private Integer maxConflicts;
+	
+	private Integer maxPasses;
+	
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	/** Number of passes made by the search that found the solution */
+	private int passes;
+	
+	public SATRouteSolver(SATRouterGraph graph){
+		this(graph.getNodeCount(), getEdgeStarts(graph), getEdgeEnds(graph), graph.getNetTerminals());
+	}
+	
+	/**
+	 * Creates a solver for a graph given by its edges.
+	 * @param vertexCount Number of vertices, with ids 0 to vertexCount-1.
+	 * @param edgeStarts Start vertex of each edge.
+	 * @param edgeEnds End vertex of each edge.
+	 * @param netTerminals Ids of the source followed by the sinks for each net.
+	 */
+	SATRouteSolver(int vertexCount, int[] edgeStarts, int[] edgeEnds, List<int[]> netTerminals){
+		this.vertexCount = vertexCount;
+		fanoutStart = new int[vertexCount+1];
+		for(int i=0; i < edgeStarts.length; i++){
+			fanoutStart[edgeStarts[i]+1]++;
+		}
+		for(int v=0; v < vertexCount; v++){
+			fanoutStart[v+1] += fanoutStart[v];
+		}
+		fanouts = new int[edgeStarts.length];
+		int[] next = Arrays.copyOf(fanoutStart, vertexCount);
+		for(int i=0; i < edgeStarts.length; i++){
+			fanouts[next[edgeStarts[i]]++] = edgeEnds[i];
+		}
+		this.netTerminals = new ArrayList<>(netTerminals);
+	}
+	
+	private static int[] getEdgeStarts(SATRouterGraph graph){
+		int[] starts = new int[graph.getEdgeCount()];
+		for(int i=0; i < starts.length; i++){
+			starts[i] = graph.getEdgeStart(i);
+		}
+		return starts;
+	}
+	
+	private static int[] getEdgeEnds(SATRouterGraph graph){
+		int[] ends = new int[graph.getEdgeCount()];
+		for(int i=0; i < ends.length; i++){
+			ends[i] = graph.getEdgeEnd(i);
+		}
+		return ends;
+	}
+	
+	/**
+	 * Maximum number of node conflicts (nodes shared by several nets at the end of a pass, 
+	 * summed over all passes) a search may run into before it gives up.  Note these are not
+	 * the SAT conflicts counted by evRouter.
+	 * @param maxConflicts The maximum or null for no limit.
+	 */
+	public void setMaxConflicts(Integer maxConflicts){
+		this.maxConflicts = maxConflicts;
+	}
+	
+	/**
+	 * @param maxPasses Maximum number of passes of each search, null for {@link #DEFAULT_MAX_PASSES}.
+	 */
+	public void setMaxPasses(Integer maxPasses){
+		this.maxPasses = maxPasses;
+	}
+	
+	/**
+	 * @param threads Number of searches run in parallel.
+	 */
+	public void setThreads(int threads){
+		this.threads = Math.max(1, threads);
+	}
+	
+	/**
+	 * @return Number of passes made by the search that found the last solution.
+	 */
+	public int getPasses(){
+		return passes;
+	}
+	
+	/**
+	 * Routes all nets of the graph.
+	 * @return For each net in the order of {@link SATRouterGraph#getNetTerminals()}, the 
+	 * start and end vertex ids of the edges used by the net (start0, end0, start1, end1, ...),
+	 * or null if no legal solution was found within the conflict and pass limits.  The same
+	 * graph and settings always give the same solution.
+	 */
+	public int[][] solve(){
+		AtomicInteger solvedSeed = new AtomicInteger(Integer.MAX_VALUE);
+		if(threads == 1){
+			Search search = new Search(0, solvedSeed);
+			int[][] solution = search.call();
+			passes = search.passes;
+			return solution;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Search> searches = new ArrayList<>(threads);
+			List<Future<int[][]>> results = new ArrayList<>(threads);
+			for(int i=0; i < threads; i++){
+				Search search = new Search(i, solvedSeed);
+				searches.add(search);
+				results.add(pool.submit(search));
+			}
+			// Searches only stop early for a lower seed, so the first solution in seed order is
+			// the one of the lowest seed that succeeds
+			for(int i=0; i < threads; i++){
+				int[][] solution = results.get(i).get();
+				if(solution != null){
+					passes = searches.get(i).passes;
+					return solution;
+				}
+			}
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			solvedSeed.set(-1);
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * One negotiated congestion search over all nets.
+	 */
+	private class Search implements Callable<int[][]> {
+		
+		private int seed;
+		
+		/** Lowest seed of the searches that found a solution so far */
+		private AtomicInteger solvedSeed;
+		
+		/** Number of passes made when the solution was found */
+		private int passes;
+		
+		/** Number of nets using each vertex */
+		private int[] occupancy = new int[vertexCount];
+		
+		private float[] history = new float[vertexCount];
+		
+		private float presentFactor = 0.5f;
+		
+		/** Vertices used by each net */
+		private int[][] netVertices;
+		
+		/** Edges used by each net, as start and end vertex pairs */
+		private int[][] netEdges;
+		
+		private float[] cost = new float[vertexCount];
+		
+		private int[] prev = new int[vertexCount];
+		
+		/** Net the vertex is a sink of while that net is being routed, or -1 */
+		private int[] sinkOf = new int[vertexCount];
+		
+		/** Net the vertex belongs to the tree of while that net is being routed, or -1 */
+		private int[] treeOf = new int[vertexCount];
+		
+		private int[] touched = new int[vertexCount];
+		
+		private int touchedCount;
+		
+		Search(int seed, AtomicInteger solvedSeed){
+			this.seed = seed;
+			this.solvedSeed = solvedSeed;
+			netVertices = new int[netTerminals.size()][];
+			netEdges = new int[netTerminals.size()][];
+			Arrays.fill(cost, Float.MAX_VALUE);
+			Arrays.fill(sinkOf, -1);
+			Arrays.fill(treeOf, -1);
+		}
+		
+		@Override
+		public int[][] call(){
+			int netCount = netTerminals.size();
+			List<Integer> order = new ArrayList<>(netCount);
+			for(int i=0; i < netCount; i++){
+				order.add(i);
+			}
+			if(seed > 0) Collections.shuffle(order, new Random(seed));
+			
+			int passLimit = maxPasses == null ? DEFAULT_MAX_PASSES : maxPasses;
+			long conflicts = 0;
+			boolean[] reroute = new boolean[netCount];
+			Arrays.fill(reroute, true);
+			for(int pass=1; pass <= passLimit; pass++){
+				for(int net : order){
+					if(solvedSeed.get() < seed) return null;
+					if(!reroute[net]) continue;
+					ripUp(net);
+					if(!route(net)) return null;
+				}
+				int overused = 0;
+				for(int v=0; v < vertexCount; v++){
+					if(occupancy[v] > 1){
+						overused++;
+						history[v] += HISTORY_COST_FACTOR * (occupancy[v] - 1);
+					}
+				}
+				if(overused == 0){
+					passes = pass;
+					solvedSeed.accumulateAndGet(seed, Math::min);
+					return netEdges;
+				}
+				conflicts += overused;
+				if(maxConflicts != null && conflicts > maxConflicts) return null;
+				presentFactor *= PRESENT_COST_FACTOR;
+				for(int net=0; net < netCount; net++){
+					reroute[net] = false;
+					for(int v : netVertices[net]){
+						if(occupancy[v] > 1){
+							reroute[net] = true;
+							break;
+						}
+					}
+				}
+			}
+			return null;
+		}
+		
+		private void ripUp(int net){
+			if(netVertices[net] == null) return;
+			for(int v : netVertices[net]){
+				occupancy[v]--;
+			}
+			netVertices[net] = null;
+			netEdges[net] = null;
+		}
+		
+		private float getCost(int v){
+			return (1 + history[v]) * (1 + presentFactor * occupancy[v]);
+		}
+		
+		/**
+		 * Routes a net from its current tree to its nearest unreached sink until all sinks
+		 * are reached.
+		 * @return False if a sink can't be reached at all.
+		 */
+		private boolean route(int net){
+			int[] terminals = netTerminals.get(net);
+			List<Integer> vertices = new ArrayList<>();
+			List<Integer> edges = new ArrayList<>();
+			int remaining = 0;
+			for(int i=1; i < terminals.length; i++){
+				if(terminals[i] == terminals[0] || sinkOf[terminals[i]] == net) continue;
+				sinkOf[terminals[i]] = net;
+				remaining++;
+			}
+			vertices.add(terminals[0]);
+			treeOf[terminals[0]] = net;
+			PriorityQueue<Long> queue = new PriorityQueue<>();
+			boolean routed = true;
+			while(remaining > 0){
+				queue.clear();
+				for(int v : vertices){
+					visit(queue, v, 0f, -1);
+				}
+				int found = -1;
+				while(!queue.isEmpty()){
+					long entry = queue.poll();
+					int v = (int) entry;
+					float c = Float.intBitsToFloat((int) (entry >>> 32));
+					if(c > cost[v]) continue;
+					if(sinkOf[v] == net && treeOf[v] != net){
+						found = v;
+						break;
+					}
+					for(int i=fanoutStart[v]; i < fanoutStart[v+1]; i++){
+						int u = fanouts[i];
+						if(treeOf[u] == net) continue;
+						// Dead ends only matter as sinks
+						if(fanoutStart[u] == fanoutStart[u+1] && sinkOf[u] != net) continue;
+						visit(queue, u, c + getCost(u), v);
+					}
+				}
+				if(found == -1){
+					routed = false;
+					break;
+				}
+				for(int v=found; treeOf[v] != net; v=prev[v]){
+					treeOf[v] = net;
+					vertices.add(v);
+					edges.add(prev[v]);
+					edges.add(v);
+				}
+				remaining--;
+				resetCosts();
+			}
+			resetCosts();
+			for(int i=1; i < terminals.length; i++){
+				sinkOf[terminals[i]] = -1;
+			}
+			int[] used = new int[vertices.size()];
+			for(int i=0; i < used.length; i++){
+				used[i] = vertices.get(i);
+				treeOf[used[i]] = -1;
+				occupancy[used[i]]++;
+			}
+			netVertices[net] = used;
+			int[] pairs = new int[edges.size()];
+			for(int i=0; i < pairs.length; i++){
+				pairs[i] = edges.get(i);
+			}
+			netEdges[net] = pairs;
+			return routed;
+		}
+		
+		private void visit(PriorityQueue<Long> queue, int v, float c, int from){
+			if(c >= cost[v]) return;
+			if(cost[v] == Float.MAX_VALUE) touched[touchedCount++] = v;
+			cost[v] = c;
+			prev[v] = from;
+			// Costs are positive, so their bits sort in the same order as their values
+			queue.add(((long) Float.floatToIntBits(c) << 32) | v);
+		}
+		
+		private void resetCosts(){
+			for(int i=0; i < touchedCount; i++){
+				cost[touched[i]] = Float.MAX_VALUE;
+			}
+			touchedCount = 0;
+		}
+	}
+}
@@ -54,7 +54,8 @@ public class SATRouter {
 
 	/** evRouter Parameter: -v level:     specify verbosity (default 0) */
 	private int verbosity = 2;
-	/** evRouter Parameter: -c maxConfl:  specify the maximum number of conflicts allowed before quitting */
+	/** evRouter Parameter: -c maxConfl:  specify the maximum number of conflicts allowed before quitting 
+	 *  (node conflicts of the built-in solver, see {@link SATRouteSolver#setMaxConflicts(Integer)}) */
 	private Integer maxConflicts = null;
 	/** evRouter Parameter: -p maxPass:   specify the maximum number of passes allowed before quitting */
 	private Integer maxPasses = null;
@@ -108,6 +109,19 @@ public class SATRouter {
 	private final long SEED = 82;
 	
 	private int[] lutInputWeights = new int[]{50, 45, 35, 30, 20, 10};
+	
+	/** Routes with the built-in {@link SATRouteSolver} instead of evRouter, which is also
+	 *  used whenever Vivado can't be found */
+	public static boolean USE_JAVA_SOLVER = false;
+	
+	/** Number of parallel searches of the built-in solver */
+	private int solverThreads = Runtime.getRuntime().availableProcessors();
+	
+	/** Buffer size used when writing the evRouter input files */
+	public static int WRITE_BUFFER_SIZE = 1 << 20;
+	
+	/** Nodes, names and PIPs of the exported routing graph, used to read back the solution */
+	private SATRouterGraph graph;
 	/**
 	 * Initialize the SAT router with a design and area constraint (pblock) to describe
 	 * the routing problem.
@@ -354,7 +368,8 @@ public class SATRouter {
 	 */
 	public void createPipFile(){
 		try {
-			BufferedWriter bw = new BufferedWriter(new FileWriter(pipFile));
+			SATRouterGraph graph = getGraph();
+			BufferedWriter bw = new BufferedWriter(new FileWriter(pipFile), WRITE_BUFFER_SIZE);
 			// Find all sites, expand from all outputs within the region
 			Set<Tile> tiles = pblock.getAllTiles();
 			Set<Node> reported = new HashSet<>();
@@ -367,16 +382,18 @@ public class SATRouter {
 					if(!includeNode(n)) continue;
 					if(reported.contains(n)) continue;
 					if(excludedNodes.contains(n)) continue;
-					bw.write(n.toString());
+					bw.write(graph.getName(n));
 					for(Wire w : n.getAllWiresInNode()){
 						HashSet<Node> currNodes = new HashSet<Node>();
 						for(PIP p : w.getBackwardPIPs()){
 							if(p.isRouteThru()) continue;
-							String startWireName = p.getStartWireName();
-							Node start = new Node(w.getTile(),startWireName);
+							Node start = new Node(w.getTile(),p.getStartWireIndex());
 							if(!currNodes.contains(start) && tiles.contains(start.getTile())){
-								bw.write(" " + start + (useWeightsOnNodes ? ":" + commonNodeWeight : ""));
+								bw.write(" ");
+								bw.write(graph.getName(start));
+								if(useWeightsOnNodes) bw.write(":" + commonNodeWeight);
 								currNodes.add(start);
+								graph.addEdge(start, n, p);
 							}
 						}
 					}
@@ -410,9 +427,12 @@ public class SATRouter {
 					nodes[i] = new Node(wires[i]);
 				}
 				for(int i=0; i < lutSize; i++){
-					bw.write(wires[i].toString());
+					bw.write(graph.getName(wires[i]));
 					for(int j=0; j < lutSize; j++){
-						bw.write(" " + nodes[j] + (useWeightsOnNodes ? ":" + lutInputWeights[j] : ""));
+						bw.write(" ");
+						bw.write(graph.getName(nodes[j]));
+						if(useWeightsOnNodes) bw.write(":" + lutInputWeights[j]);
+						graph.addEdge(nodes[j], wires[i]);
 					}
 					bw.write("\n");
 				}
@@ -431,36 +451,95 @@ public class SATRouter {
 		FileTools.writeLinesToTextFile(lines, outputFileName);
 	}
 	
+	/**
+	 * Gets the routing graph exported to evRouter so far, creating an empty one if nothing
+	 * has been exported yet.
+	 * @return The exported routing graph.
+	 */
+	public SATRouterGraph getGraph(){
+		if(graph == null) graph = new SATRouterGraph();
+		return graph;
+	}
+	
+	/**
+	 * Creates the problem file listing the source and sinks of each net
+	 * to route.  Lines are shuffled in memory with the same seed and result
+	 * as {@link #randomizeLines(String, String, long)} before being written.
+	 */
 	public void createNetsFiles(){
-		try {
-			BufferedWriter bw = new BufferedWriter(new FileWriter(pbFile));
-			nextNet: for(Net n : netsToRoute){
-				if(n.getSource() == null || n.getPins().size() < 2){
-					//throw new RuntimeException("ERROR: Bad net " + n);
-					continue nextNet;
-				}
-				for(SitePinInst p : n.getPins()){
-					if(!pblock.containsTile(p.getTile())) continue nextNet;
-				}
-				
-				bw.write(n.getName() + " " + n.getSource().getConnectedNode());
-				for(SitePinInst p : n.getSinkPins()){
-					if(p.isLUTInputPin()){
-						Wire w = new Wire(p.getTile(),p.getConnectedWireIndex());
-						bw.write(" " + w);
-					}else{
-						bw.write(" " + p.getConnectedNode());
-					}
-					
+		SATRouterGraph graph = getGraph();
+		graph.clearNets();
+		ArrayList<String> lines = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		nextNet: for(Net n : netsToRoute){
+			if(n.getSource() == null || n.getPins().size() < 2){
+				//throw new RuntimeException("ERROR: Bad net " + n);
+				continue nextNet;
+			}
+			for(SitePinInst p : n.getPins()){
+				if(!pblock.containsTile(p.getTile())) continue nextNet;
+			}
+			
+			List<SitePinInst> sinks = n.getSinkPins();
+			int[] terminals = new int[sinks.size()+1];
+			terminals[0] = graph.getId(n.getSource().getConnectedNode());
+			for(int i=0; i < sinks.size(); i++){
+				SitePinInst p = sinks.get(i);
+				if(p.isLUTInputPin()){
+					terminals[i+1] = graph.getId(new Wire(p.getTile(),p.getConnectedWireIndex()));
+				}else{
+					terminals[i+1] = graph.getId(p.getConnectedNode());
 				}
+			}
+			graph.addNet(n.getName(), terminals);
+			
+			sb.setLength(0);
+			sb.append(n.getName());
+			for(int id : terminals){
+				sb.append(' ').append(graph.getName(id));
+			}
+			lines.add(sb.toString());
+		}
+		Collections.shuffle(lines, new Random(SEED));
+		
+		try {
+			BufferedWriter bw = new BufferedWriter(new FileWriter(pbFile), WRITE_BUFFER_SIZE);
+			for(String line : lines){
+				bw.write(line);
 				bw.write("\n");
 			}
 			bw.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		
-		randomizeLines(pbFile, pbFile, SEED);
+	}
+	
+	/**
+	 * @return True if Vivado (and thus evRouter) can be found on this host.
+	 */
+	public static boolean isEvRouterAvailable(){
+		String vivadoPath = FileTools.getVivadoPath();
+		return vivadoPath != null && vivadoPath.length() > 0;
+	}
+	
+	/**
+	 * Solves the routing problem described by the files created with {@link #createNetsFiles()}
+	 * and {@link #createPipFile()} with the built-in solver, within the configured maximum 
+	 * number of conflicts and passes.  The solver is heuristic, so it may fail to route 
+	 * problems evRouter can solve.
+	 * @return The edges used by each net, or null if no solution was found.
+	 */
+	public int[][] runJavaSolver(){
+		SATRouteSolver solver = new SATRouteSolver(getGraph());
+		solver.setMaxConflicts(maxConflicts);
+		solver.setMaxPasses(maxPasses);
+		solver.setThreads(solverThreads);
+		int[][] solution = solver.solve();
+		if(solution != null && verbosity > 0){
+			System.out.println("Built-in SAT router solver routed " + solution.length 
+				+ " nets in " + solver.getPasses() + " passes");
+		}
+		return solution;
 	}
 	
 	/**
@@ -522,7 +601,6 @@ public class SATRouter {
 	 * routing solution taking advantage of the LUT input flexibility.
 	 */
 	public void applyRoutingResult(){
-		Device dev = design.getDevice();
 		Net currNet = null;
 		HashMap<String,HashMap<String,PinSwap>> pinSwaps = new HashMap<>();
 		for(String line : FileTools.getLinesFromTextFile(outputFileName)){
@@ -534,82 +612,7 @@ public class SATRouter {
 				int rightBracket = line.indexOf(']');
 				String node0 = line.substring(2, comma-1);
 				String node1 = line.substring(comma+3, rightBracket-1);
-				Node n0 = new Node(node0,dev);
-				Node n1 = new Node(node1,dev);
-				if(!node1.equals(n1.toString())){
-					if(n0.equals(n1)) {
-						// No pin swapping, this is just a pass-thru
-						continue;
-					}
-					// This is a pin swap rather than a PIP
-					Wire w = new Wire(dev,node1);
-					SitePin oldPin = w.getSitePin();
-					SitePinInst p = design.getSiteInstFromSite(oldPin.getSite()).getSitePinInst(oldPin.getPinName());
-					SitePin newPin = n0.getSitePin();
-					
-					// Let's remove the sitewire routing for the pins that are swapping, but we need 
-					// to wait before adding them
-					p.getSiteInst().unrouteIntraSiteNet(p.getBELPin(), p.getBELPin());
-					
-					// Update pin mappings on the cell, there may be more than once cell on a BEL site
-					// (5LUT/6LUT sharing an input)
-					for(BELPin elePin : oldPin.getBELPin().getSiteConns()){
-						String belName = elePin.getBEL().getName();
-						Cell c = p.getSiteInst().getCell(belName);
-						if(c == null) continue;
-						String oldPhysicalPinName = elePin.getName();
-						String logicalPinName = c.getLogicalPinMapping(oldPhysicalPinName);
-						if(logicalPinName == null) continue;
-						BELPin newBELPin = null;
-						for(BELPin currCxn : newPin.getBELPin().getSiteConns()){
-							if(elePin.getBEL().equals(currCxn.getBEL())){
-								if(oldPhysicalPinName.startsWith("A")){
-									if(currCxn.getName().startsWith("A")){
-										newBELPin = currCxn;
-										break;										
-									}
-								}else{
-									newBELPin = currCxn;
-									break;
-								}
-							}
-						}
-						String key = c.getSiteName() + "/" + c.getBELName().charAt(0);
-						HashMap<String,PinSwap> ps = pinSwaps.get(key);
-						String psKey = oldPhysicalPinName +">"+newBELPin.getName();
-						if(ps == null){
-							ps = new HashMap<>();
-							pinSwaps.put(key, ps);
-						}
-						PinSwap match = ps.get(psKey);
-						if(match != null){
-							// Add companion cell mapping
-							match.setCompanionCell(c, logicalPinName);
-						}else{
-							// Create new entry
-							String depopulatedLogicalPinName = c.getLogicalPinMapping(newBELPin.getName());
-							ps.put(psKey, new PinSwap(c, logicalPinName,oldPhysicalPinName,newBELPin.getName(), depopulatedLogicalPinName, newPin.getPinName()));							
-						}
-					}
-					continue;
-				}
-				boolean foundPIP = false;
-				outer: for(Wire w : n0.getAllWiresInNode()){
-					for(PIP p : w.getForwardPIPs()){
-						Node n2 = new Node(p.getEndWire());
-						if(n1.equals(n2)){
-							PIP pip = new PIP(w.getTile(),w.getWireIndex(),p.getEndWireIndex());
-							pip.setIsPIPFixed(fixRouting);
-							currNet.addPIP(pip);
-							foundPIP = true;
-							break outer;
-						}
-					}
-				}
-				if(!foundPIP){
-					throw new RuntimeException("ERROR: Couldn't find pip from line:\n'" + line + "'");
-				}
-				
+				applyRoutingEdge(currNet, node0, node1, line, pinSwaps);
 			}
 			else if(line.startsWith("\"") && line.endsWith("\":")){
 				String netName = line.substring(1, line.length()-2);
@@ -623,6 +626,127 @@ public class SATRouter {
 		}
 	}
 	
+	/**
+	 * Applies a routing solution of the built-in solver to the design, the same way
+	 * {@link #applyRoutingResult()} applies the output of evRouter.
+	 * @param solution The edges used by each net of the graph, as returned by 
+	 * {@link SATRouteSolver#solve()}.
+	 */
+	public void applyRoutingResult(int[][] solution){
+		SATRouterGraph graph = getGraph();
+		HashMap<String,HashMap<String,PinSwap>> pinSwaps = new HashMap<>();
+		for(int i=0; i < solution.length; i++){
+			Net currNet = design.getNet(graph.getNetNames().get(i));
+			int[] edges = solution[i];
+			for(int j=0; j < edges.length; j+=2){
+				String node0 = graph.getName(edges[j]);
+				String node1 = graph.getName(edges[j+1]);
+				applyRoutingEdge(currNet, node0, node1, "[\"" + node0 + "\", \"" + node1 + "\"]", pinSwaps);
+			}
+		}
+		
+		// Make all pin swaps per LUT site simultaneously
+		for(Entry<String,HashMap<String,PinSwap>> e : pinSwaps.entrySet()){
+			processPinSwaps(e.getKey(),new ArrayList<>(e.getValue().values()));
+		}
+	}
+	
+	/**
+	 * Applies one edge of a routing solution, either a PIP of the net or a LUT pin swap.
+	 * @param currNet The net using the edge.
+	 * @param node0 Name of the start node of the edge.
+	 * @param node1 Name of the end node (or LUT input wire) of the edge.
+	 * @param line The solution line of the edge, for error messages.
+	 * @param pinSwaps Collects the LUT pin swaps per LUT site.
+	 */
+	private void applyRoutingEdge(Net currNet, String node0, String node1, String line, 
+			HashMap<String,HashMap<String,PinSwap>> pinSwaps){
+		Device dev = design.getDevice();
+		SATRouterGraph graph = getGraph();
+		Node n0 = graph.getNode(node0,dev);
+		Node n1 = graph.getNode(node1,dev);
+		if(!node1.equals(graph.getName(n1))){
+			if(n0.equals(n1)) {
+				// No pin swapping, this is just a pass-thru
+				return;
+			}
+			// This is a pin swap rather than a PIP
+			Wire w = graph.getWire(node1,dev);
+			SitePin oldPin = w.getSitePin();
+			SitePinInst p = design.getSiteInstFromSite(oldPin.getSite()).getSitePinInst(oldPin.getPinName());
+			SitePin newPin = n0.getSitePin();
+			
+			// Let's remove the sitewire routing for the pins that are swapping, but we need 
+			// to wait before adding them
+			p.getSiteInst().unrouteIntraSiteNet(p.getBELPin(), p.getBELPin());
+			
+			// Update pin mappings on the cell, there may be more than once cell on a BEL site
+			// (5LUT/6LUT sharing an input)
+			for(BELPin elePin : oldPin.getBELPin().getSiteConns()){
+				String belName = elePin.getBEL().getName();
+				Cell c = p.getSiteInst().getCell(belName);
+				if(c == null) continue;
+				String oldPhysicalPinName = elePin.getName();
+				String logicalPinName = c.getLogicalPinMapping(oldPhysicalPinName);
+				if(logicalPinName == null) continue;
+				BELPin newBELPin = null;
+				for(BELPin currCxn : newPin.getBELPin().getSiteConns()){
+					if(elePin.getBEL().equals(currCxn.getBEL())){
+						if(oldPhysicalPinName.startsWith("A")){
+							if(currCxn.getName().startsWith("A")){
+								newBELPin = currCxn;
+								break;										
+							}
+						}else{
+							newBELPin = currCxn;
+							break;
+						}
+					}
+				}
+				String key = c.getSiteName() + "/" + c.getBELName().charAt(0);
+				HashMap<String,PinSwap> ps = pinSwaps.get(key);
+				String psKey = oldPhysicalPinName +">"+newBELPin.getName();
+				if(ps == null){
+					ps = new HashMap<>();
+					pinSwaps.put(key, ps);
+				}
+				PinSwap match = ps.get(psKey);
+				if(match != null){
+					// Add companion cell mapping
+					match.setCompanionCell(c, logicalPinName);
+				}else{
+					// Create new entry
+					String depopulatedLogicalPinName = c.getLogicalPinMapping(newBELPin.getName());
+					ps.put(psKey, new PinSwap(c, logicalPinName,oldPhysicalPinName,newBELPin.getName(), depopulatedLogicalPinName, newPin.getPinName()));							
+				}
+			}
+			return;
+		}
+		PIP edge = graph.getPIP(n0, n1);
+		if(edge != null){
+			PIP pip = new PIP(edge.getTile(),edge.getStartWireIndex(),edge.getEndWireIndex());
+			pip.setIsPIPFixed(fixRouting);
+			currNet.addPIP(pip);
+			return;
+		}
+		boolean foundPIP = false;
+		outer: for(Wire w : n0.getAllWiresInNode()){
+			for(PIP p : w.getForwardPIPs()){
+				Node n2 = new Node(p.getEndWire());
+				if(n1.equals(n2)){
+					PIP pip = new PIP(w.getTile(),w.getWireIndex(),p.getEndWireIndex());
+					pip.setIsPIPFixed(fixRouting);
+					currNet.addPIP(pip);
+					foundPIP = true;
+					break outer;
+				}
+			}
+		}
+		if(!foundPIP){
+			throw new RuntimeException("ERROR: Couldn't find pip from line:\n'" + line + "'");
+		}
+	}
+	
 	/**
 	 * For each pair of LUT sites (5LUT/6LUT), swap pins to reflect the 
 	 * solution from the SAT solver. 
@@ -733,6 +857,20 @@ public class SATRouter {
 		
 		createNetsFiles();
 		createPipFile();
+		if(USE_JAVA_SOLVER || !isEvRouterAvailable()){
+			int[][] solution = runJavaSolver();
+			if(solution == null){
+				throw new RuntimeException("\n  ERROR: SAT Routing failed for design '" 
+						+ design.getName() + "' with pblock '" + pblock.toString() 
+						+ "'. \n  The built-in solver found no solution within " 
+						+ (maxConflicts == null ? "" : maxConflicts + " node conflicts and ") 
+						+ (maxPasses == null ? SATRouteSolver.DEFAULT_MAX_PASSES : maxPasses) + " passes."
+						+ " \n  The solver is heuristic, so the problem may still be routable: raise the"
+						+ " limits or route with evRouter (requires Vivado).");
+			}
+			applyRoutingResult(solution);
+			return;
+		}
 		int result = runEvRouter();
 		if(result != 0){
 			int lastLineCount = 10;
@@ -762,6 +900,20 @@ public class SATRouter {
 		applyRoutingResult();
 	}
 	
+	/**
+	 * @return the number of parallel searches of the built-in solver
+	 */
+	public int getSolverThreads() {
+		return solverThreads;
+	}
+
+	/**
+	 * @param solverThreads the number of parallel searches of the built-in solver
+	 */
+	public void setSolverThreads(int solverThreads) {
+		this.solverThreads = solverThreads;
+	}
+
 	/**
 	 * @return the verbosity
 	 */
@@ -784,6 +936,10 @@ public class SATRouter {
 	}
 
 	/**
+	 * For evRouter this is the maximum number of SAT conflicts, for the built-in solver it is
+	 * the maximum number of node conflicts (nodes shared by several nets at the end of a pass, 
+	 * summed over all passes), see {@link SATRouteSolver#setMaxConflicts(Integer)}.  A limit
+	 * tuned for one doesn't carry over to the other.
 	 * @param maxConflicts the maxConflicts to set
 	 */
 	public void setMaxConflicts(Integer maxConflicts) {
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.Node;
+import com.xilinx.rapidwright.device.PIP;
+import com.xilinx.rapidwright.device.Wire;
+
+/**
+ * The routing graph handed to evRouter, kept in memory while the solver runs.  Each node 
+ * gets an integer id when it is first written, its name is computed once and the PIP 
+ * behind each edge is remembered, so the solution can be mapped straight back to 
+ * {@link Node}s and {@link PIP}s instead of looking every name up in the device again.
+ * The LUT input wires of the LUT crossbar are vertices of the graph as well, they share 
+ * the id space of the nodes.  The edges and nets recorded here are also the input of 
+ * {@link SATRouteSolver}.
+ * 
+ * Created on: Oct 18, 2020
+ */
+public class SATRouterGraph {
+
+	private Map<Node,Integer> ids = new HashMap<>();
+	
+	private Map<Wire,Integer> wireIds = new HashMap<>();
+	
+	/** Node of each vertex, null for LUT input wires */
+	private List<Node> nodes = new ArrayList<>();
+	
+	private List<String> names = new ArrayList<>();
+	
+	private Map<String,Node> nodesByName = new HashMap<>();
+	
+	/** LUT input wires written as the inputs of the LUT crossbar */
+	private Map<String,Wire> wiresByName = new HashMap<>();
+	
+	/** The PIP of each edge, keyed by the ids of its start and end nodes */
+	private Map<Long,PIP> edgePIPs = new HashMap<>();
+	
+	/** All edges in the order they were written, keyed as in {@link #edgePIPs} */
+	private long[] edges = new long[1024];
+	
+	private int edgeCount;
+	
+	private List<String> netNames = new ArrayList<>();
+	
+	/** Source followed by the sinks of each net, as vertex ids */
+	private List<int[]> netTerminals = new ArrayList<>();
+	
+	/**
+	 * Gets the id of a node, adding it to the graph if it is new.
+	 * @param n The node.
+	 * @return The id of the node.
+	 */
+	public int getId(Node n){
+		Integer id = ids.get(n);
+		if(id == null){
+			id = nodes.size();
+			ids.put(n, id);
+			nodes.add(n);
+			String name = n.toString();
+			names.add(name);
+			nodesByName.put(name, n);
+		}
+		return id;
+	}
+	
+	/**
+	 * Gets the id of a LUT input wire, adding it to the graph if it is new.
+	 * @param w The wire.
+	 * @return The id of the wire.
+	 */
+	public int getId(Wire w){
+		Integer id = wireIds.get(w);
+		if(id == null){
+			id = nodes.size();
+			wireIds.put(w, id);
+			nodes.add(null);
+			String name = w.toString();
+			names.add(name);
+			wiresByName.put(name, w);
+		}
+		return id;
+	}
+	
+	/**
+	 * @param n A node of the graph.
+	 * @return True if the node was added to the graph.
+	 */
+	public boolean contains(Node n){
+		return ids.containsKey(n);
+	}
+	
+	/**
+	 * Gets the name of a node as written to evRouter, adding the node if it is new.
+	 * @param n The node.
+	 * @return The name of the node.
+	 */
+	public String getName(Node n){
+		return names.get(getId(n));
+	}
+	
+	/**
+	 * Gets the name of a wire as written to evRouter and remembers the wire by its name.
+	 * @param w The wire.
+	 * @return The name of the wire.
+	 */
+	public String getName(Wire w){
+		return names.get(getId(w));
+	}
+	
+	/**
+	 * @param id Id of a node or wire of the graph.
+	 * @return The name of the node or wire.
+	 */
+	public String getName(int id){
+		return names.get(id);
+	}
+	
+	/**
+	 * Records the PIP driving an edge of the graph, the first one recorded is kept.
+	 * @param start Start node of the edge.
+	 * @param end End node of the edge.
+	 * @param p The PIP connecting them.
+	 */
+	public void addEdge(Node start, Node end, PIP p){
+		long key = getEdgeKey(getId(start), getId(end));
+		if(edgePIPs.putIfAbsent(key, p) == null) appendEdge(key);
+	}
+	
+	/**
+	 * Records an edge of the LUT crossbar, from a LUT input node to a LUT input wire.  Taking 
+	 * such an edge swaps the LUT pins, it has no PIP.
+	 * @param start The LUT input node.
+	 * @param end The LUT input wire.
+	 */
+	public void addEdge(Node start, Wire end){
+		appendEdge(getEdgeKey(getId(start), getId(end)));
+	}
+	
+	private void appendEdge(long key){
+		if(edgeCount == edges.length) edges = Arrays.copyOf(edges, edgeCount * 2);
+		edges[edgeCount++] = key;
+	}
+	
+	/**
+	 * @return The number of edges in the graph.
+	 */
+	public int getEdgeCount(){
+		return edgeCount;
+	}
+	
+	/**
+	 * @param i Index of the edge.
+	 * @return Id of the start node of the edge.
+	 */
+	public int getEdgeStart(int i){
+		return (int) (edges[i] >>> 32);
+	}
+	
+	/**
+	 * @param i Index of the edge.
+	 * @return Id of the end node or wire of the edge.
+	 */
+	public int getEdgeEnd(int i){
+		return (int) edges[i];
+	}
+	
+	/**
+	 * Records a net of the routing problem.
+	 * @param name Name of the net.
+	 * @param terminals Ids of the source followed by the sinks of the net.
+	 */
+	public void addNet(String name, int[] terminals){
+		netNames.add(name);
+		netTerminals.add(terminals);
+	}
+	
+	/**
+	 * Removes all nets of the routing problem, the nodes and edges are kept.
+	 */
+	public void clearNets(){
+		netNames.clear();
+		netTerminals.clear();
+	}
+	
+	/**
+	 * @return The names of the nets of the routing problem.
+	 */
+	public List<String> getNetNames(){
+		return netNames;
+	}
+	
+	/**
+	 * @return Ids of the source followed by the sinks for each net of the routing problem.
+	 */
+	public List<int[]> getNetTerminals(){
+		return netTerminals;
+	}
+	
+	private static long getEdgeKey(int start, int end){
+		return ((long) start << 32) | (end & 0xffffffffL);
+	}
+	
+	/**
+	 * Gets the PIP of an edge of the graph.
+	 * @param start Start node of the edge.
+	 * @param end End node of the edge.
+	 * @return The PIP or null if the graph has no such edge.
+	 */
+	public PIP getPIP(Node start, Node end){
+		Integer startId = ids.get(start);
+		Integer endId = ids.get(end);
+		if(startId == null || endId == null) return null;
+		return edgePIPs.get(getEdgeKey(startId, endId));
+	}
+	
+	/**
+	 * Gets a node by the name it was written with, or looks it up in the device if it is not
+	 * part of the graph.
+	 * @param name Name of the node or of one of its wires.
+	 * @param dev The device.
+	 * @return The node.
+	 */
+	public Node getNode(String name, Device dev){
+		Node n = nodesByName.get(name);
+		if(n != null) return n;
+		Wire w = wiresByName.get(name);
+		if(w != null) return new Node(w);
+		return new Node(name, dev);
+	}
+	
+	/**
+	 * Gets a wire by the name it was written with, or looks it up in the device.
+	 * @param name Name of the wire.
+	 * @param dev The device.
+	 * @return The wire.
+	 */
+	public Wire getWire(String name, Device dev){
+		Wire w = wiresByName.get(name);
+		return w != null ? w : new Wire(dev, name);
+	}
+	
+	/**
+	 * @return The number of nodes and wires in the graph.
+	 */
+	public int getNodeCount(){
+		return nodes.size();
+	}
+}
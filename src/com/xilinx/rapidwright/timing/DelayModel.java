@@ -86,6 +86,81 @@ public interface DelayModel {
      * please see getLogicDelay(String belName, String frBelPin, String toBelPin, List<String> config).
      */
      public short getLogicDelay(String belName, String frBelPin, String toBelPin);
+
+    // The following methods resolve names to indices once such that repeated lookups (for example, 
+    // for every edge of a TimingGraph) do not need to build or hash any Strings.
+
+    /**
+     * Get the index of a site type to be used with 
+     * {@link #getIntraSiteDelay(int, int, int)}.
+     *
+     * @param siteTypeName The site type, such as SLICEL and SLICEM.
+     * @return The index of the site type, or -1 if the site type is not recognized by the model.
+     */
+    public int getSiteTypeIndex(SiteTypeEnum siteTypeName);
+
+    /**
+     * Get the index of a bel to be used with {@link #getLogicDelay(int, int, int, short)}.
+     *
+     * @param belName The name of the bel, such as A6LUT and CARRY8.
+     * @return The index of the bel, or -1 if the bel is not recognized by the model.
+     */
+    public int getBELIndex(String belName);
+
+    /**
+     * Get the index of a pin name used by the model, such as a bel input pin (A1), a site pin 
+     * or a bel pin including the bel name (AFF2/D).
+     *
+     * @param pinName The pin name.
+     * @return The index of the pin, or -1 if the pin does not appear in any timing arc.
+     */
+    public int getPinIndex(String pinName);
+
+    /**
+     * Get the index of a pin name that includes the bel name, such that 
+     * getPinIndex(belName, pinName) == getPinIndex(belName + "/" + pinName).
+     *
+     * @param belName The name of the bel, such as AFF2.
+     * @param pinName The name of the pin on the bel, such as D.
+     * @return The index of the pin, or -1 if the pin does not appear in any timing arc.
+     */
+    public int getPinIndex(String belName, String pinName);
+
+    /**
+     * Get the encoded form of a bel configuration to be used with 
+     * {@link #getLogicDelay(int, int, int, short)}.
+     *
+     * @param belName The name of the bel, such as CARRY8.
+     * @param config A list of config_name:value of the bel, see 
+     * {@link #getLogicDelay(String, String, String, List)}.
+     * @return The encoded configuration.
+     */
+    public short getConfigCode(String belName, List<String> config);
+
+    /**
+     * Get the delay in ps between two pins within a site using indices (see 
+     * {@link #getIntraSiteDelay(SiteTypeEnum, String, String)}).
+     *
+     * @param siteTypeIdx Index from {@link #getSiteTypeIndex(SiteTypeEnum)}.
+     * @param frPinIdx Index from {@link #getPinIndex(String)} of the driver of the connection.
+     * @param toPinIdx Index from {@link #getPinIndex(String)} of the sink of the connection.
+     * @return Intra-site delay in ps. Return a negative value if the connection does not exist.
+     * @throws  IllegalArgumentException if the site type index is negative.
+     */
+    public short getIntraSiteDelay(int siteTypeIdx, int frPinIdx, int toPinIdx);
+
+    /**
+     * Get the delay between input and output pins of a bel using indices (see 
+     * {@link #getLogicDelay(String, String, String, List)}).
+     *
+     * @param belIdx Index from {@link #getBELIndex(String)}.
+     * @param frPinIdx Index from {@link #getPinIndex(String)} of an input bel pin.
+     * @param toPinIdx Index from {@link #getPinIndex(String)} of an output bel pin.
+     * @param config Encoded configuration from {@link #getConfigCode(String, List)}, 0 if none.
+     * @return Logic delay in ps. Return a negative value if the connection does not exist.
+     * @throws  IllegalArgumentException if the bel index is negative.
+     */
+    public short getLogicDelay(int belIdx, int frPinIdx, int toPinIdx, short config);
 }
 
 
@@ -28,13 +28,15 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Build a delay model.
  *
  * Never construct DelayModel directly. DelayModelBuilder guarantees that there is at most one DelayModel
- * ie., DelayModelBuilder returns the existing model.
+ * per series in the process, ie., DelayModelBuilder returns the existing model of the series.
  */
 class DelayModelBuilder {
 
@@ -50,9 +52,12 @@ class DelayModelBuilder {
      * List all the valid sources to store the model. Adding new sources require appending them to 
      * the end of valid_mode or valid_source. Never change the order of existing entries.
      */
-    private static String[]   valid_source = {"text"};
+    private static String[]   valid_source = {"text", "binary"};
 
-    private static DelayModel aModel       = null;
+    /**
+     * Models already built, keyed by the file they were built from.
+     */
+    private static Map<String, DelayModel> models = new HashMap<>();
 
     /**
      * Prepare the appropriate input file for {@link #getDelayModel(String, String, String)}
@@ -60,43 +65,45 @@ class DelayModelBuilder {
     public static DelayModel getDelayModel(String series) {
         String fileName = TimingModel.TIMING_DATA_DIR + File.separator +series+
                 File.separator + "intrasite_delay_terms.txt";
-        return getDelayModel("small", "text", fileName);
+        String source = TimingDataFiles.USE_BINARY_FILES ? "binary" : "text";
+        return getDelayModel("small", source, fileName);
     }
 
     /**
      * The method that decides to build a new model or to return the existing one.
      * Please see the method newDelayModel for parameters' description.
      */
-    private static DelayModel getDelayModel(String mode, String source, String fileName) {
-        if (aModel == null) {
-            synchronized (DelayModelBuilder.class) {
-                if (aModel == null) {
-                    newDelayModel(mode, source, fileName);
-                }
-            }
+    private static synchronized DelayModel getDelayModel(String mode, String source, String fileName) {
+        DelayModel model = models.get(fileName);
+        if (model == null) {
+            model = newDelayModel(mode, source, fileName);
+            models.put(fileName, model);
         }
-        return aModel;
+        return model;
     }
 
     /**
      * The method to build DelayModel and DelayModelSource according to the given parameters.
      * @param mode      The type of delay model. It defines how data are stored which will affect 
      * the memory requirement and how fast the lookup is. Currently, the only valid entry is "small".
-     * @param source    The source of delay model. Currently, the only valid entry is "text".
+     * @param source    The source of delay model. Valid entries are "text" and "binary". The latter
+     * reads the binary form of the text file, (re)generating it if it is missing or stale.
      * @param fileName  The text file describing the delay model.
      * @throws IllegalArgumentException  This method throw IllegalArgumentException if the fileName
      *  does not exist.
      */
-    private static void newDelayModel(String mode, String source, String fileName) {
+    private static DelayModel newDelayModel(String mode, String source, String fileName) {
         DelayModelSource src;
         if (source.equalsIgnoreCase(valid_source[0])) {
             src = new DelayModelSourceFromText(fileName);
+        } else if (source.equalsIgnoreCase(valid_source[1])) {
+            src = DelayModelSourceFromBinary.load(fileName);
         } else {
             throw new IllegalArgumentException("DelayModelBuilder: Unknown source to newDelayModel.");
         }
 
         if (mode.equalsIgnoreCase(valid_mode[0])) {
-            aModel = new SmallDelayModel(src);
+            return new SmallDelayModel(src);
         } else {
             throw new IllegalArgumentException("DelayModelBuilder: Unknown mode to newDelayModel.");
         }
@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright (c) 2019 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.xilinx.rapidwright.timing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An implementation of DelayModelSource reading the binary form of an intra-site delay text file.
+ * The binary file is generated from the text file by {@link #load(String)} and is regenerated
+ * whenever the text file changes (see {@link TimingDataFiles}).
+ *
+ * The payload is a string table followed by the config code map, the logic delay entries and
+ * the intra-site delay entries. Entries refer to names by their index in the string table.
+ */
+class DelayModelSourceFromBinary extends DelayModelSource {
+
+    /**
+     * Identifies the binary form of an intra-site delay file.
+     */
+    static final int MAGIC = 0x52574453; // "RWDS"
+
+    /**
+     * Bumped whenever the binary format or the parsing of the text file changes.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Constructor for DelayModelSourceFromBinary class.
+     * @param buf A buffer positioned at the payload of the binary file.
+     */
+    public DelayModelSourceFromBinary(ByteBuffer buf) {
+        name = "DelayModelSourceFromBinary";
+        String[] strings = new String[buf.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = TimingDataFiles.readString(buf);
+        }
+        int configCount = buf.getInt();
+        configCodeMap = new HashMap<String, Short>();
+        for (int i = 0; i < configCount; i++) {
+            String key = strings[buf.getInt()];
+            configCodeMap.put(key, buf.getShort());
+        }
+        logicDelays     = readEntries(buf, strings);
+        intraSiteDelays = readEntries(buf, strings);
+    }
+
+    private static List<DelayEntry> readEntries(ByteBuffer buf, String[] strings) {
+        int count = buf.getInt();
+        List<DelayEntry> entries = new ArrayList<DelayEntry>(count);
+        for (int i = 0; i < count; i++) {
+            String s = strings[buf.getInt()];
+            String f = strings[buf.getInt()];
+            String t = strings[buf.getInt()];
+            short  d = buf.getShort();
+            short  c = buf.getShort();
+            entries.add(new DelayEntry(s, f, t, d, c));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the source for an intra-site delay text file. The binary form is read if it is
+     * current, otherwise the text file is parsed and the binary form is (re)generated.
+     * @param fileName Specify the text file to load logic and intra-site delays from.
+     * @return The source of the delay model.
+     */
+    public static DelayModelSource load(String fileName) {
+        ByteBuffer buf = TimingDataFiles.readBinaryFile(fileName, MAGIC, VERSION);
+        if (buf != null) {
+            return new DelayModelSourceFromBinary(buf);
+        }
+        DelayModelSource src = new DelayModelSourceFromText(fileName);
+        try {
+            TimingDataFiles.writeBinaryFile(fileName, MAGIC, VERSION, encode(src));
+        } catch (IOException e) {
+            // Not fatal, the text file will be parsed again next time
+        }
+        return src;
+    }
+
+    /**
+     * Serializes the entries of a source to the payload of a binary file.
+     * @param src The source to serialize.
+     * @return The payload bytes.
+     */
+    static byte[] encode(DelayModelSource src) throws IOException {
+        Map<String, Integer> stringIdx = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (String key : src.configCodeMap.keySet()) {
+            getStringIndex(key, stringIdx, strings);
+        }
+        List<DelayEntry> allEntries = new ArrayList<>(src.logicDelays);
+        allEntries.addAll(src.intraSiteDelays);
+        for (DelayEntry e : allEntries) {
+            getStringIndex(e.scope, stringIdx, strings);
+            getStringIndex(e.fr, stringIdx, strings);
+            getStringIndex(e.to, stringIdx, strings);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bytes);
+        dos.writeInt(strings.size());
+        for (String s : strings) {
+            dos.writeUTF(s);
+        }
+        dos.writeInt(src.configCodeMap.size());
+        for (Map.Entry<String, Short> e : src.configCodeMap.entrySet()) {
+            dos.writeInt(stringIdx.get(e.getKey()));
+            dos.writeShort(e.getValue());
+        }
+        writeEntries(dos, src.logicDelays, stringIdx);
+        writeEntries(dos, src.intraSiteDelays, stringIdx);
+        dos.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntries(DataOutputStream dos, List<DelayEntry> entries,
+            Map<String, Integer> stringIdx) throws IOException {
+        dos.writeInt(entries.size());
+        for (DelayEntry e : entries) {
+            dos.writeInt(stringIdx.get(e.scope));
+            dos.writeInt(stringIdx.get(e.fr));
+            dos.writeInt(stringIdx.get(e.to));
+            dos.writeShort(e.delay);
+            dos.writeShort(e.config);
+        }
+    }
+
+    private static int getStringIndex(String s, Map<String, Integer> stringIdx, List<String> strings) {
+        Integer idx = stringIdx.get(s);
+        if (idx == null) {
+            idx = strings.size();
+            stringIdx.put(s, idx);
+            strings.add(s);
+        }
+        return idx;
+    }
+}
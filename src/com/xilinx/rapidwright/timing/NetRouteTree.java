@@ -0,0 +1,110 @@
+/*
+ *
+ * Copyright (c) 2019 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.xilinx.rapidwright.timing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xilinx.rapidwright.design.Net;
+import com.xilinx.rapidwright.device.Node;
+import com.xilinx.rapidwright.device.PIP;
+
+/**
+ * The routing of a physical net compiled into parent pointers.  Each node driven by a PIP of the
+ * net maps to that PIP, so the path from any sink back to the source is found by following PIP
+ * start nodes.  A tree is built once and shared by all sinks of the net.  It remembers the PIP 
+ * list it was built from and its size, so that setting new PIPs on the net or adding or removing 
+ * PIPs is detected in constant time.  Other changes made to the PIP list in place must be followed
+ * by {@link TimingModel#invalidateRouteTree(Net)}.
+ */
+class NetRouteTree {
+
+    /**
+     * PIP list of the net the tree was built from.
+     */
+    private final List<PIP> pips;
+
+    /**
+     * Size of the PIP list when the tree was built.
+     */
+    private final int pipCount;
+
+    /**
+     * Maps a node to the PIP of the net driving it.
+     */
+    private final Map<Node, PIP> drivers;
+
+    /**
+     * Builds the route tree of a net.
+     * @param net Physical net.
+     */
+    NetRouteTree(Net net) {
+        pips = net.getPIPs();
+        pipCount = pips.size();
+        drivers = new HashMap<>(pipCount * 2);
+        for (PIP p : pips) {
+            drivers.put(p.getEndNode(), p);
+        }
+    }
+
+    /**
+     * Checks if the net still has the PIP list the tree was built from, with the same number of 
+     * PIPs.  The PIPs themselves are not compared.
+     * @param net Physical net.
+     * @return False if the PIP list of the net was replaced or resized since the tree was built.
+     */
+    boolean isCurrent(Net net) {
+        List<PIP> current = net.getPIPs();
+        return current == pips && current.size() == pipCount;
+    }
+
+    /**
+     * Gets the PIP of the net driving a node.
+     * @param node A node of the net.
+     * @return The driving PIP or null if the node is not driven by a PIP of the net.
+     */
+    PIP getDriver(Node node) {
+        return drivers.get(node);
+    }
+
+    /**
+     * Follows the parent pointers from a sink back to the source.
+     * @param sink The node connected to the sink pin.
+     * @param source The node connected to the source pin.
+     * @param nodeList List to populate with the ordered nodes from the sink back to the source.
+     * @param relevantPIPs List to populate with the PIPs between the nodes of nodeList.
+     */
+    void getPath(Node sink, Node source, List<Node> nodeList, List<PIP> relevantPIPs) {
+        Node node = sink;
+        while (node != null && !node.equals(source)) {
+            PIP p = drivers.get(node);
+            if (p == null) break;
+            relevantPIPs.add(p);
+            nodeList.add(node);
+            node = p.getStartNode();
+        }
+        if (node != null) {
+            nodeList.add(node);
+        }
+    }
+}
@@ -24,7 +24,9 @@
 package com.xilinx.rapidwright.timing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -34,6 +36,11 @@ import com.xilinx.rapidwright.device.SiteTypeEnum;
 
 /**
  * Implement DelayModel using as small memory as possible.
+ *
+ * BEL, site and pin names are resolved to dense indices when the model is constructed and the 
+ * delays are stored in flat open addressing tables keyed by (bel or site index, from pin index, 
+ * to pin index).  Lookups through the int-based methods of {@link DelayModel} do not allocate 
+ * or hash any Strings.
  */
 class SmallDelayModel implements DelayModel {
 
@@ -45,146 +52,198 @@ class SmallDelayModel implements DelayModel {
      * Specify equivalent sites for logic delays. Equivalent sites map to the same index.
      */
     private Map<String, Short> site2IdxMap;
-
-    private HashMap<String, List<Short[]>> logicDelays;
-    private HashMap<String, Short> intraSiteDelays;
+    /**
+     * Site index of each SiteTypeEnum (by ordinal), -1 if the site type is not in the model.
+     */
+    private short[] siteType2Idx;
     /**
      * Mapping between config value of a bel to a one-hot binary.
      */
     private Map<String, Short> configCodeMap;
+    /**
+     * Dense index of every pin name (bel pin, bel/pin or site pin) found in the delay tables.
+     */
+    private HashMap<String, Integer> pin2IdxMap;
+    /**
+     * Index of "bel/pin" names in pin2IdxMap, by bel name and then by pin name.
+     */
+    private HashMap<String, HashMap<String, Integer>> belPin2IdxMap;
+
+    /** Number of bits of a pin index in a table key */
+    private static final int PIN_BITS = 21;
+    private static final long EMPTY_KEY = -1L;
+
+    private long[] intraSiteKeys;
+    private short[] intraSiteDelays;
+
+    private long[] logicKeys;
+    /** Index of the first entry of an arc in logicDelayValues and logicDelayConfigs */
+    private int[] logicFirstEntry;
+    private int[] logicEntryCount;
+    private short[] logicDelayValues;
+    private short[] logicDelayConfigs;
 
     /**
      *  Implement the method with the same signature defined in DelayModel interface.
      */
     public short getIntraSiteDelay(SiteTypeEnum siteTypeName, String frBelPin, String toBelPin) {
-        boolean verbose = false;
-        Short delay = null;
-        Short idx = site2IdxMap.get(siteTypeName.name());
-        if (idx == null) {
+        int idx = getSiteTypeIndex(siteTypeName);
+        if (idx < 0) {
             throw new IllegalArgumentException("SmallDelayModel: Unknown site/belName to getIntraSiteDelay."
                     + "  site/belName " + siteTypeName + "  frBelPin " + frBelPin + "  toBelPin " + toBelPin);
-        } else {
-            // Certain that the following combination do not cause duplication. Otherwise, separators must be added.
-            String key = idx + frBelPin + toBelPin;
-            delay = intraSiteDelays.get(key);
-            if (delay == null) {
-                delay = -2;
-                if (verbose) {
-                    System.out.println("WARNING in SmallDelayModel: Unknown connection to getIntraSiteDelay."
-                            + "  site/belName " + siteTypeName + "  frBelPin " + frBelPin + "  toBelPin " + toBelPin);
-                }
-            }
         }
-        return delay;
+        return getIntraSiteDelay(idx, getPinIndex(frBelPin), getPinIndex(toBelPin));
     }
 
     /**
      *  Implement the method with the same signature defined in DelayModel interface.
      */
     public short getLogicDelay(String belName, String frBelPin, String toBelPin) {
-        return getLogicDelay(belName, frBelPin, toBelPin, new ArrayList<>());
+        return getLogicDelay(getBELIndex(belName, frBelPin, toBelPin), getPinIndex(frBelPin), 
+                getPinIndex(toBelPin), (short) 0);
     }
 
     /**
      *  Implement the method with the same signature defined in DelayModel interface.
      */
     public short getLogicDelay(String belName, String frBelPin, String toBelPin, List<String> config) {
-        boolean verbose = false;
-        Short encodedConfig = 0;
-        for (String s : config) {
-            Short e = configCodeMap.get(belName + ":" + s);
-            encodedConfig = (short) (encodedConfig | e);
-        }
+        return getLogicDelay(getBELIndex(belName, frBelPin, toBelPin), getPinIndex(frBelPin), 
+                getPinIndex(toBelPin), getConfigCode(belName, config));
+    }
 
-        List<Short[]> entries = null;
-        Short idx = bel2IdxMap.get(belName);
-        if (idx == null) {
+    private int getBELIndex(String belName, String frBelPin, String toBelPin) {
+        int idx = getBELIndex(belName);
+        if (idx < 0) {
             throw new IllegalArgumentException("SmallDelayModel: Unknown site/belName to getLogicDelay."
                     + "  site/belName " + belName + "  frBelPin " + frBelPin + "  toBelPin " + toBelPin);
-        } else {
-            Short delay = -2;
-
-            // Certain that the following combination do not cause duplication. Otherwise, separators must be added.
-            String key = idx + frBelPin + toBelPin;
-            entries = logicDelays.get(key);
-
-            if (entries != null) {
-                for (Short[] entry : entries) {
-                    assert entry.length == 2 :
-                            " Wrong number of elements in an entry of logicDelay. " + entry.length + " expect 2.";
-                    if ((encodedConfig & entry[1]) == encodedConfig) {
-                        delay = entry[0];
-                        break;
-                    }
-                }
-            }
+        }
+        return idx;
+    }
 
-            if (verbose && delay < 0) {
-                System.out.println("WARNING in SmallDelayModel: Unknown connection to getLogicDelay."
-                        + "  site/belName " + belName + "  frBelPin " + frBelPin + "  toBelPin " + toBelPin
-                        + "  config " + config);
-            }
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public int getSiteTypeIndex(SiteTypeEnum siteTypeName) {
+        return siteType2Idx[siteTypeName.ordinal()];
+    }
+
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public int getBELIndex(String belName) {
+        Short idx = bel2IdxMap.get(belName);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public int getPinIndex(String pinName) {
+        if (pinName == null) return -1;
+        Integer idx = pin2IdxMap.get(pinName);
+        return idx == null ? -1 : idx;
+    }
 
-            return delay;
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public int getPinIndex(String belName, String pinName) {
+        HashMap<String, Integer> pins = belPin2IdxMap.get(belName);
+        if (pins == null) return -1;
+        Integer idx = pins.get(pinName);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public short getConfigCode(String belName, List<String> config) {
+        short encodedConfig = 0;
+        for (String s : config) {
+            Short e = configCodeMap.get(belName + ":" + s);
+            encodedConfig = (short) (encodedConfig | e);
         }
+        return encodedConfig;
     }
 
     /**
-     * Store the given timing arc for intra-site delay.
-     * @param idx      a short integer specifying a site
-     * @param fr       a bel or site pin specifying the begin of the intra-site connection
-     * @param to       a bel or site pin specifying the end of the intra-site connection
-     * @param delay    the delay of the intra-site connection
-     * @param siteName the site name to be used in case of exception
+     *  Implement the method with the same signature defined in DelayModel interface.
+     */
+    public short getIntraSiteDelay(int siteTypeIdx, int frPinIdx, int toPinIdx) {
+        if (siteTypeIdx < 0) {
+            throw new IllegalArgumentException("SmallDelayModel: Unknown site index to getIntraSiteDelay.");
+        }
+        if (frPinIdx < 0 || toPinIdx < 0) {
+            return -2;
+        }
+        int slot = findSlot(intraSiteKeys, getKey(siteTypeIdx, frPinIdx, toPinIdx));
+        return intraSiteKeys[slot] == EMPTY_KEY ? -2 : intraSiteDelays[slot];
+    }
+
+    /**
+     *  Implement the method with the same signature defined in DelayModel interface.
      */
-    private void storeIntraSiteDelay(Short idx, String fr, String to, Short delay, String siteName) {
-        String key = idx + fr + to;
-        if (intraSiteDelays.containsKey(key)) {
-            throw new IllegalArgumentException("SmallDelayModel: Duplicate entry found for " +
-                    siteName + "  fr " + fr + "  to " + to + " .");
-        } else {
-            intraSiteDelays.put(key, delay);
+    public short getLogicDelay(int belIdx, int frPinIdx, int toPinIdx, short config) {
+        if (belIdx < 0) {
+            throw new IllegalArgumentException("SmallDelayModel: Unknown bel index to getLogicDelay.");
         }
+        if (frPinIdx < 0 || toPinIdx < 0) {
+            return -2;
+        }
+        int slot = findSlot(logicKeys, getKey(belIdx, frPinIdx, toPinIdx));
+        if (logicKeys[slot] == EMPTY_KEY) {
+            return -2;
+        }
+        int first = logicFirstEntry[slot];
+        int end = first + logicEntryCount[slot];
+        for (int i = first; i < end; i++) {
+            if ((config & logicDelayConfigs[i]) == config) {
+                return logicDelayValues[i];
+            }
+        }
+        return -2;
+    }
+
+    private static long getKey(int scopeIdx, int frPinIdx, int toPinIdx) {
+        return ((long) scopeIdx << (2 * PIN_BITS)) | ((long) frPinIdx << PIN_BITS) | toPinIdx;
     }
 
     /**
-     * Store the given timing arc for logic delay of a bel.
-     *
-     * @param idx      a short integer specifying a bel
-     * @param fr       a input bel pin
-     * @param to       a output bel pin
-     * @param delay    the logic delay between the fr and to pins
-     * @param config   bit-wise OR of all valid configuration of this timing arc
+     * Gets the slot of the key in an open addressing table, or the empty slot where it would be 
+     * inserted.
      */
-    // A timing arc representing a logic delay can have different values depending on bel configuration.
-    // Take CARRY8 for example, if CI comes from AX pin, the logic delay from CI is 50 ps more than
-    // if CI comes from CIN pin. Using config as part of the key requires more entry in the map.
-    // For example, CARRY8 have 3 config parameters with 4, 4 and 2 possible values.
-    // If config is included as a part of the dictionary key, a common arc will need to store 32 times
-    // with only different being the config.
-    // A different approach is implemented here where config is in values instead of keys.
-    // Each value will have another Short to store valid configurations for the arc, called config,
-    // in addition to one Short for delay value. Each value of a configuration is assigned a unique value,
-    // representing in one-hot binary with.
-    // The config of an arc is a bit-wise OR of all of its valid configuration.
-    // As config is not in the key, values of an arc cen be a List, one element for a distinct delay value.
-    // As a result, there is a small runtime overhead to go through the list.
-    // However, the size of these lists is only 3. Thus, the overhead of this is much less than 2x.
-    private void storeLogicDelay(Short idx, String fr, String to, Short delay, Short config) {
-        String key = idx + fr + to;
-        // Is there a shortcut for this?
-        Short[] t = new Short[2];
-        t[0] = delay;
-        t[1] = config;
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long[] newKeyTable(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(4, entries * 2 - 1)) << 1;
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        return keys;
+    }
 
-        List<Short[]> entries = null;
-        if (logicDelays.containsKey(key)) {
-            entries = logicDelays.get(key);
-        } else {
-            entries = new ArrayList<Short[]>();
+    private int getOrCreatePinIndex(String pinName) {
+        Integer idx = pin2IdxMap.get(pinName);
+        if (idx == null) {
+            idx = pin2IdxMap.size();
+            if (idx >= (1 << PIN_BITS)) {
+                throw new IllegalArgumentException("SmallDelayModel: Too many pin names in delay model.");
+            }
+            pin2IdxMap.put(pinName, idx);
+            int sep = pinName.indexOf('/');
+            if (sep > 0) {
+                belPin2IdxMap.computeIfAbsent(pinName.substring(0, sep), k -> new HashMap<>())
+                             .put(pinName.substring(sep + 1), idx);
+            }
         }
-        entries.add(t);
-        logicDelays.put(key, entries);
+        return idx;
     }
 
     /**
@@ -193,13 +252,25 @@ class SmallDelayModel implements DelayModel {
      */
     public SmallDelayModel(DelayModelSource src) {
 
-        logicDelays     = new HashMap<String, List<Short[]>>();
-        intraSiteDelays = new HashMap<String, Short>();
         bel2IdxMap      = src.getBEL2IdxMap();
         site2IdxMap     = src.getSite2IdxMap();
+        pin2IdxMap      = new HashMap<>();
+        belPin2IdxMap   = new HashMap<>();
+
+        siteType2Idx = new short[SiteTypeEnum.values().length];
+        for (SiteTypeEnum t : SiteTypeEnum.values()) {
+            Short idx = site2IdxMap.get(t.name());
+            siteType2Idx[t.ordinal()] = idx == null ? -1 : idx;
+        }
 
         // populate logic delay.
         configCodeMap   = src.getConfigCodeMap();
+        // A timing arc representing a logic delay can have different values depending on bel configuration.
+        // Take CARRY8 for example, if CI comes from AX pin, the logic delay from CI is 50 ps more than
+        // if CI comes from CIN pin. Rather than including the config in the key, each arc stores a short 
+        // list of (delay, config) entries where config is the bit-wise OR of the one-hot codes of all 
+        // valid configurations for that delay.  The entries of an arc are contiguous in the flat arrays.
+        LinkedHashMap<Long, List<DelayEntry>> arcs = new LinkedHashMap<>();
         List<DelayEntry> logicDelayEntries     = src.getLogicDelayEntries();
         for (DelayEntry e : logicDelayEntries) {
             String belName = e.scope;
@@ -209,17 +280,48 @@ class SmallDelayModel implements DelayModel {
                 throw new IllegalArgumentException("SmallDelayModel: Unknown belName to " +
                         belName + " in constructing logic delay database.");
             } else {
-                storeLogicDelay(belIdx, e.fr, e.to, e.delay, e.config);
+                long key = getKey(belIdx, getOrCreatePinIndex(e.fr), getOrCreatePinIndex(e.to));
+                arcs.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+            }
+        }
+        logicKeys = newKeyTable(arcs.size());
+        logicFirstEntry = new int[logicKeys.length];
+        logicEntryCount = new int[logicKeys.length];
+        logicDelayValues = new short[logicDelayEntries.size()];
+        logicDelayConfigs = new short[logicDelayEntries.size()];
+        int entry = 0;
+        for (Map.Entry<Long, List<DelayEntry>> arc : arcs.entrySet()) {
+            int slot = findSlot(logicKeys, arc.getKey());
+            logicKeys[slot] = arc.getKey();
+            logicFirstEntry[slot] = entry;
+            logicEntryCount[slot] = arc.getValue().size();
+            for (DelayEntry e : arc.getValue()) {
+                logicDelayValues[entry] = e.delay;
+                logicDelayConfigs[entry] = e.config;
+                entry++;
             }
         }
 
         // populate intra site delay.
         List<DelayEntry> intraSiteDelayEntries = src.getIntraSiteDelayEntries();
+        intraSiteKeys = newKeyTable(intraSiteDelayEntries.size());
+        intraSiteDelays = new short[intraSiteKeys.length];
         for (DelayEntry e : intraSiteDelayEntries ) {
             String siteName = e.scope;
             // Assumption 2 of DelayModelSource is satisfied by equivalent mapping in site2IdxMap.
             Short siteIdx = site2IdxMap.get(siteName);
-            storeIntraSiteDelay(siteIdx, e.fr, e.to, e.delay, siteName);
+            if (siteIdx == null) {
+                // Unreachable, lookups of unknown sites are rejected
+                continue;
+            }
+            long key = getKey(siteIdx, getOrCreatePinIndex(e.fr), getOrCreatePinIndex(e.to));
+            int slot = findSlot(intraSiteKeys, key);
+            if (intraSiteKeys[slot] != EMPTY_KEY) {
+                throw new IllegalArgumentException("SmallDelayModel: Duplicate entry found for " +
+                        siteName + "  fr " + e.fr + "  to " + e.to + " .");
+            }
+            intraSiteKeys[slot] = key;
+            intraSiteDelays[slot] = e.delay;
         }
     }
 
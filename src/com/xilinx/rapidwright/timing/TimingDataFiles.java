@@ -0,0 +1,204 @@
+/*
+ *
+ * Copyright (c) 2019 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.xilinx.rapidwright.timing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.xilinx.rapidwright.util.FileTools;
+
+/**
+ * Manages the binary forms of the text files under {@link TimingModel#TIMING_DATA_DIR}.
+ *
+ * A binary file is stored under {@link #CACHE_DIR} (the data directory may be a read-only or
+ * shared installation) at the relative path of its text source, with the
+ * {@link #BINARY_FILE_SUFFIX} suffix. Its header records the length and modification time of the
+ * text file it was generated from, so a binary file is only used while the text file is
+ * unchanged. Binary files are read into memory in full rather than memory mapped, as all of
+ * their contents are decoded as soon as they are loaded.
+ */
+class TimingDataFiles {
+
+    /**
+     * Suffix replacing ".txt" in the name of a text data file to get its binary form.
+     */
+    public static final String BINARY_FILE_SUFFIX = ".bin";
+
+    /**
+     * Set to false to always parse the text data files (and never write binary files).
+     */
+    public static boolean USE_BINARY_FILES = true;
+
+    /**
+     * Directory where the binary files are stored, in the home directory of the user by default.
+     */
+    public static String CACHE_DIR = System.getProperty("user.home") + File.separator
+            + ".rapidwright" + File.separator + "cache";
+
+    /**
+     * Identifies the binary form of an intersite delay terms file.
+     */
+    static final int DELAY_TERMS_MAGIC = 0x52574454; // "RWDT"
+
+    /**
+     * Bumped whenever the binary format of the intersite delay terms changes.
+     */
+    static final int DELAY_TERMS_VERSION = 1;
+
+    /**
+     * Gets the text data file on disk for a RapidWright resource name.
+     * @param resourceName Name of the text resource, relative to the RapidWright path.
+     * @return The file, or null if the resource is not a file on disk (e.g. inside a jar).
+     */
+    private static File getTextFile(String resourceName) {
+        String rwPath = FileTools.getRapidWrightPath();
+        if (rwPath == null) return null;
+        File textFile = new File(rwPath + File.separator + resourceName);
+        return textFile.isFile() ? textFile : null;
+    }
+
+    /**
+     * Gets the binary file name for a text data file.
+     * @param resourceName Name of the text resource, relative to the RapidWright path.
+     * @return The name of the binary file under {@link #CACHE_DIR}.
+     */
+    static String getBinaryFileName(String resourceName) {
+        String name = resourceName;
+        if (name.endsWith(".txt")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return CACHE_DIR + File.separator + name + BINARY_FILE_SUFFIX;
+    }
+
+    /**
+     * Reads the binary form of a text data file if it is current.
+     * @param resourceName Name of the text resource, relative to the RapidWright path.
+     * @param magic The expected magic number of the binary file.
+     * @param version The expected format version of the binary file.
+     * @return A buffer positioned after the header, or null if there is no binary file,
+     * it is of a different format or it is stale with respect to the text file.
+     */
+    static ByteBuffer readBinaryFile(String resourceName, int magic, int version) {
+        if (!USE_BINARY_FILES) return null;
+        File textFile = getTextFile(resourceName);
+        if (textFile == null) return null;
+        File binFile = new File(getBinaryFileName(resourceName));
+        if (!binFile.isFile()) return null;
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(binFile.toPath()));
+            if (buf.remaining() < 24
+                    || buf.getInt() != magic
+                    || buf.getInt() != version
+                    || buf.getLong() != textFile.length()
+                    || buf.getLong() != textFile.lastModified()) {
+                return null;
+            }
+            return buf;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the binary form of a text data file. The file is written under a temporary name
+     * and then renamed, so that concurrent processes never read a partially written file.
+     * Failures are not fatal, the text file will simply be parsed again next time.
+     * @param resourceName Name of the text resource, relative to the RapidWright path.
+     * @param magic The magic number of the binary file.
+     * @param version The format version of the binary file.
+     * @param payload The contents following the header.
+     */
+    static void writeBinaryFile(String resourceName, int magic, int version, byte[] payload) {
+        if (!USE_BINARY_FILES) return;
+        File textFile = getTextFile(resourceName);
+        if (textFile == null) return;
+        File binFile = new File(getBinaryFileName(resourceName));
+        File tmpFile = null;
+        try {
+            binFile.getParentFile().mkdirs();
+            tmpFile = File.createTempFile(binFile.getName(), ".tmp", binFile.getParentFile());
+            try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmpFile))) {
+                dos.writeInt(magic);
+                dos.writeInt(version);
+                dos.writeLong(textFile.length());
+                dos.writeLong(textFile.lastModified());
+                dos.write(payload);
+            }
+            if (!tmpFile.renameTo(binFile)) {
+                binFile.delete();
+                tmpFile.renameTo(binFile);
+            }
+        } catch (IOException e) {
+            // Cache directory may not be writable, carry on with the parsed text
+        } finally {
+            if (tmpFile != null && tmpFile.exists()) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputStream#writeUTF(String)}. All timing data
+     * names are ASCII, for which the encoding matches UTF-8.
+     */
+    static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xffff];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serializes intersite delay terms in the order they appear in the text file.
+     */
+    static byte[] encodeDelayTerms(Map<String, Float> terms) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bytes);
+        dos.writeInt(terms.size());
+        for (Map.Entry<String, Float> e : terms.entrySet()) {
+            dos.writeUTF(e.getKey());
+            dos.writeFloat(e.getValue());
+        }
+        dos.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes intersite delay terms written by {@link #encodeDelayTerms(Map)}.
+     */
+    static Map<String, Float> decodeDelayTerms(ByteBuffer buf) {
+        int count = buf.getInt();
+        Map<String, Float> terms = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(buf);
+            terms.put(name, buf.getFloat());
+        }
+        return terms;
+    }
+}
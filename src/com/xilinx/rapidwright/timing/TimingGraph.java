@@ -45,15 +45,20 @@ import org.jgrapht.graph.GraphWalk;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Queue;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
 
 
 /**
@@ -72,16 +77,23 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
     DelayModel intrasiteAndLogicDelayModel;
     PrintStream graphVizPrintStream;
     HashMap<String, EDIFCellInst> myCellMap;
-    String netName;
-    Net net;
     String prevNet;
-    EDIFNet edifNet;
-    boolean haveIntrasiteNet;
-    SitePinInst spi_source;
     Design design;
     ArrayList<EDIFHierCellInst> set;
     private HashMap<String, TimingVertex> safeVertexCheck = new HashMap<>();
     static HashSet<String> unisimFlipFlopTypes;
+    /** Vertices in topological order, used for block-based arrival/required time propagation */
+    private List<TimingVertex> topologicalOrder;
+    /** Number of vertices and edges in the graph when it was last levelized */
+    private int levelizedVertexCount = -1;
+    private int levelizedEdgeCount = -1;
+    /** Required time at the timing endpoints, null if no requirement has been set */
+    private Float timingRequirement;
+    /**
+     * When true, {@link #build()} computes the delays of the nets on multiple threads and adds 
+     * them to the graph in one serial pass afterwards
+     */
+    public static boolean PARALLEL_BUILD = true;
 
     static {
         
@@ -150,13 +162,12 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
             }
         }
         prevNet = "";
+        if (PARALLEL_BUILD) {
+            addNetDelayEdgesInParallel(netsArray, netsByName);
+            return;
+        }
         for (String netName : netsArray) {
-            this.netName = netName;
-            this.net = netsByName.get(netName);
-            this.edifNet = net.getLogicalNet();
-            this.haveIntrasiteNet = (net.getSinkPins().size() == 0);
-            this.spi_source = net.getSource();
-            addNetDelayEdges(net);
+            addNetDelayEdges(netsByName.get(netName));
         }
     }
 
@@ -170,15 +181,14 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
     }
 
     /**
-     * Sets the same specified timing requirement on the TimingGraph on GraphPaths that have been 
-     * predetermined.
+     * Sets the same specified timing requirement at all timing endpoints (flip flop inputs) of the 
+     * TimingGraph and propagates the arrival and required times through the graph.
      * @param requirement The required time in picoseconds at the sink of the path.
      */
     public void setTimingRequirement(float requirement) {
-        for (GraphPath<TimingVertex, TimingEdge> path : getGraphPaths()) {
-            setTimingRequirement(requirement, path);
-        }
+        timingRequirement = requirement;
         computeArrivalTimes();
+        computeRequiredTimes();
     }
 
     /**
@@ -349,10 +359,14 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
 */
     /**
      * Finds and returns the path from the TimingGraph having maximum delay.
-     * @return The GraphPath that is the critical path found in the TimingGraph, which might be null
-     * if the GraphPaths haven't been pre-computed by calling {@link #buildGraphPaths()}.
+     * @return The GraphPath that is the critical path found in the TimingGraph.  If the GraphPaths 
+     * haven't been pre-computed by calling {@link #buildGraphPaths()}, the path is traced back from 
+     * the propagated arrival times (see {@link #getCriticalPath()}).
      */
     public GraphPath<TimingVertex, TimingEdge> getMaxDelayPath() {
+        if (graphPathHashSet == null) {
+            return getCriticalPath();
+        }
         GraphPath<TimingVertex, TimingEdge> result = null;
         float maxWeight = 0;
         for (GraphPath<TimingVertex, TimingEdge> p : graphPathHashSet) {
@@ -422,12 +436,14 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
     }
 */
 
-    /** Returns a set of built GraphPaths.
+    /** Returns a set of built GraphPaths.  If no paths were built, only the worst path is built 
+     * (see {@link TimingManager#BUILD_GRAPH_PATHS_DEFAULT_PARAM}), call {@link #buildGraphPaths()} 
+     * first to enumerate all paths.
      * @return The HashSet of current set of GraphPaths that were prebuilt by running buildGraphPaths()
      */
     public HashSet<GraphPath<TimingVertex, TimingEdge>> getGraphPaths() {
         if (graphPathHashSet == null)
-            buildGraphPaths();
+            buildGraphPaths(TimingManager.BUILD_GRAPH_PATHS_DEFAULT_PARAM);
         return graphPathHashSet;
     }
 
@@ -528,33 +544,263 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
         return result;
     }
 
+    /**
+     * Sorts the vertices of the graph in topological order (Kahn's algorithm), such that every 
+     * vertex comes after all vertices driving it.  Vertices on cycles (which should not exist in a 
+     * TimingGraph) are appended at the end.
+     */
+    public void levelize() {
+        int count = vertexSet().size();
+        topologicalOrder = new ArrayList<>(count);
+        HashMap<TimingVertex, Integer> remainingInputs = new HashMap<>();
+        Queue<TimingVertex> q = new LinkedList<>();
+        for (TimingVertex v : vertexSet()) {
+            int inDegree = inDegreeOf(v);
+            if (inDegree == 0) {
+                q.add(v);
+            } else {
+                remainingInputs.put(v, inDegree);
+            }
+        }
+        while (!q.isEmpty()) {
+            TimingVertex v = q.poll();
+            v.setTopologicalIndex(topologicalOrder.size());
+            topologicalOrder.add(v);
+            for (TimingEdge e : outgoingEdgesOf(v)) {
+                TimingVertex dst = getEdgeTarget(e);
+                Integer remaining = remainingInputs.get(dst);
+                if (remaining == null) continue;
+                if (remaining == 1) {
+                    remainingInputs.remove(dst);
+                    q.add(dst);
+                } else {
+                    remainingInputs.put(dst, remaining - 1);
+                }
+            }
+        }
+        if (!remainingInputs.isEmpty()) {
+            System.err.println("WARNING: TimingGraph contains " + remainingInputs.size() 
+                    + " vertices on combinational cycles, their timing may be inaccurate.");
+            for (TimingVertex v : remainingInputs.keySet()) {
+                v.setTopologicalIndex(topologicalOrder.size());
+                topologicalOrder.add(v);
+            }
+        }
+        levelizedVertexCount = count;
+        levelizedEdgeCount = edgeSet().size();
+    }
+
+    private void ensureLevelized() {
+        if (topologicalOrder == null || levelizedVertexCount != vertexSet().size() 
+                || levelizedEdgeCount != edgeSet().size()) {
+            levelize();
+        }
+    }
+
+    /**
+     * Checks if the vertex is a timing endpoint, which receives the timing requirement.
+     */
+    private boolean isTimingEndpoint(TimingVertex v) {
+        return v.getFlopInput() && outDegreeOf(v) == 0 && inDegreeOf(v) > 0;
+    }
+
+    /**
+     * Gets the timing endpoints (flip flop inputs) of the graph, whose slacks are the slacks of 
+     * the worst paths ending at each of them.
+     * @return The timing endpoints in topological order.
+     */
+    public List<TimingVertex> getTimingEndpoints() {
+        ensureLevelized();
+        List<TimingVertex> endpoints = new ArrayList<>();
+        for (TimingVertex v : topologicalOrder) {
+            if (isTimingEndpoint(v)) {
+                endpoints.add(v);
+            }
+        }
+        return endpoints;
+    }
+
+    private float calcArrivalTime(TimingVertex v) {
+        float arrival = 0;
+        for (TimingEdge e : incomingEdgesOf(v)) {
+            arrival = Math.max(arrival, getEdgeSource(e).getArrivalTime() + e.getDelay());
+        }
+        return arrival;
+    }
+
+    /**
+     * Calculates the required time of the vertex from its fanout.
+     * @return The required time or null if no timing endpoint is reachable from the vertex.
+     */
+    private Float calcRequiredTime(TimingVertex v) {
+        if (isTimingEndpoint(v)) {
+            return timingRequirement;
+        }
+        Float required = null;
+        for (TimingEdge e : outgoingEdgesOf(v)) {
+            TimingVertex dst = getEdgeTarget(e);
+            if (!dst.hasRequiredTime()) continue;
+            float r = dst.getRequiredTime() - e.getDelay();
+            if (required == null || r < required) {
+                required = r;
+            }
+        }
+        return required;
+    }
+
     /**
      * Computes/recomputes the arrival times stored at the vertices of the graph based on the edge 
-     * delays.
+     * delays.  Arrival times are propagated forward through the graph in topological order in 
+     * linear time (the arrival time of a vertex is the latest arrival through any of its inputs).
      */
     public void computeArrivalTimes() {
-        for (GraphPath<TimingVertex, TimingEdge> p : graphPathHashSet) {
-            float arrival = 0;
-            for (TimingEdge e : (List<TimingEdge>) p.getEdgeList()) {
-                arrival += e.getDelay();
-                e.getDst().setArrivalTime(arrival);
-                if (inDegreeOf(e.getSrc())==0) {
-                    e.getSrc().setArrivalTime(0);
-                }
+        ensureLevelized();
+        for (TimingVertex v : topologicalOrder) {
+            v.setArrivalTime(calcArrivalTime(v));
+        }
+    }
+
+    /**
+     * Computes/recomputes the required times stored at the vertices of the graph by propagating 
+     * the timing requirement backwards from the timing endpoints in reverse topological order.  
+     * Vertices that do not reach a timing endpoint have no required time.  Does nothing if no 
+     * timing requirement has been set (see {@link #setTimingRequirement(float)}).
+     */
+    public void computeRequiredTimes() {
+        if (timingRequirement == null) return;
+        ensureLevelized();
+        for (int i = topologicalOrder.size() - 1; i >= 0; i--) {
+            TimingVertex v = topologicalOrder.get(i);
+            Float required = calcRequiredTime(v);
+            if (required == null) {
+                v.clearRequiredTime();
+            } else {
+                v.setRequiredTime(required);
             }
         }
     }
 
     /**
      * Computes/recomputes the slack stored at vertices of the graph based on comparing required 
-     * times and arrival times.
+     * times and arrival times.  Vertices that do not reach a timing endpoint have no required time
+     * and are left without a slack.
      */
     public void computeSlacks() {
+        computeRequiredTimes();
         for (TimingVertex v : this.vertexSet()) {
+            if (!v.hasRequiredTime()) continue;
             v.setSlack(v.getRequiredTime() - v.getArrivalTime());
         }
     }
 
+    /**
+     * Recomputes the delays of the edges of a net after its routing (or placement) has changed and 
+     * incrementally updates the timing of the affected cones (see 
+     * {@link #updateTiming(Collection)}).
+     * @param n The physical net that changed.
+     */
+    public void updateNetTiming(Net n) {
+        if (timingModel != null) {
+            timingModel.invalidateRouteTree(n);
+        }
+        List<NetDelayEdge> edges = new ArrayList<>();
+        computeNetDelayEdges(n, edges);
+        List<TimingEdge> changed = new ArrayList<>();
+        addNetDelayEdges(n, edges, changed);
+        updateTiming(changed);
+    }
+
+    /**
+     * Incrementally updates arrival and required times after the delays of some edges changed.  
+     * Only the fanout cone of the edges (for arrival times) and the fanin cone (for required 
+     * times) are visited and propagation stops at vertices whose times did not change.  The slack
+     * of every vertex whose arrival or required time changed is updated, so the results match 
+     * {@link #computeArrivalTimes()} followed by {@link #computeSlacks()}.  If the structure of
+     * the graph changed, all times are recomputed.
+     * @param changedEdges The edges whose delays changed.
+     */
+    public void updateTiming(Collection<TimingEdge> changedEdges) {
+        if (topologicalOrder == null || levelizedVertexCount != vertexSet().size() 
+                || levelizedEdgeCount != edgeSet().size()) {
+            computeArrivalTimes();
+            computeSlacks();
+            return;
+        }
+        PriorityQueue<TimingVertex> forward = new PriorityQueue<>(
+                Comparator.comparingInt(TimingVertex::getTopologicalIndex));
+        PriorityQueue<TimingVertex> backward = new PriorityQueue<>(
+                Comparator.comparingInt(TimingVertex::getTopologicalIndex).reversed());
+        HashSet<TimingVertex> queued = new HashSet<>();
+        for (TimingEdge e : changedEdges) {
+            if (queued.add(getEdgeTarget(e))) forward.add(getEdgeTarget(e));
+        }
+        while (!forward.isEmpty()) {
+            TimingVertex v = forward.poll();
+            float arrival = calcArrivalTime(v);
+            if (arrival == v.getArrivalTime()) continue;
+            v.setArrivalTime(arrival);
+            if (v.hasRequiredTime()) {
+                v.setSlack(v.getRequiredTime() - arrival);
+            }
+            for (TimingEdge e : outgoingEdgesOf(v)) {
+                if (queued.add(getEdgeTarget(e))) forward.add(getEdgeTarget(e));
+            }
+        }
+        if (timingRequirement == null) return;
+        queued.clear();
+        for (TimingEdge e : changedEdges) {
+            if (queued.add(getEdgeSource(e))) backward.add(getEdgeSource(e));
+        }
+        while (!backward.isEmpty()) {
+            TimingVertex v = backward.poll();
+            Float required = calcRequiredTime(v);
+            if (required == null) {
+                if (!v.hasRequiredTime()) continue;
+                v.clearRequiredTime();
+            } else {
+                if (v.hasRequiredTime() && required == v.getRequiredTime()) continue;
+                // Also updates the slack, arrival times are final at this point
+                v.setRequiredTime(required);
+            }
+            for (TimingEdge e : incomingEdgesOf(v)) {
+                if (queued.add(getEdgeSource(e))) backward.add(getEdgeSource(e));
+            }
+        }
+    }
+
+    /**
+     * Traces the critical path back from the timing endpoint with the latest arrival time, 
+     * following at each vertex the input that determined its arrival time.  Arrival times must be
+     * up to date (see {@link #computeArrivalTimes()}).
+     * @return The critical path, or null if the graph has no timing endpoints.
+     */
+    public GraphPath<TimingVertex, TimingEdge> getCriticalPath() {
+        ensureLevelized();
+        TimingVertex end = null;
+        for (TimingVertex v : topologicalOrder) {
+            if (isTimingEndpoint(v) && (end == null || v.getArrivalTime() > end.getArrivalTime())) {
+                end = v;
+            }
+        }
+        if (end == null) return null;
+        LinkedList<TimingEdge> edges = new LinkedList<>();
+        TimingVertex curr = end;
+        while (inDegreeOf(curr) > 0) {
+            TimingEdge worst = null;
+            float worstArrival = 0;
+            for (TimingEdge e : incomingEdgesOf(curr)) {
+                float arrival = getEdgeSource(e).getArrivalTime() + e.getDelay();
+                if (worst == null || arrival > worstArrival) {
+                    worst = e;
+                    worstArrival = arrival;
+                }
+            }
+            edges.addFirst(worst);
+            curr = getEdgeSource(worst);
+        }
+        return new GraphWalk<>(this, curr, end, edges, end.getArrivalTime());
+    }
+
     /**
      * This helper function is used to avoid duplicate insertions of vertices within the TimingGraph.  
      * To avoid duplicates, the helper function first checks if a vertex with the same name already 
@@ -892,7 +1138,10 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
                             BEL mybel = c.getBEL();
                             float myLogicDelay;
                             try {
-                                myLogicDelay = intrasiteAndLogicDelayModel.getLogicDelay(mybel.getName(), physPin, outputPhysPin);
+                                myLogicDelay = intrasiteAndLogicDelayModel.getLogicDelay(
+                                        intrasiteAndLogicDelayModel.getBELIndex(mybel.getName()), 
+                                        intrasiteAndLogicDelayModel.getPinIndex(physPin), 
+                                        intrasiteAndLogicDelayModel.getPinIndex(outputPhysPin), (short) 0);
                             } catch (IllegalArgumentException e) {
                                 continue;
                             }
@@ -1047,16 +1296,22 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
     }
 
 
-    private Cell srcCell;
-    private Cell dstCell;
-    private BELPin source;
-    private BELPin sink;
-    private SitePinInst spi_sink;
-    private SitePinInst local_spi_source;
-    private List<SitePinInst> spi_sources;
-    private List<SitePinInst> spi_sinks;
-    private SiteInst si;
-
+    /**
+     * The delay of the connection from a net's source to one of its sinks, computed by 
+     * {@link #computeNetDelayEdges(Net, List)} before being added to the graph.
+     */
+    private static class NetDelayEdge {
+        String srcName;
+        String dstName;
+        boolean srcIsFlop;
+        boolean dstIsFlop;
+        /** False if only the vertices should be added (the delay could not be determined) */
+        boolean hasEdge;
+        float netDelay;
+        float logicDelay;
+        SitePinInst firstSitePinInst;
+        SitePinInst secondSitePinInst;
+    }
 
     /**
      * This method is called per physical "Net" object for adding TimingEdges into the TimingGraph 
@@ -1065,11 +1320,26 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
      * @return Returns -1 or 0 on failure.  Returns 1 on success.
      */
     int addNetDelayEdges(Net n) {
-        float logicDelay;
-        spi_sinks = new ArrayList<>();
-        local_spi_source = null;
-        spi_sources = new ArrayList<>();
+        List<NetDelayEdge> edges = new ArrayList<>();
+        int result = computeNetDelayEdges(n, edges);
+        addNetDelayEdges(n, edges, null);
+        return result;
+    }
 
+    /**
+     * Computes the delays of the connections of a net without modifying the TimingGraph, such 
+     * that multiple nets can be analyzed concurrently.
+     * @param n Physical "Net" to be analyzed.
+     * @param edges List to populate with a delay for each sink of the net.
+     * @return Returns -1 or 0 on failure.  Returns 1 on success.
+     */
+    private int computeNetDelayEdges(Net n, List<NetDelayEdge> edges) {
+        float logicDelay;
+        List<SitePinInst> spi_sources = new ArrayList<>();
+        SitePinInst local_spi_source = null;
+        BELPin source = null;
+        SiteInst si = null;
+        boolean haveIntrasiteNet = (n.getSinkPins().size() == 0);
 
         String netName = n.getName();
 
@@ -1159,8 +1429,6 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
                 }
             } else {
                 mypin = spi5;
-                if (mypin != null)
-                    spi_sinks.add(mypin);
                 testDestCells.put(fullName, cell);
                 stringSinks.put(fullName, mypin);
                 sink_belpins.put(fullName, belpin);
@@ -1174,62 +1442,44 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
                 return -1;
         }
         String S = stringSources.keySet().iterator().next();
-        local_spi_source = spi_sources.size() > 0? spi_sources.get(0) : net.getSource() != null ? net.getSource() : local_spi_source;
+        local_spi_source = spi_sources.size() > 0? spi_sources.get(0) : n.getSource();
         for (String D : stringSinks.keySet()) {
-            spi_sink = stringSinks.get(D);
-            srcCell = testSourceCell;
-            dstCell = testDestCells.get(D);
-            sink = sink_belpins.get(D);
-            TimingVertex vS = safeVertexCheck.get(S);
-            if (vS == null)
-                vS = new TimingVertex(S);
-
-
+            SitePinInst spi_sink = stringSinks.get(D);
+            Cell srcCell = testSourceCell;
+            Cell dstCell = testDestCells.get(D);
+            BELPin sink = sink_belpins.get(D);
+            NetDelayEdge e = new NetDelayEdge();
+            e.srcName = S;
+            e.dstName = D;
             String vs_type = (srcCell != null) ? srcCell.getType() : null;
-            if (vs_type != null && isUnisimFlipFlopType(vs_type)) {
-                vS.setFlopOutput();
-            }
-
-            TimingVertex vD = safeVertexCheck.get(D);
-            if (vD == null)
-                vD = new TimingVertex(D);
-
+            e.srcIsFlop = vs_type != null && isUnisimFlipFlopType(vs_type);
             String vd_type = (dstCell != null) ? dstCell.getType() : null;
-            if (vd_type != null && isUnisimFlipFlopType(vd_type)) {
-                //String destClk = "";
-                vD.setFlopInput();
-            }
-            vS = safeAddVertex(vS);
-            vD = safeAddVertex(vD);
-            TimingEdge e;
-            e = getEdge(vS, vD);
-            if (e == null)
-                e = new TimingEdge(this, vS, vD, edifNet, net);
-
+            e.dstIsFlop = vd_type != null && isUnisimFlipFlopType(vd_type);
+            edges.add(e);
 
-            boolean forceUpdateEdge = false;
             float netDelay = 0f;
 
             if (haveIntrasiteNet) {
-                String param2 = srcCell.getBELName()+"/"+ source.getName();
-                String param3 = null;
+                int param2 = intrasiteAndLogicDelayModel.getPinIndex(srcCell.getBELName(), source.getName());
+                int param3;
                 if (sink_belpins.get(D) == null) {
-                    param3 =  dstCell.getBELName() +"/" + stringSinks.get(D).getName();
+                    param3 = intrasiteAndLogicDelayModel.getPinIndex(dstCell.getBELName(), 
+                            stringSinks.get(D).getName());
                 } else {
-                    param3 =  dstCell.getBELName() +"/" +sink_belpins.get(D).getName();
+                    param3 = intrasiteAndLogicDelayModel.getPinIndex(dstCell.getBELName(), 
+                            sink_belpins.get(D).getName());
                 }
 
                 float tmpNetDelay;
                 try {
                     tmpNetDelay = intrasiteAndLogicDelayModel.getIntraSiteDelay(
-                            si.getSiteTypeEnum(),
+                            intrasiteAndLogicDelayModel.getSiteTypeIndex(si.getSiteTypeEnum()),
                             param2,
                             param3);
                 } catch (IllegalArgumentException iae) {
                     continue;
                 }
                 netDelay = Math.max(0f, tmpNetDelay);
-                forceUpdateEdge = true;
             } else {
                 if (srcCell == null)
                     continue;
@@ -1237,37 +1487,93 @@ public class TimingGraph extends DefaultDirectedWeightedGraph<TimingVertex, Timi
                     continue;
                 if (local_spi_source == null || spi_sink == null) {
                     if (local_spi_source == null && spi_sink == null) {
-                        String param2 = srcCell.getBELName()+"/"+ source.getName();
-                        String param3 =  dstCell.getBELName() +"/" +sink_belpins.get(D).getName();
+                        int param2 = intrasiteAndLogicDelayModel.getPinIndex(srcCell.getBELName(), 
+                                source.getName());
+                        int param3 = intrasiteAndLogicDelayModel.getPinIndex(dstCell.getBELName(), 
+                                sink_belpins.get(D).getName());
                         float tmpNetDelay = intrasiteAndLogicDelayModel.getIntraSiteDelay(
-                                si.getSiteTypeEnum(),
+                                intrasiteAndLogicDelayModel.getSiteTypeIndex(si.getSiteTypeEnum()),
                                 param2,
                                 param3);
                         netDelay = tmpNetDelay;
-                        forceUpdateEdge = true;
                     }
                     else {
                         netDelay = timingModel.calcDelay(local_spi_source, spi_sink, source, sink, 
-                                local_spi_source.getSite(), null, net);
-                        forceUpdateEdge = true;
+                                local_spi_source.getSite(), null, n);
                     }
                 }
                 else {
                     netDelay = timingModel.calcDelay(local_spi_source, spi_sink, source, sink, 
-                            local_spi_source.getSite(), spi_sink.getSite(), net);
-                    forceUpdateEdge = true;
+                            local_spi_source.getSite(), spi_sink.getSite(), n);
                 }
             }
-            if (e.getNetDelay() != 0f || forceUpdateEdge) {
-                e.setNetDelay(netDelay);
-                e.setLogicDelay(logicDelay);
-            }
-            e.setFirstSitePinInst(local_spi_source);
-            e.setSecondSitePinInst(spi_sink);
+            e.hasEdge = true;
+            e.netDelay = netDelay;
+            e.logicDelay = logicDelay;
+            e.firstSitePinInst = local_spi_source;
+            e.secondSitePinInst = spi_sink;
+        }
+        return 1;
+    }
+
+    /**
+     * Adds the vertices and edges computed by {@link #computeNetDelayEdges(Net, List)} for a 
+     * net into the TimingGraph.
+     * @param n The physical net of the edges.
+     * @param edges The computed connections of the net.
+     * @param touched If not null, collects the edges that were added or updated.
+     */
+    private void addNetDelayEdges(Net n, List<NetDelayEdge> edges, Collection<TimingEdge> touched) {
+        if (edges.isEmpty()) return;
+        EDIFNet logicalNet = n.getLogicalNet();
+        for (NetDelayEdge d : edges) {
+            TimingVertex vS = safeVertexCheck.get(d.srcName);
+            if (vS == null)
+                vS = new TimingVertex(d.srcName);
+            if (d.srcIsFlop)
+                vS.setFlopOutput();
+            TimingVertex vD = safeVertexCheck.get(d.dstName);
+            if (vD == null)
+                vD = new TimingVertex(d.dstName);
+            if (d.dstIsFlop)
+                vD.setFlopInput();
+            vS = safeAddVertex(vS);
+            vD = safeAddVertex(vD);
+            if (!d.hasEdge)
+                continue;
+            TimingEdge e = getEdge(vS, vD);
+            if (e == null)
+                e = new TimingEdge(this, vS, vD, logicalNet, n);
+            e.setNetDelay(d.netDelay);
+            e.setLogicDelay(d.logicDelay);
+            e.setFirstSitePinInst(d.firstSitePinInst);
+            e.setSecondSitePinInst(d.secondSitePinInst);
             safeAddEdge(vS, vD, e);
             setEdgeWeight(e, e.getDelay());
+            if (touched != null)
+                touched.add(e);
+        }
+    }
+
+    /**
+     * Computes the net delay edges of all nets on multiple threads (see {@link #PARALLEL_BUILD}) 
+     * and then adds them to the graph serially in the order of the nets, such that the resulting 
+     * graph is identical to one built serially.
+     * @param netsArray The names of the nets to analyze, in order.
+     * @param netsByName Map of the nets by name.
+     */
+    private void addNetDelayEdgesInParallel(String[] netsArray, Map<String, Net> netsByName) {
+        // Populate the lazily built netlist map before it is read concurrently
+        design.getNetlist().getPhysicalNetPinMap();
+        List<List<NetDelayEdge>> netEdges = Arrays.stream(netsArray).parallel().map(name -> {
+            List<NetDelayEdge> edges = new ArrayList<>();
+            computeNetDelayEdges(netsByName.get(name), edges);
+            return edges;
+        }).collect(Collectors.toList());
+        for (int i = 0; i < netsArray.length; i++) {
+            addNetDelayEdges(netsByName.get(netsArray[i]), netEdges.get(i), null);
+            netEdges.set(i, null);
         }
-        return 1;
     }
 
     /**
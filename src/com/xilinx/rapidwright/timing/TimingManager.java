@@ -34,6 +34,7 @@ public class TimingManager {
     private Design design;
     private Device device;
 
+    /** Parameter for {@link TimingGraph#buildGraphPaths(int)} if paths are explicitly built */
     public static final int BUILD_GRAPH_PATHS_DEFAULT_PARAM = 1; // use 0 instead for all paths
 
     /**
@@ -76,7 +77,6 @@ public class TimingManager {
 
     private boolean postBuild() {
         timingGraph.removeClockCrossingPaths();
-        timingGraph.buildGraphPaths(BUILD_GRAPH_PATHS_DEFAULT_PARAM);
         timingGraph.computeArrivalTimes();
         timingGraph.computeSlacks();
         return true;
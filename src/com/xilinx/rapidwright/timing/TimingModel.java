@@ -45,13 +45,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.Set;
 
 /**
@@ -73,6 +77,17 @@ public class TimingModel {
 
     private DelayModel intrasiteAndLogicDelayModel;
 
+    /**
+     * Set to false to rebuild the route tree of a net for every (source, sink) pair.
+     */
+    public static boolean USE_ROUTE_TREE_CACHE = true;
+
+    /**
+     * Route trees of the nets seen by calcDelay, shared by all sinks of a net.  Nets are weakly
+     * referenced such that the trees of nets no longer in use can be collected.
+     */
+    private final Map<Net, NetRouteTree> routeTrees = Collections.synchronizedMap(new WeakHashMap<>());
+
     // some default values, these can be overwritten later by reading in a delay_terms.dat file
     // the code is using hard coded enumerated types, and this will be switched over to use these variables
     int START_TILE_ROW =		1;
@@ -285,12 +300,9 @@ public class TimingModel {
         return calcDelay(startPinInst, endPinInst, null, null, startSite, endSite,  net);
     }
 
-    private List<Node> nodeList;
-    private List<PIP> relevantPIPs;
-
-
     /**
      * Calculates the delay in picoseconds between a pair of pins on a physical "Net" object.
+     * This method keeps no per-call state in the model and can be called concurrently.
      * @param startPinInst Source SitePinInst from the Net.
      * @param endPinInst A selected sink SitePinInst from the Net.
      * @param startSite The site containing the source SitePinInst.
@@ -303,10 +315,10 @@ public class TimingModel {
         ArrayList<IntentCode> intentCodes = new ArrayList<>();
         HashMap<PIPType, Integer> pipTypes = new LinkedHashMap<>();
 
-        nodeList = new ArrayList<>();
-        relevantPIPs = new ArrayList<>();
+        List<Node> nodeList = new ArrayList<>();
+        List<PIP> relevantPIPs = new ArrayList<>();
 
-        determineNodeList(net, startPinInst, endPinInst);
+        determineNodeList(net, startPinInst, endPinInst, nodeList, relevantPIPs);
 
         for (PIP p : relevantPIPs) {
             int tmp = 0;
@@ -451,12 +463,72 @@ public class TimingModel {
     }
 
     /**
-     * Reads the text file containing the delay terms needed by this timing model.
+     * Intersite delay terms already read, keyed by file name and shared by all TimingModel
+     * instances of the process.
+     */
+    private static final Map<String, Map<String, Float>> delayTermsCache = new HashMap<>();
+
+    /**
+     * Reads the text file containing the delay terms needed by this timing model.  The terms of
+     * a file are only read once per process, from its binary form when it is current.
      * @param filename Name (and maybe the path) of the text file, the default is delay_terms.dat in the current directory.
      * @return Boolean indication of completion.
      */
     protected boolean readDelayTerms(String filename) {
-        boolean result = true;
+        Map<String, Float> terms = getDelayTerms(filename, this);
+        if (terms == null) {
+            return false;
+        }
+        for (Map.Entry<String, Float> e : terms.entrySet()) {
+            if (!setDelayTerm(e.getKey(), e.getValue())) {
+                throw new RuntimeException("ERROR: Unrecognized term \"" + e.getKey() + "\" in " + filename);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the delay terms of a file in the order they appear in the file.  The binary form of the
+     * file is read if it is current, otherwise the text is parsed and the binary form is
+     * (re)generated.
+     * @param filename Name of the text file.
+     * @param model The timing model used to check the terms when the text is parsed.
+     * @return The terms by name, or null if the file could not be read.
+     */
+    private static synchronized Map<String, Float> getDelayTerms(String filename, TimingModel model) {
+        Map<String, Float> terms = delayTermsCache.get(filename);
+        if (terms != null) {
+            return terms;
+        }
+        ByteBuffer buf = TimingDataFiles.readBinaryFile(filename,
+                TimingDataFiles.DELAY_TERMS_MAGIC, TimingDataFiles.DELAY_TERMS_VERSION);
+        if (buf != null) {
+            terms = TimingDataFiles.decodeDelayTerms(buf);
+        } else {
+            terms = parseDelayTerms(filename, model);
+            if (terms == null) {
+                return null;
+            }
+            try {
+                TimingDataFiles.writeBinaryFile(filename, TimingDataFiles.DELAY_TERMS_MAGIC,
+                        TimingDataFiles.DELAY_TERMS_VERSION, TimingDataFiles.encodeDelayTerms(terms));
+            } catch (IOException e) {
+                // Not fatal, the text file will be parsed again next time
+            }
+        }
+        terms = Collections.unmodifiableMap(terms);
+        delayTermsCache.put(filename, terms);
+        return terms;
+    }
+
+    /**
+     * Parses the text file of delay terms.
+     * @param filename Name of the text file.
+     * @param model The timing model used to check that each term is recognized.
+     * @return The terms by name in file order, or null if the file could not be read.
+     */
+    private static Map<String, Float> parseDelayTerms(String filename, TimingModel model) {
+        Map<String, Float> terms = new LinkedHashMap<>();
         InputStream in = FileTools.getRapidWrightResourceInputStream(filename); 
         try {
             BufferedReader br = new BufferedReader(new InputStreamReader(in));
@@ -467,85 +539,9 @@ public class TimingModel {
                 lineCntr++;
                 if (split.length < 2 || split[0].startsWith("#"))
                     continue;
-                Float value = 0.0f;
-                value = Float.valueOf(split[1]);
-                if (split[0].equalsIgnoreCase("START_TILE_ROW"))       START_TILE_ROW = (int)(float)value;
-                else if (split[0].equalsIgnoreCase("START_TILE_COL"))  START_TILE_COL = (int)(float)value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_SITEPIN_TO_LUT_INPUT")) INTRASITE_DELAY_SITEPIN_TO_LUT_INPUT = value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_O_SITEPIN")) INTRASITE_DELAY_LUT_OUTPUT_TO_O_SITEPIN = value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_SITEPIN_TO_FF_INPUT")) INTRASITE_DELAY_SITEPIN_TO_FF_INPUT = value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_FF_INPUT_TO_SITEPIN")) INTRASITE_DELAY_FF_INPUT_TO_SITEPIN = value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_MUX_SITEPIN")) INTRASITE_DELAY_LUT_OUTPUT_TO_MUX_SITEPIN = value;
-                else if (split[0].equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_FF_INPUT")) INTRASITE_DELAY_LUT_OUTPUT_TO_FF_INPUT = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_BOUNCE"))  L_HORIZONTAL_BOUNCE = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_INTERNAL"))  L_HORIZONTAL_INTERNAL = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_SINGLE"))  L_HORIZONTAL_SINGLE = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_DOUBLE"))  L_HORIZONTAL_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_QUAD"))    L_HORIZONTAL_QUAD = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_LONG"))    L_HORIZONTAL_LONG = value;
-                else if (split[0].equalsIgnoreCase("L_HORIZONTAL_GLOBAL"))  L_HORIZONTAL_GLOBAL = value;
-                else if (split[0].equalsIgnoreCase("L_VERTICAL_SINGLE"))  L_VERTICAL_SINGLE = value;
-                else if (split[0].equalsIgnoreCase("L_VERTICAL_DOUBLE"))  L_VERTICAL_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("L_VERTICAL_QUAD"))    L_VERTICAL_QUAD = value;
-                else if (split[0].equalsIgnoreCase("L_VERTICAL_LONG"))    L_VERTICAL_LONG = value;
-                else if (split[0].equalsIgnoreCase("K0_HORIZONTAL"))         K0_HORIZONTAL = value;
-                else if (split[0].equalsIgnoreCase("K1_HORIZONTAL"))         K1_HORIZONTAL = value;
-                else if (split[0].equalsIgnoreCase("K2_HORIZONTAL_SINGLE"))  K2_HORIZONTAL_SINGLE = value;
-                else if (split[0].equalsIgnoreCase("K2_HORIZONTAL_DOUBLE"))  K2_HORIZONTAL_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("K2_HORIZONTAL_QUAD"))    K2_HORIZONTAL_QUAD   = value;
-                else if (split[0].equalsIgnoreCase("K2_HORIZONTAL_LONG"))    K2_HORIZONTAL_LONG   = value;
-                else if (split[0].equalsIgnoreCase("K2_HORIZONTAL_GLOBAL"))  K2_HORIZONTAL_GLOBAL = value;
-                else if (split[0].equalsIgnoreCase("K0_VERTICAL"))         K0_VERTICAL = value;
-                else if (split[0].equalsIgnoreCase("K1_VERTICAL"))         K1_VERTICAL = value;
-                else if (split[0].equalsIgnoreCase("K2_VERTICAL_SINGLE"))  K2_VERTICAL_SINGLE = value;
-                else if (split[0].equalsIgnoreCase("K2_VERTICAL_DOUBLE"))  K2_VERTICAL_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("K2_VERTICAL_QUAD"))    K2_VERTICAL_QUAD   = value;
-                else if (split[0].equalsIgnoreCase("K2_VERTICAL_LONG"))    K2_VERTICAL_LONG   = value;
-                else if (split[0].equalsIgnoreCase("RCLK_SINGLE_AND_DOUBLE"))  RCLK_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("RCLK_QUAD"))               RCLK_QUAD = value;
-                else if (split[0].equalsIgnoreCase("RCLK_LONG"))               RCLK_LONG = value;
-                else if (split[0].equalsIgnoreCase("DSP_SINGLE_AND_DOUBLE"))  DSP_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("DSP_QUAD"))               DSP_QUAD = value;
-                else if (split[0].equalsIgnoreCase("DSP_LONG"))               DSP_LONG = value;
-                else if (split[0].equalsIgnoreCase("BRAM_SINGLE_AND_DOUBLE"))  BRAM_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("BRAM_QUAD"))               BRAM_QUAD = value;
-                else if (split[0].equalsIgnoreCase("BRAM_LONG"))               BRAM_LONG = value;
-                else if (split[0].equalsIgnoreCase("CFRM_SINGLE_AND_DOUBLE"))  CFRM_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("CFRM_QUAD"))               CFRM_QUAD = value;
-                else if (split[0].equalsIgnoreCase("CFRM_LONG"))               CFRM_LONG = value;
-                else if (split[0].equalsIgnoreCase("URAM_SINGLE_AND_DOUBLE"))  URAM_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("URAM_QUAD"))               URAM_QUAD = value;
-                else if (split[0].equalsIgnoreCase("URAM_LONG"))               URAM_LONG = value;
-                else if (split[0].equalsIgnoreCase("PCIE_SINGLE_AND_DOUBLE"))  PCIE_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("PCIE_QUAD"))               PCIE_QUAD = value;
-                else if (split[0].equalsIgnoreCase("PCIE_LONG"))               PCIE_LONG = value;
-                else if (split[0].equalsIgnoreCase("IO_SINGLE_AND_DOUBLE"))  IO_SINGLE_AND_DOUBLE = value;
-                else if (split[0].equalsIgnoreCase("IO_QUAD"))               IO_QUAD = value;
-                else if (split[0].equalsIgnoreCase("IO_LONG"))               IO_LONG = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_FF_DELAY"))        LOGIC_FF_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A1_DELAY"))        LOGIC_LUT_A1_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A2_DELAY"))        LOGIC_LUT_A2_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A3_DELAY"))        LOGIC_LUT_A3_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A4_DELAY"))        LOGIC_LUT_A4_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A5_DELAY"))        LOGIC_LUT_A5_DELAY = value;
-                else if (split[0].equalsIgnoreCase("LOGIC_LUT_A6_DELAY"))        LOGIC_LUT_A6_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A1_DELAY"))        SITEPIN_A1_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A2_DELAY"))        SITEPIN_A2_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A3_DELAY"))        SITEPIN_A3_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A4_DELAY"))        SITEPIN_A4_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A5_DELAY"))        SITEPIN_A5_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A6_DELAY"))        SITEPIN_A6_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_A_I_DELAY"))        SITEPIN_A_I_DELAY = value;
-                else if (split[0].equalsIgnoreCase("SITEPIN_AX_DELAY"))        SITEPIN_AX_DELAY = value;
-                else if (split[0].equalsIgnoreCase("NEAR_MIN"))       NEAR_MIN = (int) Math.floor(value);
-                else if (split[0].equalsIgnoreCase("NEAR_MAX"))       NEAR_MAX =(int) Math.floor(value);
-                else if (split[0].equalsIgnoreCase("MID_MIN"))        MID_MIN =(int) Math.floor(value);
-                else if (split[0].equalsIgnoreCase("MID_MAX"))        MID_MAX =(int) Math.floor(value);
-                else if (split[0].equalsIgnoreCase("FAR_MIN"))        FAR_MIN =(int) Math.floor(value);
-                else if (split[0].equalsIgnoreCase("FAR_MAX"))        FAR_MAX =(int) Math.floor(value);
-
-                else {
-                	String errMessage;
+                Float value = Float.valueOf(split[1]);
+                if (!model.setDelayTerm(split[0], value)) {
+                    String errMessage;
                     if (split.length == 2) {
                         errMessage = "Bad formatted line:"+lineCntr+": \""+split[0]+"\"";
                     } else {
@@ -553,13 +549,99 @@ public class TimingModel {
                     }
                     throw new RuntimeException("ERROR: " + errMessage);
                 }
+                terms.put(split[0], value);
             }
             br.close();
         } catch (IOException e) {
             e.printStackTrace();
-            result = false;
+            return null;
         }
-        return result;
+        return terms;
+    }
+
+    /**
+     * Sets one delay term of this timing model.
+     * @param term Name of the term (case insensitive).
+     * @param value Value of the term.
+     * @return False if the term is not recognized.
+     */
+    private boolean setDelayTerm(String term, Float value) {
+        if (term.equalsIgnoreCase("START_TILE_ROW"))       START_TILE_ROW = (int)(float)value;
+        else if (term.equalsIgnoreCase("START_TILE_COL"))  START_TILE_COL = (int)(float)value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_SITEPIN_TO_LUT_INPUT")) INTRASITE_DELAY_SITEPIN_TO_LUT_INPUT = value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_O_SITEPIN")) INTRASITE_DELAY_LUT_OUTPUT_TO_O_SITEPIN = value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_SITEPIN_TO_FF_INPUT")) INTRASITE_DELAY_SITEPIN_TO_FF_INPUT = value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_FF_INPUT_TO_SITEPIN")) INTRASITE_DELAY_FF_INPUT_TO_SITEPIN = value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_MUX_SITEPIN")) INTRASITE_DELAY_LUT_OUTPUT_TO_MUX_SITEPIN = value;
+        else if (term.equalsIgnoreCase("INTRASITE_DELAY_LUT_OUTPUT_TO_FF_INPUT")) INTRASITE_DELAY_LUT_OUTPUT_TO_FF_INPUT = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_BOUNCE"))  L_HORIZONTAL_BOUNCE = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_INTERNAL"))  L_HORIZONTAL_INTERNAL = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_SINGLE"))  L_HORIZONTAL_SINGLE = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_DOUBLE"))  L_HORIZONTAL_DOUBLE = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_QUAD"))    L_HORIZONTAL_QUAD = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_LONG"))    L_HORIZONTAL_LONG = value;
+        else if (term.equalsIgnoreCase("L_HORIZONTAL_GLOBAL"))  L_HORIZONTAL_GLOBAL = value;
+        else if (term.equalsIgnoreCase("L_VERTICAL_SINGLE"))  L_VERTICAL_SINGLE = value;
+        else if (term.equalsIgnoreCase("L_VERTICAL_DOUBLE"))  L_VERTICAL_DOUBLE = value;
+        else if (term.equalsIgnoreCase("L_VERTICAL_QUAD"))    L_VERTICAL_QUAD = value;
+        else if (term.equalsIgnoreCase("L_VERTICAL_LONG"))    L_VERTICAL_LONG = value;
+        else if (term.equalsIgnoreCase("K0_HORIZONTAL"))         K0_HORIZONTAL = value;
+        else if (term.equalsIgnoreCase("K1_HORIZONTAL"))         K1_HORIZONTAL = value;
+        else if (term.equalsIgnoreCase("K2_HORIZONTAL_SINGLE"))  K2_HORIZONTAL_SINGLE = value;
+        else if (term.equalsIgnoreCase("K2_HORIZONTAL_DOUBLE"))  K2_HORIZONTAL_DOUBLE = value;
+        else if (term.equalsIgnoreCase("K2_HORIZONTAL_QUAD"))    K2_HORIZONTAL_QUAD   = value;
+        else if (term.equalsIgnoreCase("K2_HORIZONTAL_LONG"))    K2_HORIZONTAL_LONG   = value;
+        else if (term.equalsIgnoreCase("K2_HORIZONTAL_GLOBAL"))  K2_HORIZONTAL_GLOBAL = value;
+        else if (term.equalsIgnoreCase("K0_VERTICAL"))         K0_VERTICAL = value;
+        else if (term.equalsIgnoreCase("K1_VERTICAL"))         K1_VERTICAL = value;
+        else if (term.equalsIgnoreCase("K2_VERTICAL_SINGLE"))  K2_VERTICAL_SINGLE = value;
+        else if (term.equalsIgnoreCase("K2_VERTICAL_DOUBLE"))  K2_VERTICAL_DOUBLE = value;
+        else if (term.equalsIgnoreCase("K2_VERTICAL_QUAD"))    K2_VERTICAL_QUAD   = value;
+        else if (term.equalsIgnoreCase("K2_VERTICAL_LONG"))    K2_VERTICAL_LONG   = value;
+        else if (term.equalsIgnoreCase("RCLK_SINGLE_AND_DOUBLE"))  RCLK_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("RCLK_QUAD"))               RCLK_QUAD = value;
+        else if (term.equalsIgnoreCase("RCLK_LONG"))               RCLK_LONG = value;
+        else if (term.equalsIgnoreCase("DSP_SINGLE_AND_DOUBLE"))  DSP_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("DSP_QUAD"))               DSP_QUAD = value;
+        else if (term.equalsIgnoreCase("DSP_LONG"))               DSP_LONG = value;
+        else if (term.equalsIgnoreCase("BRAM_SINGLE_AND_DOUBLE"))  BRAM_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("BRAM_QUAD"))               BRAM_QUAD = value;
+        else if (term.equalsIgnoreCase("BRAM_LONG"))               BRAM_LONG = value;
+        else if (term.equalsIgnoreCase("CFRM_SINGLE_AND_DOUBLE"))  CFRM_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("CFRM_QUAD"))               CFRM_QUAD = value;
+        else if (term.equalsIgnoreCase("CFRM_LONG"))               CFRM_LONG = value;
+        else if (term.equalsIgnoreCase("URAM_SINGLE_AND_DOUBLE"))  URAM_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("URAM_QUAD"))               URAM_QUAD = value;
+        else if (term.equalsIgnoreCase("URAM_LONG"))               URAM_LONG = value;
+        else if (term.equalsIgnoreCase("PCIE_SINGLE_AND_DOUBLE"))  PCIE_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("PCIE_QUAD"))               PCIE_QUAD = value;
+        else if (term.equalsIgnoreCase("PCIE_LONG"))               PCIE_LONG = value;
+        else if (term.equalsIgnoreCase("IO_SINGLE_AND_DOUBLE"))  IO_SINGLE_AND_DOUBLE = value;
+        else if (term.equalsIgnoreCase("IO_QUAD"))               IO_QUAD = value;
+        else if (term.equalsIgnoreCase("IO_LONG"))               IO_LONG = value;
+        else if (term.equalsIgnoreCase("LOGIC_FF_DELAY"))        LOGIC_FF_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A1_DELAY"))        LOGIC_LUT_A1_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A2_DELAY"))        LOGIC_LUT_A2_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A3_DELAY"))        LOGIC_LUT_A3_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A4_DELAY"))        LOGIC_LUT_A4_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A5_DELAY"))        LOGIC_LUT_A5_DELAY = value;
+        else if (term.equalsIgnoreCase("LOGIC_LUT_A6_DELAY"))        LOGIC_LUT_A6_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A1_DELAY"))        SITEPIN_A1_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A2_DELAY"))        SITEPIN_A2_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A3_DELAY"))        SITEPIN_A3_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A4_DELAY"))        SITEPIN_A4_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A5_DELAY"))        SITEPIN_A5_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A6_DELAY"))        SITEPIN_A6_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_A_I_DELAY"))        SITEPIN_A_I_DELAY = value;
+        else if (term.equalsIgnoreCase("SITEPIN_AX_DELAY"))        SITEPIN_AX_DELAY = value;
+        else if (term.equalsIgnoreCase("NEAR_MIN"))       NEAR_MIN = (int) Math.floor(value);
+        else if (term.equalsIgnoreCase("NEAR_MAX"))       NEAR_MAX =(int) Math.floor(value);
+        else if (term.equalsIgnoreCase("MID_MIN"))        MID_MIN =(int) Math.floor(value);
+        else if (term.equalsIgnoreCase("MID_MAX"))        MID_MAX =(int) Math.floor(value);
+        else if (term.equalsIgnoreCase("FAR_MIN"))        FAR_MIN =(int) Math.floor(value);
+        else if (term.equalsIgnoreCase("FAR_MAX"))        FAR_MAX =(int) Math.floor(value);
+        else return false;
+        return true;
     }
 
     int[] sDistHorizontal;
@@ -873,13 +955,6 @@ public class TimingModel {
     }
 
 
-    private float intrasiteDelay;
-    private SitePinInst startPinInst;
-    private SitePinInst endPinInst;
-    private BELPin sourceBELPin;
-    private BELPin sinkBELPin;
-    private List<TimingGroup> groups;
-
     /**
      * Estimates the delay of a timing group in picoseconds.
      * @param startPinInst Source pin as a SitePinInst for the physical Net.
@@ -895,14 +970,6 @@ public class TimingModel {
             }
         }
 
-        // set these member variables for use in method: "checkForSomeIntrasiteDelays()" down below
-        this.intrasiteDelay = 0;
-        this.startPinInst = startPinInst;
-        this.endPinInst = endPinInst;
-        this.sourceBELPin = sourceBELPin;
-        this.sinkBELPin = sinkBELPin;
-        this.groups = groups;
-
         int GroupCntr = 0;
         float netDelayCalc = 0;
 
@@ -1026,7 +1093,8 @@ public class TimingModel {
 
         netDelayCalc += checkForSitePinDelay(groups);
 
-        checkForIntrasiteDelay();  // implementation refactored into a helper method below
+        float intrasiteDelay = checkForIntrasiteDelay(startPinInst, endPinInst, sourceBELPin, sinkBELPin, 
+                                                      groups);
 
         for (int i =1 ; i < groups.size(); i++) {
             TimingGroup gprev = groups.get(i-1);
@@ -1237,26 +1305,55 @@ public class TimingModel {
         return result.toArray(new TimingGroup[result.size()]);
     }
 
-    private HashMap<String, PIP> pipEndNodeHashMap;
-
-    private void determineNodeListInitHelper(Net net) {
-        pipEndNodeHashMap = new HashMap<>();
-        for (PIP p : net.getPIPs()) {
-            pipEndNodeHashMap.put(p.getEndNode().toString(), p);
+    /**
+     * Gets the route tree of a net, building it if the net has not been seen yet, its tree was
+     * invalidated or its PIP list was replaced or resized (see {@link NetRouteTree#isCurrent(Net)}).
+     * @param net Physical net.
+     * @return The route tree of the net.
+     */
+    private NetRouteTree getRouteTree(Net net) {
+        if (!USE_ROUTE_TREE_CACHE) {
+            return new NetRouteTree(net);
+        }
+        NetRouteTree tree = routeTrees.get(net);
+        if (tree == null || !tree.isCurrent(net)) {
+            tree = new NetRouteTree(net);
+            routeTrees.put(net, tree);
         }
+        return tree;
+    }
+
+    /**
+     * Discards the cached route tree of a net.  Must be called after the PIPs of a net are changed
+     * in place without changing their number, which the cache can't detect by itself; 
+     * {@link TimingGraph#updateNetTiming(Net)} calls it for the net it updates.
+     * @param net Physical net.
+     */
+    public void invalidateRouteTree(Net net) {
+        routeTrees.remove(net);
+    }
+
+    /**
+     * Discards the cached route trees of all nets.
+     */
+    public void clearRouteTrees() {
+        routeTrees.clear();
     }
 
 
     /**
      * This method basically creates an ordered list of nodes from the source to selected sink.
-     * This is computed based on the randomly ordered set of PIPs returned by the net.
-     * This is currently one of the performance bottlenecks within the timing library.
+     * This is computed by walking back from the sink through the route tree of the net, which is
+     * built once from the randomly ordered set of PIPs returned by the net and shared by all sinks.
      * @param net Physical net.
      * @param startPinInst The source (SitePinInst) from the net.
      * @param endPinInst  The selected sink (SitePinInst) from the net.
+     * @param nodeList List to populate with the ordered nodes from the sink back to the source.
+     * @param relevantPIPs List to populate with the PIPs between the nodes of nodeList.
      */
-    private void determineNodeList(Net net, SitePinInst startPinInst, SitePinInst endPinInst) {
-        determineNodeListInitHelper(net);
+    private void determineNodeList(Net net, SitePinInst startPinInst, SitePinInst endPinInst,
+                                   List<Node> nodeList, List<PIP> relevantPIPs) {
+        NetRouteTree routeTree = getRouteTree(net);
 
         Node sourcePinNode = null;
         if (startPinInst != null)
@@ -1282,19 +1379,7 @@ public class TimingModel {
             else
                 node = null;
 
-            while (node != null && !node.equals(sourcePinNode)) {
-                PIP p = pipEndNodeHashMap.get(node.toString());
-                if (p != null) {
-                    relevantPIPs.add(relevantPIPs.size(), p);
-                    nodeList.add(nodeList.size(), node);
-                } else
-                    break;
-                node = p.getStartNode();//pipStartNodeHashMap.get(p);//p.getStartNode();
-                //node = pipStartNodeHashMap.get(p);//p.getStartNode();
-            }
-            if (node != null) {
-                nodeList.add(nodeList.size(), node);
-            }
+            routeTree.getPath(node, sourcePinNode, nodeList, relevantPIPs);
         } else {
             for (PIP p : net.getPIPs()) {
                 relevantPIPs.add(p);
@@ -1392,7 +1477,9 @@ public class TimingModel {
 */
     }
 
-    private void checkForIntrasiteDelay() {
+    private float checkForIntrasiteDelay(SitePinInst startPinInst, SitePinInst endPinInst, 
+                                         BELPin sourceBELPin, BELPin sinkBELPin, List<TimingGroup> groups) {
+        float intrasiteDelay = 0;
         String sourceType = "";
         String sinkType = "";
         if (endPinInst != null) {
@@ -1458,8 +1545,10 @@ public class TimingModel {
                         !sourcepin.startsWith("SRST")) {
 
                     short tmpIntrasiteDelay = 0;
-                    tmpIntrasiteDelay = intrasiteAndLogicDelayModel.getIntraSiteDelay(SiteTypeEnum.SLICEL, 
-                                            sourcepin, sinkType + "/" + "D");
+                    tmpIntrasiteDelay = intrasiteAndLogicDelayModel.getIntraSiteDelay(
+                            intrasiteAndLogicDelayModel.getSiteTypeIndex(SiteTypeEnum.SLICEL), 
+                            intrasiteAndLogicDelayModel.getPinIndex(sourcepin), 
+                            intrasiteAndLogicDelayModel.getPinIndex(sinkType, "D"));
                     intrasiteDelay += tmpIntrasiteDelay;
                 } else if (sourcepin.startsWith("CKEN")) {
                     intrasiteDelay += INTRASITE_DELAY_SITEPIN_TO_FF_INPUT;
@@ -1483,14 +1572,16 @@ public class TimingModel {
                                 (tmpPin == null && sourceBELPin == null)) {
                                 continue;
                             }
-                            String fromPinName = sourceType + "/";
+                            String fromPinName;
                             if ((sourceBELPin == null || sinkBELPin == null) && tmpPin != null)
-                                fromPinName += tmpPin.getName();
+                                fromPinName = tmpPin.getName();
                             else {
-                                fromPinName += sourceBELPin.getName();
+                                fromPinName = sourceBELPin.getName();
                             }
                             tmpIntrasiteDelay = intrasiteAndLogicDelayModel.getIntraSiteDelay(
-                            		SiteTypeEnum.SLICEL, fromPinName, startPinInst.getName());
+                            		intrasiteAndLogicDelayModel.getSiteTypeIndex(SiteTypeEnum.SLICEL), 
+                            		intrasiteAndLogicDelayModel.getPinIndex(sourceType, fromPinName), 
+                            		intrasiteAndLogicDelayModel.getPinIndex(startPinInst.getName()));
                             intrasiteDelay += tmpIntrasiteDelay;
                         } else if (w.getWireName().endsWith("_O"))
                             intrasiteDelay += INTRASITE_DELAY_LUT_OUTPUT_TO_O_SITEPIN;
@@ -1498,8 +1589,7 @@ public class TimingModel {
                 }
             }
         }
-
-
+        return intrasiteDelay;
     }
 
     /**
@@ -34,6 +34,7 @@ public class TimingVertex {
     private boolean isFlopInput;
     private boolean isFlopOutput;
     private boolean printed;
+    private int topologicalIndex = -1;
 
     /**
      * Creates a vertex for insertion into the TimingGraph.
@@ -141,6 +142,22 @@ public class TimingVertex {
         return slack;
     }
 
+    /**
+     * Checks if a required time has been set on this vertex.
+     * @return True if the required time is set, false otherwise.
+     */
+    boolean hasRequiredTime() {
+        return requiredTime != null;
+    }
+
+    /**
+     * Removes the required time (and therefore the slack) of this vertex.
+     */
+    void clearRequiredTime() {
+        requiredTime = null;
+        slack = null;
+    }
+
     /**
      * Gets the arrival time stored at this vertex.
      * @return Arrival time in picoseconds.
@@ -183,6 +200,23 @@ public class TimingVertex {
         return printed;
     }
 
+    /**
+     * Gets the position of this vertex in the topological order of the TimingGraph, used for 
+     * propagating arrival and required times.
+     * @return The topological index or -1 if the graph has not been levelized yet.
+     */
+    int getTopologicalIndex() {
+        return topologicalIndex;
+    }
+
+    /**
+     * Sets the position of this vertex in the topological order of the TimingGraph.
+     * @param topologicalIndex The topological index.
+     */
+    void setTopologicalIndex(int topologicalIndex) {
+        this.topologicalIndex = topologicalIndex;
+    }
+
     /**
      * Gets the name of the vertex.
      * @return Name of the vertex.
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.util;
+
+import java.nio.channels.FileLock;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A job whose results are kept in a {@link JobResultCache}.  When launched, the results are 
+ * copied from the cache into the run directory if present.  Otherwise the job claims its key 
+ * and runs the wrapped job, storing the results in the cache once it was successful.  If 
+ * another job or process has already claimed the key, this job waits for that run to finish 
+ * and then uses its results (or runs itself if that run failed).
+ * 
+ * Created on: Oct 18, 2020
+ */
+public class CachedJob extends Job {
+
+	private enum State { NOT_LAUNCHED, RESTORED, WAITING, RUNNING, FINISHED }
+	
+	private Job job;
+	
+	private JobResultCache cache;
+	
+	private String key;
+	
+	private List<String> resultFiles;
+	
+	private State state = State.NOT_LAUNCHED;
+	
+	private FileLock claim;
+	
+	/**
+	 * Creates a cached job, the command and run directory are those of the wrapped job.
+	 * @param job The job computing the results.
+	 * @param cache The cache to keep the results in.
+	 * @param key The key of the job, see {@link JobResultCache#createKey(List, List)}.
+	 * @param resultFiles Names of the files the job creates in its run directory to be cached.
+	 */
+	public CachedJob(Job job, JobResultCache cache, String key, List<String> resultFiles){
+		this.job = job;
+		this.cache = cache;
+		this.key = key;
+		this.resultFiles = resultFiles;
+		setCommand(job.getCommand());
+		setRunDir(job.getRunDir());
+		setPriority(job.getPriority());
+		setEstimatedMemory(job.getEstimatedMemory());
+		setEstimatedCores(job.getEstimatedCores());
+	}
+	
+	/**
+	 * @return the key of the job in the cache
+	 */
+	public String getKey() {
+		return key;
+	}
+	
+	/**
+	 * @return True if the results were taken from the cache instead of running the job.
+	 */
+	public synchronized boolean isRestored(){
+		return state == State.RESTORED;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#launchJob()
+	 */
+	@Override
+	public synchronized long launchJob() {
+		state = State.WAITING;
+		tryToRun();
+		return getJobNumber();
+	}
+	
+	/**
+	 * Restores the results or claims the key and launches the wrapped job, if the key is free.
+	 */
+	private void tryToRun(){
+		if(cache.restore(key, getRunDir())){
+			state = State.RESTORED;
+			System.out.println("Restored job results for " + getRunDir() + " from cache " + key);
+			return;
+		}
+		claim = cache.tryClaim(key);
+		if(claim == null) return;
+		// The previous owner may have just stored the results
+		if(cache.restore(key, getRunDir())){
+			JobResultCache.release(claim);
+			claim = null;
+			state = State.RESTORED;
+			return;
+		}
+		job.setRunDir(getRunDir());
+		job.setCommand(getCommand());
+		job.launchJob();
+		setJobNumber(job.getJobNumber());
+		state = State.RUNNING;
+	}
+	
+	/**
+	 * Stores the results of a finished run and releases the key.
+	 */
+	private void finishRun(){
+		if(state != State.RUNNING) return;
+		state = State.FINISHED;
+		if(job.jobWasSuccessful()){
+			cache.store(key, getRunDir(), resultFiles);
+		}
+		JobResultCache.release(claim);
+		claim = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#isFinished()
+	 */
+	@Override
+	public synchronized boolean isFinished() {
+		switch(state){
+			case NOT_LAUNCHED:
+				return false;
+			case WAITING:
+				tryToRun();
+				return state == State.RESTORED;
+			case RUNNING:
+				if(!job.isFinished()) return false;
+				finishRun();
+				return true;
+			default:
+				return true;
+		}
+	}
+	
+	/**
+	 * While the wrapped job runs, completes when it signals its completion.  Otherwise polls 
+	 * for the results or the key to become available.
+	 * @see com.xilinx.rapidwright.util.Job#whenFinished(ScheduledExecutorService)
+	 */
+	@Override
+	public CompletableFuture<Job> whenFinished(ScheduledExecutorService poller) {
+		synchronized (this) {
+			if(state == State.RESTORED){
+				return CompletableFuture.completedFuture(this);
+			}
+			if(state != State.RUNNING){
+				return super.whenFinished(poller);
+			}
+		}
+		return job.whenFinished(poller).thenApply(j -> {
+			synchronized (this) {
+				finishRun();
+			}
+			return this;
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#jobWasSuccessful()
+	 */
+	@Override
+	public synchronized boolean jobWasSuccessful() {
+		if(state == State.RESTORED) return true;
+		if(state == State.FINISHED || state == State.RUNNING) return job.jobWasSuccessful();
+		return false;
+	}
+
+	/**
+	 * Only runs of the wrapped job are recorded, restoring results says nothing about the 
+	 * runtime of the job.
+	 * @see com.xilinx.rapidwright.util.Job#saveRuntime(long)
+	 */
+	@Override
+	public synchronized void saveRuntime(long runtime) {
+		if(state != State.RESTORED) super.saveRuntime(runtime);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#killJob()
+	 */
+	@Override
+	public synchronized void killJob() {
+		if(state == State.RUNNING){
+			job.killJob();
+			state = State.FINISHED;
+			JobResultCache.release(claim);
+			claim = null;
+		}else if(state == State.WAITING){
+			state = State.FINISHED;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#runsLocally()
+	 */
+	@Override
+	public boolean runsLocally() {
+		return job.runsLocally();
+	}
+}
@@ -28,6 +28,9 @@ package com.xilinx.rapidwright.util;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -42,6 +45,18 @@ public abstract class Job {
 	private String runDir;
 	
 	private long jobNumber;
+	
+	/** Jobs with a higher priority are launched first, read when the job is added to a queue */
+	private int priority = 0;
+	
+	/** Estimated peak memory of the job in MB, 0 if unknown */
+	private long estimatedMemory = 0;
+	
+	/** Estimated number of cores kept busy by the job */
+	private int estimatedCores = 1;
+	
+	/** Expected runtime in milliseconds, -1 if unknown, null if not read from the history yet */
+	private Long expectedRuntime = null;
 
 	public static final String DEFAULT_SCRIPT_NAME = "run";
 	
@@ -53,6 +68,15 @@ public abstract class Job {
 	
 	public static final String DEFAULT_COMMAND_LOG_FILE = DEFAULT_COMMAND_NAME + DEFAULT_LOG_EXTENSION;
 	
+	/** Stores the runtime (ms) of the last successful run of a job in its run directory */
+	public static final String DEFAULT_RUNTIME_FILE = DEFAULT_SCRIPT_NAME + "_runtime.txt";
+	
+	/** Created by the launch script when the command starts, its time stamp is the start time */
+	public static final String DEFAULT_START_FILE = DEFAULT_SCRIPT_NAME + "_start.txt";
+	
+	/** Milliseconds between checks of {@link #isFinished()} for jobs that are polled */
+	public static long FINISHED_POLL_INTERVAL = 2000;
+	
 	public abstract long launchJob();
 	
 	public abstract boolean isFinished();
@@ -61,6 +85,38 @@ public abstract class Job {
 	
 	public abstract void killJob();
 	
+	/**
+	 * Gets a future completed with this job once the most recent launch of the job has 
+	 * finished.  By default, {@link #isFinished()} is polled on the provided executor, jobs 
+	 * that can be notified of their completion override this.
+	 * @param poller Executor to schedule checks of {@link #isFinished()} on.
+	 * @return A future completed when the job is finished.
+	 */
+	public CompletableFuture<Job> whenFinished(ScheduledExecutorService poller){
+		CompletableFuture<Job> future = new CompletableFuture<>();
+		pollFinished(poller, future, getFirstPollDelay());
+		return future;
+	}
+	
+	/**
+	 * @return Milliseconds to wait after launching the job before first checking if it is 
+	 * finished.
+	 */
+	protected long getFirstPollDelay(){
+		return FINISHED_POLL_INTERVAL;
+	}
+	
+	private void pollFinished(ScheduledExecutorService poller, CompletableFuture<Job> future, long delay){
+		poller.schedule(() -> {
+			try {
+				if(isFinished()) future.complete(this);
+				else pollFinished(poller, future, FINISHED_POLL_INTERVAL);
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+	
 	
 	public Pair<String,String> createLaunchScript(){
 		List<String> startupScript = new ArrayList<>();
@@ -70,6 +126,8 @@ public abstract class Job {
 		FileTools.makeDirs(dir);
 		
 		startupScript.add("cd " + dir);
+		new File(dir + File.separator + DEFAULT_START_FILE).delete();
+		startupScript.add((FileTools.isWindows() ? "type nul > " : "touch ") + DEFAULT_START_FILE);
 		startupScript.add(getCommand() + " > " + DEFAULT_COMMAND_LOG_FILE + " 2>&1");
 
 		String startupScriptName = dir + File.separator + DEFAULT_SCRIPT_NAME + scriptExt;
@@ -122,6 +180,107 @@ public abstract class Job {
 		this.runDir = runDir;
 	}
 	
+	/**
+	 * @return the priority, jobs with a higher priority are launched first
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @param priority the priority to set
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * @return the estimated peak memory of the job in MB, 0 if unknown
+	 */
+	public long getEstimatedMemory() {
+		return estimatedMemory;
+	}
+
+	/**
+	 * @param estimatedMemory the estimated peak memory of the job in MB
+	 */
+	public void setEstimatedMemory(long estimatedMemory) {
+		this.estimatedMemory = estimatedMemory;
+	}
+
+	/**
+	 * @return the estimated number of cores kept busy by the job
+	 */
+	public int getEstimatedCores() {
+		return estimatedCores;
+	}
+
+	/**
+	 * @param estimatedCores the estimated number of cores kept busy by the job
+	 */
+	public void setEstimatedCores(int estimatedCores) {
+		this.estimatedCores = estimatedCores;
+	}
+	
+	/**
+	 * @return True if the job runs on this host and uses its memory and cores, false if it is
+	 * placed on another host, such as by LSF.
+	 */
+	public boolean runsLocally() {
+		return true;
+	}
+
+	/**
+	 * Gets the expected runtime of the job.  Unless set explicitly, this is the runtime of the
+	 * last successful run in the same run directory (see {@link #DEFAULT_RUNTIME_FILE}).
+	 * @return the expected runtime in milliseconds, or -1 if unknown
+	 */
+	public long getExpectedRuntime() {
+		if(expectedRuntime == null){
+			expectedRuntime = -1L;
+			String fileName = getRunDir() + File.separator + DEFAULT_RUNTIME_FILE;
+			if(getRunDir() != null && new File(fileName).exists()){
+				List<String> lines = FileTools.getLinesFromTextFile(fileName);
+				try {
+					if(lines.size() > 0) expectedRuntime = Long.parseLong(lines.get(0).trim());
+				} catch (NumberFormatException e) {
+					// Ignore a corrupt history
+				}
+			}
+		}
+		return expectedRuntime;
+	}
+
+	/**
+	 * @param expectedRuntime the expected runtime in milliseconds, -1 if unknown
+	 */
+	public void setExpectedRuntime(long expectedRuntime) {
+		this.expectedRuntime = expectedRuntime;
+	}
+	
+	/**
+	 * Gets the time the command of the job started running.  For jobs that wait in a scheduler's
+	 * queue after being launched this is later than the launch time.  By default, this is the
+	 * time stamp of the {@link #DEFAULT_START_FILE} created by the launch script.
+	 * @param launchTime The time the job was launched (ms).
+	 * @return The start time (ms), or the launch time if it is not known.
+	 */
+	public long getStartTime(long launchTime) {
+		if(getRunDir() == null) return launchTime;
+		File startFile = new File(getRunDir() + File.separator + DEFAULT_START_FILE);
+		return Math.max(launchTime, startFile.lastModified());
+	}
+	
+	/**
+	 * Records the runtime of a successful run in the run directory, to be used as the expected
+	 * runtime of later runs in the same directory.
+	 * @param runtime The runtime in milliseconds.
+	 */
+	public void saveRuntime(long runtime) {
+		if(getRunDir() == null) return;
+		FileTools.writeStringToTextFile(Long.toString(runtime), getRunDir() + File.separator + DEFAULT_RUNTIME_FILE);
+	}
+	
 	public String toString(){
 		return Long.toString(jobNumber);
 	}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.util;
+
+/**
+ * Notified by a {@link JobQueue} each time one of its jobs has finished.
+ * 
+ * Created on: Oct 18, 2020
+ */
+public interface JobProgressListener {
+
+	/**
+	 * Called once a job is finished and will not be retried.  Calls are made from the thread 
+	 * that observed the completion of the job, one at a time.
+	 * @param job The finished job.
+	 * @param success True if the job was successful.
+	 * @param finishedCount Number of finished jobs of the queue so far.
+	 * @param totalCount Number of finished, running and waiting jobs of the queue.
+	 */
+	public void jobFinished(Job job, boolean success, int finishedCount, int totalCount);
+}
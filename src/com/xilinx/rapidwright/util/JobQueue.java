@@ -26,13 +26,33 @@
 package com.xilinx.rapidwright.util;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiPredicate;
 
 /**
- * Used to manage a batch of task jobs to run in parallel. 
+ * Used to manage a batch of task jobs to run in parallel.  Jobs are launched as soon as a 
+ * slot frees up: completion of each job is signalled by the job itself (see 
+ * {@link Job#whenFinished(ScheduledExecutorService)}) rather than by polling the whole queue.
+ * Waiting jobs are launched by decreasing priority and then by decreasing expected runtime, 
+ * so long runs start early.  Both are read when the job is added, later changes to the job 
+ * don't affect its place in the queue.  A waiting job gains one priority level every 
+ * {@link #JOB_AGING_INTERVAL} so low priority jobs are not starved.  Local jobs are also 
+ * packed against the memory and cores of the host using their estimates.
  * 
  * Created on: Jan 26, 2018
  */
@@ -44,13 +64,66 @@ public class JobQueue {
 	
 	public static boolean USE_LSF_IF_AVAILABLE = true; 
 	
-	private Queue<Job> waitingToRun;
+	/** Memory (MB) assumed for local jobs that don't estimate their own */
+	public static long DEFAULT_LOCAL_JOB_MEMORY = 4096;
+	
+	/** Fraction of the host's physical memory local jobs may use together */
+	public static double MAX_LOCAL_MEMORY_FRACTION = 0.8;
+	
+	/** Number of cores local jobs may keep busy together */
+	public static int MAX_LOCAL_CORES = Runtime.getRuntime().availableProcessors();
+	
+	/** Milliseconds of waiting after which a job is ranked as if it had one more priority level, 
+	 *  0 disables aging */
+	public static long JOB_AGING_INTERVAL = 10 * 60 * 1000;
+	
+	/** A waiting job with the keys it is ranked by, read when it was added */
+	private static class WaitingJob {
+		Job job;
+		/** Priority minus the number of aging intervals between creation of the queue and adding 
+		 *  the job, which ranks jobs as if each gained a level per interval waited */
+		long agedPriority;
+		long expectedRuntime;
+		long order;
+	}
+	
+	private Queue<WaitingJob> waitingToRun;
+	
+	/** Time the queue was created, waiting time is measured in aging intervals since then */
+	private long creationTime;
+	
+	/** Number of jobs added to the waiting queue so far, breaks ties between equally ranked jobs */
+	private long waitingCount;
 	
 	private ConcurrentLinkedQueue<Job> running;
 	
 	private Queue<Job> finished;
 
-	private boolean recentLSFJobLaunch = false;
+	/** Future of each job added to the queue, completed when the job is finished */
+	private Map<Job,CompletableFuture<Job>> futures;
+	
+	/** Number of times each job has been launched */
+	private Map<Job,Integer> attempts;
+	
+	/** Time each running job was launched at */
+	private Map<Job,Long> launchTimes;
+	
+	/** Decides if a failed job is launched again, given the job and how often it was launched */
+	private BiPredicate<Job,Integer> retryPolicy;
+	
+	private JobProgressListener progressListener;
+	
+	/** Limit on concurrently running jobs of the current run */
+	private int maxNumRunningJobs;
+	
+	/** Checks jobs that can't signal their own completion */
+	private ScheduledExecutorService poller;
+	
+	/** Completes when the current run has no more waiting or running jobs */
+	private CompletableFuture<Boolean> allFinished;
+	
+	/** Set while killing jobs, no more jobs are launched or retried */
+	private volatile boolean killing = false;
 
 	public static final String LSF_AVAILABLE_OPTION = "-lsf_available";
 	public static final String LSF_RESOURCE_OPTION = "-lsf_resource";
@@ -58,57 +131,122 @@ public class JobQueue {
 	
 	
 	public JobQueue(){
-		waitingToRun = new LinkedList<>();
+		creationTime = System.currentTimeMillis();
+		launchTimes = new IdentityHashMap<>();
+		waitingToRun = new PriorityQueue<>(getLaunchOrder());
 		running = new ConcurrentLinkedQueue<>();
 		finished = new LinkedList<>();
+		futures = new IdentityHashMap<>();
+		attempts = new IdentityHashMap<>();
 	}
 	
-	public boolean addJob(Job j){
-		return waitingToRun.add(j);
+	public synchronized boolean addJob(Job j){
+		submit(j);
+		return true;
 	}
 	
-	public boolean addRunningJob(Job j){
-		if(j instanceof LSFJob) recentLSFJobLaunch = true;
-		return running.add(j);
+	/**
+	 * Adds a job to the queue to be launched by {@link #runAll(int)}.
+	 * @param j The job to run.
+	 * @return A future completed with the job once it has finished (after any retries).  The
+	 * job is not necessarily successful, see {@link Job#jobWasSuccessful()}.
+	 */
+	public synchronized CompletableFuture<Job> submit(Job j){
+		CompletableFuture<Job> future = getFuture(j);
+		enqueue(j);
+		if(allFinished != null && !allFinished.isDone()) launchWaitingJobs();
+		return future;
+	}
+	
+	/**
+	 * Adds a job that was already launched by the caller.
+	 * @param j The launched job.
+	 * @return True.
+	 */
+	public synchronized boolean addRunningJob(Job j){
+		getFuture(j);
+		attempts.merge(j, 1, Integer::sum);
+		running.add(j);
+		if(allFinished != null && !allFinished.isDone()) watch(j);
+		return true;
+	}
+	
+	/**
+	 * Gets the future of a job added to this queue.
+	 * @param j The job.
+	 * @return The future completed when the job has finished.
+	 */
+	public synchronized CompletableFuture<Job> getFuture(Job j){
+		return futures.computeIfAbsent(j, k -> new CompletableFuture<>());
+	}
+	
+	/**
+	 * Relaunches failed jobs up to the given number of times.
+	 * @param maxRetries Number of times a failed job is launched again, 0 disables retries.
+	 */
+	public synchronized void setMaxRetries(int maxRetries){
+		retryPolicy = maxRetries <= 0 ? null : (j, launches) -> launches <= maxRetries;
+	}
+	
+	/**
+	 * Sets a policy deciding if a failed job is launched again.
+	 * @param retryPolicy Tested with the failed job and the number of times it was launched so 
+	 * far, or null to never retry.
+	 */
+	public synchronized void setRetryPolicy(BiPredicate<Job,Integer> retryPolicy){
+		this.retryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * Sets a listener notified each time a job of the queue has finished.
+	 * @param progressListener The listener or null.
+	 */
+	public synchronized void setProgressListener(JobProgressListener progressListener){
+		this.progressListener = progressListener;
+	}
+	
+	/**
+	 * Launches the jobs of the queue, keeping at most maxNumRunningJobs running at once, and
+	 * returns without waiting for them.
+	 * @param maxNumRunningJobs Limit on the number of concurrently running jobs.
+	 * @return A future completed with true if all jobs were successful once no jobs are 
+	 * waiting or running anymore.
+	 */
+	public synchronized CompletableFuture<Boolean> runAll(int maxNumRunningJobs){
+		if(allFinished != null && !allFinished.isDone()){
+			this.maxNumRunningJobs = maxNumRunningJobs;
+			launchWaitingJobs();
+			return allFinished;
+		}
+		this.maxNumRunningJobs = maxNumRunningJobs;
+		killing = false;
+		allFinished = new CompletableFuture<>();
+		poller = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "JobQueue-poller");
+			t.setDaemon(true);
+			return t;
+		});
+		for(Job j : running){
+			watch(j);
+		}
+		launchWaitingJobs();
+		checkAllFinished();
+		return allFinished;
 	}
 	
 	public boolean runAllToCompletion(int maxNumRunningJobs){
-		while(!waitingToRun.isEmpty() || !running.isEmpty()){
-			boolean launched = false;
-			while(!waitingToRun.isEmpty() && maxNumRunningJobs > running.size()){
-				Job j = waitingToRun.poll();
-				long pid = j.launchJob();
-				running.add(j);
-				System.out.println("Running job [" + pid + "] " + j.getCommand() + " in " + j.getRunDir());
-				recentLSFJobLaunch = j instanceof LSFJob;
-				launched = true;
-			}
-			
-			// We must wait some time for LSF to enqueue the job so we can be sure
-			// it is running before we ask if it is finished
-			if(!launched || recentLSFJobLaunch){
-				try {
-					System.out.println("Waiting on " + running.size() + " jobs still running...");
-					Thread.sleep(recentLSFJobLaunch ? 8000 : 2000);
-					if(recentLSFJobLaunch) recentLSFJobLaunch = false;
-				} catch (InterruptedException e) {
-					killAllRunningJobs();
-					throw new RuntimeException("ERROR: Jobs killed due to InterruptedException");
-				}
-			}
-			try {
-				Thread.sleep(200);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			for(Job j : running){
-				if(j.isFinished()) running.remove(j);
-				finished.add(j);
-			}
+		CompletableFuture<Boolean> done = runAll(maxNumRunningJobs);
+		try {
+			done.get();
+		} catch (InterruptedException e) {
+			killAllRunningJobs();
+			throw new RuntimeException("ERROR: Jobs killed due to InterruptedException");
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
 		int failedCount = 0;
 		boolean success = true;
-		for(Job j : finished){
+		for(Job j : getFinishedJobs()){
 			boolean curr = j.jobWasSuccessful();
 			if(!curr){
 				if(failedCount == 0){
@@ -135,8 +273,147 @@ public class JobQueue {
 		return success;
 	}
 	
+	private synchronized ArrayList<Job> getFinishedJobs(){
+		return new ArrayList<>(finished);
+	}
+	
+	private static Comparator<WaitingJob> getLaunchOrder(){
+		return (a, b) -> {
+			if(a.agedPriority != b.agedPriority) return Long.compare(b.agedPriority, a.agedPriority);
+			if(a.expectedRuntime != b.expectedRuntime) 
+				return Long.compare(b.expectedRuntime, a.expectedRuntime);
+			return Long.compare(a.order, b.order);
+		};
+	}
+	
+	/**
+	 * Adds a job to the waiting queue, reading the keys it is ranked by.
+	 */
+	private void enqueue(Job j){
+		WaitingJob w = new WaitingJob();
+		w.job = j;
+		long waited = JOB_AGING_INTERVAL > 0 ? 
+				(System.currentTimeMillis() - creationTime) / JOB_AGING_INTERVAL : 0;
+		w.agedPriority = j.getPriority() - waited;
+		w.expectedRuntime = j.getExpectedRuntime();
+		w.order = waitingCount++;
+		waitingToRun.add(w);
+	}
+	
+	private void launchWaitingJobs(){
+		List<WaitingJob> skipped = new ArrayList<>();
+		while(!killing && !waitingToRun.isEmpty() && maxNumRunningJobs > running.size()){
+			WaitingJob w = waitingToRun.poll();
+			Job j = w.job;
+			if(!fitsHostResources(j)){
+				// Let smaller jobs use the remaining resources
+				skipped.add(w);
+				continue;
+			}
+			long pid = j.launchJob();
+			attempts.merge(j, 1, Integer::sum);
+			launchTimes.put(j, System.currentTimeMillis());
+			running.add(j);
+			System.out.println("Running job [" + pid + "] " + j.getCommand() + " in " + j.getRunDir());
+			watch(j);
+		}
+		waitingToRun.addAll(skipped);
+	}
+	
+	private static long getEstimatedMemory(Job j){
+		return j.getEstimatedMemory() > 0 ? j.getEstimatedMemory() : DEFAULT_LOCAL_JOB_MEMORY;
+	}
+	
+	/**
+	 * Checks if a job can be launched alongside the running jobs without exceeding the memory
+	 * or cores of the host.  Jobs that don't run locally (see {@link Job#runsLocally()}) always 
+	 * fit, as does any job when no local jobs are running.
+	 */
+	private boolean fitsHostResources(Job j){
+		if(!j.runsLocally()) return true;
+		long memory = getEstimatedMemory(j);
+		int cores = j.getEstimatedCores();
+		boolean localJobRunning = false;
+		for(Job r : running){
+			if(!r.runsLocally()) continue;
+			localJobRunning = true;
+			memory += getEstimatedMemory(r);
+			cores += r.getEstimatedCores();
+		}
+		if(!localJobRunning) return true;
+		return memory <= getHostMemory() * MAX_LOCAL_MEMORY_FRACTION && cores <= MAX_LOCAL_CORES;
+	}
+	
+	private static long hostMemory = 0;
+	
+	/**
+	 * @return The physical memory of the host in MB, or Long.MAX_VALUE if it can't be determined.
+	 */
+	public static long getHostMemory(){
+		if(hostMemory == 0){
+			OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+			// getTotalPhysicalMemorySize() is deprecated by getTotalMemorySize() in newer JDKs, 
+			// which older JDKs don't have
+			for(String name : new String[]{"getTotalMemorySize", "getTotalPhysicalMemorySize"}){
+				try {
+					Method m = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(name);
+					hostMemory = ((Long) m.invoke(os)) >> 20;
+					break;
+				} catch (ReflectiveOperationException | RuntimeException e) {
+					// Not available in this JDK, try the next one
+				}
+			}
+			if(hostMemory <= 0) hostMemory = Long.MAX_VALUE;
+		}
+		return hostMemory;
+	}
+	
+	private void watch(Job j){
+		CompletableFuture<Job> launched;
+		try {
+			launched = j.whenFinished(poller);
+		} catch (RuntimeException e) {
+			launched = new CompletableFuture<>();
+			launched.completeExceptionally(e);
+		}
+		launched.whenComplete((job, ex) -> jobFinished(j, ex));
+	}
+	
+	private synchronized void jobFinished(Job j, Throwable ex){
+		if(!running.remove(j)) return; // Already collected by killAllRunningJobs()
+		boolean success = ex == null && j.jobWasSuccessful();
+		Long launchTime = launchTimes.remove(j);
+		if(success && launchTime != null){
+			j.saveRuntime(System.currentTimeMillis() - j.getStartTime(launchTime));
+		}
+		if(!success && !killing && retryPolicy != null && retryPolicy.test(j, attempts.get(j))){
+			System.out.println("Retrying failed job [" + j.getJobNumber() + "] " + j.getCommand());
+			enqueue(j);
+		}else{
+			finished.add(j);
+			if(progressListener != null){
+				progressListener.jobFinished(j, success, finished.size(), 
+						finished.size() + running.size() + waitingToRun.size());
+			}
+			futures.get(j).complete(j);
+		}
+		launchWaitingJobs();
+		checkAllFinished();
+	}
+	
+	private void checkAllFinished(){
+		if(!running.isEmpty() || (!waitingToRun.isEmpty() && !killing)) return;
+		if(allFinished == null || allFinished.isDone()) return;
+		poller.shutdownNow();
+		boolean success = true;
+		for(Job j : finished){
+			success &= j.jobWasSuccessful();
+		}
+		allFinished.complete(success);
+	}
 	
 	public boolean killAllRunningJobs(){
+		killing = true;
 		for(Job j : running) {
 			j.killJob();
 		}
@@ -144,12 +421,20 @@ public class JobQueue {
 		long watchdog = System.currentTimeMillis(); 
 		while(!running.isEmpty() && (System.currentTimeMillis() - watchdog < 5000)){
 			Job j = running.poll();
-			if(j.isFinished()) finished.add(j);
+			if(j.isFinished()) {
+				synchronized (this) {
+					finished.add(j);
+					getFuture(j).complete(j);
+				}
+			}
 			else {
 				running.add(j);
 				try{Thread.sleep(200);} catch (InterruptedException e) {break;}
 			}
 		}
+		synchronized (this) {
+			checkAllFinished();
+		}
 		if(!running.isEmpty()){
 			MessageGenerator.briefError("ERROR: Couldn't kill all running jobs, still running are pid=" + running);
 			return false;
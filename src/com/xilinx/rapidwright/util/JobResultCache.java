@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * Author: Chris Lavin, Xilinx Research Labs.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A content-addressed cache of job results (routed DCPs, timing reports, ...) shared by all 
+ * processes of a host.  An entry is a directory named after the key of the job, a hash of its 
+ * input files and parameters (see {@link #createKey(List, List)}).  Entries are evicted least 
+ * recently used first once the cache grows beyond its size limit.  A lock file per key lets 
+ * a process claim a key while it computes the result, so that other processes wait for that 
+ * result instead of computing it again (see {@link CachedJob}).
+ * 
+ * Created on: Oct 18, 2020
+ */
+public class JobResultCache {
+
+	/** Default location of the cache */
+	public static String DEFAULT_CACHE_PATH = System.getProperty("user.home") + File.separator + ".rapidwright" + File.separator + "jobCache";
+	
+	/** Default size limit of the cache in bytes */
+	public static long DEFAULT_MAX_SIZE = 50L * 1024 * 1024 * 1024;
+	
+	/** Marks a complete entry, its modification time records the last use of the entry */
+	private static final String COMPLETE_FILE = ".complete";
+	
+	private static final String LOCK_EXTENSION = ".lock";
+	
+	/** Guards eviction across processes */
+	private static final String CACHE_LOCK_FILE = "cache" + LOCK_EXTENSION;
+	
+	private File root;
+	
+	private long maxSize;
+	
+	public JobResultCache(){
+		this(DEFAULT_CACHE_PATH, DEFAULT_MAX_SIZE);
+	}
+	
+	public JobResultCache(String cacheDir, long maxSize){
+		this.root = new File(cacheDir);
+		this.maxSize = maxSize;
+		FileTools.makeDirs(root.getAbsolutePath());
+	}
+	
+	/**
+	 * @return The directory of the cache.
+	 */
+	public String getCacheDir(){
+		return root.getAbsolutePath();
+	}
+	
+	/**
+	 * Creates the key of a job from the contents of its input files and its parameters.
+	 * @param inputFiles Files read by the job (DCPs, scripts, ...).
+	 * @param params Anything else that determines the results of the job, such as Tcl commands 
+	 * (with run specific paths removed), directives or tool versions.
+	 * @return The key as a hex string.
+	 */
+	public static String createKey(List<String> inputFiles, List<String> params){
+		List<String> inputDigests = new ArrayList<>();
+		for(String fileName : inputFiles){
+			inputDigests.add(getFileDigest(fileName));
+		}
+		return createKeyFromDigests(inputDigests, params);
+	}
+	
+	/**
+	 * Creates the key of a job from the digests of its input files (see 
+	 * {@link #getFileDigest(String)}) and its parameters, such that jobs sharing input files 
+	 * don't need to read them again.  Gives the same key as {@link #createKey(List, List)}.
+	 * @param inputDigests Digests of the files read by the job.
+	 * @param params Anything else that determines the results of the job.
+	 * @return The key as a hex string.
+	 */
+	public static String createKeyFromDigests(List<String> inputDigests, List<String> params){
+		MessageDigest digest = getMessageDigest();
+		for(String inputDigest : inputDigests){
+			digest.update(inputDigest.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		for(String param : params){
+			digest.update(param.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * Computes the digest of the contents of a file.
+	 * @param fileName The file to read.
+	 * @return The digest as a hex string.
+	 */
+	public static String getFileDigest(String fileName){
+		MessageDigest digest = getMessageDigest();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream is = new FileInputStream(fileName)){
+			int numRead;
+			while((numRead = is.read(buffer)) > 0){
+				digest.update(buffer, 0, numRead);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("ERROR: Couldn't read job input " + fileName, e);
+		}
+		return toHex(digest.digest());
+	}
+	
+	private static MessageDigest getMessageDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes){
+		StringBuilder sb = new StringBuilder();
+		for(byte b : bytes){
+			sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+		}
+		return sb.toString();
+	}
+	
+	private File getEntry(String key){
+		return new File(root, key);
+	}
+	
+	/**
+	 * Checks if the results of a key are cached.
+	 * @param key The key of the job.
+	 * @return True if a complete entry exists.
+	 */
+	public boolean contains(String key){
+		return new File(getEntry(key), COMPLETE_FILE).exists();
+	}
+	
+	/**
+	 * Copies the cached results of a key into a directory.  The entry is not locked, as the 
+	 * caller may hold its claim, instead the entry is checked to still be complete after copying
+	 * (eviction removes the {@link #COMPLETE_FILE} before any result file).
+	 * @param key The key of the job.
+	 * @param destDir The directory to copy the result files to.
+	 * @return True if the entry existed and was copied, false otherwise.
+	 */
+	public boolean restore(String key, String destDir){
+		File entry = getEntry(key);
+		File complete = new File(entry, COMPLETE_FILE);
+		if(!complete.exists()) return false;
+		FileTools.makeDirs(destDir);
+		try {
+			for(File f : listResultFiles(entry)){
+				Files.copy(f.toPath(), new File(destDir, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			// Entry was evicted while copying or is damaged
+			return false;
+		}
+		// Files may be missing if the entry was evicted while copying
+		if(!complete.exists()) return false;
+		complete.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+	
+	/**
+	 * Stores result files of a job under its key and evicts old entries if the cache has grown
+	 * beyond its size limit.
+	 * @param key The key of the job.
+	 * @param srcDir Directory containing the result files.
+	 * @param resultFiles Names of the result files, those that don't exist are skipped.
+	 * @return True if the entry was stored.
+	 */
+	public boolean store(String key, String srcDir, List<String> resultFiles){
+		File entry = getEntry(key);
+		if(new File(entry, COMPLETE_FILE).exists()) return true;
+		File tmp = new File(root, key + ".tmp" + System.nanoTime());
+		try {
+			Files.createDirectories(tmp.toPath());
+			for(String name : resultFiles){
+				File f = new File(srcDir, name);
+				if(!f.isFile()) continue;
+				Files.copy(f.toPath(), new File(tmp, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.createFile(new File(tmp, COMPLETE_FILE).toPath());
+			deleteDir(entry);
+			if(!tmp.renameTo(entry)){
+				deleteDir(tmp);
+				return false;
+			}
+		} catch (IOException e) {
+			deleteDir(tmp);
+			return false;
+		}
+		evict();
+		return true;
+	}
+	
+	/**
+	 * Tries to claim a key, the owner of a key is expected to compute its results and store 
+	 * them before releasing it.
+	 * @param key The key of the job.
+	 * @return The lock of the key, or null if another job or process holds it.
+	 */
+	public FileLock tryClaim(String key){
+		return tryLock(new File(root, key + LOCK_EXTENSION), false);
+	}
+	
+	/**
+	 * Releases a key claimed with {@link #tryClaim(String)}.
+	 * @param lock The lock returned when claiming the key.
+	 */
+	public static void release(FileLock lock){
+		if(lock == null) return;
+		try {
+			lock.release();
+			lock.channel().close();
+		} catch (IOException e) {
+			// Released when the channel is garbage collected or the process exits
+		}
+	}
+	
+	private static FileLock tryLock(File lockFile, boolean block){
+		FileChannel channel = null;
+		try {
+			channel = new RandomAccessFile(lockFile, "rw").getChannel();
+			FileLock lock = block ? channel.lock() : channel.tryLock();
+			if(lock == null) channel.close();
+			return lock;
+		} catch (OverlappingFileLockException | IOException e) {
+			// Held by this process already
+			if(channel != null){
+				try { channel.close(); } catch (IOException e2) { }
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * @return The total size in bytes of the complete entries.
+	 */
+	public long getSize(){
+		long size = 0;
+		for(File entry : listEntries()){
+			size += getSize(entry);
+		}
+		return size;
+	}
+	
+	/**
+	 * Deletes least recently used entries until the cache fits its size limit.
+	 */
+	public synchronized void evict(){
+		FileLock lock = tryLock(new File(root, CACHE_LOCK_FILE), true);
+		if(lock == null) return;
+		try {
+			List<File> entries = listEntries();
+			long[] sizes = new long[entries.size()];
+			long total = 0;
+			for(int i=0; i < sizes.length; i++){
+				sizes[i] = getSize(entries.get(i));
+				total += sizes[i];
+			}
+			if(total <= maxSize) return;
+			Integer[] order = new Integer[entries.size()];
+			long[] lastUse = new long[entries.size()];
+			for(int i=0; i < order.length; i++){
+				order[i] = i;
+				lastUse[i] = new File(entries.get(i), COMPLETE_FILE).lastModified();
+			}
+			Arrays.sort(order, Comparator.comparingLong(i -> lastUse[i]));
+			for(int i : order){
+				if(total <= maxSize) break;
+				FileLock entryLock = tryClaim(entries.get(i).getName());
+				if(entryLock == null) continue; // In use
+				try {
+					File complete = new File(entries.get(i), COMPLETE_FILE);
+					if(complete.delete()){
+						deleteDir(entries.get(i));
+						total -= sizes[i];
+					}
+				} finally {
+					release(entryLock);
+				}
+			}
+		} finally {
+			release(lock);
+		}
+	}
+	
+	private List<File> listEntries(){
+		List<File> entries = new ArrayList<>();
+		File[] files = root.listFiles();
+		if(files == null) return entries;
+		for(File f : files){
+			if(f.isDirectory() && new File(f, COMPLETE_FILE).exists()){
+				entries.add(f);
+			}
+		}
+		return entries;
+	}
+	
+	private static List<File> listResultFiles(File entry){
+		List<File> results = new ArrayList<>();
+		File[] files = entry.listFiles();
+		if(files == null) return results;
+		for(File f : files){
+			if(f.isFile() && !f.getName().equals(COMPLETE_FILE)){
+				results.add(f);
+			}
+		}
+		return results;
+	}
+	
+	private static long getSize(File entry){
+		long size = 0;
+		for(File f : listResultFiles(entry)){
+			size += f.length();
+		}
+		return size;
+	}
+	
+	private static void deleteDir(File dir){
+		File[] files = dir.listFiles();
+		if(files != null){
+			for(File f : files){
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+}
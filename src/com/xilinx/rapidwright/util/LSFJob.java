@@ -38,6 +38,12 @@ public class LSFJob extends Job {
 	
 	public static String LSF_QUEUE = "medium";
 	
+	/** 
+	 * We must wait some time for LSF to enqueue the job so we can be sure it is running 
+	 * before we ask if it is finished (milliseconds)
+	 */
+	public static long LSF_ENQUEUE_DELAY = 8000;
+	
 	
 	/* (non-Javadoc)
 	 * @see com.xilinx.rapidwright.util.Job#launchJob()
@@ -67,6 +73,14 @@ public class LSFJob extends Job {
 		return -1;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#getFirstPollDelay()
+	 */
+	@Override
+	protected long getFirstPollDelay() {
+		return LSF_ENQUEUE_DELAY;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.xilinx.rapidwright.util.Job#isFinished()
 	 */
@@ -102,4 +116,12 @@ public class LSFJob extends Job {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see com.xilinx.rapidwright.util.Job#runsLocally()
+	 */
+	@Override
+	public boolean runsLocally() {
+		return false;
+	}
+
 }
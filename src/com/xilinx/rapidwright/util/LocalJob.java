@@ -27,6 +27,8 @@ package com.xilinx.rapidwright.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 
 
 
@@ -66,7 +68,7 @@ public class LocalJob extends Job {
 	 */
 	@Override
 	public boolean isFinished() {
-		return !p.isAlive();
+		return p == null || !p.isAlive();
 	}
 
 	/* (non-Javadoc)
@@ -74,7 +76,36 @@ public class LocalJob extends Job {
 	 */
 	@Override
 	public boolean jobWasSuccessful() {
-		return p.exitValue() == 0;
+		return p != null && p.exitValue() == 0;
+	}
+
+	/**
+	 * Completes the future from a thread waiting on the process, so the job is reported as 
+	 * soon as the process exits without polling.
+	 * @see com.xilinx.rapidwright.util.Job#whenFinished(ScheduledExecutorService)
+	 */
+	@Override
+	public CompletableFuture<Job> whenFinished(ScheduledExecutorService poller) {
+		CompletableFuture<Job> future = new CompletableFuture<>();
+		final Process process = p;
+		if(process == null){
+			future.complete(this);
+			return future;
+		}
+		Thread waiter = new Thread(() -> {
+			while(true){
+				try {
+					process.waitFor();
+					break;
+				} catch (InterruptedException e) {
+					// Keep waiting, the job is only finished when the process exits
+				}
+			}
+			future.complete(this);
+		}, "LocalJob-" + getJobNumber());
+		waiter.setDaemon(true);
+		waiter.start();
+		return future;
 	}
 
 	
@@ -109,6 +140,6 @@ public class LocalJob extends Job {
 	 */
 	@Override
 	public void killJob() {
-		p.destroyForcibly();
+		if(p != null) p.destroyForcibly();
 	}
 }
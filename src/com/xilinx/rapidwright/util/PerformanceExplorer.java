@@ -50,6 +50,12 @@ public class PerformanceExplorer {
 	private static final String PLACED_TIMING_RESULT = "place_timing.twr";
 	private static final String ROUTED_TIMING_RESULT = "route_timing.twr";
 	private static final String RUN_TCL_NAME = "run.tcl";
+	private static final String ROUTED_DCP_NAME = "routed.dcp";
+	private static final String ROUTED_EDF_NAME = "routed.edf";
+	private static final String ROUTED_METADATA_NAME = "routed_0_metadata.txt";
+	/** Stand-ins for run specific paths in the Tcl commands used as part of a cache key */
+	private static final String RUN_DIR_KEY = "<run_dir>";
+	private static final String DCP_KEY = "<dcp>";
 	private static final double DEFAULT_MIN_CLK_UNCERT = -0.100;
 	private static final double DEFAULT_MAX_CLK_UNCERT = 0.250;
 	private static final double DEFAULT_STEP_CLK_UNCERT = 0.025;
@@ -89,6 +95,9 @@ public class PerformanceExplorer {
 
 	private String vivadoPath = DEFAULT_VIVADO;
 	
+	/** Keeps results of runs to skip runs already done, null if disabled */
+	private JobResultCache resultCache;
+	
 	public PerformanceExplorer(Design d, String testDir, String clkName, double targetPeriod){
 		init(d, testDir, clkName, targetPeriod, null);
 	}
@@ -240,6 +249,19 @@ public class PerformanceExplorer {
 		this.vivadoPath = vivadoPath;
 	}
 
+	public JobResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Sets a cache to take results of runs from, runs with the same design, Tcl commands and 
+	 * parameters as a cached run are not launched again.
+	 * @param resultCache The cache or null to always run.
+	 */
+	public void setResultCache(JobResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
 	public boolean isContainRouting() {
 		return containRouting;
 	}
@@ -276,11 +298,11 @@ public class PerformanceExplorer {
 		lines.add("report_timing -file "+instDirectory + File.separator+PLACED_TIMING_RESULT);
 		lines.add("route_design -directive " + r.name());
 		lines.add("report_timing -file "+instDirectory + File.separator+ROUTED_TIMING_RESULT);
-		lines.add("write_checkpoint -force " + instDirectory + File.separator + "routed.dcp");
+		lines.add("write_checkpoint -force " + instDirectory + File.separator + ROUTED_DCP_NAME);
 		if(addEDIFAndMetadata){
-			lines.add("write_edif -force " + instDirectory + File.separator + "routed.edf");
+			lines.add("write_edif -force " + instDirectory + File.separator + ROUTED_EDF_NAME);
 			lines.add("source " + FileTools.getRapidWrightPath() + File.separator + "tcl" + File.separator + "rapidwright.tcl");
-			lines.add("generate_metadata "+ instDirectory + File.separator + "routed.dcp false 0");
+			lines.add("generate_metadata "+ instDirectory + File.separator + ROUTED_DCP_NAME + " false 0");
 		}
 		for (int i = 0 ; i < lines.size(); i++){
 			lines.set(i, lines.get(i).replace('\\', '/'));
@@ -289,6 +311,33 @@ public class PerformanceExplorer {
 	}
 	
 	
+	/**
+	 * Gets the key of a run in the result cache.  Besides the design, the key covers the Tcl 
+	 * commands of the run with the run specific paths replaced, which include the directives, 
+	 * clock uncertainty and pblock.  The Vivado used is part of the key as well.
+	 * @param dcpDigest Digest of the input DCP, computed once for all runs.
+	 */
+	private String getCacheKey(String dcpDigest, String dcpName, String instDir, List<String> tcl){
+		List<String> params = new ArrayList<>();
+		params.add(getVivadoPath());
+		String dirName = instDir.replace('\\', '/');
+		String dcpPath = dcpName.replace('\\', '/');
+		for(String line : tcl){
+			params.add(line.replace(dirName, RUN_DIR_KEY).replace(dcpPath, DCP_KEY));
+		}
+		return JobResultCache.createKeyFromDigests(Arrays.asList(dcpDigest), params);
+	}
+	
+	private List<String> getResultFileNames(){
+		List<String> names = new ArrayList<>(Arrays.asList(PLACED_TIMING_RESULT, ROUTED_TIMING_RESULT, 
+				ROUTED_DCP_NAME, Job.DEFAULT_COMMAND_LOG_FILE));
+		if(addEDIFAndMetadata){
+			names.add(ROUTED_EDF_NAME);
+			names.add(ROUTED_METADATA_NAME);
+		}
+		return names;
+	}
+	
 	public void explorePerformance(){
 		
 		if(vivadoPath.equals(DEFAULT_VIVADO) && !FileTools.isVivadoOnPath()){
@@ -318,6 +367,11 @@ public class PerformanceExplorer {
 			pblocks = new ArrayList<>();
 			pblocks.add(null);
 		}
+		String dcpDigest = null;
+		if(resultCache != null){
+			// The runs read the DCP written above, which reflects any changes made to the design
+			dcpDigest = JobResultCache.getFileDigest(dcpName);
+		}
 		
 		for(int pb=0; pb < pblocks.size(); pb++){
 			PBlock pblock = pblocks.get(pb);
@@ -339,15 +393,17 @@ public class PerformanceExplorer {
 						Job j = useLSF ? new LSFJob() : new LocalJob();
 						j.setRunDir(instDir);
 						j.setCommand(getVivadoPath() + " -mode batch -source " + scriptName);
-						@SuppressWarnings("unused")
-						long id = j.launchJob();
-						jobs.addRunningJob(j);
+						if(resultCache != null){
+							String key = getCacheKey(dcpDigest, dcpName, instDir, tcl);
+							j = new CachedJob(j, resultCache, key, getResultFileNames());
+						}
+						jobs.addJob(j);
 					}
 				}
 			}			
 		}
 		
-		boolean success = jobs.runAllToCompletion(JobQueue.MAX_LSF_CONCURRENT_JOBS);
+		boolean success = jobs.runAllToCompletion(useLSF ? JobQueue.MAX_LSF_CONCURRENT_JOBS : JobQueue.MAX_LOCAL_CONCURRENT_JOBS);
 
 		System.out.println("Performance Explorer " + (success ? "Finished Successfully." : "Failed!"));
 	}
@@ -369,6 +425,7 @@ public class PerformanceExplorer {
 	private static final String RUN_DIR_OPT = "d";
 	private static final String VIVADO_PATH_OPT = "y";
 	private static final String MAX_CONCURRENT_JOBS_OPT = "z";
+	private static final String RESULT_CACHE_OPT = "k";
 	
 	private static OptionParser createOptionParser(){
 		// Defaults		
@@ -389,6 +446,7 @@ public class PerformanceExplorer {
 			accepts(RUN_DIR_OPT).withOptionalArg().defaultsTo("<current directory>").describedAs("Run directory (jobs data location)");
 			accepts(VIVADO_PATH_OPT).withOptionalArg().defaultsTo(DEFAULT_VIVADO).describedAs("Specifies vivado path");
 			accepts(CONTAIN_ROUTING_OPT).withOptionalArg().ofType(Boolean.class).defaultsTo(DEFAULT_CONTAIN_ROUTING).describedAs("Sets attribute on pblock to contain routing");
+			accepts(RESULT_CACHE_OPT).withOptionalArg().defaultsTo(JobResultCache.DEFAULT_CACHE_PATH).describedAs("Reuse results of identical runs from this cache directory");
 			accepts(MAX_CONCURRENT_JOBS_OPT).withOptionalArg().ofType(Integer.class).defaultsTo(JobQueue.MAX_LOCAL_CONCURRENT_JOBS).describedAs("Max number of concurrent job when run locally");
 			acceptsAll( Arrays.asList(HELP_OPT, "?"), "Print Help" ).forHelp();			
 		}};
@@ -432,6 +490,10 @@ public class PerformanceExplorer {
 		
 		Design d = Design.readCheckpoint(dcpInputName);
 		PerformanceExplorer pe = new PerformanceExplorer(d, runDir, clkName, targetPeriod);
+		
+		if(opts.has(RESULT_CACHE_OPT)){
+			pe.setResultCache(new JobResultCache((String) opts.valueOf(RESULT_CACHE_OPT), JobResultCache.DEFAULT_MAX_SIZE));
+		}
 
 		if(opts.hasArgument(MAX_CONCURRENT_JOBS_OPT)){
 			JobQueue.MAX_LOCAL_CONCURRENT_JOBS = (int) opts.valueOf(MAX_CONCURRENT_JOBS_OPT);
@@ -0,0 +1,144 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.design.tools;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that evaluating all rows of a LUT equation at once gives the same truth table as 
+ * evaluating it one row at a time.
+ */
+public class TestLUTEquationEvaluator {
+
+	private static final char[] BINARY_OPS = {
+		LUTEquationEvaluator.XOR, LUTEquationEvaluator.XOR2, LUTEquationEvaluator.AND, 
+		LUTEquationEvaluator.AND2, LUTEquationEvaluator.AND3, LUTEquationEvaluator.OR, 
+		LUTEquationEvaluator.OR2,
+	};
+
+	private static final List<String> EQUATIONS = Arrays.asList(
+		"O=I0",
+		"O=I5",
+		"O=0",
+		"O=1",
+		"O=~I3",
+		"O=!I2",
+		"O=I0 & I1",
+		"O=I0 ^ I1 ^ I2 ^ I3 ^ I4 ^ I5",
+		"O=I0 @ I1",
+		"O=I0 * I1 + I2 . I3",
+		"O=I0 | I1 & I2",
+		"O=~(I0 & I1) + (I2 ^ ~I3)",
+		"O=!((I4 + I5) & (I0 @ (I1 | !I2)))",
+		"O = (I0&I1&I2&I3&I4&I5)",
+		"O=(((I0)))"
+	);
+
+	private static long evalByRow(String equation){
+		LUTEquationEvaluator e = new LUTEquationEvaluator(equation);
+		long value = 0;
+		for(int row=0; row < 64; row++){
+			if(e.eval(row)) value |= 1L << row;
+		}
+		return value;
+	}
+
+	/**
+	 * Creates a random equation over the given inputs with nesting, inversions and every 
+	 * operator spelling.
+	 */
+	private static String randomExpression(Random rand, int depth){
+		if(depth == 0 || rand.nextInt(4) == 0){
+			String literal = "I" + rand.nextInt(6);
+			if(rand.nextInt(3) == 0){
+				literal = (rand.nextBoolean() ? LUTEquationEvaluator.NOT : LUTEquationEvaluator.NOT2) + literal;
+			}
+			return literal;
+		}
+		StringBuilder sb = new StringBuilder();
+		int terms = 2 + rand.nextInt(3);
+		for(int i=0; i < terms; i++){
+			if(i > 0) sb.append(' ').append(BINARY_OPS[rand.nextInt(BINARY_OPS.length)]).append(' ');
+			sb.append(randomExpression(rand, depth - 1));
+		}
+		String expr = "(" + sb + ")";
+		return rand.nextInt(4) == 0 ? LUTEquationEvaluator.NOT + expr : expr;
+	}
+
+	@Test
+	public void testEvalAllMatchesEval(){
+		for(String equation : EQUATIONS){
+			Assertions.assertEquals(evalByRow(equation), new LUTEquationEvaluator(equation).evalAll(), 
+					equation);
+		}
+	}
+
+	@Test
+	public void testEvalAllMatchesEvalOnRandomEquations(){
+		Random rand = new Random(25);
+		for(int i=0; i < 500; i++){
+			String equation = "O=" + randomExpression(rand, 4);
+			LUTEquationEvaluator e = new LUTEquationEvaluator(equation);
+			// The same evaluator is reused for both modes, as LUTTools does
+			long all = e.evalAll();
+			Assertions.assertEquals(evalByRow(equation), all, equation);
+			Assertions.assertEquals(all, e.evalAll(), equation);
+		}
+	}
+
+	@Test
+	public void testKnownTruthTables(){
+		Assertions.assertEquals(0xAAAAAAAAAAAAAAAAL, new LUTEquationEvaluator("O=I0").evalAll());
+		Assertions.assertEquals(0x8888888888888888L, new LUTEquationEvaluator("O=I0 & I1").evalAll());
+		Assertions.assertEquals(0x6666666666666666L, new LUTEquationEvaluator("O=I0 ^ I1").evalAll());
+		Assertions.assertEquals(0x00000000FFFFFFFFL, new LUTEquationEvaluator("O=~I5").evalAll());
+		Assertions.assertEquals(-1L, new LUTEquationEvaluator("O=1").evalAll());
+	}
+
+	@Test
+	public void testLUTInitMatchesEvaluationByRow(){
+		boolean useCompiled = LUTTools.USE_COMPILED_EQUATIONS;
+		try {
+			for(int size=1; size <= 6; size++){
+				for(String equation : EQUATIONS){
+					LUTTools.USE_COMPILED_EQUATIONS = false;
+					String expected = LUTTools.getLUTInitFromEquation(equation, size);
+					LUTTools.USE_COMPILED_EQUATIONS = true;
+					Assertions.assertEquals(expected, LUTTools.getLUTInitFromEquation(equation, size), 
+							equation + " on a LUT" + size);
+				}
+			}
+		} finally {
+			LUTTools.USE_COMPILED_EQUATIONS = useCompiled;
+		}
+	}
+
+	@Test
+	public void testMalformedEquationsAreRejected(){
+		Assertions.assertThrows(RuntimeException.class, () -> new LUTEquationEvaluator("O=I0 & X").evalAll());
+		Assertions.assertThrows(RuntimeException.class, () -> new LUTEquationEvaluator("O=I0 & X").eval(0));
+	}
+}
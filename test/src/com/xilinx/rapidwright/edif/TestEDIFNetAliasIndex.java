@@ -0,0 +1,225 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.edif;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the parent net map and physical net pin map built by {@link EDIFNetAliasIndex} against
+ * the String-based traversal of {@link EDIFNetlist#getNetAliases(String)} they replace.
+ */
+public class TestEDIFNetAliasIndex {
+
+	/**
+	 * Builds a netlist with the same hierarchical cell instantiated at several levels, a bus
+	 * crossing the hierarchy, a pass-through cell and a top-level output driven by nothing.
+	 */
+	private static EDIFNetlist createNetlist(){
+		EDIFNetlist netlist = EDIFTools.createNewNetlist("top", false);
+		EDIFLibrary prims = netlist.getHDIPrimitivesLibrary();
+		EDIFLibrary work = netlist.getWorkLibrary();
+
+		EDIFCell lut = new EDIFCell(prims, "LUT1");
+		EDIFPort lutI0 = lut.createPort("I0", EDIFDirection.INPUT, 1);
+		EDIFPort lutO = lut.createPort("O", EDIFDirection.OUTPUT, 1);
+		EDIFCell ff = new EDIFCell(prims, "FDRE");
+		EDIFPort ffD = ff.createPort("D", EDIFDirection.INPUT, 1);
+		EDIFPort ffQ = ff.createPort("Q", EDIFDirection.OUTPUT, 1);
+
+		// stage: in[1:0] -> LUTs -> FF -> out
+		EDIFCell stage = new EDIFCell(work, "stage");
+		EDIFPort stageIn = stage.createPort("in[1:0]", EDIFDirection.INPUT, 2);
+		EDIFPort stageOut = stage.createPort("out", EDIFDirection.OUTPUT, 1);
+		EDIFCellInst lut0 = stage.createChildCellInst("lut0", lut);
+		EDIFCellInst lut1 = stage.createChildCellInst("lut1", lut);
+		EDIFCellInst ff0 = stage.createChildCellInst("ff0", ff);
+		for(int i=0; i < 2; i++){
+			EDIFNet in = stage.createNet("in" + i);
+			in.createPortInst(stageIn, i);
+			in.createPortInst(lutI0, i == 0 ? lut0 : lut1);
+		}
+		EDIFNet x = stage.createNet("x");
+		x.createPortInst(lutO, lut0);
+		x.createPortInst(ffD, ff0);
+		stage.createNet("y").createPortInst(lutO, lut1);
+		EDIFNet q = stage.createNet("q");
+		q.createPortInst(ffQ, ff0);
+		q.createPortInst(stageOut);
+
+		// pass: a -> b without any leaf cell
+		EDIFCell pass = new EDIFCell(work, "pass");
+		EDIFPort passA = pass.createPort("a", EDIFDirection.INPUT, 1);
+		EDIFPort passB = pass.createPort("b", EDIFDirection.OUTPUT, 1);
+		EDIFNet w = pass.createNet("w");
+		w.createPortInst(passA);
+		w.createPortInst(passB);
+
+		// wrapper: in[1:0] -> stage -> pass -> out, u -> LUT
+		EDIFCell wrapper = new EDIFCell(work, "wrapper");
+		EDIFPort wrapperIn = wrapper.createPort("in[1:0]", EDIFDirection.INPUT, 2);
+		EDIFPort wrapperOut = wrapper.createPort("out", EDIFDirection.OUTPUT, 1);
+		EDIFPort wrapperU = wrapper.createPort("u", EDIFDirection.INPUT, 1);
+		EDIFCellInst s = wrapper.createChildCellInst("s", stage);
+		EDIFCellInst p = wrapper.createChildCellInst("p", pass);
+		EDIFCellInst l = wrapper.createChildCellInst("l", lut);
+		for(int i=0; i < 2; i++){
+			EDIFNet in = wrapper.createNet("i" + i);
+			in.createPortInst(wrapperIn, i);
+			in.createPortInst(stageIn, i, s);
+		}
+		EDIFNet so = wrapper.createNet("so");
+		so.createPortInst(stageOut, s);
+		so.createPortInst(passA, p);
+		EDIFNet po = wrapper.createNet("po");
+		po.createPortInst(passB, p);
+		po.createPortInst(wrapperOut);
+		EDIFNet u = wrapper.createNet("u");
+		u.createPortInst(wrapperU);
+		u.createPortInst(lutI0, l);
+		EDIFNet lo = wrapper.createNet("lo");
+		lo.createPortInst(lutO, l);
+
+		EDIFCell top = netlist.getTopCell();
+		EDIFPort din = top.createPort("din[1:0]", EDIFDirection.INPUT, 2);
+		EDIFPort dout = top.createPort("dout", EDIFDirection.OUTPUT, 1);
+		EDIFPort loose = top.createPort("loose", EDIFDirection.OUTPUT, 1);
+		EDIFCellInst w0 = top.createChildCellInst("w0", wrapper);
+		EDIFCellInst w1 = top.createChildCellInst("w1", wrapper);
+		EDIFCellInst st = top.createChildCellInst("st", stage);
+		EDIFCellInst topLut = top.createChildCellInst("topLut", lut);
+		EDIFNet din0 = top.createNet("din0");
+		din0.createPortInst(din, 0);
+		din0.createPortInst(wrapperIn, 0, w0);
+		EDIFNet din1 = top.createNet("din1");
+		din1.createPortInst(din, 1);
+		din1.createPortInst(wrapperIn, 1, w0);
+		din1.createPortInst(stageIn, 1, st);
+		EDIFNet mid = top.createNet("mid");
+		mid.createPortInst(wrapperOut, w0);
+		mid.createPortInst(wrapperIn, 0, w1);
+		mid.createPortInst(stageIn, 0, st);
+		mid.createPortInst(lutI0, topLut);
+		EDIFNet mid2 = top.createNet("mid2");
+		mid2.createPortInst(stageOut, st);
+		mid2.createPortInst(wrapperIn, 1, w1);
+		EDIFNet out = top.createNet("dout");
+		out.createPortInst(wrapperOut, w1);
+		out.createPortInst(dout);
+		// Nothing drives this set
+		EDIFNet undriven = top.createNet("loose");
+		undriven.createPortInst(loose);
+		undriven.createPortInst(wrapperU, w0);
+		undriven.createPortInst(wrapperU, w1);
+		top.createNet("topLutOut").createPortInst(lutO, topLut);
+		return netlist;
+	}
+
+	/**
+	 * Builds the parent net map the way {@link EDIFNetlist} did before the index was introduced:
+	 * all aliases of the net of each top-level input and leaf cell output map to that net.  As a
+	 * side effect, {@link EDIFNetlist#getNetAliases(String)} fills the physical net pin map.
+	 */
+	private static Map<String,String> createReferenceParentNetMap(EDIFNetlist netlist){
+		List<EDIFHierPortInst> drivers = new ArrayList<>();
+		for(EDIFNet n : netlist.getTopCell().getNets()){
+			for(EDIFPortInst p : n.getPortInsts()){
+				if(p.isTopLevelPort() && p.isInput()){
+					drivers.add(new EDIFHierPortInst("", p));
+				}
+			}
+		}
+		Queue<EDIFHierCellInst> instQueue = new LinkedList<>();
+		instQueue.add(new EDIFHierCellInst("", netlist.getTopCellInst()));
+		while(!instQueue.isEmpty()){
+			EDIFHierCellInst currInst = instQueue.poll();
+			for(EDIFCellInst eci : currInst.getInst().getCellType().getCellInsts()){
+				if(eci.getCellType().getCellInsts().size() == 0 && eci.getCellType().getNets().size() == 0){
+					for(EDIFPortInst portInst : eci.getPortInsts()){
+						if(portInst.isOutput()){
+							drivers.add(new EDIFHierPortInst(currInst.getFullHierarchicalInstName(), portInst));
+						}
+					}
+				}else{
+					instQueue.add(new EDIFHierCellInst(currInst.getFullHierarchicalInstName(), eci));
+				}
+			}
+		}
+		Map<String,String> parentNetMap = new HashMap<>();
+		for(EDIFHierPortInst driver : drivers){
+			String parentNetName = driver.getHierarchicalNetName();
+			for(String alias : netlist.getNetAliases(parentNetName)){
+				parentNetMap.put(alias, parentNetName);
+			}
+		}
+		return parentNetMap;
+	}
+
+	private static Map<String,List<String>> getPinNames(Map<String,ArrayList<EDIFHierPortInst>> pinMap){
+		Map<String,List<String>> names = new HashMap<>();
+		for(Entry<String,ArrayList<EDIFHierPortInst>> e : pinMap.entrySet()){
+			List<String> pins = new ArrayList<>();
+			for(EDIFHierPortInst p : e.getValue()){
+				pins.add(p.toString());
+			}
+			Collections.sort(pins);
+			names.put(e.getKey(), pins);
+		}
+		return names;
+	}
+
+	@Test
+	public void testParentNetMapMatchesNetAliases(){
+		EDIFNetlist netlist = createNetlist();
+		Map<String,String> parentNetMap = new HashMap<>(netlist.getParentNetMap());
+		Map<String,List<String>> pins = getPinNames(netlist.getPhysicalNetPinMap());
+
+		netlist.resetParentNetMap();
+		Map<String,String> expected = createReferenceParentNetMap(netlist);
+		Assertions.assertEquals(expected, parentNetMap);
+		Assertions.assertEquals(getPinNames(netlist.getPhysicalNetPinMap()), pins);
+
+		Assertions.assertEquals("w0/s/q", parentNetMap.get("w1/s/in0"));
+		Assertions.assertEquals("din0", parentNetMap.get("w0/s/in0"));
+		Assertions.assertEquals("din1", parentNetMap.get("st/in1"));
+		Assertions.assertEquals("w1/s/q", parentNetMap.get("dout"));
+		Assertions.assertEquals("w1/s/q", parentNetMap.get("w1/p/w"));
+	}
+
+	@Test
+	public void testUndrivenNetsAreLeftOut(){
+		EDIFNetlist netlist = createNetlist();
+		Map<String,String> parentNetMap = netlist.getParentNetMap();
+		Assertions.assertNull(parentNetMap.get("loose"));
+		Assertions.assertNull(parentNetMap.get("w0/u"));
+		Assertions.assertNull(parentNetMap.get("w1/u"));
+		Assertions.assertFalse(netlist.getPhysicalNetPinMap().containsKey("loose"));
+	}
+}
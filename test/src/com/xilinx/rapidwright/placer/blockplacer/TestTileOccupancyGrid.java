@@ -0,0 +1,137 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.placer.blockplacer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link TileOccupancyGrid} against a plain per-tile count.
+ */
+public class TestTileOccupancyGrid {
+
+	/** Spans three words per row, the last one partially used */
+	private static final int ROWS = 9;
+	private static final int COLUMNS = 150;
+
+	private static void add(int[][] ref, int[] r, int delta){
+		for(int row=Math.max(r[0], 0); row <= Math.min(r[1], ROWS-1); row++){
+			for(int col=Math.max(r[2], 0); col <= Math.min(r[3], COLUMNS-1); col++){
+				ref[row][col] += delta;
+			}
+		}
+	}
+
+	private static boolean isAnyOccupied(int[][] ref, int top, int bottom, int left, int right){
+		for(int row=Math.max(top, 0); row <= Math.min(bottom, ROWS-1); row++){
+			for(int col=Math.max(left, 0); col <= Math.min(right, COLUMNS-1); col++){
+				if(ref[row][col] > 0) return true;
+			}
+		}
+		return false;
+	}
+
+	private static void assertMatches(int[][] ref, TileOccupancyGrid grid){
+		for(int row=0; row < ROWS; row++){
+			for(int col=0; col < COLUMNS; col++){
+				Assertions.assertEquals(ref[row][col] > 0, grid.isOccupied(row, col), 
+						"Tile at row " + row + ", column " + col);
+			}
+		}
+	}
+
+	private static int[] randomRectangle(Random rand){
+		// Let rectangles stick out of the grid on all sides
+		int top = rand.nextInt(ROWS + 2) - 1;
+		int left = rand.nextInt(COLUMNS + 2) - 1;
+		int bottom = top + rand.nextInt(4);
+		int right = left + rand.nextInt(rand.nextBoolean() ? 8 : 100);
+		return new int[]{top, bottom, left, right};
+	}
+
+	@Test
+	public void testRandomAddRemoveRoundTrip(){
+		Random rand = new Random(1);
+		TileOccupancyGrid grid = new TileOccupancyGrid(ROWS, COLUMNS);
+		int[][] ref = new int[ROWS][COLUMNS];
+		List<int[]> added = new ArrayList<>();
+		for(int step=0; step < 2000; step++){
+			// Grow to a few dozen overlapping rectangles so counts ripple over several bits
+			if(added.isEmpty() || rand.nextInt(100) < 55){
+				int[] r = randomRectangle(rand);
+				grid.addRectangle(r[0], r[1], r[2], r[3]);
+				add(ref, r, 1);
+				added.add(r);
+			}else{
+				int[] r = added.remove(rand.nextInt(added.size()));
+				grid.removeRectangle(r[0], r[1], r[2], r[3]);
+				add(ref, r, -1);
+			}
+			if(step % 50 == 0) assertMatches(ref, grid);
+			int[] q = randomRectangle(rand);
+			Assertions.assertEquals(isAnyOccupied(ref, q[0], q[1], q[2], q[3]), 
+					grid.isAnyOccupied(q[0], q[1], q[2], q[3]));
+		}
+		for(int[] r : added){
+			grid.removeRectangle(r[0], r[1], r[2], r[3]);
+			add(ref, r, -1);
+		}
+		assertMatches(ref, grid);
+		Assertions.assertFalse(grid.isAnyOccupied(0, ROWS-1, 0, COLUMNS-1));
+	}
+
+	@Test
+	public void testCarryAndBorrowAcrossCountBits(){
+		TileOccupancyGrid grid = new TileOccupancyGrid(ROWS, COLUMNS);
+		// Counts of 255 and 256 carry into and borrow out of the upper count bits
+		int stacked = 256;
+		for(int i=0; i < stacked; i++){
+			grid.addRectangle(2, 4, 60, 70);
+		}
+		grid.addRectangle(3, 3, 65, 140);
+		for(int i=0; i < stacked - 1; i++){
+			grid.removeRectangle(2, 4, 60, 70);
+			Assertions.assertTrue(grid.isOccupied(2, 60));
+			Assertions.assertTrue(grid.isOccupied(4, 70));
+		}
+		grid.removeRectangle(2, 4, 60, 70);
+		Assertions.assertFalse(grid.isAnyOccupied(2, 2, 0, COLUMNS-1));
+		Assertions.assertFalse(grid.isAnyOccupied(4, 4, 0, COLUMNS-1));
+		Assertions.assertFalse(grid.isOccupied(3, 64));
+		Assertions.assertTrue(grid.isOccupied(3, 65));
+		Assertions.assertTrue(grid.isOccupied(3, 140));
+		Assertions.assertFalse(grid.isOccupied(3, 141));
+
+		grid.removeRectangle(3, 3, 65, 140);
+		Assertions.assertFalse(grid.isAnyOccupied(0, ROWS-1, 0, COLUMNS-1));
+		// Removing from free tiles leaves them free
+		grid.removeRectangle(0, ROWS-1, 0, COLUMNS-1);
+		grid.addRectangle(1, 1, 1, 1);
+		Assertions.assertTrue(grid.isOccupied(1, 1));
+		Assertions.assertFalse(grid.isAnyOccupied(0, 0, 0, COLUMNS-1));
+		grid.removeRectangle(1, 1, 1, 1);
+		Assertions.assertFalse(grid.isOccupied(1, 1));
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link SATRouteSolver} finds legal solutions and that they don't depend on the 
+ * number of threads or their timing.
+ */
+public class TestSATRouteSolver {
+
+	private static final int LAYERS = 8;
+
+	private static final int WIDTH = 16;
+
+	private static final int FANOUT = 3;
+
+	/**
+	 * A layered graph where each vertex connects to its neighbours and a random vertex of the 
+	 * next layer, with nets from the first layer to the last that have many legal routes.  Each
+	 * gadget adds two nets that both want the same vertex on their first route.
+	 */
+	private static class Problem {
+		int vertexCount = LAYERS * WIDTH;
+		List<Integer> starts = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		Set<Long> edgeSet = new HashSet<>();
+		List<int[]> nets = new ArrayList<>();
+
+		Problem(long seed, int netCount, int gadgets){
+			Random rand = new Random(seed);
+			for(int layer=0; layer < LAYERS-1; layer++){
+				for(int i=0; i < WIDTH; i++){
+					int v = layer * WIDTH + i;
+					// Neighbours keep every sink reachable, a random edge adds detours
+					for(int j=0; j <= FANOUT; j++){
+						int offset = j < FANOUT ? j - FANOUT / 2 : rand.nextInt(WIDTH);
+						int u = (layer + 1) * WIDTH + Math.floorMod(i + offset, WIDTH);
+						if(edgeSet.add(((long) v << 32) | u)){
+							starts.add(v);
+							ends.add(u);
+						}
+					}
+				}
+			}
+			for(int n=0; n < netCount; n++){
+				int sink = (LAYERS - 1) * WIDTH + (n * 2 + 1) % WIDTH;
+				nets.add(new int[]{n * 2 % WIDTH, sink});
+			}
+			for(int g=0; g < gadgets; g++){
+				addGadget();
+			}
+		}
+
+		private void addEdge(int start, int end){
+			edgeSet.add(((long) start << 32) | end);
+			starts.add(start);
+			ends.add(end);
+		}
+
+		/**
+		 * Net a can reach its sink through x or through the longer y0, y1 detour, net b only 
+		 * through x.  Routing a first takes x, so it only moves to the detour once x has become
+		 * expensive.
+		 */
+		private void addGadget(){
+			int a = vertexCount++, b = vertexCount++, x = vertexCount++, y0 = vertexCount++;
+			int y1 = vertexCount++, aSink = vertexCount++, bSink = vertexCount++;
+			addEdge(a, x);
+			addEdge(x, aSink);
+			addEdge(a, y0);
+			addEdge(y0, y1);
+			addEdge(y1, aSink);
+			addEdge(b, x);
+			addEdge(x, bSink);
+			nets.add(new int[]{a, aSink});
+			nets.add(new int[]{b, bSink});
+		}
+
+		SATRouteSolver createSolver(int threads){
+			int[] s = new int[starts.size()];
+			int[] e = new int[ends.size()];
+			for(int i=0; i < s.length; i++){
+				s[i] = starts.get(i);
+				e[i] = ends.get(i);
+			}
+			SATRouteSolver solver = new SATRouteSolver(vertexCount, s, e, nets);
+			solver.setThreads(threads);
+			return solver;
+		}
+	}
+
+	private static void assertLegal(Problem p, int[][] solution){
+		Assertions.assertNotNull(solution);
+		Assertions.assertEquals(p.nets.size(), solution.length);
+		int[] owner = new int[p.vertexCount];
+		Arrays.fill(owner, -1);
+		for(int net=0; net < solution.length; net++){
+			int[] terminals = p.nets.get(net);
+			Set<Integer> tree = new HashSet<>();
+			tree.add(terminals[0]);
+			int[] edges = solution[net];
+			for(int i=0; i < edges.length; i+=2){
+				Assertions.assertTrue(p.edgeSet.contains(((long) edges[i] << 32) | edges[i+1]), 
+						"Net " + net + " uses an edge that is not in the graph");
+				tree.add(edges[i]);
+				tree.add(edges[i+1]);
+			}
+			for(int i=1; i < terminals.length; i++){
+				Assertions.assertTrue(tree.contains(terminals[i]), "Net " + net + " misses a sink");
+			}
+			for(int v : tree){
+				Assertions.assertEquals(-1, owner[v], "Vertex " + v + " is shared by nets");
+				owner[v] = net;
+			}
+		}
+	}
+
+	private static void assertSameSolution(int[][] expected, int[][] actual){
+		Assertions.assertEquals(expected.length, actual.length);
+		for(int i=0; i < expected.length; i++){
+			Assertions.assertArrayEquals(expected[i], actual[i], "Net " + i);
+		}
+	}
+
+	@Test
+	public void testSolutionIsLegalAndNegotiated(){
+		Problem p = new Problem(24, WIDTH / 2, 3);
+		SATRouteSolver solver = p.createSolver(1);
+		assertLegal(p, solver.solve());
+		// The nets of the gadgets conflict on their first routes
+		Assertions.assertTrue(solver.getPasses() > 1);
+	}
+
+	@Test
+	public void testSolutionDoesNotDependOnThreads(){
+		for(long seed=0; seed < 10; seed++){
+			Problem p = new Problem(seed, WIDTH / 2, (int) seed % 3);
+			SATRouteSolver single = p.createSolver(1);
+			int[][] expected = single.solve();
+			assertLegal(p, expected);
+			for(int run=0; run < 5; run++){
+				for(int threads : new int[]{1, 2, 4, 8}){
+					SATRouteSolver solver = p.createSolver(threads);
+					// The lowest seed that succeeds wins, seed 0 is the search of a single thread
+					assertSameSolution(expected, solver.solve());
+					Assertions.assertEquals(single.getPasses(), solver.getPasses());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUnreachableSinkFails(){
+		Problem p = new Problem(24, 2, 1);
+		// A vertex of the first layer can't be reached from another vertex of the first layer
+		p.nets.add(new int[]{0, 1});
+		Assertions.assertNull(p.createSolver(4).solve());
+	}
+}
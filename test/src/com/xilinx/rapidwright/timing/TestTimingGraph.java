@@ -0,0 +1,124 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.xilinx.rapidwright.timing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jgrapht.GraphPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that incremental timing updates give the same results as a full recompute.
+ */
+public class TestTimingGraph {
+
+    private static final int VERTEX_COUNT = 200;
+
+    private static final float REQUIREMENT = 2000f;
+
+    /**
+     * Builds a random timing graph with edges only from lower to higher vertex indices.  Vertices 
+     * without fanout are flip flop inputs (timing endpoints).
+     */
+    private static TimingGraph createGraph(long seed, List<TimingEdge> edges) {
+        Random random = new Random(seed);
+        TimingGraph graph = new TimingGraph(null);
+        TimingVertex[] vertices = new TimingVertex[VERTEX_COUNT];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            vertices[i] = graph.safeAddVertex(new TimingVertex("v" + i));
+        }
+        boolean[] hasFanout = new boolean[VERTEX_COUNT];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            for (int j = i + 1; j < VERTEX_COUNT; j++) {
+                if (random.nextInt(VERTEX_COUNT) >= 4) continue;
+                TimingEdge e = new TimingEdge(graph, vertices[i], vertices[j], null, null);
+                graph.safeAddEdge(vertices[i], vertices[j], e);
+                e.setLogicDelay(random.nextInt(100));
+                edges.add(e);
+                hasFanout[i] = true;
+            }
+        }
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            if (!hasFanout[i]) vertices[i].setFlopInput();
+        }
+        graph.setTimingRequirement(REQUIREMENT);
+        graph.computeSlacks();
+        return graph;
+    }
+
+    private static void assertSameTiming(TimingGraph expected, TimingGraph actual) {
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            TimingVertex e = expected.safeAddVertex(new TimingVertex("v" + i));
+            TimingVertex a = actual.safeAddVertex(new TimingVertex("v" + i));
+            Assertions.assertEquals(e.getArrivalTime(), a.getArrivalTime(), 1e-3, e.getName());
+            Assertions.assertEquals(e.hasRequiredTime(), a.hasRequiredTime(), e.getName());
+            Assertions.assertEquals(e.getRequiredTime(), a.getRequiredTime(), 1e-3, e.getName());
+            Assertions.assertEquals(e.getSlack(), a.getSlack(), e.getName());
+        }
+        Assertions.assertEquals(expected.getWorstSlack(), actual.getWorstSlack(), 1e-3);
+        GraphPath<TimingVertex, TimingEdge> expectedPath = expected.getCriticalPath();
+        GraphPath<TimingVertex, TimingEdge> actualPath = actual.getCriticalPath();
+        Assertions.assertEquals(expectedPath.getWeight(), actualPath.getWeight(), 1e-3);
+        Assertions.assertEquals(expectedPath.getEndVertex().getArrivalTime(), 
+                actualPath.getEndVertex().getArrivalTime(), 1e-3);
+    }
+
+    @Test
+    public void testIncrementalUpdateMatchesFullRecompute() {
+        List<TimingEdge> incrementalEdges = new ArrayList<>();
+        List<TimingEdge> fullEdges = new ArrayList<>();
+        TimingGraph incremental = createGraph(1, incrementalEdges);
+        TimingGraph full = createGraph(1, fullEdges);
+        Assertions.assertEquals(incrementalEdges.size(), fullEdges.size());
+        assertSameTiming(full, incremental);
+
+        Random random = new Random(2);
+        for (int round = 0; round < 50; round++) {
+            List<TimingEdge> changed = new ArrayList<>();
+            // Both slower and faster edges, like a net being rerouted
+            for (int k = 0; k < 1 + random.nextInt(5); k++) {
+                int index = random.nextInt(incrementalEdges.size());
+                float netDelay = random.nextInt(500);
+                incrementalEdges.get(index).setNetDelay(netDelay);
+                fullEdges.get(index).setNetDelay(netDelay);
+                changed.add(incrementalEdges.get(index));
+            }
+            incremental.updateTiming(changed);
+            full.computeArrivalTimes();
+            full.computeSlacks();
+            assertSameTiming(full, incremental);
+        }
+    }
+
+    @Test
+    public void testUnchangedDelaysKeepTiming() {
+        List<TimingEdge> edges = new ArrayList<>();
+        TimingGraph graph = createGraph(3, edges);
+        Float worstSlack = graph.getWorstSlack();
+        graph.updateTiming(Collections.singletonList(edges.get(0)));
+        Assertions.assertEquals(worstSlack, graph.getWorstSlack());
+    }
+}
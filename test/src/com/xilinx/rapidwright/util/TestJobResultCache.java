@@ -0,0 +1,146 @@
+/*
+ *
+ * Copyright (c) 2020 Xilinx, Inc.
+ * All rights reserved.
+ *
+ * This file is part of RapidWright.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.xilinx.rapidwright.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestJobResultCache {
+
+	/** Size of every result file written by {@link #storeEntry(JobResultCache, Path, String)} */
+	private static final int RESULT_SIZE = 100;
+
+	private static void writeFile(File f, String contents) throws IOException {
+		Files.write(f.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readFile(File f) throws IOException {
+		return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static String getContents(String key){
+		char[] c = new char[RESULT_SIZE];
+		Arrays.fill(c, key.charAt(0));
+		return new String(c);
+	}
+
+	/**
+	 * Stores a single result file for the key and marks the entry as last used long ago, with
+	 * older entries for keys that sort first.
+	 */
+	private static void storeEntry(JobResultCache cache, Path tmp, String key) throws IOException {
+		File srcDir = tmp.resolve("src_" + key).toFile();
+		srcDir.mkdirs();
+		writeFile(new File(srcDir, "result.txt"), getContents(key));
+		Assertions.assertTrue(cache.store(key, srcDir.getAbsolutePath(), Collections.singletonList("result.txt")));
+		setLastUse(cache, key, 1000L * key.charAt(0));
+	}
+
+	private static void setLastUse(JobResultCache cache, String key, long time){
+		File complete = new File(cache.getCacheDir() + File.separator + key, ".complete");
+		Assertions.assertTrue(complete.setLastModified(time));
+	}
+
+	@Test
+	public void testStoreAndRestore(@TempDir Path tmp) throws IOException {
+		JobResultCache cache = new JobResultCache(tmp.resolve("cache").toString(), Long.MAX_VALUE);
+		File srcDir = tmp.resolve("run").toFile();
+		srcDir.mkdirs();
+		writeFile(new File(srcDir, "timing.twr"), "slack 0.1");
+		writeFile(new File(srcDir, "routed.dcp"), "dcp");
+		writeFile(new File(srcDir, "scratch.log"), "not a result");
+
+		String key = JobResultCache.createKey(
+				Arrays.asList(new File(srcDir, "routed.dcp").getAbsolutePath()), Arrays.asList("route_design"));
+		Assertions.assertFalse(cache.contains(key));
+		Assertions.assertTrue(cache.store(key, srcDir.getAbsolutePath(),
+				Arrays.asList("timing.twr", "routed.dcp", "missing.rpt")));
+		Assertions.assertTrue(cache.contains(key));
+		Assertions.assertEquals("dcp".length() + "slack 0.1".length(), cache.getSize());
+
+		File destDir = tmp.resolve("restored").toFile();
+		Assertions.assertTrue(cache.restore(key, destDir.getAbsolutePath()));
+		Assertions.assertEquals("slack 0.1", readFile(new File(destDir, "timing.twr")));
+		Assertions.assertEquals("dcp", readFile(new File(destDir, "routed.dcp")));
+		Assertions.assertFalse(new File(destDir, "scratch.log").exists());
+		Assertions.assertFalse(new File(destDir, "missing.rpt").exists());
+
+		Assertions.assertFalse(cache.restore("0123", tmp.resolve("other").toString()));
+	}
+
+	@Test
+	public void testKeyDependsOnInputsAndParams(@TempDir Path tmp) throws IOException {
+		File a = tmp.resolve("a.dcp").toFile();
+		writeFile(a, "design a");
+		String key = JobResultCache.createKey(Arrays.asList(a.getAbsolutePath()), Arrays.asList("Explore"));
+		Assertions.assertEquals(key, JobResultCache.createKeyFromDigests(
+				Arrays.asList(JobResultCache.getFileDigest(a.getAbsolutePath())), Arrays.asList("Explore")));
+		Assertions.assertNotEquals(key, JobResultCache.createKey(Arrays.asList(a.getAbsolutePath()), Arrays.asList("Default")));
+		writeFile(a, "design b");
+		Assertions.assertNotEquals(key, JobResultCache.createKey(Arrays.asList(a.getAbsolutePath()), Arrays.asList("Explore")));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed(@TempDir Path tmp) throws IOException {
+		JobResultCache cache = new JobResultCache(tmp.resolve("cache").toString(), 3 * RESULT_SIZE);
+		storeEntry(cache, tmp, "a");
+		storeEntry(cache, tmp, "b");
+		storeEntry(cache, tmp, "c");
+		Assertions.assertEquals(3 * RESULT_SIZE, cache.getSize());
+
+		// Using "a" makes "b" the least recently used entry
+		Assertions.assertTrue(cache.restore("a", tmp.resolve("restored").toString()));
+		storeEntry(cache, tmp, "d");
+		Assertions.assertTrue(cache.contains("a"));
+		Assertions.assertFalse(cache.contains("b"));
+		Assertions.assertTrue(cache.contains("c"));
+		Assertions.assertTrue(cache.contains("d"));
+		Assertions.assertEquals(3 * RESULT_SIZE, cache.getSize());
+		Assertions.assertFalse(cache.restore("b", tmp.resolve("restored_b").toString()));
+	}
+
+	@Test
+	public void testClaimedEntriesAreNotEvicted(@TempDir Path tmp) throws IOException {
+		JobResultCache cache = new JobResultCache(tmp.resolve("cache").toString(), 2 * RESULT_SIZE);
+		storeEntry(cache, tmp, "a");
+		storeEntry(cache, tmp, "b");
+		FileLock claim = cache.tryClaim("a");
+		Assertions.assertNotNull(claim);
+		try {
+			storeEntry(cache, tmp, "c");
+		} finally {
+			JobResultCache.release(claim);
+		}
+		Assertions.assertTrue(cache.contains("a"));
+		Assertions.assertFalse(cache.contains("b"));
+		Assertions.assertTrue(cache.contains("c"));
+	}
+}